@@ -0,0 +1,51 @@
+package com.github.sgreben.regex_builder;
+
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import com.github.sgreben.regex_builder.compiler.CompileOptions;
+
+/**
+ * Finding a field in a UTF-8 log line: decoded to a string, against matched on the bytes.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class ByteMatchBenchmark {
+	private Pattern pattern;
+	private ByteMatcher matcher;
+	private byte[] line;
+
+	@Setup
+	public void setUp() {
+		pattern = Pattern.compile(Re.sequence("latency=", Re.repeat1(CharClass.digit()), "ms"), 0,
+				CompileOptions.defaults().withUtf8Dfa(true));
+		line = ("2024-01-01T00:00:00Z host=web-1 user=J\u00f6rg service=checkout level=info path=/caf\u00e9/menu "
+				+ "status=200 latency=87ms").getBytes(StandardCharsets.UTF_8);
+		matcher = pattern.byteMatcher(line);
+	}
+
+	@Benchmark
+	public int decoded() {
+		Matcher m = pattern.matcher(new String(line, StandardCharsets.UTF_8));
+		return m.find() ? m.end() : -1;
+	}
+
+	@Benchmark
+	public int bytes() {
+		ByteMatcher m = matcher.reset(line);
+		return m.find() ? m.end() : -1;
+	}
+}
@@ -0,0 +1,105 @@
+package com.github.sgreben.regex_builder;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.channels.ReadableByteChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import com.github.sgreben.regex_builder.compiler.CompileOptions;
+
+/**
+ * Counting the matches in a 64 MB log file: read line by line into strings, against mapped and
+ * matched on the bytes, and against streamed through a window of bytes.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class FileScanBenchmark {
+	private Pattern pattern;
+	private Path file;
+
+	@Setup
+	public void setUp() throws IOException {
+		pattern = Pattern.compile(Re.sequence("latency=", Re.repeat(CharClass.digit(), 1, 6), "ms"), 0,
+				CompileOptions.defaults().withUtf8Dfa(true));
+		file = Files.createTempFile("scan", ".log");
+		OutputStream out = Files.newOutputStream(file);
+		try {
+			for (int i = 0; i < 600000; i++) {
+				out.write(("2024-01-01T00:00:00Z host=web-" + i % 16 + " user=J\u00f6rg service=checkout level=info "
+						+ "path=/caf\u00e9/menu status=200" + (i % 10 == 0 ? " latency=" + i % 997 + "ms" : "") + "\n")
+						.getBytes(StandardCharsets.UTF_8));
+			}
+		} finally {
+			out.close();
+		}
+	}
+
+	@TearDown
+	public void tearDown() throws IOException {
+		Files.delete(file);
+	}
+
+	@Benchmark
+	public int lines() throws IOException {
+		int count = 0;
+		BufferedReader reader = Files.newBufferedReader(file, StandardCharsets.UTF_8);
+		try {
+			String line;
+			while ((line = reader.readLine()) != null) {
+				if (pattern.matcher(line).find()) {
+					count++;
+				}
+			}
+		} finally {
+			reader.close();
+		}
+		return count;
+	}
+
+	@Benchmark
+	public int mapped() throws IOException {
+		int count = 0;
+		FileMatcher m = pattern.scan(file);
+		try {
+			while (m.find()) {
+				count++;
+			}
+		} finally {
+			m.close();
+		}
+		return count;
+	}
+
+	@Benchmark
+	public int streamed() throws IOException {
+		int count = 0;
+		ReadableByteChannel channel = Files.newByteChannel(file);
+		try {
+			StreamMatcher m = pattern.streamMatcher(channel);
+			while (m.find()) {
+				count++;
+			}
+		} finally {
+			channel.close();
+		}
+		return count;
+	}
+}
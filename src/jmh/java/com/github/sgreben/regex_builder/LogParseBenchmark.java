@@ -0,0 +1,61 @@
+package com.github.sgreben.regex_builder;
+
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import com.github.sgreben.regex_builder.compiler.CompileOptions;
+import com.github.sgreben.regex_builder.compiler.Engine;
+
+/**
+ * Extracting the fields of an access log line with {@code matches()}, with each engine.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class LogParseBenchmark {
+	@Param({"BACKTRACKING", "PIKE_VM", "ONE_PASS", "GENERATED"})
+	public Engine engine;
+
+	private Pattern pattern;
+	private CaptureGroup[] fields;
+	private String line;
+
+	@Setup
+	public void setUp() {
+		Expression token = Re.repeat1(CharClass.nonWhitespaceChar());
+		fields = new CaptureGroup[] {Re.capture(token), Re.capture(token),
+				Re.capture(Re.sequence(Re.repeat1(CharClass.union(CharClass.wordChar(), ':', '/')),
+						CharClass.whitespaceChar(), CharClass.oneOf("+\\-"), Re.repeat(CharClass.digit(), 4))), Re.capture(token), Re.capture(token),
+				Re.capture(Re.repeat1(CharClass.noneOf(" \t\n\u000b\f\r\""))), Re.capture(Re.repeat(CharClass.digit(), 3)),
+				Re.capture(Re.repeat1(CharClass.digit()))};
+		pattern = Pattern.compile(Re.sequence(fields[0], " - ", fields[1], " [", fields[2], "] \"", fields[3], ' ',
+				fields[4], ' ', fields[5], "\" ", fields[6], ' ', fields[7]), 0,
+				CompileOptions.defaults().withEngine(engine));
+		line = "127.0.0.1 - - [21/Jul/2014:9:55:27 -0800] \"GET /home.html HTTP/1.1\" 200 2048";
+	}
+
+	@Benchmark
+	public int parse() {
+		Matcher m = pattern.matcher(line);
+		if (!m.matches()) {
+			return -1;
+		}
+		int sum = 0;
+		for (CaptureGroup field : fields) {
+			sum += m.end(field) - m.start(field);
+		}
+		return sum;
+	}
+}
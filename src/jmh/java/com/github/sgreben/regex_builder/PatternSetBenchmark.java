@@ -0,0 +1,66 @@
+package com.github.sgreben.regex_builder;
+
+import java.util.ArrayList;
+import java.util.BitSet;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Matching a log event against many rules: one pattern after the other, against a pattern set.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class PatternSetBenchmark {
+	@Param({"10", "100", "1000", "3000"})
+	public int size;
+
+	private List<Pattern> patterns;
+	private PatternSet set;
+	private String event;
+
+	@Setup
+	public void setUp() {
+		List<Expression> rules = new ArrayList<Expression>();
+		for (int i = 0; i < size; i++) {
+			rules.add(Re.sequence(Re.repeat1(CharClass.wordChar()), " code=E" + i + ";", Re.repeat1(CharClass.digit())));
+		}
+		set = PatternSet.compile(rules);
+		patterns = new ArrayList<Pattern>();
+		for (int i = 0; i < set.size(); i++) {
+			patterns.add(set.pattern(i));
+		}
+		event = "2024-01-01T00:00:00Z host=web-1 service=checkout level=error code=E7;500 "
+				+ "message=\"payment provider timed out after 3000 ms\"";
+	}
+
+	@Benchmark
+	public BitSet sequential() {
+		BitSet matched = new BitSet(size);
+		for (int i = 0; i < patterns.size(); i++) {
+			if (patterns.get(i).matcher(event).find()) {
+				matched.set(i);
+			}
+		}
+		return matched;
+	}
+
+	@Benchmark
+	public BitSet patternSet() {
+		return set.findAll(event);
+	}
+}
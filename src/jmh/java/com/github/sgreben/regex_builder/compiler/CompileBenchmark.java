@@ -0,0 +1,88 @@
+package com.github.sgreben.regex_builder.compiler;
+
+import java.util.LinkedList;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import com.github.sgreben.regex_builder.CaptureGroup;
+import com.github.sgreben.regex_builder.CaptureGroupIndex;
+import com.github.sgreben.regex_builder.CharClass;
+import com.github.sgreben.regex_builder.Expression;
+import com.github.sgreben.regex_builder.Re;
+import com.github.sgreben.regex_builder.tokens.END_GROUP;
+import com.github.sgreben.regex_builder.tokens.START_GROUP;
+import com.github.sgreben.regex_builder.tokens.TOKEN;
+
+/**
+ * Compiling a typical filter expression, with the default options and with the opt-in
+ * normalization and possessification passes, and writing its regex: the two-pass path (number the
+ * groups, collect the tokens in a list, concatenate) against the single-pass writer. Run with
+ * "-prof gc" to compare the allocation per compile (gc.alloc.rate.norm).
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class CompileBenchmark {
+	private Expression expression;
+	private CompileOptions options;
+	private CompileOptions normalized;
+
+	@Setup
+	public void setUp() {
+		Expression field = Re.repeat1(CharClass.nonWhitespaceChar());
+		CaptureGroup ip = Re.captureNamed("ip", field);
+		CaptureGroup method = Re.captureNamed("method", Re.choice("GET", "POST", "PUT", "DELETE", "HEAD"));
+		CaptureGroup path = Re.capture(Re.repeat1(Re.sequence("/", Re.repeat(CharClass.wordChar()))));
+		CaptureGroup code = Re.captureNamed("code", Re.repeat(CharClass.digit(), 3));
+		CaptureGroup size = Re.capture(Re.repeat1(CharClass.digit()));
+		expression = Re.sequence(CharClass.beginInput(), ip, " ", Re.capture(field), " ", Re.capture(field), " \"",
+				method, " ", path, Re.optional(Re.sequence("?", Re.capture(field))), "\" ", code, " ",
+				Re.choice(size, "-"), Re.optional(Re.sequence(" ", Re.backReference(ip))), CharClass.endInput());
+		options = CompileOptions.defaults().withoutCache();
+		normalized = options.withNormalization(true).withPossessification(true);
+	}
+
+	@Benchmark
+	public String writeTwoPass() {
+		CaptureGroupVisitor visitor = new CaptureGroupVisitor(2);
+		expression.accept(visitor);
+		LinkedList<TOKEN> tokens = new LinkedList<TOKEN>();
+		tokens.add(START_GROUP.INSTANCE);
+		expression.compile(visitor.get(), tokens);
+		tokens.add(END_GROUP.INSTANCE);
+		StringBuilder sb = new StringBuilder();
+		for (TOKEN token : tokens) {
+			sb.append(token.regexString());
+		}
+		return sb.toString();
+	}
+
+	@Benchmark
+	public String writeSinglePass() {
+		CaptureGroupIndex index = CaptureGroupIndex.numberedFrom(2);
+		String regex = Compiler.write(expression, index);
+		index.finishNumbering();
+		return regex;
+	}
+
+	@Benchmark
+	public Object compile() {
+		return Compiler.compile(expression, 0, options);
+	}
+
+	@Benchmark
+	public Object compileNormalized() {
+		return Compiler.compile(expression, 0, normalized);
+	}
+}
@@ -0,0 +1,62 @@
+package com.github.sgreben.regex_builder;
+
+import com.github.sgreben.regex_builder.analysis.Complexity;
+
+/**
+ * An input that counts the characters read from it by the matcher, and throws a
+ * {@link MatchBudgetExceededException} once the count exceeds a budget. A backtracking matcher
+ * reads at least one character per step, so this bounds the time spent on the input.
+ */
+class BudgetedCharSequence implements CharSequence {
+	/**
+	 * Steps allowed per unit of the budget, covering the constant factors of the matcher.
+	 */
+	static final long STEPS_PER_UNIT = 64;
+
+	private final CharSequence input;
+	private final long budget;
+	private long steps;
+
+	BudgetedCharSequence(CharSequence input, Complexity complexity) {
+		this.input = input;
+		this.budget = budget(complexity, input.length());
+	}
+
+	/**
+	 * The number of steps allowed on an input of the given length: enough for every start
+	 * position of {@code find()} to take the given number of steps.
+	 */
+	static long budget(Complexity complexity, int length) {
+		if (complexity.isExponential()) {
+			return Long.MAX_VALUE;
+		}
+		long budget = STEPS_PER_UNIT;
+		for (int i = 0; i <= complexity.getDegree() && budget < Long.MAX_VALUE / (length + 1); i++) {
+			budget *= length + 1;
+		}
+		return budget;
+	}
+
+	@Override
+	public int length() {
+		return input.length();
+	}
+
+	@Override
+	public char charAt(int index) {
+		if (++steps > budget) {
+			throw new MatchBudgetExceededException(budget, input.length());
+		}
+		return input.charAt(index);
+	}
+
+	@Override
+	public CharSequence subSequence(int start, int end) {
+		return input.subSequence(start, end);
+	}
+
+	@Override
+	public String toString() {
+		return input.toString();
+	}
+}
@@ -0,0 +1,273 @@
+package com.github.sgreben.regex_builder;
+
+import java.nio.ByteBuffer;
+import com.github.sgreben.regex_builder.engine.Utf8Dfa;
+
+/**
+ * Matches a pattern against UTF-8 bytes, from the position to the limit of a buffer, as
+ * {@link Matcher} matches it against the decoded chars. Offsets are indices in the buffer (in the
+ * array, for a matcher of an array).
+ *
+ * With the pattern's {@link Pattern#utf8Dfa()}, the bounds of matches are found on the bytes,
+ * without decoding them, and only the bytes around a match are decoded if its groups are needed.
+ * Otherwise, and for inputs the DFA does not handle (see {@link Utf8Dfa}), the input is decoded and
+ * matched by java.util.regex. Each byte of a malformed sequence then decodes to U+FFFD.
+ *
+ * The position and limit of the buffer must not change while it is matched; a matcher can be
+ * {@link #reset} to match other bytes.
+ */
+public class ByteMatcher {
+    private final Pattern pattern;
+    private final Utf8Dfa dfa;
+    private ByteBuffer input;
+    /**
+     * Where the next {@code find()} starts.
+     */
+    private int searchFrom;
+    private boolean found;
+    private int start;
+    private int end;
+    /**
+     * Whether the last match was for {@code matches()}.
+     */
+    private boolean whole;
+    /**
+     * The input decoded, once a search needed it, or null.
+     */
+    private Utf8Text decoded;
+    /**
+     * The matcher holding the groups of the last match on {@link #groupText}, or null until they are
+     * needed.
+     */
+    private java.util.regex.Matcher groups;
+    private Utf8Text groupText;
+
+    ByteMatcher(Pattern pattern, Utf8Dfa dfa, ByteBuffer input) {
+        this.pattern = pattern;
+        this.dfa = dfa;
+        reset(input);
+    }
+
+    /**
+     * Matches the bytes from the position to the limit of the buffer instead.
+     */
+    public ByteMatcher reset(ByteBuffer input) {
+        this.input = input;
+        this.searchFrom = input.position();
+        this.found = false;
+        this.decoded = null;
+        this.groups = null;
+        this.groupText = null;
+        return this;
+    }
+
+    public ByteMatcher reset(byte[] input, int offset, int length) {
+        return reset(ByteBuffer.wrap(input, offset, length));
+    }
+
+    public ByteMatcher reset(byte[] input) {
+        return reset(ByteBuffer.wrap(input));
+    }
+
+    public boolean matches() {
+        if (dfa != null) {
+            int matched = dfa.matches(input);
+            if (matched != Utf8Dfa.UNKNOWN) {
+                return matched == 1 ? found(input.position(), input.limit(), true) : notFound();
+            }
+        }
+        Utf8Text text = decoded();
+        java.util.regex.Matcher matcher = pattern.rawMatcher(text);
+        if (!matcher.matches()) {
+            return notFound();
+        }
+        return foundByRegex(matcher, text, true);
+    }
+
+    public boolean find() {
+        if (searchFrom > input.limit()) {
+            return notFound();
+        }
+        return search(searchFrom);
+    }
+
+    /**
+     * Finds the next match starting at or after the given index in the buffer.
+     */
+    public boolean find(int offset) {
+        if (offset < input.position() || offset > input.limit()) {
+            throw new IndexOutOfBoundsException("Illegal start index");
+        }
+        return search(offset);
+    }
+
+    /**
+     * Searches the buffer as a window of a longer input (see {@link DecidedSearch}): returns the
+     * index of the first match, or of the first char at which the regex reads up to the limit of the
+     * buffer, or -1. {@link #hasMatch()} tells whether it is a match the bytes up to the limit decide.
+     */
+    int findDecided(int from) {
+        Utf8Text text = decoded();
+        java.util.regex.Matcher matcher = pattern.rawMatcher(text);
+        int start = DecidedSearch.search(matcher, text, text.indexOf(from), text.length());
+        if (start == DecidedSearch.NONE) {
+            notFound();
+            return -1;
+        }
+        if (matcher.hitEnd()) {
+            notFound();
+        } else {
+            foundByRegex(matcher, text, false);
+        }
+        return text.offset(start);
+    }
+
+    boolean hasMatch() {
+        return found;
+    }
+
+    private boolean search(int from) {
+        if (dfa != null) {
+            long match = dfa.find(input, from);
+            if (match != Utf8Dfa.UNKNOWN) {
+                return match < 0 ? notFound() : found((int) (match >>> 32), (int) match, false);
+            }
+        }
+        Utf8Text text = decoded();
+        java.util.regex.Matcher matcher = pattern.rawMatcher(text);
+        if (!matcher.find(text.indexOf(from))) {
+            return notFound();
+        }
+        return foundByRegex(matcher, text, false);
+    }
+
+    private Utf8Text decoded() {
+        if (decoded == null) {
+            decoded = Utf8Text.decode(input, input.position(), input.limit());
+        }
+        return decoded;
+    }
+
+    private boolean found(int start, int end, boolean whole) {
+        this.found = true;
+        this.start = start;
+        this.end = end;
+        this.whole = whole;
+        this.groups = null;
+        this.groupText = null;
+        searchFrom = end == start ? nextChar(end) : end;
+        return true;
+    }
+
+    private boolean foundByRegex(java.util.regex.Matcher matcher, Utf8Text text, boolean whole) {
+        found(text.offset(matcher.start()), text.offset(matcher.end()), whole);
+        groups = matcher;
+        groupText = text;
+        return true;
+    }
+
+    private boolean notFound() {
+        found = false;
+        groups = null;
+        groupText = null;
+        searchFrom = input.limit() + 1;
+        return false;
+    }
+
+    private int nextChar(int index) {
+        index++;
+        while (index < input.limit() && (input.get(index) & 0xC0) == 0x80) {
+            index++;
+        }
+        return index;
+    }
+
+    private int previousChar(int index) {
+        index--;
+        while (index > input.position() && (input.get(index) & 0xC0) == 0x80) {
+            index--;
+        }
+        return index;
+    }
+
+    /**
+     * The matcher holding the groups of the last match. For a match found on the bytes, it matches
+     * the regex against the match, with the chars around it as context for anchors.
+     */
+    private java.util.regex.Matcher groups() {
+        if (!found) {
+            throw new IllegalStateException("No match found");
+        }
+        if (groups == null) {
+            if (whole) {
+                groupText = decoded();
+                groups = pattern.rawMatcher(groupText);
+            } else {
+                int from = start > input.position() ? previousChar(start) : start;
+                int to = end;
+                // "$" may look at the two chars after the match: a third tells it is not the end.
+                for (int k = 0; k < 3 && to < input.limit(); k++) {
+                    to = nextChar(to);
+                }
+                groupText = Utf8Text.decode(input, from, to);
+                groups = pattern.rawMatcher(groupText).region(groupText.indexOf(start), groupText.indexOf(end))
+                        .useTransparentBounds(true).useAnchoringBounds(false);
+            }
+            groups.matches();
+        }
+        return groups;
+    }
+
+    public int start() {
+        if (!found) {
+            throw new IllegalStateException("No match found");
+        }
+        return start;
+    }
+
+    public int end() {
+        if (!found) {
+            throw new IllegalStateException("No match found");
+        }
+        return end;
+    }
+
+    public int start(CaptureGroup group) {
+        return start(pattern.groupIndex().get(group));
+    }
+
+    public int end(CaptureGroup group) {
+        return end(pattern.groupIndex().get(group));
+    }
+
+    /**
+     * The start of the group with the given index in the regex, or -1.
+     */
+    int start(int group) {
+        int start = groups().start(group);
+        return start < 0 ? -1 : groupText.offset(start);
+    }
+
+    int end(int group) {
+        int end = groups().end(group);
+        return end < 0 ? -1 : groupText.offset(end);
+    }
+
+    /**
+     * The decoded bytes of the last match.
+     */
+    public String group() {
+        if (groups != null) {
+            return groups.group();
+        }
+        return Utf8Text.decode(input, start(), end()).toString();
+    }
+
+    public String group(CaptureGroup group) {
+        return groups().group(pattern.groupIndex().get(group));
+    }
+
+    public int groupCount() {
+        return pattern.rawMatcher("").groupCount();
+    }
+}
@@ -0,0 +1,154 @@
+package com.github.sgreben.regex_builder;
+
+import java.lang.reflect.Constructor;
+import com.github.sgreben.regex_builder.charclass.RangeSet;
+
+/**
+ * Finds the first char of an array that is in a small set of char ranges, such as the characters a
+ * match can start with. This class scans one char at a time. On JDK 17 and later, a subclass
+ * compiled from {@code src/vector/java} compares many chars at a time using the incubating
+ * {@code jdk.incubator.vector} API. It is used only if the JVM runs with
+ * {@code --add-modules jdk.incubator.vector}; otherwise (and on JDK 8) {@link #vectorized} returns
+ * null and the prefilter scans the input itself.
+ */
+class CandidateScanner {
+    /**
+     * Inputs shorter than this are scanned in place; longer ones are copied to an array a chunk of
+     * this many chars at a time.
+     */
+    static final int MIN_INPUT_LENGTH = 1024;
+    /**
+     * The most ranges a vectorized scanner compares each chunk with.
+     */
+    static final int MAX_RANGES = 8;
+    /**
+     * Set this system property to "false" to turn vectorized scanning off.
+     */
+    static final String VECTOR_PROPERTY = "com.github.sgreben.regex_builder.vector";
+
+    private static final Constructor<? extends CandidateScanner> VECTOR_SCANNER = loadVectorScanner();
+
+    /**
+     * The bounds of the ranges, as pairs (from, to).
+     */
+    final char[] ranges;
+
+    CandidateScanner(char[] ranges) {
+        this.ranges = ranges;
+    }
+
+    /**
+     * A vectorized scanner for the given set, or null if vectorized scanning is not available or the
+     * set is not a few ranges of chars outside the surrogate block.
+     */
+    static CandidateScanner vectorized(RangeSet set) {
+        char[] ranges = charRanges(set);
+        if (VECTOR_SCANNER == null || ranges == null) {
+            return null;
+        }
+        try {
+            return VECTOR_SCANNER.newInstance((Object) ranges);
+        } catch (ReflectiveOperationException e) {
+            return null;
+        }
+    }
+
+    /**
+     * Whether the vectorized scanner was loaded.
+     */
+    static boolean isVectorized() {
+        return VECTOR_SCANNER != null;
+    }
+
+    /**
+     * The ranges of the set as chars, or null if there are too many, or if a code point of the set is
+     * a surrogate or outside the Basic Multilingual Plane. For the others, a char in the set is a code
+     * point in the set.
+     */
+    static char[] charRanges(RangeSet set) {
+        if (set.isEmpty() || set.rangeCount() > MAX_RANGES) {
+            return null;
+        }
+        int[] bounds = set.getRanges();
+        char[] ranges = new char[bounds.length];
+        for (int i = 0; i < bounds.length; i += 2) {
+            if (bounds[i + 1] > Character.MAX_VALUE
+                    || (bounds[i] <= Character.MAX_SURROGATE && bounds[i + 1] >= Character.MIN_SURROGATE)) {
+                return null;
+            }
+            ranges[i] = (char) bounds[i];
+            ranges[i + 1] = (char) bounds[i + 1];
+        }
+        return ranges;
+    }
+
+    /**
+     * The index of the first char of the input in the ranges between from (inclusive) and to
+     * (exclusive), or -1. The chars are copied to the given buffer a chunk at a time to be scanned.
+     */
+    final int indexOf(CharSequence input, char[] buffer, int from, int to) {
+        for (int chunk = from; chunk < to; chunk += buffer.length) {
+            int end = Math.min(to, chunk + buffer.length);
+            getChars(input, chunk, end, buffer);
+            int index = indexOf(buffer, 0, end - chunk);
+            if (index >= 0) {
+                return chunk + index;
+            }
+        }
+        return -1;
+    }
+
+    private static void getChars(CharSequence input, int from, int to, char[] buffer) {
+        if (input instanceof String) {
+            ((String) input).getChars(from, to, buffer, 0);
+        } else if (input instanceof StringBuilder) {
+            ((StringBuilder) input).getChars(from, to, buffer, 0);
+        } else {
+            for (int i = from; i < to; i++) {
+                buffer[i - from] = input.charAt(i);
+            }
+        }
+    }
+
+    /**
+     * The index of the first char in the ranges between from (inclusive) and to (exclusive), or -1.
+     */
+    int indexOf(char[] chars, int from, int to) {
+        for (int i = from; i < to; i++) {
+            if (contains(chars[i])) {
+                return i;
+            }
+        }
+        return -1;
+    }
+
+    final boolean contains(char c) {
+        for (int i = 0; i < ranges.length; i += 2) {
+            if (c >= ranges[i] && c <= ranges[i + 1]) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Loads the vectorized scanner and runs it once, so that a missing module or an old class file
+     * version shows up here rather than in a matcher.
+     */
+    private static Constructor<? extends CandidateScanner> loadVectorScanner() {
+        if ("false".equals(System.getProperty(VECTOR_PROPERTY))) {
+            return null;
+        }
+        try {
+            Constructor<? extends CandidateScanner> constructor = Class
+                    .forName("com.github.sgreben.regex_builder.VectorCandidateScanner")
+                    .asSubclass(CandidateScanner.class).getDeclaredConstructor(char[].class);
+            CandidateScanner probe = constructor.newInstance((Object) new char[] {'b', 'b'});
+            char[] chars = new char[MIN_INPUT_LENGTH];
+            chars[chars.length - 1] = 'b';
+            return probe.indexOf(chars, 0, chars.length) == chars.length - 1 ? constructor : null;
+        } catch (ReflectiveOperationException | LinkageError | RuntimeException e) {
+            return null;
+        }
+    }
+}
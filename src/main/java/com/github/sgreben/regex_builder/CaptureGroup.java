@@ -22,16 +22,43 @@ public class CaptureGroup extends Unary {
         this.name = name;
     }
 
+    public String getName() {
+        return name;
+    }
+
+    /**
+     * The group this group stands in for. Compiler passes that rewrite the expression inside a
+     * group replace the group by one whose origin is the original group, so that the original
+     * group can still be used to access the match.
+     */
+    protected CaptureGroup origin() {
+        return this;
+    }
+
+    /**
+     * Capture groups are identified by the object, not by their structure.
+     */
+    @Override
+    public boolean equals(Object o) {
+        return this == o;
+    }
+
+    @Override
+    public int hashCode() {
+        return System.identityHashCode(this);
+    }
+
     @Override
     public void compile(CaptureGroupIndex index, java.util.List<TOKEN> output) {
+        index.open(this);
         if (name != null) {
             output.add(new START_GROUP_NAMED(name));
         } else {
-            output.add(new START_GROUP());
+            output.add(START_GROUP.INSTANCE);
         }
         for (Expression child : children()) {
             child.compile(index, output);
         }
-        output.add(new END_GROUP());
+        output.add(END_GROUP.INSTANCE);
     }
 }
@@ -8,16 +8,76 @@ import java.util.Map;
  */
 public class CaptureGroupIndex {
     private final Map<CaptureGroup, Integer> groupIndex;
+    private int nextGroupIndex;
+    private boolean lookedUp;
+    private boolean unresolved;
 
     public CaptureGroupIndex() {
         this.groupIndex = new HashMap<CaptureGroup, Integer>();
+        this.nextGroupIndex = -1;
+    }
+
+    /**
+     * An index that numbers the groups while they are compiled, in the order in which they are
+     * opened, starting from the given index. This lets the compiler number the groups and write the
+     * regex in a single pass. A back reference to a group that is not numbered yet, or that is
+     * numbered again after it has been referenced, cannot be resolved in a single pass; this is
+     * reported by {@link #finishNumbering()}.
+     */
+    public static CaptureGroupIndex numberedFrom(int firstGroupIndex) {
+        CaptureGroupIndex index = new CaptureGroupIndex();
+        index.nextGroupIndex = firstGroupIndex;
+        return index;
     }
 
     public Integer get(CaptureGroup group) {
-        return groupIndex.get(group);
+        Integer index = groupIndex.get(group.origin());
+        if (nextGroupIndex >= 0) {
+            lookedUp = true;
+            if (index == null) {
+                unresolved = true;
+                return 0;
+            }
+        }
+        return index;
     }
 
     public void put(CaptureGroup group, Integer index) {
-        groupIndex.put(group, index);
+        groupIndex.put(group.origin(), index);
+    }
+
+    /**
+     * Numbers a group when it is opened, if this index numbers groups as they are compiled.
+     */
+    void open(CaptureGroup group) {
+        if (nextGroupIndex < 0) {
+            return;
+        }
+        if (groupIndex.put(group.origin(), nextGroupIndex++) != null && lookedUp) {
+            unresolved = true;
+        }
+    }
+
+    /**
+     * Stops numbering groups. Returns whether all group lookups made while numbering returned the
+     * final group indices.
+     */
+    public boolean finishNumbering() {
+        nextGroupIndex = -1;
+        return !unresolved;
+    }
+
+    public int size() {
+        return groupIndex.size();
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        return o instanceof CaptureGroupIndex && groupIndex.equals(((CaptureGroupIndex) o).groupIndex);
+    }
+
+    @Override
+    public int hashCode() {
+        return groupIndex.hashCode();
     }
-}
\ No newline at end of file
+}
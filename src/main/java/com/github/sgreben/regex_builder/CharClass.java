@@ -5,15 +5,15 @@ import com.github.sgreben.regex_builder.tokens.TOKEN;
 
 public abstract class CharClass {
     public static CharClass range(char from, char to) {
-        return new Range(from, to);
+        return Interner.canonical(new Range(from, to));
     }
 
     public static CharClass range(char... ranges) {
-        return new Range(ranges);
+        return Interner.canonical(new Range(ranges));
     }
 
     public static CharClass union(CharClass... cs) {
-        return new Union(cs);
+        return Interner.canonical(new Union(cs));
     }
 
     public static CharClass union(Object... cs) {
@@ -21,7 +21,7 @@ public abstract class CharClass {
     }
 
     public static CharClass intersection(CharClass... cs) {
-        return new Intersection(cs);
+        return Interner.canonical(new Intersection(cs));
     }
 
     public static CharClass intersection(Object... cs) {
@@ -29,19 +29,19 @@ public abstract class CharClass {
     }
 
     public static CharClass complement(CharClass cs) {
-        return new Complement(cs);
+        return Interner.canonical(new Complement(cs));
     }
 
     public static CharClass anyChar() {
-        return new AnyCharacter();
+        return Interner.canonical(new AnyCharacter());
     }
 
     public static CharClass digit() {
-        return new Digit();
+        return Interner.canonical(new Digit());
     }
 
     public static CharClass nonDigit() {
-        return new NonDigit();
+        return Interner.canonical(new NonDigit());
     }
 
     public static CharClass hexDigit() {
@@ -53,63 +53,63 @@ public abstract class CharClass {
     }
 
     public static CharClass wordChar() {
-        return new WordCharacter();
+        return Interner.canonical(new WordCharacter());
     }
 
     public static CharClass nonWordChar() {
-        return new NonWordCharacter();
+        return Interner.canonical(new NonWordCharacter());
     }
 
     public static CharClass wordBoundary() {
-        return new WordBoundary();
+        return Interner.canonical(new WordBoundary());
     }
 
     public static CharClass nonWordBoundary() {
-        return new NonWordBoundary();
+        return Interner.canonical(new NonWordBoundary());
     }
 
     public static CharClass whitespaceChar() {
-        return new Whitespace();
+        return Interner.canonical(new Whitespace());
     }
 
     public static CharClass nonWhitespaceChar() {
-        return new NonWhitespace();
+        return Interner.canonical(new NonWhitespace());
     }
 
     public static CharClass verticalWhitespaceChar() {
-        return new VerticalWhitespace();
+        return Interner.canonical(new VerticalWhitespace());
     }
 
     public static CharClass nonVerticalWhitespaceChar() {
-        return new NonVerticalWhitespace();
+        return Interner.canonical(new NonVerticalWhitespace());
     }
 
     public static CharClass horizontalWhitespaceChar() {
-        return new HorizontalWhitespace();
+        return Interner.canonical(new HorizontalWhitespace());
     }
 
     public static CharClass nonHorizontalWhitespaceChar() {
-        return new NonHorizontalWhitespace();
+        return Interner.canonical(new NonHorizontalWhitespace());
     }
 
     public static CharClass beginInput() {
-        return new BeginInput();
+        return Interner.canonical(new BeginInput());
     }
 
     public static CharClass endInput() {
-        return new EndInput();
+        return Interner.canonical(new EndInput());
     }
 
     public static CharClass endInputBeforeFinalTerminator() {
-        return new EndInputBeforeFinalTerminator();
+        return Interner.canonical(new EndInputBeforeFinalTerminator());
     }
 
     public static CharClass oneOf(String chars) {
-        return new OneOf(chars);
+        return Interner.canonical(new OneOf(chars));
     }
 
     public static CharClass noneOf(String chars) {
-        return new NoneOf(chars);
+        return Interner.canonical(new NoneOf(chars));
     }
 
     private static CharClass[] convertStrings(Object[] os) {
@@ -137,6 +137,14 @@ public abstract class CharClass {
 
     public abstract void compile(java.util.List<TOKEN> output);
 
+    /**
+     * The characters matched by this class when compiled with the given flags, or null if they
+     * cannot be determined at compile time.
+     */
+    public RangeSet toRangeSet(int flags) {
+        return null;
+    }
+
     public static class Posix {
         private Posix() {}
 
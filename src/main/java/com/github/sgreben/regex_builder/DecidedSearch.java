@@ -0,0 +1,51 @@
+package com.github.sgreben.regex_builder;
+
+/**
+ * Searches a window of a longer input with java.util.regex, telling the matches the window decides
+ * from those that depend on what follows it: an attempt to match that reads up to the end of the
+ * window ({@link java.util.regex.Matcher#hitEnd()}) may end differently on the longer input.
+ *
+ * A search costs at most twice a {@code find()} over the window: when an attempt read up to the
+ * end, the starts up to the match found (or the end) are tried again one at a time, stopping at the
+ * first that matches or reads up to the end. Patterns whose attempts read to the end from every
+ * start, such as {@code .*x} in a window ending inside a line without an x, take time quadratic in
+ * the window, as {@code find()} does, and a window grown to hold such a match is searched again
+ * whole.
+ */
+final class DecidedSearch {
+    /**
+     * No match starts at the searched indices, whatever follows the window.
+     */
+    static final int NONE = -1;
+
+    private DecidedSearch() {
+    }
+
+    /**
+     * Returns the first index from the given one at which the regex matches or reads up to the end
+     * of the matcher's input, or {@link #NONE}. The match at that index is decided, and is the
+     * matcher's last match, if {@code matcher.hitEnd()} is false. The matcher matches the given
+     * text.
+     */
+    static int search(java.util.regex.Matcher matcher, CharSequence text, int from, int to) {
+        matcher.region(from, to).useTransparentBounds(true).useAnchoringBounds(false);
+        boolean found = matcher.find();
+        if (!matcher.hitEnd()) {
+            return found ? matcher.start() : NONE;
+        }
+        // Some attempt up to the match, if any, read up to the end: try those starts one at a time to
+        // tell which, skipping the second halves of surrogate pairs like find() does.
+        int last = found ? matcher.start() : to;
+        for (int start = from; start <= last; start++) {
+            if (start > 0 && start < to && Character.isLowSurrogate(text.charAt(start))
+                    && Character.isHighSurrogate(text.charAt(start - 1))) {
+                continue;
+            }
+            matcher.region(start, to);
+            if (matcher.lookingAt() || matcher.hitEnd()) {
+                return start;
+            }
+        }
+        return NONE;
+    }
+}
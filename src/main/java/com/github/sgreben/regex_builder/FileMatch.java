@@ -0,0 +1,40 @@
+package com.github.sgreben.regex_builder;
+
+/**
+ * A match found in a file by a {@link FileMatcher}: the positions in the file of the match and of
+ * its groups.
+ */
+public final class FileMatch {
+    private final CaptureGroupIndex groupIndex;
+    /**
+     * The start and end of each group of the regex, by index; group 0 is the whole match. -1 for
+     * groups that did not match.
+     */
+    private final long[] spans;
+
+    FileMatch(CaptureGroupIndex groupIndex, long[] spans) {
+        this.groupIndex = groupIndex;
+        this.spans = spans;
+    }
+
+    public long start() {
+        return spans[0];
+    }
+
+    public long end() {
+        return spans[1];
+    }
+
+    public long start(CaptureGroup group) {
+        return spans[2 * groupIndex.get(group)];
+    }
+
+    public long end(CaptureGroup group) {
+        return spans[2 * groupIndex.get(group) + 1];
+    }
+
+    @Override
+    public String toString() {
+        return start() + ".." + end();
+    }
+}
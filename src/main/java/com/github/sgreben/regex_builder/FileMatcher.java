@@ -0,0 +1,226 @@
+package com.github.sgreben.regex_builder;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.Buffer;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+
+/**
+ * Finds the matches of a pattern in the UTF-8 contents of a file, mapped into memory a window at a
+ * time with {@link FileChannel#map}, and matched by a {@link ByteMatcher} (so the pattern should
+ * have a {@link Pattern#utf8Dfa()}; otherwise each window is decoded). Offsets are positions in the
+ * file, which is read from its start whatever the position of the channel.
+ *
+ * Consecutive windows overlap, so that a match crossing the end of one window is found in the
+ * next. How much follows from the pattern's {@link Pattern#analysis()}: the longest match and how
+ * far its lookarounds read, at three bytes per char (see {@link MatchReach}). If a match may read
+ * further than half a window, or it is unknown how far, each window is searched with the regex, and
+ * a match the window does not decide is searched again in a window that starts with it, doubled in
+ * size as needed up to {@link #MAX_WINDOW_SIZE}. An unknown reach of lookbehinds is taken to be a
+ * quarter of a window.
+ */
+public class FileMatcher implements Closeable {
+    public static final int DEFAULT_WINDOW_SIZE = 1 << 22;
+    /**
+     * The smallest window size, which leaves room for a quarter of a window of context before the
+     * searched bytes and half a window after them.
+     */
+    public static final int MIN_WINDOW_SIZE = 64;
+    /**
+     * The largest window a match the pattern cannot bound is searched in; a match needing more throws.
+     */
+    public static final int MAX_WINDOW_SIZE = 1 << 30;
+
+    private final Pattern pattern;
+    private final FileChannel channel;
+    private final boolean closeChannel;
+    private final long size;
+    private int windowSize;
+    /**
+     * The bytes before the start of a match the pattern may read.
+     */
+    private final int behind;
+    /**
+     * The bytes from the start of a match to the last byte the pattern may read; matches starting
+     * closer than this to the end of a window (other than the last) are found in the next window.
+     */
+    private final int ahead;
+    /**
+     * Whether {@link #ahead} is known; otherwise the windows other than the last are searched with
+     * {@link ByteMatcher#findDecided}.
+     */
+    private final boolean bounded;
+    private ByteBuffer window;
+    private long windowStart;
+    private ByteMatcher matcher;
+    /**
+     * Where the next {@code find()} starts, or past the size of the file.
+     */
+    private long next;
+    private boolean found;
+    private long start;
+    private long end;
+
+    FileMatcher(Pattern pattern, FileChannel channel, boolean closeChannel, int windowSize) throws IOException {
+        if (windowSize < MIN_WINDOW_SIZE) {
+            throw new IllegalArgumentException("Window size below " + MIN_WINDOW_SIZE + ": " + windowSize);
+        }
+        this.pattern = pattern;
+        this.channel = channel;
+        this.closeChannel = closeChannel;
+        this.size = channel.size();
+        MatchReach reach = new MatchReach(pattern, windowSize, 3);
+        this.windowSize = reach.windowSize;
+        this.behind = reach.behind;
+        this.ahead = reach.ahead;
+        this.bounded = reach.bounded;
+    }
+
+    /**
+     * Finds the next match in the file.
+     */
+    public boolean find() throws IOException {
+        while (next <= size) {
+            if (window == null) {
+                map(next);
+            }
+            long windowEnd = windowStart + window.limit();
+            boolean last = windowEnd == size;
+            if (!last && (bounded ? next > windowEnd - ahead : next >= windowEnd)) {
+                map(next);
+                continue;
+            }
+            if (!last && !bounded) {
+                int decided = matcher.findDecided((int) (next - windowStart));
+                if (matcher.hasMatch()) {
+                    return found();
+                }
+                // No match starts before the first byte the window cannot decide on: search on from
+                // there, in a larger window if it already starts there.
+                next = decided < 0 ? windowEnd : windowStart + decided;
+                if (Math.max(0, next - behind) <= windowStart) {
+                    grow();
+                }
+                map(next);
+                continue;
+            }
+            if (matcher.find((int) (next - windowStart))) {
+                long matchStart = windowStart + matcher.start();
+                if (last || matchStart <= windowEnd - ahead) {
+                    return found();
+                }
+            } else if (last) {
+                break;
+            }
+            // No match starts before the bytes the window cannot decide on: search on from there.
+            next = Math.max(next, windowStart + Utf8Text.charStart(window, (int) (windowEnd - ahead - windowStart)));
+            map(next);
+        }
+        found = false;
+        next = size + 1;
+        return false;
+    }
+
+    private boolean found() {
+        found = true;
+        start = windowStart + matcher.start();
+        end = windowStart + matcher.end();
+        next = end > start ? end : windowStart + Utf8Text.nextChar(window, (int) (end - windowStart));
+        return true;
+    }
+
+    private void grow() {
+        if (windowSize > MAX_WINDOW_SIZE / 2) {
+            throw new IllegalStateException("A match at " + next + " may read more than " + MAX_WINDOW_SIZE + " bytes");
+        }
+        windowSize *= 2;
+    }
+
+    /**
+     * Maps a window that starts with the bytes a match starting at the given position may read
+     * before it.
+     */
+    private void map(long position) throws IOException {
+        windowStart = Math.max(0, position - behind);
+        window = channel.map(FileChannel.MapMode.READ_ONLY, windowStart, Math.min(size - windowStart, windowSize));
+        if (windowStart + window.limit() < size) {
+            // End the window between chars: the DFA cannot tell whether a match ends at a partial char.
+            ((Buffer) window).limit(Utf8Text.completeLimit(window));
+        }
+        matcher = matcher == null ? pattern.byteMatcher(window) : matcher.reset(window);
+    }
+
+    public long start() {
+        if (!found) {
+            throw new IllegalStateException("No match found");
+        }
+        return start;
+    }
+
+    public long end() {
+        if (!found) {
+            throw new IllegalStateException("No match found");
+        }
+        return end;
+    }
+
+    public long start(CaptureGroup group) {
+        int start = matcher().start(pattern.groupIndex().get(group));
+        return start < 0 ? -1 : windowStart + start;
+    }
+
+    public long end(CaptureGroup group) {
+        int end = matcher().end(pattern.groupIndex().get(group));
+        return end < 0 ? -1 : windowStart + end;
+    }
+
+    /**
+     * The decoded bytes of the last match.
+     */
+    public String group() {
+        return matcher().group();
+    }
+
+    public String group(CaptureGroup group) {
+        return matcher().group(group);
+    }
+
+    /**
+     * The last match, with the spans of its groups.
+     */
+    public FileMatch toMatch() {
+        ByteMatcher matcher = matcher();
+        int groups = pattern.groupIndex().size() == 0 ? 0 : matcher.groupCount();
+        long[] spans = new long[2 * groups + 2];
+        spans[0] = start;
+        spans[1] = end;
+        for (int i = 1; i <= groups; i++) {
+            int groupStart = matcher.start(i);
+            spans[2 * i] = groupStart < 0 ? -1 : windowStart + groupStart;
+            spans[2 * i + 1] = groupStart < 0 ? -1 : windowStart + matcher.end(i);
+        }
+        return new FileMatch(pattern.groupIndex(), spans);
+    }
+
+    private ByteMatcher matcher() {
+        if (!found) {
+            throw new IllegalStateException("No match found");
+        }
+        return matcher;
+    }
+
+    /**
+     * Releases the window, and closes the channel if the matcher opened it.
+     */
+    @Override
+    public void close() throws IOException {
+        window = null;
+        matcher = null;
+        found = false;
+        next = size + 1;
+        if (closeChannel) {
+            channel.close();
+        }
+    }
+}
@@ -21,7 +21,7 @@ public class FluentRe {
     }
 
     public static FluentRe match(CharClass c) {
-        return new FluentRe(new CharClassExpression(c));
+        return new FluentRe(Interner.canonical(new CharClassExpression(c)));
     }
 
     public static FluentRe match(char c) {
@@ -56,14 +56,14 @@ public class FluentRe {
      * Adds a "reluctant" modifier (if applicable)
      */
     public FluentRe reluctant() {
-        return new FluentRe(expression.reluctant());
+        return new FluentRe(Interner.canonical(expression.reluctant()));
     }
 
     /**
      * Adds a "possessive" modifier (if applicable)
      */
     public FluentRe possessive() {
-        return new FluentRe(expression.possessive());
+        return new FluentRe(Interner.canonical(expression.possessive()));
     }
 
     public FluentRe or(char e) {
@@ -0,0 +1,156 @@
+package com.github.sgreben.regex_builder;
+
+import java.lang.ref.ReferenceQueue;
+import java.lang.ref.WeakReference;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+/**
+ * Hash-consing of expression and character class nodes.
+ *
+ * An interner maps structurally equal nodes to one canonical instance. While interning is enabled,
+ * the factory methods of {@link Re}, {@link CharClass} and {@link FluentRe} return canonical nodes.
+ * Since trees are built bottom-up, the children of a canonical node are canonical as well, so
+ * comparing two canonical trees for equality is a reference comparison. The interner holds its
+ * nodes weakly: a canonical node that is no longer used elsewhere is dropped.
+ */
+public class Interner {
+    private static final Interner global = new Interner();
+    private static volatile boolean enabled = false;
+
+    private final ConcurrentMap<Object, WeakKey> canonical = new ConcurrentHashMap<>();
+    private final ReferenceQueue<Object> cleared = new ReferenceQueue<>();
+
+    /**
+     * The interner used by the factory methods.
+     */
+    public static Interner global() {
+        return global;
+    }
+
+    public static boolean isEnabled() {
+        return enabled;
+    }
+
+    /**
+     * Turns interning in the factory methods on or off.
+     */
+    public static void setEnabled(boolean enabled) {
+        Interner.enabled = enabled;
+    }
+
+    /**
+     * Returns the canonical instance for the node if interning is enabled, and the node otherwise.
+     */
+    static <T> T canonical(T node) {
+        return enabled ? global.intern(node) : node;
+    }
+
+    /**
+     * Returns the canonical instance structurally equal to the given node, registering the node
+     * itself if there is none yet.
+     */
+    @SuppressWarnings("unchecked")
+    public <T> T intern(T node) {
+        if (node instanceof CaptureGroup) {
+            return node;
+        }
+        expungeCleared();
+        LookupKey lookup = new LookupKey(node);
+        while (true) {
+            WeakKey existing = canonical.get(lookup);
+            if (existing == null) {
+                WeakKey key = new WeakKey(node, cleared);
+                existing = canonical.putIfAbsent(key, key);
+                if (existing == null) {
+                    return node;
+                }
+            }
+            Object value = existing.get();
+            if (value != null) {
+                return (T) value;
+            }
+            canonical.remove(existing, existing);
+        }
+    }
+
+    /**
+     * The number of canonical nodes currently held.
+     */
+    public int size() {
+        expungeCleared();
+        return canonical.size();
+    }
+
+    public void clear() {
+        canonical.clear();
+    }
+
+    private void expungeCleared() {
+        Object key;
+        while ((key = cleared.poll()) != null) {
+            canonical.remove(key, key);
+        }
+    }
+
+    private interface Key {
+        Object referent();
+    }
+
+    private static boolean keysEqual(Key a, Object b) {
+        if (a == b) {
+            return true;
+        }
+        if (!(b instanceof Key)) {
+            return false;
+        }
+        Object x = a.referent();
+        Object y = ((Key) b).referent();
+        return x != null && x.equals(y);
+    }
+
+    private static final class LookupKey implements Key {
+        private final Object node;
+
+        LookupKey(Object node) {
+            this.node = node;
+        }
+
+        public Object referent() {
+            return node;
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            return keysEqual(this, o);
+        }
+
+        @Override
+        public int hashCode() {
+            return node.hashCode();
+        }
+    }
+
+    private static final class WeakKey extends WeakReference<Object> implements Key {
+        private final int hash;
+
+        WeakKey(Object node, ReferenceQueue<Object> queue) {
+            super(node, queue);
+            this.hash = node.hashCode();
+        }
+
+        public Object referent() {
+            return get();
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            return keysEqual(this, o);
+        }
+
+        @Override
+        public int hashCode() {
+            return hash;
+        }
+    }
+}
@@ -0,0 +1,139 @@
+package com.github.sgreben.regex_builder;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+
+/**
+ * An Aho-Corasick automaton over a set of literals: finds the occurrences of all of them in one pass
+ * over the input, in time linear in the input length and the number of occurrences, however many
+ * literals there are. Transitions from the root are a table indexed by char; other states keep their
+ * transitions in sorted arrays.
+ */
+class LiteralAutomaton {
+    /**
+     * Receives the occurrences of the literals.
+     */
+    interface Listener {
+        /**
+         * Called for an occurrence of the literal with the given index ending before the given offset.
+         * Returns false to stop the scan.
+         */
+        boolean found(int literal, int end);
+    }
+
+    private static final int[] NONE = new int[0];
+
+    private final int[] rootTransitions;
+    private final char[][] labels;
+    private final int[][] targets;
+    private final int[] failure;
+    /**
+     * The indices of the literals ending in each state, including those of its failure states.
+     */
+    private final int[][] outputs;
+
+    LiteralAutomaton(List<String> literals) {
+        List<TreeMap<Character, Integer>> trie = new ArrayList<>();
+        List<int[]> ends = new ArrayList<>();
+        trie.add(new TreeMap<Character, Integer>());
+        ends.add(NONE);
+        for (int i = 0; i < literals.size(); i++) {
+            int state = 0;
+            for (char c : literals.get(i).toCharArray()) {
+                Integer next = trie.get(state).get(c);
+                if (next == null) {
+                    next = trie.size();
+                    trie.add(new TreeMap<Character, Integer>());
+                    ends.add(NONE);
+                    trie.get(state).put(c, next);
+                }
+                state = next;
+            }
+            int[] end = ends.get(state);
+            end = Arrays.copyOf(end, end.length + 1);
+            end[end.length - 1] = i;
+            ends.set(state, end);
+        }
+        int n = trie.size();
+        this.labels = new char[n][];
+        this.targets = new int[n][];
+        this.failure = new int[n];
+        this.outputs = new int[n][];
+        for (int state = 0; state < n; state++) {
+            Map<Character, Integer> transitions = trie.get(state);
+            labels[state] = new char[transitions.size()];
+            targets[state] = new int[transitions.size()];
+            int i = 0;
+            for (Map.Entry<Character, Integer> transition : transitions.entrySet()) {
+                labels[state][i] = transition.getKey();
+                targets[state][i++] = transition.getValue();
+            }
+        }
+        this.rootTransitions = new int[Character.MAX_VALUE + 1];
+        for (int i = 0; i < labels[0].length; i++) {
+            rootTransitions[labels[0][i]] = targets[0][i];
+        }
+        // Breadth-first, so that the failure state of a state is done before the state.
+        outputs[0] = ends.get(0);
+        ArrayDeque<Integer> queue = new ArrayDeque<>();
+        for (int child : targets[0]) {
+            failure[child] = 0;
+            outputs[child] = ends.get(child);
+            queue.add(child);
+        }
+        while (!queue.isEmpty()) {
+            int state = queue.remove();
+            for (int i = 0; i < labels[state].length; i++) {
+                int child = targets[state][i];
+                int fallback = next(failure[state], labels[state][i]);
+                failure[child] = fallback;
+                outputs[child] = concat(ends.get(child), outputs[fallback]);
+                queue.add(child);
+            }
+        }
+    }
+
+    /**
+     * Reports the occurrences of the literals starting at or after the given offset, in order of
+     * their end, until the listener returns false. Returns false if it did.
+     */
+    boolean scan(CharSequence input, int from, Listener listener) {
+        int state = 0;
+        for (int i = from; i < input.length(); i++) {
+            state = next(state, input.charAt(i));
+            for (int literal : outputs[state]) {
+                if (!listener.found(literal, i + 1)) {
+                    return false;
+                }
+            }
+        }
+        return true;
+    }
+
+    private int next(int state, char c) {
+        while (state != 0) {
+            int i = Arrays.binarySearch(labels[state], c);
+            if (i >= 0) {
+                return targets[state][i];
+            }
+            state = failure[state];
+        }
+        return rootTransitions[c];
+    }
+
+    private static int[] concat(int[] a, int[] b) {
+        if (b.length == 0) {
+            return a;
+        }
+        if (a.length == 0) {
+            return b;
+        }
+        int[] result = Arrays.copyOf(a, a.length + b.length);
+        System.arraycopy(b, 0, result, a.length, b.length);
+        return result;
+    }
+}
@@ -0,0 +1,68 @@
+package com.github.sgreben.regex_builder;
+
+import java.util.Arrays;
+import com.github.sgreben.regex_builder.analysis.RequiredLiteral;
+
+/**
+ * Finds occurrences of a required literal, so that matchers can skip input that cannot contain a
+ * match. Strings are searched with {@link String#indexOf(String, int)}; other inputs with the
+ * Boyer-Moore-Horspool algorithm, using a shift table indexed by the low byte of each char.
+ */
+class LiteralSearch {
+    private final String literal;
+    private final int maxOffset;
+    private final int[] shift;
+
+    LiteralSearch(RequiredLiteral requiredLiteral) {
+        this(requiredLiteral.getLiteral(), requiredLiteral.getMaxOffset());
+    }
+
+    LiteralSearch(String literal, int maxOffset) {
+        this.literal = literal;
+        this.maxOffset = maxOffset;
+        this.shift = new int[256];
+        int last = literal.length() - 1;
+        Arrays.fill(shift, literal.length());
+        for (int i = 0; i < last; i++) {
+            shift[literal.charAt(i) & 0xFF] = last - i;
+        }
+    }
+
+    /**
+     * The index of the first occurrence of the literal at or after the given index, or -1.
+     */
+    int indexOf(CharSequence input, int from) {
+        if (input instanceof String) {
+            return ((String) input).indexOf(literal, from);
+        }
+        int last = literal.length() - 1;
+        char lastChar = literal.charAt(last);
+        int end = input.length() - last;
+        int i = Math.max(from, 0);
+        while (i < end) {
+            char c = input.charAt(i + last);
+            if (c == lastChar && regionMatches(input, i)) {
+                return i;
+            }
+            i += shift[c & 0xFF];
+        }
+        return -1;
+    }
+
+    private boolean regionMatches(CharSequence input, int start) {
+        for (int j = literal.length() - 2; j >= 0; j--) {
+            if (input.charAt(start + j) != literal.charAt(j)) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * The earliest index at which a match containing the occurrence of the literal at the given
+     * index can start.
+     */
+    int earliestStart(int occurrence) {
+        return maxOffset < 0 ? 0 : Math.max(0, occurrence - maxOffset);
+    }
+}
@@ -0,0 +1,13 @@
+package com.github.sgreben.regex_builder;
+
+/**
+ * Thrown when matching a pattern with a match budget takes more steps than the budget allows for
+ * the input (see {@link Pattern#withMatchBudget}).
+ */
+public class MatchBudgetExceededException extends RuntimeException {
+	private static final long serialVersionUID = 1L;
+
+	public MatchBudgetExceededException(long steps, int inputLength) {
+		super("Matching took more than " + steps + " steps on an input of length " + inputLength + ".");
+	}
+}
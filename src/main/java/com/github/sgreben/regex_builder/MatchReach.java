@@ -0,0 +1,52 @@
+package com.github.sgreben.regex_builder;
+
+import com.github.sgreben.regex_builder.analysis.ExpressionAnalysis;
+
+/**
+ * How far around its start a match of a pattern may read, from the pattern's
+ * {@link Pattern#analysis()}: the longest match and how far its lookarounds read. This bounds the
+ * context a matcher that reads its input a window at a time keeps around the bytes or chars it
+ * searches. A reach after the start that is unbounded, unknown or longer than half a window is not
+ * {@link #bounded}: the matcher then has to tell from the regex whether the window decides a match
+ * (see {@link DecidedSearch}). An unknown reach before a match is taken to be a quarter of a window.
+ */
+final class MatchReach {
+    /**
+     * The window size, grown if needed to at least four times {@link #behind}.
+     */
+    final int windowSize;
+    /**
+     * The units (bytes or chars) before the start of a match the pattern may read.
+     */
+    final int behind;
+    /**
+     * The units from the start of a match to the last one the pattern may read, if {@link #bounded}.
+     */
+    final int ahead;
+    /**
+     * Whether {@link #ahead} is known, and at most half a window.
+     */
+    final boolean bounded;
+
+    MatchReach(Pattern pattern, int windowSize, int unitsPerChar) {
+        ExpressionAnalysis analysis = pattern.analysis();
+        long aheadChars = -1;
+        long behindChars = -1;
+        if (analysis != null && analysis.getMaxLength() >= 0 && analysis.getMaxLookahead() >= 0) {
+            // "$" reads up to two chars after a match, and a third tells it is not the end.
+            aheadChars = (long) analysis.getMaxLength() + analysis.getMaxLookahead() + 3;
+        }
+        if (analysis != null && analysis.getMaxLookbehind() >= 0) {
+            // The char before, for anchors and boundaries, and a char the window may start inside.
+            behindChars = analysis.getMaxLookbehind() + 2L;
+        }
+        long behind = behindChars < 0 ? windowSize / 4 : behindChars * unitsPerChar;
+        if (4 * behind > FileMatcher.MAX_WINDOW_SIZE) {
+            throw new IllegalArgumentException("Lookbehinds read too far for a window: " + behindChars + " chars");
+        }
+        this.windowSize = (int) Math.max(windowSize, 4 * behind);
+        this.behind = (int) behind;
+        this.bounded = aheadChars >= 0 && aheadChars * unitsPerChar <= this.windowSize / 2;
+        this.ahead = bounded ? (int) aheadChars * unitsPerChar : this.windowSize / 2;
+    }
+}
@@ -1,65 +1,333 @@
 package com.github.sgreben.regex_builder;
 
 import java.util.regex.MatchResult;
+import com.github.sgreben.regex_builder.engine.MatchEngine;
 
 public class Matcher {
+    private static final int[] NO_MATCH = new int[0];
+
     private final java.util.regex.Matcher matcher;
     private final CaptureGroupIndex groupIndex;
+    private final CharSequence input;
+    private final Prefilter prefilter;
+    /**
+     * The engine other than java.util.regex that runs {@code matches()}, or null.
+     */
+    private final MatchEngine engine;
+    /**
+     * Whether the engine runs {@code find()}.
+     */
+    private final boolean engineFinds;
+    /**
+     * Where the next {@code find()} starts, as in {@link java.util.regex.Matcher#find()}.
+     */
+    private int searchFrom;
+    /**
+     * Whether the last search was failed by the prefilter, without running the regex.
+     */
+    private boolean rejected;
+    /**
+     * Whether appendReplacement has been called; the search then cannot be restarted at a later
+     * offset without losing the append position.
+     */
+    private boolean appending;
+    /**
+     * Whether the search strategy moved the start of the region of the underlying matcher.
+     */
+    private boolean regionMoved;
+    /**
+     * The buffer a prefilter that scans arrays copies a long input to a chunk at a time; created by
+     * the first search.
+     */
+    private char[] buffer;
+    /**
+     * The last match if it was found by another engine, or null if the underlying matcher holds the
+     * last match: its bounds, followed by the bounds of the groups if the engine reports them. The
+     * underlying matcher is run on the match when other groups are needed.
+     */
+    private int[] engineMatch;
+    /**
+     * Whether the last match found by another engine was for {@code matches()}.
+     */
+    private boolean engineWhole;
 
     public Matcher(java.util.regex.Matcher matcher, CaptureGroupIndex groupIndex) {
+        this(matcher, groupIndex, null, null, null);
+    }
+
+    Matcher(java.util.regex.Matcher matcher, CaptureGroupIndex groupIndex, CharSequence input, Prefilter prefilter,
+            MatchEngine engine) {
         this.matcher = matcher;
         this.groupIndex = groupIndex;
+        this.input = input;
+        this.prefilter = prefilter;
+        this.engine = engine;
+        this.engineFinds = engine != null && engine.finds();
     }
 
     public boolean matches() {
-        return matcher.matches();
+        if (prefilter != null && !prefilter.mayMatch(input)) {
+            return reject();
+        }
+        if (engine != null && !appending) {
+            int[] match = engineMatch();
+            if (match != null) {
+                return match != NO_MATCH ? foundByEngine(match, true) : reject();
+            }
+        }
+        if (regionMoved) {
+            matcher.region(0, input.length());
+            regionMoved = false;
+        }
+        return searched(matcher.matches());
     }
 
+    /**
+     * Finds the next match. With a prefilter, first looks for the earliest offset where a match may
+     * start, e.g. the earliest offset from which a match can reach the next occurrence of a literal
+     * that every match contains. If there is none, fails without running the regex. With a search
+     * strategy, tries the regex only at the offsets found by the strategy. With another engine that
+     * finds, runs it from that offset instead of the regex, or, if it only decides whether there is a
+     * match, fails without running the regex if there is none.
+     */
     public boolean find() {
-        return matcher.find();
+        if (prefilter == null && !engineFinds) {
+            return matcher.find();
+        }
+        if (searchFrom > input.length()) {
+            return reject();
+        }
+        int start = prefilter == null ? searchFrom : candidate(searchFrom);
+        if (start < 0) {
+            return reject();
+        }
+        if (appending) {
+            return searched(matcher.find());
+        }
+        if (engineFinds) {
+            int[] match = engineFind(start);
+            if (match != null) {
+                return match != NO_MATCH ? foundByEngine(match, false) : reject();
+            }
+        }
+        if (prefilter != null && prefilter.hasStrategy()) {
+            return findAtCandidates(start);
+        }
+        // After a match found by another engine, the underlying matcher does not know where to
+        // continue.
+        return searched(start > searchFrom || engineFinds ? matcher.find(start) : matcher.find());
     }
 
     public boolean find(int offset) {
-        return matcher.find(offset);
+        if ((prefilter == null && !engineFinds) || offset < 0 || offset > input.length()) {
+            return matcher.find(offset);
+        }
+        appending = false;
+        int start = prefilter == null ? offset : candidate(offset);
+        if (start >= 0 && engineFinds) {
+            int[] match = engineFind(start);
+            if (match != null && match != NO_MATCH) {
+                return foundByEngine(match, false);
+            }
+            if (match == NO_MATCH) {
+                start = -1;
+            }
+        }
+        if (start < 0) {
+            matcher.reset();
+            searchFrom = 0;
+            return reject();
+        }
+        if (prefilter != null && prefilter.hasStrategy()) {
+            return findAtCandidates(start);
+        }
+        return searched(matcher.find(start));
+    }
+
+    /**
+     * Tries the regex at each candidate of the search strategy, by moving the region start there.
+     * The bounds are transparent and not anchoring, so the regex sees the same input as in an
+     * unrestricted search.
+     */
+    private boolean findAtCandidates(int start) {
+        if (!regionMoved) {
+            matcher.useTransparentBounds(true).useAnchoringBounds(false);
+        }
+        while (start >= 0) {
+            matcher.region(start, input.length());
+            regionMoved = true;
+            if (matcher.lookingAt()) {
+                return searched(true);
+            }
+            start = candidate(prefilter.resumeAfter(input, start));
+        }
+        return reject();
+    }
+
+    private int candidate(int from) {
+        if (buffer == null && prefilter.scansArrays() && input.length() >= CandidateScanner.MIN_INPUT_LENGTH) {
+            buffer = new char[CandidateScanner.MIN_INPUT_LENGTH];
+        }
+        return prefilter.candidate(input, buffer, from);
+    }
+
+    /**
+     * The whole-input match of another engine, {@link #NO_MATCH}, or null if it cannot decide.
+     */
+    private int[] engineMatch() {
+        int[] slots = new int[Math.max(engine.slotCount(), 2)];
+        int matched = engine.matches(input, slots);
+        if (matched == MatchEngine.UNKNOWN) {
+            return null;
+        }
+        if (matched == 0) {
+            return NO_MATCH;
+        }
+        if (engine.slotCount() == 0) {
+            slots[1] = input.length();
+        }
+        return slots;
+    }
+
+    /**
+     * The match of another engine from the offset, {@link #NO_MATCH}, or null if it cannot decide
+     * or does not locate its matches.
+     */
+    private int[] engineFind(int from) {
+        int[] slots = new int[engine.slotCount()];
+        int found = engine.find(input, from, slots);
+        if (found == MatchEngine.UNKNOWN) {
+            return null;
+        }
+        if (found == 0) {
+            return NO_MATCH;
+        }
+        return engine.slotCount() == 0 ? null : slots;
+    }
+
+    private boolean foundByEngine(int[] match, boolean whole) {
+        rejected = false;
+        engineMatch = match;
+        engineWhole = whole;
+        searchFrom = match[1] == match[0] ? match[1] + 1 : match[1];
+        return true;
+    }
+
+    private boolean searched(boolean found) {
+        rejected = false;
+        engineMatch = null;
+        if (found) {
+            searchFrom = matcher.end() == matcher.start() ? matcher.end() + 1 : matcher.end();
+        }
+        return found;
+    }
+
+    private boolean reject() {
+        rejected = true;
+        engineMatch = null;
+        return false;
+    }
+
+    /**
+     * The underlying matcher, holding the last match.
+     */
+    private java.util.regex.Matcher matched() {
+        if (rejected) {
+            throw new IllegalStateException("No match found");
+        }
+        if (engineMatch != null) {
+            if (engineWhole) {
+                matcher.reset();
+                matcher.matches();
+            } else {
+                matcher.find(engineMatch[0]);
+            }
+            regionMoved = false;
+            engineMatch = null;
+        }
+        return matcher;
+    }
+
+    /**
+     * Whether the last match was found by an engine that holds its groups.
+     */
+    private boolean groupsFound() {
+        return !rejected && engineMatch != null && engineMatch.length > 2;
     }
 
     public int start() {
-        return matcher.start();
+        if (!rejected && engineMatch != null) {
+            return engineMatch[0];
+        }
+        return matched().start();
     }
 
     public int start(CaptureGroup group) {
-        return matcher.start(groupIndex.get(group));
+        if (groupsFound()) {
+            return engineMatch[2 * groupIndex.get(group)];
+        }
+        return matched().start(groupIndex.get(group));
     }
 
     public int end() {
-        return matcher.end();
+        if (!rejected && engineMatch != null) {
+            return engineMatch[1];
+        }
+        return matched().end();
     }
 
     public int end(CaptureGroup group) {
-        return matcher.end(groupIndex.get(group));
+        if (groupsFound()) {
+            return engineMatch[2 * groupIndex.get(group) + 1];
+        }
+        return matched().end(groupIndex.get(group));
     }
 
     public MatchResult toMatchResult() {
-        return matcher.toMatchResult();
+        return matched().toMatchResult();
     }
 
     public String group(CaptureGroup group) {
-        return matcher.group(groupIndex.get(group));
+        if (groupsFound()) {
+            int index = groupIndex.get(group);
+            int start = engineMatch[2 * index];
+            return start < 0 ? null : input.subSequence(start, engineMatch[2 * index + 1]).toString();
+        }
+        return matched().group(groupIndex.get(group));
     }
 
     public String replaceAll(Replacement replacement) {
         String replacementString = replacement.toReplacementString(groupIndex);
+        reset();
+        if (prefilter != null && candidate(0) < 0) {
+            return input.toString();
+        }
         return matcher.replaceAll(replacementString);
     }
 
     public String replaceFirst(Replacement replacement) {
         String replacementString = replacement.toReplacementString(groupIndex);
+        reset();
+        if (prefilter != null && candidate(0) < 0) {
+            return input.toString();
+        }
         return matcher.replaceFirst(replacementString);
     }
 
+    private void reset() {
+        matcher.reset();
+        regionMoved = false;
+        searchFrom = 0;
+        rejected = false;
+        appending = false;
+        engineMatch = null;
+    }
+
     public Matcher appendReplacement(StringBuffer sb, Replacement replacement) {
         String replacementString = replacement.toReplacementString(groupIndex);
-        return new Matcher(matcher.appendReplacement(sb, replacementString), groupIndex);
+        matched().appendReplacement(sb, replacementString);
+        appending = true;
+        return this;
     }
 
     public StringBuffer appendTail(StringBuffer sb) {
@@ -67,10 +335,13 @@ public class Matcher {
     }
 
     public String group() {
-        return matcher.group();
+        if (!rejected && engineMatch != null) {
+            return input.subSequence(engineMatch[0], engineMatch[1]).toString();
+        }
+        return matched().group();
     }
 
     public int groupCount() {
         return matcher.groupCount();
     }
-}
\ No newline at end of file
+}
@@ -1,10 +1,37 @@
 package com.github.sgreben.regex_builder;
 
+import java.io.IOException;
+import java.io.Reader;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.ReadableByteChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.function.Supplier;
+import com.github.sgreben.regex_builder.analysis.Complexity;
+import com.github.sgreben.regex_builder.analysis.ExpressionAnalysis;
+import com.github.sgreben.regex_builder.analysis.RequiredLiteral;
+import com.github.sgreben.regex_builder.analysis.RequiredLiterals;
+import com.github.sgreben.regex_builder.analysis.SearchStrategy;
+import com.github.sgreben.regex_builder.compiler.CompileOptions;
 import com.github.sgreben.regex_builder.compiler.Compiler;
+import com.github.sgreben.regex_builder.engine.BitParallel;
+import com.github.sgreben.regex_builder.engine.Dfa;
+import com.github.sgreben.regex_builder.engine.GeneratedMatcher;
+import com.github.sgreben.regex_builder.engine.MatchEngine;
+import com.github.sgreben.regex_builder.engine.OnePass;
+import com.github.sgreben.regex_builder.engine.PikeVm;
+import com.github.sgreben.regex_builder.engine.Utf8Dfa;
 
 public class Pattern {
 	private final java.util.regex.Pattern rawPattern;
 	private final CaptureGroupIndex groupIndex;
+	private final Complexity matchBudget;
+	private final Lazy<Prefiltering> prefiltering;
+	private final Lazy<MatchEngine> engine;
+	private final Utf8Dfa utf8Dfa;
 
 	public static Pattern compile(Expression expression) {
 		return Compiler.compile(expression);
@@ -14,18 +41,351 @@ public class Pattern {
 		return Compiler.compile(expression, flags);
 	}
 
+	public static Pattern compile(Expression expression, int flags, CompileOptions options) {
+		return Compiler.compile(expression, flags, options);
+	}
+
 	public static Pattern quote(String literal) {
 		return Compiler.compile(Re.string(literal));
 	}
 
 	public Pattern(java.util.regex.Pattern rawPattern, CaptureGroupIndex groupIndex) {
+		this(rawPattern, groupIndex, null, null, null, null);
+	}
+
+	private Pattern(java.util.regex.Pattern rawPattern, CaptureGroupIndex groupIndex, Complexity matchBudget,
+			Lazy<Prefiltering> prefiltering, Lazy<MatchEngine> engine, Utf8Dfa utf8Dfa) {
 		this.rawPattern = rawPattern;
 		this.groupIndex = groupIndex;
+		this.matchBudget = matchBudget;
+		this.prefiltering = prefiltering;
+		this.engine = engine;
+		this.utf8Dfa = utf8Dfa;
+	}
+
+	/**
+	 * Returns a pattern sharing this pattern's compiled regex, using the given capture group index.
+	 * Returns this pattern if the index maps the same groups to the same indices.
+	 */
+	public Pattern withGroupIndex(CaptureGroupIndex groupIndex) {
+		if (this.groupIndex.equals(groupIndex)) {
+			return this;
+		}
+		return new Pattern(rawPattern, groupIndex, matchBudget, prefiltering, engine, utf8Dfa);
+	}
+
+	/**
+	 * The index of the pattern's capture groups in its regex.
+	 */
+	public CaptureGroupIndex groupIndex() {
+		return groupIndex;
+	}
+
+	/**
+	 * Returns a pattern sharing this pattern's compiled regex whose matchers give up with a
+	 * {@link MatchBudgetExceededException} once they take more steps on an input than a pattern
+	 * of the given backtracking complexity could, i.e. {@code c * (n+1)^(k+1)} for an input of
+	 * length n and complexity of degree k, where the extra degree covers the start positions of
+	 * {@code find()}. A null budget removes the limit.
+	 */
+	public Pattern withMatchBudget(Complexity matchBudget) {
+		if (java.util.Objects.equals(this.matchBudget, matchBudget)) {
+			return this;
+		}
+		return new Pattern(rawPattern, groupIndex, matchBudget, prefiltering, engine, utf8Dfa);
+	}
+
+	/**
+	 * The complexity bounding the steps taken by matchers, or null if they are not bounded.
+	 */
+	public Complexity matchBudget() {
+		return matchBudget;
+	}
+
+	/**
+	 * Returns a pattern sharing this pattern's compiled regex whose matchers search for the given
+	 * literal before running the regex in {@code find()}, and fail without running it if the rest of
+	 * the input does not contain the literal. Every match of the regex must contain the literal. A
+	 * null literal removes the prefilter.
+	 */
+	public Pattern withRequiredLiteral(RequiredLiteral requiredLiteral) {
+		if (java.util.Objects.equals(requiredLiteral(), requiredLiteral)) {
+			return this;
+		}
+		return withPrefiltering(requiredLiteral, analysis(), searchStrategy());
+	}
+
+	/**
+	 * The literal used to prefilter the input in {@code find()}, or null if there is none.
+	 */
+	public RequiredLiteral requiredLiteral() {
+		return prefiltering == null ? null : prefiltering.get().requiredLiteral;
+	}
+
+	/**
+	 * Returns a pattern sharing this pattern's compiled regex whose matchers use the facts of the
+	 * given analysis of its expression to skip running the regex: {@code matches()} fails on inputs
+	 * of a length outside the length bounds, and {@code find()} skips offsets where no match can
+	 * start. A null analysis removes these checks.
+	 */
+	public Pattern withAnalysis(ExpressionAnalysis analysis) {
+		if (analysis() == analysis) {
+			return this;
+		}
+		return withPrefiltering(requiredLiteral(), analysis, searchStrategy());
+	}
+
+	/**
+	 * The analysis of the pattern's expression used by matchers, or null if there is none.
+	 */
+	public ExpressionAnalysis analysis() {
+		return prefiltering == null ? null : prefiltering.get().analysis;
+	}
+
+	/**
+	 * Returns a pattern sharing this pattern's compiled regex whose matchers use the given strategy
+	 * in {@code find()}, instead of trying the regex at every offset. The strategy must have been
+	 * selected for the pattern's expression. A null strategy restores the forward search.
+	 */
+	public Pattern withSearchStrategy(SearchStrategy searchStrategy) {
+		if (searchStrategy() == searchStrategy) {
+			return this;
+		}
+		return withPrefiltering(requiredLiteral(), analysis(), searchStrategy);
+	}
+
+	/**
+	 * The strategy used by {@code find()}, or null if it searches forward, trying the regex at every
+	 * offset not ruled out by the {@link #requiredLiteral()} and the {@link #analysis()}.
+	 */
+	public SearchStrategy searchStrategy() {
+		return prefiltering == null ? null : prefiltering.get().searchStrategy;
+	}
+
+	private Pattern withPrefiltering(RequiredLiteral requiredLiteral, ExpressionAnalysis analysis,
+			SearchStrategy searchStrategy) {
+		Lazy<Prefiltering> prefiltering = requiredLiteral == null && analysis == null && searchStrategy == null ? null
+				: new Lazy<Prefiltering>(new Prefiltering(requiredLiteral, analysis, searchStrategy));
+		return new Pattern(rawPattern, groupIndex, matchBudget, prefiltering, engine, utf8Dfa);
+	}
+
+	/**
+	 * Returns a pattern sharing this pattern's compiled regex whose {@link #requiredLiteral()},
+	 * {@link #analysis()} and {@link #searchStrategy()} are those of the given expression of the
+	 * regex with the given flags. They are computed when first needed, for a match or by their
+	 * accessors, once for this pattern and the patterns derived from it.
+	 */
+	public Pattern withLazyAnalysis(final Expression expression, final int flags) {
+		Lazy<Prefiltering> prefiltering = new Lazy<Prefiltering>(() -> new Prefiltering(
+				RequiredLiterals.rarest(expression, flags), ExpressionAnalysis.analyze(expression, flags),
+				SearchStrategy.select(expression, flags)));
+		return new Pattern(rawPattern, groupIndex, matchBudget, prefiltering, engine, utf8Dfa);
+	}
+
+	/**
+	 * Returns a pattern sharing this pattern's compiled regex without a required literal, analysis or
+	 * search strategy, whose matchers always run the regex.
+	 */
+	public Pattern withoutPrefilter() {
+		if (prefiltering == null) {
+			return this;
+		}
+		return new Pattern(rawPattern, groupIndex, matchBudget, null, engine, utf8Dfa);
+	}
+
+	/**
+	 * Returns a pattern sharing this pattern's compiled regex whose matchers use the given engine,
+	 * which must have been built from the pattern's expression with the same flags, to match and
+	 * find (see {@link MatchEngine}). A null engine restores java.util.regex.
+	 */
+	public Pattern withEngine(MatchEngine engine) {
+		if (this.engine == null ? engine == null : this.engine.is(engine)) {
+			return this;
+		}
+		return new Pattern(rawPattern, groupIndex, matchBudget, prefiltering,
+				engine == null ? null : new Lazy<MatchEngine>(engine), utf8Dfa);
+	}
+
+	/**
+	 * Returns a pattern sharing this pattern's compiled regex whose engine is built by the given
+	 * supplier when it is first needed, for a match or by {@link #engine()}. The engine is built once
+	 * for this pattern and the patterns derived from it; a null engine means java.util.regex.
+	 */
+	public Pattern withLazyEngine(Supplier<? extends MatchEngine> engine) {
+		return new Pattern(rawPattern, groupIndex, matchBudget, prefiltering, new Lazy<MatchEngine>(engine), utf8Dfa);
+	}
+
+	/**
+	 * The engine used by matchers, or null if they only use java.util.regex.
+	 */
+	public MatchEngine engine() {
+		return engine == null ? null : engine.get();
+	}
+
+	/**
+	 * The name of the engine used by matchers, e.g. "DFA", or "BACKTRACKING" for java.util.regex.
+	 */
+	public String engineName() {
+		MatchEngine engine = engine();
+		return engine == null ? "BACKTRACKING" : engine.name();
+	}
+
+	/**
+	 * The engine if it is a DFA, or null.
+	 */
+	public Dfa dfa() {
+		MatchEngine engine = engine();
+		return engine instanceof Dfa ? (Dfa) engine : null;
+	}
+
+	/**
+	 * The engine if it is a Pike VM, or null.
+	 */
+	public PikeVm pikeVm() {
+		MatchEngine engine = engine();
+		return engine instanceof PikeVm ? (PikeVm) engine : null;
+	}
+
+	/**
+	 * The engine if it is a one-pass matcher, or null.
+	 */
+	public OnePass onePass() {
+		MatchEngine engine = engine();
+		return engine instanceof OnePass ? (OnePass) engine : null;
+	}
+
+	/**
+	 * The engine if it is a bit-parallel matcher, or null.
+	 */
+	public BitParallel bitParallel() {
+		MatchEngine engine = engine();
+		return engine instanceof BitParallel ? (BitParallel) engine : null;
+	}
+
+	/**
+	 * The engine if it is a generated matcher, or null.
+	 */
+	public GeneratedMatcher generated() {
+		MatchEngine engine = engine();
+		return engine instanceof GeneratedMatcher ? (GeneratedMatcher) engine : null;
+	}
+
+	/**
+	 * Returns a pattern sharing this pattern's compiled regex whose byte matchers use the given DFA,
+	 * which must have been built from the pattern's expression with the same flags, to find matches
+	 * on UTF-8 bytes. A null DFA makes them decode their input.
+	 */
+	public Pattern withUtf8Dfa(Utf8Dfa utf8Dfa) {
+		if (this.utf8Dfa == utf8Dfa) {
+			return this;
+		}
+		return new Pattern(rawPattern, groupIndex, matchBudget, prefiltering, engine, utf8Dfa);
+	}
+
+	/**
+	 * The DFA used by byte matchers, or null if they decode their input.
+	 */
+	public Utf8Dfa utf8Dfa() {
+		return utf8Dfa;
+	}
+
+	private CharSequence budgeted(CharSequence input) {
+		return matchBudget == null ? input : new BudgetedCharSequence(input, matchBudget);
 	}
 
 	public Matcher matcher(CharSequence input) {
-		java.util.regex.Matcher matcher = rawPattern.matcher(input);
-		return new Matcher(matcher, groupIndex);
+		java.util.regex.Matcher matcher = rawPattern.matcher(budgeted(input));
+		MatchEngine engine = engine();
+		Prefilter prefilter = prefiltering == null ? null : prefiltering.get().prefilter;
+		if (prefilter == null && engine == null) {
+			return new Matcher(matcher, groupIndex);
+		}
+		return new Matcher(matcher, groupIndex, input, prefilter, engine);
+	}
+
+	/**
+	 * A matcher of the UTF-8 bytes from the position to the limit of the buffer (see
+	 * {@link ByteMatcher}).
+	 */
+	public ByteMatcher byteMatcher(ByteBuffer input) {
+		return new ByteMatcher(this, utf8Dfa, input);
+	}
+
+	public ByteMatcher byteMatcher(byte[] input, int offset, int length) {
+		return byteMatcher(ByteBuffer.wrap(input, offset, length));
+	}
+
+	public ByteMatcher byteMatcher(byte[] input) {
+		return byteMatcher(ByteBuffer.wrap(input));
+	}
+
+	/**
+	 * A matcher of the UTF-8 contents of the file, which it closes when it is closed (see
+	 * {@link FileMatcher}).
+	 */
+	public FileMatcher scan(Path file) throws IOException {
+		FileChannel channel = FileChannel.open(file, StandardOpenOption.READ);
+		try {
+			return new FileMatcher(this, channel, true, FileMatcher.DEFAULT_WINDOW_SIZE);
+		} catch (IOException e) {
+			channel.close();
+			throw e;
+		}
+	}
+
+	/**
+	 * A matcher of the UTF-8 contents of the channel's file, mapped in windows of the given size.
+	 * The channel is not closed.
+	 */
+	public FileMatcher scan(FileChannel channel, int windowSize) throws IOException {
+		return new FileMatcher(this, channel, false, windowSize);
+	}
+
+	public FileMatcher scan(FileChannel channel) throws IOException {
+		return scan(channel, FileMatcher.DEFAULT_WINDOW_SIZE);
+	}
+
+	/**
+	 * The matches in the UTF-8 contents of the channel's file, with the spans of their groups.
+	 */
+	public List<FileMatch> findAll(FileChannel channel) throws IOException {
+		FileMatcher matcher = scan(channel);
+		List<FileMatch> matches = new ArrayList<FileMatch>();
+		while (matcher.find()) {
+			matches.add(matcher.toMatch());
+		}
+		return matches;
+	}
+
+	/**
+	 * A matcher of the chars of the reader, keeping a window of the given size of them (see
+	 * {@link StreamMatcher}).
+	 */
+	public StreamMatcher streamMatcher(Reader reader, int windowSize) {
+		return new StreamMatcher.Chars(this, reader, windowSize);
+	}
+
+	public StreamMatcher streamMatcher(Reader reader) {
+		return streamMatcher(reader, StreamMatcher.DEFAULT_WINDOW_SIZE);
+	}
+
+	/**
+	 * A matcher of the UTF-8 bytes read from the channel, keeping a window of the given size of them
+	 * (see {@link StreamMatcher}).
+	 */
+	public StreamMatcher streamMatcher(ReadableByteChannel channel, int windowSize) {
+		return new StreamMatcher.Bytes(this, channel, windowSize);
+	}
+
+	public StreamMatcher streamMatcher(ReadableByteChannel channel) {
+		return streamMatcher(channel, StreamMatcher.DEFAULT_WINDOW_SIZE);
+	}
+
+	/**
+	 * A matcher of the regex alone, with the pattern's match budget.
+	 */
+	java.util.regex.Matcher rawMatcher(CharSequence input) {
+		return rawPattern.matcher(budgeted(input));
 	}
 
 	public static boolean matches(Expression regex, CharSequence input) {
@@ -33,23 +393,91 @@ public class Pattern {
 	}
 
 	public String[] split(CharSequence input) {
-		return rawPattern.split(input);
+		return rawPattern.split(budgeted(input));
 	}
 
 	public String[] split(CharSequence input, int limit) {
-		return rawPattern.split(input, limit);
+		return rawPattern.split(budgeted(input), limit);
 	}
 
 	public java.util.stream.Stream<String> splitAsStream(CharSequence input) {
-		return rawPattern.splitAsStream(input);
+		return rawPattern.splitAsStream(budgeted(input));
 	}
 
 	public String pattern() {
 		return rawPattern.pattern();
 	}
 
+	public int flags() {
+		return rawPattern.flags();
+	}
+
+	/**
+	 * The number of groups of the regex, including the group around the whole match.
+	 */
+	public int groupCount() {
+		return rawPattern.matcher("").groupCount();
+	}
+
 	@Override
 	public String toString() {
 		return rawPattern.toString();
 	}
+
+	/**
+	 * The prefilter of a pattern and what it is built from.
+	 */
+	private static final class Prefiltering {
+		final RequiredLiteral requiredLiteral;
+		final ExpressionAnalysis analysis;
+		final SearchStrategy searchStrategy;
+		final Prefilter prefilter;
+
+		Prefiltering(RequiredLiteral requiredLiteral, ExpressionAnalysis analysis, SearchStrategy searchStrategy) {
+			this.requiredLiteral = requiredLiteral;
+			this.analysis = analysis;
+			this.searchStrategy = searchStrategy;
+			if (requiredLiteral == null && analysis == null && searchStrategy == null) {
+				this.prefilter = null;
+			} else {
+				this.prefilter = new Prefilter(requiredLiteral, analysis, searchStrategy);
+			}
+		}
+	}
+
+	/**
+	 * A value given to a pattern, or the supplier computing it on first use. Patterns derived from
+	 * one another share it, so the value is computed at most once.
+	 */
+	private static final class Lazy<T> {
+		private Supplier<? extends T> supplier;
+		private T value;
+		private volatile boolean built;
+
+		Lazy(T value) {
+			this.value = value;
+			this.built = true;
+		}
+
+		Lazy(Supplier<? extends T> supplier) {
+			this.supplier = supplier;
+		}
+
+		boolean is(T value) {
+			return built && this.value == value;
+		}
+
+		T get() {
+			if (!built) {
+				synchronized (this) {
+					if (!built) {
+						value = supplier.get();
+						supplier = null;
+						built = true;
+					}
+				}
+			}
+			return value;
+		}
+	}
 }
@@ -0,0 +1,237 @@
+package com.github.sgreben.regex_builder;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import com.github.sgreben.regex_builder.analysis.RequiredLiteral;
+import com.github.sgreben.regex_builder.compiler.CompileOptions;
+
+/**
+ * A list of patterns searched for in an input together. A pattern's ID is its index in the list.
+ *
+ * <p>
+ * The set scans the input once for the required literals of its patterns (see
+ * {@link Pattern#requiredLiteral()}) with an Aho-Corasick automaton, and runs a pattern's regex only
+ * if the literal occurs. Patterns without a required literal are always run. When most patterns
+ * have literals that occur rarely, the time per input grows with the number of patterns that may
+ * match rather than with the number of patterns.
+ */
+public class PatternSet {
+	private final Pattern[] patterns;
+	/**
+	 * The distinct required literals, or null if no pattern has one.
+	 */
+	private final LiteralAutomaton literals;
+	/**
+	 * The IDs of the patterns requiring each literal.
+	 */
+	private final int[][] patternsByLiteral;
+	/**
+	 * The IDs of the patterns without a required literal.
+	 */
+	private final int[] unfiltered;
+
+	/**
+	 * A match of a pattern of a set.
+	 */
+	public static final class Match {
+		private final int patternId;
+		private final int start;
+		private final int end;
+
+		Match(int patternId, int start, int end) {
+			this.patternId = patternId;
+			this.start = start;
+			this.end = end;
+		}
+
+		public int getPatternId() {
+			return patternId;
+		}
+
+		public int getStart() {
+			return start;
+		}
+
+		public int getEnd() {
+			return end;
+		}
+
+		@Override
+		public String toString() {
+			return patternId + ":" + start + "-" + end;
+		}
+	}
+
+	public static PatternSet compile(List<? extends Expression> expressions) {
+		return compile(expressions, 0);
+	}
+
+	public static PatternSet compile(List<? extends Expression> expressions, int flags) {
+		return compile(expressions, flags, CompileOptions.defaults());
+	}
+
+	public static PatternSet compile(List<? extends Expression> expressions, int flags, CompileOptions options) {
+		List<Pattern> patterns = new ArrayList<Pattern>(expressions.size());
+		for (Expression expression : expressions) {
+			patterns.add(Pattern.compile(expression, flags, options));
+		}
+		return new PatternSet(patterns);
+	}
+
+	public PatternSet(List<Pattern> patterns) {
+		this.patterns = patterns.toArray(new Pattern[0]);
+		Map<String, List<Integer>> byLiteral = new LinkedHashMap<String, List<Integer>>();
+		List<Integer> unfiltered = new ArrayList<Integer>();
+		for (int id = 0; id < this.patterns.length; id++) {
+			RequiredLiteral literal = this.patterns[id].requiredLiteral();
+			if (literal == null || literal.getLiteral().isEmpty()) {
+				unfiltered.add(id);
+				continue;
+			}
+			List<Integer> ids = byLiteral.get(literal.getLiteral());
+			if (ids == null) {
+				ids = new ArrayList<Integer>();
+				byLiteral.put(literal.getLiteral(), ids);
+			}
+			ids.add(id);
+		}
+		this.literals = byLiteral.isEmpty() ? null : new LiteralAutomaton(new ArrayList<String>(byLiteral.keySet()));
+		this.patternsByLiteral = new int[byLiteral.size()][];
+		int i = 0;
+		for (List<Integer> ids : byLiteral.values()) {
+			patternsByLiteral[i++] = toArray(ids);
+		}
+		this.unfiltered = toArray(unfiltered);
+	}
+
+	public int size() {
+		return patterns.length;
+	}
+
+	public Pattern pattern(int id) {
+		return patterns[id];
+	}
+
+	/**
+	 * Whether any pattern of the set has a match in the input.
+	 */
+	public boolean findAny(CharSequence input) {
+		BitSet tried = new BitSet(patterns.length);
+		LiteralAutomaton.Listener tryPatterns = (literal, end) -> {
+			for (int id : patternsByLiteral[literal]) {
+				if (!tried.get(id)) {
+					tried.set(id);
+					if (patterns[id].matcher(input).find()) {
+						return false;
+					}
+				}
+			}
+			return true;
+		};
+		if (literals != null && !literals.scan(input, 0, tryPatterns)) {
+			return true;
+		}
+		for (int id : unfiltered) {
+			if (patterns[id].matcher(input).find()) {
+				return true;
+			}
+		}
+		return false;
+	}
+
+	/**
+	 * The IDs of the patterns that have a match in the input.
+	 */
+	public BitSet findAll(CharSequence input) {
+		BitSet candidates = candidates(input, 0);
+		BitSet matched = new BitSet(patterns.length);
+		for (int id = candidates.nextSetBit(0); id >= 0; id = candidates.nextSetBit(id + 1)) {
+			if (patterns[id].matcher(input).find()) {
+				matched.set(id);
+			}
+		}
+		return matched;
+	}
+
+	/**
+	 * The IDs of the patterns that have a match in the input, in increasing order.
+	 */
+	public int[] findAllIds(CharSequence input) {
+		return findAll(input).stream().toArray();
+	}
+
+	/**
+	 * The leftmost match of any pattern in the input, or null if there is none. Of the patterns
+	 * matching at the leftmost offset, the one with the lowest ID wins, and its match ends where a
+	 * match of that pattern alone would end.
+	 */
+	public Match findLeftmost(CharSequence input) {
+		return findLeftmost(input, 0);
+	}
+
+	/**
+	 * The leftmost match of any pattern in the input starting at or after the given offset, or null
+	 * if there is none.
+	 *
+	 * @throws IndexOutOfBoundsException if the offset is negative or greater than the length of the
+	 *         input
+	 */
+	public Match findLeftmost(CharSequence input, int from) {
+		if (from < 0 || from > input.length()) {
+			throw new IndexOutOfBoundsException("Illegal start index");
+		}
+		BitSet candidates = candidates(input, from);
+		Match leftmost = null;
+		for (int id = candidates.nextSetBit(0); id >= 0; id = candidates.nextSetBit(id + 1)) {
+			Matcher matcher = patterns[id].matcher(input);
+			if (matcher.find(from) && (leftmost == null || matcher.start() < leftmost.getStart())) {
+				leftmost = new Match(id, matcher.start(), matcher.end());
+			}
+		}
+		return leftmost;
+	}
+
+	/**
+	 * The IDs of the patterns that may match in the input at or after the given offset: those whose
+	 * required literal occurs there, and those without one. A match starting at the offset contains
+	 * its literal, so occurrences before the offset do not count.
+	 */
+	private BitSet candidates(CharSequence input, int from) {
+		BitSet candidates = new BitSet(patterns.length);
+		for (int id : unfiltered) {
+			candidates.set(id);
+		}
+		if (literals != null) {
+			boolean[] seen = new boolean[patternsByLiteral.length];
+			int[] unseen = {patternsByLiteral.length};
+			literals.scan(input, from, (literal, end) -> {
+				if (!seen[literal]) {
+					seen[literal] = true;
+					for (int id : patternsByLiteral[literal]) {
+						candidates.set(id);
+					}
+					unseen[0]--;
+				}
+				return unseen[0] > 0;
+			});
+		}
+		return candidates;
+	}
+
+	private static int[] toArray(List<Integer> ids) {
+		int[] array = new int[ids.size()];
+		for (int i = 0; i < array.length; i++) {
+			array[i] = ids.get(i);
+		}
+		return array;
+	}
+
+	@Override
+	public String toString() {
+		return Arrays.toString(patterns);
+	}
+}
@@ -0,0 +1,237 @@
+package com.github.sgreben.regex_builder;
+
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.Buffer;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+import com.github.sgreben.regex_builder.compiler.CompileOptions;
+import com.github.sgreben.regex_builder.compiler.Engine;
+import com.github.sgreben.regex_builder.engine.Dfa;
+import com.github.sgreben.regex_builder.expression.ExpressionVisitorBase;
+
+/**
+ * Compiled patterns saved in a versioned binary format, so that a process can load them without
+ * compiling their expressions again. For each pattern, a snapshot holds the regex and its flags,
+ * the index in the regex of each capture group of the expression, and the tables of its DFA if it
+ * has one (see {@link Dfa#tables()}).
+ *
+ * A snapshot is read in place: {@link #map} maps a file, and a pattern's DFA matches from the mapped
+ * tables (see {@link Dfa#map}). The regex of a pattern is compiled by java.util.regex when the
+ * pattern is taken from the snapshot.
+ *
+ * The format, in big-endian ints: the magic number, the version, the number of patterns and the
+ * offset of each pattern. A pattern is its flags, the length and the chars of its regex, the number
+ * and regex indices of its capture groups in the pre-order of the expression tree (-1 for groups
+ * that are not in the regex), and the length and bytes of its DFA tables. Each part starts at a
+ * multiple of 4 bytes.
+ */
+public final class PatternSnapshot {
+	public static final int MAGIC = 0x52425053;
+	public static final int VERSION = 1;
+
+	private final ByteBuffer buffer;
+	private final int size;
+
+	private PatternSnapshot(ByteBuffer buffer) {
+		this.buffer = buffer;
+		this.size = buffer.getInt(8);
+	}
+
+	/**
+	 * Compiles the expressions and writes their snapshot.
+	 */
+	public static void write(List<? extends Expression> expressions, int flags, OutputStream out) throws IOException {
+		write(expressions, flags, CompileOptions.defaults(), out);
+	}
+
+	public static void write(List<? extends Expression> expressions, int flags, CompileOptions options,
+			OutputStream out) throws IOException {
+		List<byte[]> records = new ArrayList<byte[]>(expressions.size());
+		for (Expression expression : expressions) {
+			records.add(record(expression, flags, options));
+		}
+		DataOutputStream data = new DataOutputStream(out);
+		data.writeInt(MAGIC);
+		data.writeInt(VERSION);
+		data.writeInt(records.size());
+		int offset = 4 * (3 + records.size());
+		for (byte[] record : records) {
+			data.writeInt(offset);
+			offset += record.length;
+		}
+		for (byte[] record : records) {
+			data.write(record);
+		}
+		data.flush();
+	}
+
+	private static byte[] record(Expression expression, int flags, CompileOptions options) throws IOException {
+		Pattern pattern = Pattern.compile(expression, flags, options.withEngine(Engine.DFA));
+		ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+		DataOutputStream out = new DataOutputStream(bytes);
+		out.writeInt(pattern.flags());
+		String regex = pattern.pattern();
+		out.writeInt(regex.length());
+		out.writeChars(regex);
+		pad(out);
+		List<CaptureGroup> groups = groups(expression);
+		out.writeInt(groups.size());
+		for (CaptureGroup group : groups) {
+			Integer index = pattern.groupIndex().get(group);
+			out.writeInt(index == null ? -1 : index);
+		}
+		byte[] tables = pattern.dfa() == null ? null : pattern.dfa().tables();
+		out.writeInt(tables == null ? 0 : tables.length);
+		if (tables != null) {
+			out.write(tables);
+			pad(out);
+		}
+		return bytes.toByteArray();
+	}
+
+	private static void pad(DataOutputStream out) throws IOException {
+		while (out.size() % 4 != 0) {
+			out.writeByte(0);
+		}
+	}
+
+	/**
+	 * The capture groups of the expression, in pre-order.
+	 */
+	private static List<CaptureGroup> groups(Expression expression) {
+		final List<CaptureGroup> groups = new ArrayList<CaptureGroup>();
+		expression.accept(new ExpressionVisitorBase() {
+			@Override
+			public void visitPre(Expression node) {
+				if (node instanceof CaptureGroup) {
+					groups.add((CaptureGroup) node);
+				}
+			}
+		});
+		return groups;
+	}
+
+	/**
+	 * The snapshot in the buffer, from its position, read in place.
+	 *
+	 * @throws IllegalArgumentException if the buffer does not hold a snapshot of this version
+	 */
+	public static PatternSnapshot read(ByteBuffer snapshot) {
+		ByteBuffer buffer = snapshot.slice().order(ByteOrder.BIG_ENDIAN);
+		if (buffer.remaining() < 12 || buffer.getInt(0) != MAGIC) {
+			throw new IllegalArgumentException("not a pattern snapshot");
+		}
+		if (buffer.getInt(4) != VERSION) {
+			throw new IllegalArgumentException("unsupported snapshot version " + buffer.getInt(4));
+		}
+		return new PatternSnapshot(buffer);
+	}
+
+	/**
+	 * The snapshot in the file, mapped into memory. The mapping is released when the snapshot and
+	 * the patterns taken from it are unreachable.
+	 */
+	public static PatternSnapshot map(Path file) throws IOException {
+		FileChannel channel = FileChannel.open(file, StandardOpenOption.READ);
+		try {
+			return read(channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size()));
+		} finally {
+			channel.close();
+		}
+	}
+
+	/**
+	 * The number of patterns.
+	 */
+	public int size() {
+		return size;
+	}
+
+	private int offset(int id) {
+		if (id < 0 || id >= size) {
+			throw new IndexOutOfBoundsException("pattern " + id + " of " + size);
+		}
+		return buffer.getInt(12 + 4 * id);
+	}
+
+	public int flags(int id) {
+		return buffer.getInt(offset(id));
+	}
+
+	public String regex(int id) {
+		int offset = offset(id) + 4;
+		char[] regex = new char[buffer.getInt(offset)];
+		for (int i = 0; i < regex.length; i++) {
+			regex[i] = buffer.getChar(offset + 4 + 2 * i);
+		}
+		return new String(regex);
+	}
+
+	/**
+	 * The offset of the capture groups of the pattern.
+	 */
+	private int groupsOffset(int id) {
+		int offset = offset(id) + 4;
+		return offset + 4 + (2 * buffer.getInt(offset) + 3) / 4 * 4;
+	}
+
+	/**
+	 * The DFA of the pattern, matching from the tables in the snapshot, or null if it has none.
+	 */
+	public Dfa dfa(int id) {
+		int offset = groupsOffset(id);
+		offset += 4 + 4 * buffer.getInt(offset);
+		int length = buffer.getInt(offset);
+		if (length == 0) {
+			return null;
+		}
+		ByteBuffer tables = buffer.duplicate();
+		((Buffer) tables).position(offset + 4);
+		((Buffer) tables).limit(offset + 4 + length);
+		return Dfa.map(tables);
+	}
+
+	/**
+	 * The pattern, whose matchers run on its DFA from the snapshot if it has one. Its capture groups
+	 * are not bound: use {@link #pattern(int, Expression)} to access them.
+	 */
+	public Pattern pattern(int id) {
+		return pattern(id, new CaptureGroupIndex());
+	}
+
+	/**
+	 * The pattern, with the capture groups of the expression it was written from, or of an equal
+	 * expression built again.
+	 *
+	 * @throws IllegalArgumentException if the expression does not have the pattern's number of
+	 *         capture groups
+	 */
+	public Pattern pattern(int id, Expression expression) {
+		List<CaptureGroup> groups = groups(expression);
+		int offset = groupsOffset(id);
+		if (groups.size() != buffer.getInt(offset)) {
+			throw new IllegalArgumentException("expression has " + groups.size() + " groups, pattern " + id + " has "
+					+ buffer.getInt(offset));
+		}
+		CaptureGroupIndex groupIndex = new CaptureGroupIndex();
+		for (int g = 0; g < groups.size(); g++) {
+			int index = buffer.getInt(offset + 4 + 4 * g);
+			if (index >= 0) {
+				groupIndex.put(groups.get(g), index);
+			}
+		}
+		return pattern(id, groupIndex);
+	}
+
+	private Pattern pattern(int id, CaptureGroupIndex groupIndex) {
+		return new Pattern(java.util.regex.Pattern.compile(regex(id), flags(id)), groupIndex).withEngine(dfa(id));
+	}
+}
@@ -0,0 +1,178 @@
+package com.github.sgreben.regex_builder;
+
+import com.github.sgreben.regex_builder.analysis.ExpressionAnalysis;
+import com.github.sgreben.regex_builder.analysis.RequiredLiteral;
+import com.github.sgreben.regex_builder.analysis.SearchStrategy;
+import com.github.sgreben.regex_builder.charclass.RangeSet;
+
+/**
+ * Cheap checks run by matchers before the regex: they rule out inputs, or offsets in the input,
+ * where no match can start. Uses the facts of an {@link ExpressionAnalysis} (length bounds, anchors,
+ * first characters), and either a {@link RequiredLiteral} or a {@link SearchStrategy}.
+ */
+class Prefilter {
+    private final LiteralSearch literal;
+    private final SearchStrategy strategy;
+    private final LiteralSearch strategyLiteral;
+    private final ExpressionAnalysis analysis;
+    private final RangeSet firstChars;
+    /**
+     * Membership in the first characters, for chars below 256.
+     */
+    private final boolean[] latin1FirstChars;
+    /**
+     * Vectorized scanner for the first characters, or null if it is not available.
+     */
+    private final CandidateScanner firstCharScanner;
+
+    Prefilter(RequiredLiteral requiredLiteral, ExpressionAnalysis analysis, SearchStrategy strategy) {
+        this.literal = requiredLiteral == null || strategy != null ? null : new LiteralSearch(requiredLiteral);
+        this.strategy = strategy;
+        this.strategyLiteral = strategy == null ? null : new LiteralSearch(strategy.getLiteral(), -1);
+        this.analysis = analysis;
+        if (analysis == null || analysis.getFirstChars().isFull()) {
+            this.firstChars = null;
+            this.latin1FirstChars = null;
+            this.firstCharScanner = null;
+        } else {
+            this.firstChars = analysis.getFirstChars();
+            this.latin1FirstChars = new boolean[256];
+            for (int c = 0; c < 256; c++) {
+                latin1FirstChars[c] = firstChars.contains(c);
+            }
+            this.firstCharScanner = strategy == null ? CandidateScanner.vectorized(firstChars) : null;
+        }
+    }
+
+    /**
+     * Whether the whole input may match.
+     */
+    boolean mayMatch(CharSequence input) {
+        if (analysis == null) {
+            return true;
+        }
+        return analysis.admitsLength(input.length()) && (firstChars == null || isFirstChar(input, 0));
+    }
+
+    /**
+     * Whether {@link #candidate} scans for the first characters faster with a buffer to copy the
+     * input to.
+     */
+    boolean scansArrays() {
+        return firstCharScanner != null;
+    }
+
+    /**
+     * The earliest offset at or after the given one where a match may start, or -1 if there is none.
+     * A buffer to copy the input to a chunk at a time may be given for scanning it, or null.
+     */
+    int candidate(CharSequence input, char[] buffer, int from) {
+        int length = input.length();
+        if (from > length) {
+            return -1;
+        }
+        if (analysis != null) {
+            if (analysis.isAnchoredAtStart() && from > 0) {
+                return -1;
+            }
+            if (analysis.isAnchoredAtEnd() && analysis.getMaxLength() >= 0) {
+                from = Math.max(from, length - analysis.getMaxLength());
+            }
+            if (length - from < analysis.getMinLength()) {
+                return -1;
+            }
+        }
+        if (strategy != null) {
+            return strategyCandidate(input, from);
+        }
+        if (literal != null) {
+            int occurrence = literal.indexOf(input, from);
+            if (occurrence < 0) {
+                return -1;
+            }
+            from = Math.max(from, literal.earliestStart(occurrence));
+        }
+        if (firstChars != null) {
+            int last = length - analysis.getMinLength();
+            if (buffer != null && firstCharScanner != null) {
+                return from > last ? -1 : firstCharScanner.indexOf(input, buffer, from, last + 1);
+            }
+            while (from <= last && !isFirstChar(input, from)) {
+                from++;
+            }
+            if (from > last) {
+                return -1;
+            }
+        }
+        return from;
+    }
+
+    /**
+     * Whether the matcher should try the regex only at the candidates, and skip to
+     * {@link #resumeAfter} when it fails there.
+     */
+    boolean hasStrategy() {
+        return strategy != null;
+    }
+
+    /**
+     * The earliest start of a match using the first occurrence of the strategy's literal at or after
+     * the given offset whose preceding run of prefix characters is long enough.
+     */
+    private int strategyCandidate(CharSequence input, int from) {
+        RangeSet prefixChars = strategy.getPrefixChars();
+        int occurrence = strategyLiteral.indexOf(input, from);
+        while (occurrence >= 0) {
+            int start = occurrence;
+            int count = 0;
+            while (start > from) {
+                int c = Character.codePointBefore(input, start);
+                int width = Character.charCount(c);
+                if (!prefixChars.contains(c)) {
+                    // A match may start in the middle of a surrogate pair.
+                    if (width == 2 && start - 1 >= from && prefixChars.contains(input.charAt(start - 1))) {
+                        start--;
+                        count++;
+                    }
+                    break;
+                }
+                if (start - width < from) {
+                    break;
+                }
+                start -= width;
+                count++;
+            }
+            if (count >= strategy.getPrefixMinLength()) {
+                return start;
+            }
+            occurrence = strategyLiteral.indexOf(input, occurrence + 1);
+        }
+        return -1;
+    }
+
+    /**
+     * Where to continue after the regex failed at a candidate of the strategy. Starting later within
+     * the run of prefix characters at the candidate only leaves fewer places for the prefix to end,
+     * so no match starts in that run.
+     */
+    int resumeAfter(CharSequence input, int candidate) {
+        RangeSet prefixChars = strategy.getPrefixChars();
+        int end = candidate;
+        while (end < input.length()) {
+            int c = Character.codePointAt(input, end);
+            if (!prefixChars.contains(c)) {
+                break;
+            }
+            end += Character.charCount(c);
+        }
+        return end + 1;
+    }
+
+    private boolean isFirstChar(CharSequence input, int index) {
+        char c = input.charAt(index);
+        if (c < 256) {
+            return latin1FirstChars[c];
+        }
+        return firstChars.contains(Character.codePointAt(input, index));
+    }
+}
@@ -36,7 +36,7 @@ public class Re {
      * Match a string literal.
      */
     public static Expression string(String s) {
-        return new Literal(s);
+        return Interner.canonical(new Literal(s));
     }
 
     /**
@@ -50,21 +50,21 @@ public class Re {
      * Match the beginning of a line.
      */
     public static Expression beginLine() {
-        return new BeginLine();
+        return Interner.canonical(new BeginLine());
     }
 
     /**
      * Match the end of a line.
      */
     public static Expression endLine() {
-        return new EndLine();
+        return Interner.canonical(new EndLine());
     }
 
     /**
      * Match a character from the given char class.
      */
     public static Expression charClass(CharClass charClass) {
-        return new CharClassExpression(charClass);
+        return Interner.canonical(new CharClassExpression(charClass));
     }
 
     /**
@@ -78,14 +78,14 @@ public class Re {
      * Repeat the expression zero or more times.
      */
     public static Repeat repeat(Expression e) {
-        return new Repeat(e);
+        return Interner.canonical(new Repeat(e));
     }
 
     /**
      * Repeat the expression zero or more times.
      */
     public static Repeat repeat(CharClass c) {
-        return new Repeat(charClass(c));
+        return Interner.canonical(new Repeat(charClass(c)));
     }
 
     /**
@@ -106,14 +106,14 @@ public class Re {
      * Repeat the expression zero or more times (possessive)
      */
     public static RepeatPossessive repeatPossessive(Expression e) {
-        return new RepeatPossessive(e);
+        return Interner.canonical(new RepeatPossessive(e));
     }
 
     /**
      * Repeat the expression zero or more times (possessive)
      */
     public static RepeatPossessive repeatPossessive(CharClass c) {
-        return new RepeatPossessive(charClass(c));
+        return Interner.canonical(new RepeatPossessive(charClass(c)));
     }
 
     /**
@@ -134,14 +134,14 @@ public class Re {
      * Repeat the expression zero or more times (reluctant)
      */
     public static RepeatReluctant repeatReluctant(Expression e) {
-        return new RepeatReluctant(e);
+        return Interner.canonical(new RepeatReluctant(e));
     }
 
     /**
      * Repeat the expression zero or more times (reluctant)
      */
     public static RepeatReluctant repeatReluctant(CharClass c) {
-        return new RepeatReluctant(charClass(c));
+        return Interner.canonical(new RepeatReluctant(charClass(c)));
     }
 
     /**
@@ -162,7 +162,7 @@ public class Re {
      * Repeat the expression the given number of times
      */
     public static Repeat repeat(Expression e, int times) {
-        return new Repeat(e, times);
+        return Interner.canonical(new Repeat(e, times));
     }
 
     /**
@@ -190,7 +190,7 @@ public class Re {
      * Repeat the expression a number of times within the given range.
      */
     public static Repeat repeat(Expression e, int timesMin, int timesMax) {
-        return new Repeat(e, timesMin, timesMax);
+        return Interner.canonical(new Repeat(e, timesMin, timesMax));
     }
 
     /**
@@ -218,7 +218,7 @@ public class Re {
      * Repeat the expression a number of times (possessive).
      */
     public static Expression repeatPossessive(Expression e, int times) {
-        return new RepeatPossessive(e, times);
+        return Interner.canonical(new RepeatPossessive(e, times));
     }
 
     /**
@@ -246,7 +246,7 @@ public class Re {
      * Repeat the expression a number of times within the given range (possessive).
      */
     public static Expression repeatPossessive(Expression e, int timesMin, int timesMax) {
-        return new RepeatPossessive(e, timesMin, timesMax);
+        return Interner.canonical(new RepeatPossessive(e, timesMin, timesMax));
     }
 
     /**
@@ -274,7 +274,7 @@ public class Re {
      * Repeat the expression the given number of times (reluctant).
      */
     public static Expression repeatReluctant(Expression e, int times) {
-        return new RepeatReluctant(e, times);
+        return Interner.canonical(new RepeatReluctant(e, times));
     }
 
     /**
@@ -302,7 +302,7 @@ public class Re {
      * Repeat the expression a number of times within the given range (reluctant).
      */
     public static Expression repeatReluctant(Expression e, int timesMin, int timesMax) {
-        return new RepeatReluctant(e, timesMin, timesMax);
+        return Interner.canonical(new RepeatReluctant(e, timesMin, timesMax));
     }
 
     /**
@@ -330,7 +330,7 @@ public class Re {
      * Repeat the expression one or more times.
      */
     public static Repeat1 repeat1(Expression e) {
-        return new Repeat1(e);
+        return Interner.canonical(new Repeat1(e));
     }
 
     /**
@@ -358,7 +358,7 @@ public class Re {
      * Repeat the expression one or more times (possessive).
      */
     public static Expression repeat1Possessive(Expression e) {
-        return new Repeat1Possessive(e);
+        return Interner.canonical(new Repeat1Possessive(e));
     }
 
     /**
@@ -386,7 +386,7 @@ public class Re {
      * Repeat the expression one or more times (reluctant).
      */
     public static Expression repeat1Reluctant(Expression e) {
-        return new Repeat1Reluctant(e);
+        return Interner.canonical(new Repeat1Reluctant(e));
     }
 
     /**
@@ -414,7 +414,7 @@ public class Re {
      * Repeat the expression at least the given number of times.
      */
     public static Expression repeatAtLeast(Expression expression, int n) {
-        return new RepeatAtLeast(expression, n);
+        return Interner.canonical(new RepeatAtLeast(expression, n));
     }
 
     /**
@@ -442,7 +442,7 @@ public class Re {
      * Repeat the expression at least the given number of times (reluctant).
      */
     public static Expression repeatAtLeastReluctant(Expression expression, int n) {
-        return new RepeatAtLeastReluctant(expression, n);
+        return Interner.canonical(new RepeatAtLeastReluctant(expression, n));
     }
 
     /**
@@ -470,7 +470,7 @@ public class Re {
      * Repeat the expression at least the given number of times (possessive).
      */
     public static Expression repeatAtLeastPossessive(Expression expression, int n) {
-        return new RepeatAtLeastPossessive(expression, n);
+        return Interner.canonical(new RepeatAtLeastPossessive(expression, n));
     }
 
     /**
@@ -498,7 +498,7 @@ public class Re {
      * Match a sequence of expessions.
      */
     public static Expression sequence(Expression... es) {
-        return new Sequence(es);
+        return Interner.canonical(new Sequence(es));
     }
 
     /**
@@ -512,7 +512,7 @@ public class Re {
      * Match one of the given expessions.
      */
     public static Expression choice(Expression... es) {
-        return new Choice(es);
+        return Interner.canonical(new Choice(es));
     }
 
     /**
@@ -526,7 +526,7 @@ public class Re {
      * Match the given expession zero or one times.
      */
     public static Optional optional(Expression e) {
-        return new Optional(e);
+        return Interner.canonical(new Optional(e));
     }
 
     /**
@@ -554,7 +554,7 @@ public class Re {
      * Match the given expession zero or one times (possessive).
      */
     public static Expression optionalPossessive(Expression e) {
-        return new OptionalPossessive(e);
+        return Interner.canonical(new OptionalPossessive(e));
     }
 
     /**
@@ -582,7 +582,7 @@ public class Re {
      * Match the given expession zero or one times (reluctant).
      */
     public static Expression optionalReluctant(Expression e) {
-        return new OptionalReluctant(e);
+        return Interner.canonical(new OptionalReluctant(e));
     }
 
     /**
@@ -1019,7 +1019,7 @@ public class Re {
     }
 
     public static Expression atomic(Expression expression) {
-        return new Atomic(expression);
+        return Interner.canonical(new Atomic(expression));
     }
 
     public static Expression atomic(Object... os) {
@@ -1105,7 +1105,7 @@ public class Re {
     }
 
     public static Expression positiveLookbehind(Expression expression) {
-        return new PositiveLookbehind(expression);
+        return Interner.canonical(new PositiveLookbehind(expression));
     }
 
     public static Expression positiveLookbehind(Object... os) {
@@ -1125,7 +1125,7 @@ public class Re {
     }
 
     public static Expression negativeLookbehind(Expression expression) {
-        return new NegativeLookbehind(expression);
+        return Interner.canonical(new NegativeLookbehind(expression));
     }
 
     public static Expression negativeLookbehind(Object... os) {
@@ -1145,7 +1145,7 @@ public class Re {
     }
 
     public static Expression positiveLookahead(Expression expression) {
-        return new PositiveLookahead(expression);
+        return Interner.canonical(new PositiveLookahead(expression));
     }
 
     public static Expression positiveLookahead(Object... os) {
@@ -1165,7 +1165,7 @@ public class Re {
     }
 
     public static Expression negativeLookahead(Expression expression) {
-        return new NegativeLookahead(expression);
+        return Interner.canonical(new NegativeLookahead(expression));
     }
 
     public static Expression negativeLookahead(Object... os) {
@@ -1191,7 +1191,7 @@ public class Re {
      * @return
      */
     public static Expression backReference(CaptureGroup group) {
-        return new BackReference(group);
+        return Interner.canonical(new BackReference(group));
     }
 
     /**
@@ -0,0 +1,445 @@
+package com.github.sgreben.regex_builder;
+
+import java.io.IOException;
+import java.io.Reader;
+import java.nio.Buffer;
+import java.nio.ByteBuffer;
+import java.nio.CharBuffer;
+import java.nio.channels.ReadableByteChannel;
+import java.util.Arrays;
+
+/**
+ * Finds the matches of a pattern in a stream, the chars of a {@link Reader} or the UTF-8 bytes of a
+ * (blocking) {@link ReadableByteChannel}, keeping only a window of a fixed size of it in memory.
+ * Offsets are positions in the stream, in chars or bytes, from where the matcher started reading.
+ *
+ * The window slides forward as matches are found, keeping the context a match may read before its
+ * start, and is refilled from the stream. A match starting closer to the end of the window than a
+ * match may read is left for the next window. How far that is follows from the pattern's
+ * {@link Pattern#analysis()} (see {@link MatchReach}); if it is more than half a window, or unknown,
+ * the window is searched with the regex, and a match it does not decide is searched again in a window
+ * that starts with it, doubled in size as needed up to {@link #MAX_WINDOW_SIZE}.
+ */
+public abstract class StreamMatcher {
+    public static final int DEFAULT_WINDOW_SIZE = 1 << 16;
+    public static final int MIN_WINDOW_SIZE = FileMatcher.MIN_WINDOW_SIZE;
+    public static final int MAX_WINDOW_SIZE = FileMatcher.MAX_WINDOW_SIZE;
+
+    final Pattern pattern;
+    int windowSize;
+    private final int behind;
+    private final int ahead;
+    private final boolean bounded;
+    /**
+     * The position in the stream of the first unit (char or byte) of the window.
+     */
+    private long windowStart;
+    /**
+     * The units read into the window.
+     */
+    int length;
+    /**
+     * The units of the window that are matched: all of them at the end of the stream, and otherwise
+     * those up to the end of the last complete char.
+     */
+    private int limit;
+    private boolean endOfStream;
+    /**
+     * Where the next {@code find()} starts, or past the end of the stream.
+     */
+    private long next;
+    private boolean found;
+    private long start;
+    private long end;
+
+    StreamMatcher(Pattern pattern, int windowSize, int unitsPerChar) {
+        if (windowSize < MIN_WINDOW_SIZE) {
+            throw new IllegalArgumentException("Window size below " + MIN_WINDOW_SIZE + ": " + windowSize);
+        }
+        this.pattern = pattern;
+        MatchReach reach = new MatchReach(pattern, windowSize, unitsPerChar);
+        this.windowSize = reach.windowSize;
+        this.behind = reach.behind;
+        this.ahead = reach.ahead;
+        this.bounded = reach.bounded;
+    }
+
+    /**
+     * Finds the next match in the stream, reading from it as needed.
+     */
+    public boolean find() throws IOException {
+        while (!endOfStream || next <= windowStart + limit) {
+            long windowEnd = windowStart + limit;
+            if (!endOfStream && (bounded ? next > windowEnd - ahead : next >= windowEnd)) {
+                slide(next);
+                continue;
+            }
+            if (!endOfStream && !bounded) {
+                int decided = findDecided((int) (next - windowStart));
+                if (hasMatch()) {
+                    return found();
+                }
+                // No match starts before the first unit the window cannot decide on: search on from
+                // there, in a larger window if it already starts there.
+                next = decided < 0 ? windowEnd : windowStart + decided;
+                if (Math.max(0, next - behind) <= windowStart) {
+                    grow();
+                }
+                slide(next);
+                continue;
+            }
+            if (search((int) (next - windowStart))) {
+                long matchStart = windowStart + matchStart();
+                if (endOfStream || matchStart <= windowEnd - ahead) {
+                    return found();
+                }
+            } else if (endOfStream) {
+                break;
+            }
+            // No match starts before the units the window cannot decide on: search on from there.
+            next = Math.max(next, windowStart + charStart((int) (windowEnd - ahead - windowStart)));
+            slide(next);
+        }
+        found = false;
+        next = windowStart + limit + 1;
+        return false;
+    }
+
+    private boolean found() {
+        found = true;
+        start = windowStart + matchStart();
+        end = windowStart + matchEnd();
+        next = end > start ? end : windowStart + nextChar((int) (end - windowStart));
+        return true;
+    }
+
+    private void grow() {
+        if (windowSize > MAX_WINDOW_SIZE / 2) {
+            throw new IllegalStateException("A match at " + next + " may read more than " + MAX_WINDOW_SIZE + " units");
+        }
+        windowSize *= 2;
+        resize(windowSize);
+    }
+
+    /**
+     * Drops the units before the context of a match starting at the given position, and fills the
+     * window from the stream.
+     */
+    private void slide(long position) throws IOException {
+        int drop = (int) Math.max(0, position - behind - windowStart);
+        shift(drop);
+        length -= drop;
+        windowStart += drop;
+        while (length < windowSize) {
+            int n = read(length, windowSize - length);
+            if (n < 0) {
+                endOfStream = true;
+                break;
+            }
+            length += n;
+        }
+        limit = endOfStream ? length : completeLimit();
+        reset(limit);
+    }
+
+    /**
+     * Moves the units of the window from the given index to its start.
+     */
+    abstract void shift(int from);
+
+    /**
+     * Reads at most the given number of units into the window at the given index; returns their
+     * number, or -1 at the end of the stream.
+     */
+    abstract int read(int index, int count) throws IOException;
+
+    /**
+     * The index after the last complete char read into the window.
+     */
+    abstract int completeLimit();
+
+    /**
+     * Matches the units of the window up to the given limit from now on.
+     */
+    abstract void reset(int limit);
+
+    abstract boolean search(int from);
+
+    /**
+     * Searches the window up to the limit as a window of the stream: see
+     * {@link ByteMatcher#findDecided}.
+     */
+    abstract int findDecided(int from);
+
+    abstract boolean hasMatch();
+
+    /**
+     * Makes room for the given number of units in the window, keeping those read.
+     */
+    abstract void resize(int size);
+
+    abstract int matchStart();
+
+    abstract int matchEnd();
+
+    abstract int charStart(int index);
+
+    abstract int nextChar(int index);
+
+    abstract int groupStart(CaptureGroup group);
+
+    abstract int groupEnd(CaptureGroup group);
+
+    abstract String matchedGroup(CaptureGroup group);
+
+    abstract String matched();
+
+    private void checkFound() {
+        if (!found) {
+            throw new IllegalStateException("No match found");
+        }
+    }
+
+    public long start() {
+        checkFound();
+        return start;
+    }
+
+    public long end() {
+        checkFound();
+        return end;
+    }
+
+    public long start(CaptureGroup group) {
+        checkFound();
+        int start = groupStart(group);
+        return start < 0 ? -1 : windowStart + start;
+    }
+
+    public long end(CaptureGroup group) {
+        checkFound();
+        int end = groupEnd(group);
+        return end < 0 ? -1 : windowStart + end;
+    }
+
+    public String group() {
+        checkFound();
+        return matched();
+    }
+
+    public String group(CaptureGroup group) {
+        checkFound();
+        return matchedGroup(group);
+    }
+
+    /**
+     * Matches the chars of a reader with a {@link Matcher}.
+     */
+    static final class Chars extends StreamMatcher {
+        private final Reader reader;
+        private char[] window;
+        private Matcher matcher;
+        /**
+         * The regex matching the window for {@link #findDecided}, once it was needed, or null.
+         */
+        private java.util.regex.Matcher raw;
+        private CharBuffer text;
+        private boolean decided;
+
+        Chars(Pattern pattern, Reader reader, int windowSize) {
+            super(pattern, windowSize, 1);
+            this.reader = reader;
+            this.window = new char[windowSize];
+        }
+
+        @Override
+        void shift(int from) {
+            System.arraycopy(window, from, window, 0, length - from);
+        }
+
+        @Override
+        int read(int index, int count) throws IOException {
+            return reader.read(window, index, count);
+        }
+
+        @Override
+        int completeLimit() {
+            return length > 0 && Character.isHighSurrogate(window[length - 1]) ? length - 1 : length;
+        }
+
+        @Override
+        void reset(int limit) {
+            text = CharBuffer.wrap(window, 0, limit);
+            matcher = pattern.matcher(text);
+            raw = null;
+        }
+
+        @Override
+        boolean search(int from) {
+            return matcher.find(from);
+        }
+
+        @Override
+        int findDecided(int from) {
+            if (raw == null) {
+                raw = pattern.rawMatcher(text);
+            }
+            int start = DecidedSearch.search(raw, text, from, text.length());
+            decided = start >= 0 && !raw.hitEnd();
+            if (decided) {
+                matcher = new Matcher(raw, pattern.groupIndex());
+            }
+            return start;
+        }
+
+        @Override
+        boolean hasMatch() {
+            return decided;
+        }
+
+        @Override
+        void resize(int size) {
+            window = Arrays.copyOf(window, size);
+        }
+
+        @Override
+        int matchStart() {
+            return matcher.start();
+        }
+
+        @Override
+        int matchEnd() {
+            return matcher.end();
+        }
+
+        @Override
+        int charStart(int index) {
+            return index;
+        }
+
+        @Override
+        int nextChar(int index) {
+            return index + 1;
+        }
+
+        @Override
+        int groupStart(CaptureGroup group) {
+            return matcher.start(group);
+        }
+
+        @Override
+        int groupEnd(CaptureGroup group) {
+            return matcher.end(group);
+        }
+
+        @Override
+        String matchedGroup(CaptureGroup group) {
+            return matcher.group(group);
+        }
+
+        @Override
+        String matched() {
+            return matcher.group();
+        }
+    }
+
+    /**
+     * Matches the UTF-8 bytes of a channel with a {@link ByteMatcher}.
+     */
+    static final class Bytes extends StreamMatcher {
+        private final ReadableByteChannel channel;
+        private ByteBuffer window;
+        private ByteMatcher matcher;
+
+        Bytes(Pattern pattern, ReadableByteChannel channel, int windowSize) {
+            super(pattern, windowSize, 3);
+            this.channel = channel;
+            this.window = ByteBuffer.allocate(windowSize);
+        }
+
+        @Override
+        void shift(int from) {
+            ((Buffer) window).limit(length).position(from);
+            window.compact();
+        }
+
+        @Override
+        int read(int index, int count) throws IOException {
+            ((Buffer) window).limit(index + count).position(index);
+            return channel.read(window);
+        }
+
+        @Override
+        int completeLimit() {
+            ((Buffer) window).limit(length).position(0);
+            return Utf8Text.completeLimit(window);
+        }
+
+        @Override
+        void reset(int limit) {
+            ((Buffer) window).limit(limit).position(0);
+            matcher = matcher == null ? pattern.byteMatcher(window) : matcher.reset(window);
+        }
+
+        @Override
+        boolean search(int from) {
+            return matcher.find(from);
+        }
+
+        @Override
+        int findDecided(int from) {
+            return matcher.findDecided(from);
+        }
+
+        @Override
+        boolean hasMatch() {
+            return matcher.hasMatch();
+        }
+
+        @Override
+        void resize(int size) {
+            ((Buffer) window).limit(length).position(0);
+            window = ByteBuffer.allocate(size).put(window);
+        }
+
+        @Override
+        int matchStart() {
+            return matcher.start();
+        }
+
+        @Override
+        int matchEnd() {
+            return matcher.end();
+        }
+
+        @Override
+        int charStart(int index) {
+            return Utf8Text.charStart(window, index);
+        }
+
+        @Override
+        int nextChar(int index) {
+            return Utf8Text.nextChar(window, index);
+        }
+
+        @Override
+        int groupStart(CaptureGroup group) {
+            return matcher.start(group);
+        }
+
+        @Override
+        int groupEnd(CaptureGroup group) {
+            return matcher.end(group);
+        }
+
+        @Override
+        String matchedGroup(CaptureGroup group) {
+            return matcher.group(group);
+        }
+
+        @Override
+        String matched() {
+            return matcher.group();
+        }
+    }
+}
@@ -0,0 +1,176 @@
+package com.github.sgreben.regex_builder;
+
+import java.nio.ByteBuffer;
+
+/**
+ * UTF-8 bytes decoded to chars, with the index in the buffer of each char. Each byte of a malformed
+ * sequence decodes to U+FFFD.
+ */
+final class Utf8Text implements CharSequence {
+	private final char[] chars;
+	private final int length;
+	/**
+	 * The index of the first byte of each char, followed by the end of the bytes. Both chars of a
+	 * surrogate pair have the index of the first byte of the encoded code point.
+	 */
+	private final int[] offsets;
+
+	private Utf8Text(char[] chars, int length, int[] offsets) {
+		this.chars = chars;
+		this.length = length;
+		this.offsets = offsets;
+	}
+
+	static Utf8Text decode(ByteBuffer input, int from, int to) {
+		char[] chars = new char[to - from];
+		int[] offsets = new int[to - from + 1];
+		int n = 0;
+		int i = from;
+		while (i < to) {
+			int b = input.get(i) & 0xFF;
+			int length = sequenceLength(input, i, to, b);
+			offsets[n] = i;
+			if (length == 0) {
+				chars[n++] = '\uFFFD';
+				i++;
+				continue;
+			}
+			int c = length == 1 ? b : b & (0xFF >>> (length + 1));
+			for (int k = 1; k < length; k++) {
+				c = c << 6 | (input.get(i + k) & 0x3F);
+			}
+			if (c >= Character.MIN_SUPPLEMENTARY_CODE_POINT) {
+				chars[n++] = Character.highSurrogate(c);
+				offsets[n] = i;
+				chars[n++] = Character.lowSurrogate(c);
+			} else {
+				chars[n++] = (char) c;
+			}
+			i += length;
+		}
+		offsets[n] = to;
+		return new Utf8Text(chars, n, offsets);
+	}
+
+	/**
+	 * The length of the well-formed sequence starting at the index, or 0 if it is malformed.
+	 */
+	private static int sequenceLength(ByteBuffer input, int index, int to, int b) {
+		int length;
+		int low = 0x80;
+		int high = 0xBF;
+		if (b < 0x80) {
+			return 1;
+		} else if (b >= 0xC2 && b <= 0xDF) {
+			length = 2;
+		} else if (b >= 0xE0 && b <= 0xEF) {
+			length = 3;
+			// Overlong encodings and surrogates.
+			low = b == 0xE0 ? 0xA0 : low;
+			high = b == 0xED ? 0x9F : high;
+		} else if (b >= 0xF0 && b <= 0xF4) {
+			length = 4;
+			low = b == 0xF0 ? 0x90 : low;
+			high = b == 0xF4 ? 0x8F : high;
+		} else {
+			return 0;
+		}
+		if (index + length > to) {
+			return 0;
+		}
+		for (int k = 1; k < length; k++) {
+			int next = input.get(index + k) & 0xFF;
+			if (next < (k == 1 ? low : 0x80) || next > (k == 1 ? high : 0xBF)) {
+				return 0;
+			}
+		}
+		return length;
+	}
+
+	/**
+	 * The index after the char at the given index in the buffer, or after the index if it is not at
+	 * the start of a char. No further than the limit of the buffer.
+	 */
+	static int nextChar(ByteBuffer input, int index) {
+		index++;
+		while (index < input.limit() && (input.get(index) & 0xC0) == 0x80) {
+			index++;
+		}
+		return index;
+	}
+
+	/**
+	 * The start of the char around the given index in the buffer, or the index if it is not inside
+	 * a char.
+	 */
+	static int charStart(ByteBuffer input, int index) {
+		for (int k = 0; k < 4 && index - k >= input.position(); k++) {
+			if ((input.get(index - k) & 0xC0) != 0x80) {
+				return index - k;
+			}
+		}
+		return index;
+	}
+
+	/**
+	 * The limit of the buffer, moved back to the start of a char the bytes before the limit do not
+	 * complete.
+	 */
+	static int completeLimit(ByteBuffer input) {
+		int limit = input.limit();
+		for (int k = 1; k <= 3 && limit - k >= input.position(); k++) {
+			int b = input.get(limit - k) & 0xFF;
+			if (b < 0x80 || b >= 0xC0) {
+				return b >= 0xC0 && (b >= 0xF0 ? 4 : b >= 0xE0 ? 3 : 2) > k ? limit - k : limit;
+			}
+		}
+		return limit;
+	}
+
+	/**
+	 * The index in the buffer of the char at the given index, or of the end of the bytes.
+	 */
+	int offset(int index) {
+		return offsets[index];
+	}
+
+	/**
+	 * The index of the first char starting at or after the given index in the buffer.
+	 */
+	int indexOf(int offset) {
+		int low = 0;
+		int high = length;
+		while (low < high) {
+			int middle = (low + high) >>> 1;
+			if (offsets[middle] < offset) {
+				low = middle + 1;
+			} else {
+				high = middle;
+			}
+		}
+		return low;
+	}
+
+	@Override
+	public int length() {
+		return length;
+	}
+
+	@Override
+	public char charAt(int index) {
+		if (index >= length) {
+			throw new IndexOutOfBoundsException(String.valueOf(index));
+		}
+		return chars[index];
+	}
+
+	@Override
+	public CharSequence subSequence(int start, int end) {
+		return new String(chars, start, end - start);
+	}
+
+	@Override
+	public String toString() {
+		return new String(chars, 0, length);
+	}
+}
@@ -0,0 +1,402 @@
+package com.github.sgreben.regex_builder.analysis;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.BitSet;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import com.github.sgreben.regex_builder.Expression;
+import com.github.sgreben.regex_builder.charclass.RangeSet;
+import com.github.sgreben.regex_builder.expression.Atomic;
+
+/**
+ * Estimates how badly a backtracking matcher such as {@link java.util.regex.Pattern} can
+ * backtrack on an expression, before the expression is ever matched.
+ *
+ * A backtracking matcher explores every way of matching a prefix of the input before it gives up.
+ * The number of ways is what makes matching slow, and it is read off the position automaton of the
+ * expression (see {@link PositionAutomaton}):
+ * <ul>
+ * <li>If some state can be left and re-entered along two different paths consuming the same
+ * characters, the number of ways doubles with every repetition of those characters: the
+ * complexity is exponential (e.g. "(a|a)*", "(a+)+").</li>
+ * <li>Otherwise, if a loop can consume some string, hand over to a later loop that consumes the same
+ * string, the matcher tries every split point between them: each such chain of k loops adds a
+ * polynomial of degree k (e.g. "a*a*" is quadratic, "\w*\d*\w*" cubic).</li>
+ * </ul>
+ * The complexity is that of a single match attempt that fails, as in {@code matches()}. A
+ * {@code find()} that tries every start position adds one to the degree.
+ *
+ * The analysis over-approximates: it may report a complexity that no input reaches, but it does
+ * not miss ambiguous loops in the parts of an expression it understands. Back references and raw
+ * fragments are treated as matching the empty string and are not analyzed.
+ */
+public class BacktrackingAnalyzer {
+	private static final long MAX_PRODUCT_STATES = 1 << 22;
+
+	private final PositionAutomaton automaton;
+	private final boolean anchored;
+	private final int[] component;
+	private final BitSet loops = new BitSet();
+	private final List<BitSet> successors = new ArrayList<BitSet>();
+	private final List<BitSet> predecessors = new ArrayList<BitSet>();
+	private final BitSet[] reachable;
+	private long productStates;
+
+	private BacktrackingAnalyzer(PositionAutomaton automaton, boolean anchored) {
+		this.automaton = automaton;
+		this.anchored = anchored;
+		this.component = StronglyConnected.components(automaton.stateCount(), new StronglyConnected.Successors() {
+			@Override
+			public int[] of(int state) {
+				return toArray(automaton.successors(state));
+			}
+		});
+		this.reachable = new BitSet[automaton.stateCount()];
+		for (int state = 0; state < automaton.stateCount(); state++) {
+			successors.add(automaton.successors(state));
+			predecessors.add(new BitSet());
+		}
+		for (int state = 0; state < automaton.stateCount(); state++) {
+			BitSet next = automaton.successors(state);
+			for (int s = next.nextSetBit(0); s >= 0; s = next.nextSetBit(s + 1)) {
+				predecessors.get(s).set(state);
+				if (component[s] == component[state]) {
+					loops.set(state);
+				}
+			}
+		}
+	}
+
+	public static BacktrackingReport analyze(Expression expression) {
+		return analyze(expression, 0);
+	}
+
+	/**
+	 * Analyzes the expression as compiled with the given {@link java.util.regex.Pattern} flags.
+	 */
+	public static BacktrackingReport analyze(Expression expression, int flags) {
+		return analyze(PositionAutomaton.of(expression, flags), true);
+	}
+
+	/**
+	 * Analyzes the automaton. If it is anchored, a match attempt can fail after any state;
+	 * otherwise it succeeds as soon as a final state is reached.
+	 */
+	static BacktrackingReport analyze(PositionAutomaton automaton, boolean anchored) {
+		BacktrackingReport worst = new BacktrackingAnalyzer(automaton, anchored).report();
+		for (BacktrackingReport nested : automaton.nestedReports()) {
+			if (nested.getComplexity().exceeds(worst.getComplexity())) {
+				worst = nested;
+			}
+		}
+		return worst;
+	}
+
+	private BacktrackingReport report() {
+		List<BitSet> components = loopComponents();
+		for (BitSet members : components) {
+			PositionAutomaton.Path ambiguous = ambiguousLoop(members);
+			if (ambiguous != null) {
+				return new BacktrackingReport(Complexity.EXPONENTIAL, enclosingRepetition(ambiguous).toList());
+			}
+		}
+		return polynomialReport(components);
+	}
+
+	private boolean canFailAfter(int state) {
+		return anchored || !automaton.isFinal(state);
+	}
+
+	/**
+	 * The states of each non-trivial strongly connected component, in reverse topological order.
+	 */
+	private List<BitSet> loopComponents() {
+		List<BitSet> components = new ArrayList<BitSet>();
+		int count = 0;
+		for (int c : component) {
+			count = Math.max(count, c + 1);
+		}
+		for (int i = 0; i < count; i++) {
+			components.add(null);
+		}
+		for (int state = loops.nextSetBit(0); state >= 0; state = loops.nextSetBit(state + 1)) {
+			BitSet members = components.get(component[state]);
+			if (members == null) {
+				members = new BitSet();
+				components.set(component[state], members);
+			}
+			members.set(state);
+		}
+		List<BitSet> result = new ArrayList<BitSet>();
+		for (BitSet members : components) {
+			if (members != null) {
+				result.add(members);
+			}
+		}
+		return result;
+	}
+
+	/**
+	 * Looks for two different paths from a state back to itself that consume the same characters.
+	 * Such paths leave the diagonal of the product of the component with itself and come back to
+	 * it, since all pairs of equal states of a component are reachable from each other. Returns the
+	 * node responsible for the second path, or null if there are no such paths.
+	 */
+	private PositionAutomaton.Path ambiguousLoop(BitSet members) {
+		int[] states = toArray(members);
+		boolean canFail = false;
+		for (int state : states) {
+			canFail |= canFailAfter(state);
+		}
+		if (!canFail) {
+			return null;
+		}
+		for (int a : states) {
+			for (int b : states) {
+				PositionAutomaton.Path twice = automaton.duplicateTransition(a, b);
+				if (twice != null) {
+					return twice;
+				}
+			}
+		}
+		// Explore the pairs reachable from the diagonal, then search back from the diagonal.
+		long n = automaton.stateCount();
+		Map<Long, List<Long>> predecessors = new HashMap<Long, List<Long>>();
+		ArrayDeque<Long> queue = new ArrayDeque<Long>();
+		for (int state : states) {
+			long pair = state * n + state;
+			predecessors.put(pair, new ArrayList<Long>());
+			queue.add(pair);
+		}
+		while (!queue.isEmpty()) {
+			if (predecessors.size() > MAX_PRODUCT_STATES) {
+				return commonAncestor(states);
+			}
+			long pair = queue.poll();
+			BitSet nextA = automaton.successors((int) (pair / n));
+			BitSet nextB = automaton.successors((int) (pair % n));
+			for (int c = nextA.nextSetBit(0); c >= 0; c = nextA.nextSetBit(c + 1)) {
+				if (!members.get(c)) {
+					continue;
+				}
+				for (int d = nextB.nextSetBit(0); d >= 0; d = nextB.nextSetBit(d + 1)) {
+					if (!members.get(d) || !automaton.charClass(c).intersects(automaton.charClass(d))) {
+						continue;
+					}
+					long next = c * n + d;
+					List<Long> incoming = predecessors.get(next);
+					if (incoming == null) {
+						incoming = new ArrayList<Long>();
+						predecessors.put(next, incoming);
+						queue.add(next);
+					}
+					incoming.add(pair);
+				}
+			}
+		}
+		Set<Long> seen = new HashSet<Long>();
+		for (int state : states) {
+			seen.add(state * n + state);
+			queue.add(state * n + state);
+		}
+		while (!queue.isEmpty()) {
+			for (long pair : predecessors.get(queue.poll())) {
+				int a = (int) (pair / n);
+				int b = (int) (pair % n);
+				if (a != b) {
+					return commonAncestor(new int[] {a, b});
+				}
+				if (seen.add(pair)) {
+					queue.add(pair);
+				}
+			}
+		}
+		return null;
+	}
+
+	/**
+	 * Builds the relation "a loop of component i can hand over the same string to a loop of
+	 * component j" and returns the longest chain of it.
+	 */
+	private BacktrackingReport polynomialReport(List<BitSet> components) {
+		int count = components.size();
+		List<BitSet> reachable = new ArrayList<BitSet>();
+		for (BitSet members : components) {
+			reachable.add(reachableFrom(members.nextSetBit(0)));
+		}
+		// Components are in reverse topological order, so chains lead to smaller indices.
+		int[] longest = new int[count];
+		int[] next = new int[count];
+		int[][] witness = new int[count][];
+		java.util.Arrays.fill(next, -1);
+		int best = -1;
+		for (int i = 0; i < count; i++) {
+			for (int j = 0; j < i; j++) {
+				if (longest[j] + 1 <= longest[i]
+						|| !reachable.get(i).intersects(components.get(j))) {
+					continue;
+				}
+				int[] pair = handover(components.get(i), components.get(j));
+				if (pair != null) {
+					longest[i] = longest[j] + 1;
+					next[i] = j;
+					witness[i] = pair;
+				}
+			}
+			if (longest[i] > 0 && (best < 0 || longest[i] > longest[best])) {
+				best = i;
+			}
+		}
+		if (best < 0) {
+			return BacktrackingReport.LINEAR;
+		}
+		int last = best;
+		while (next[next[last]] >= 0) {
+			last = next[last];
+		}
+		PositionAutomaton.Path path = PositionAutomaton.Path.commonAncestor(automaton.path(witness[best][0]),
+				automaton.path(witness[last][1]));
+		return new BacktrackingReport(Complexity.polynomial(longest[best] + 1), path.toList());
+	}
+
+	/**
+	 * Looks for states p of the first component and q of the second, and a string that leads from
+	 * p to p, from p to q and from q to q: a matcher that consumed that string repeatedly tries every
+	 * way of splitting the repetitions between the two loops. Returns {p, q}, or null.
+	 */
+	private int[] handover(BitSet from, BitSet to) {
+		for (int p = from.nextSetBit(0); p >= 0; p = from.nextSetBit(p + 1)) {
+			if (automaton.isBlock(p)) {
+				continue;
+			}
+			BitSet reachable = reachableFrom(p);
+			for (int q = to.nextSetBit(0); q >= 0; q = to.nextSetBit(q + 1)) {
+				if (reachable.get(q) && canFailAfter(q) && handsOver(p, q, from, to)) {
+					return new int[] {p, q};
+				}
+			}
+		}
+		return null;
+	}
+
+	/**
+	 * Searches the product of three copies of the automaton for a path from (p, p, q) to (p, q,
+	 * q). If the search exceeds its budget, the states are assumed to hand over.
+	 */
+	private boolean handsOver(int p, int q, BitSet from, BitSet to) {
+		BitSet between = (BitSet) reachableFrom(p).clone();
+		between.and(reaching(q));
+		long n = automaton.stateCount();
+		Set<Long> visited = new HashSet<Long>();
+		ArrayDeque<int[]> queue = new ArrayDeque<int[]>();
+		queue.add(new int[] {p, p, q});
+		visited.add(key(p, p, q, n));
+		while (!queue.isEmpty()) {
+			if (++productStates > MAX_PRODUCT_STATES) {
+				return true;
+			}
+			int[] state = queue.poll();
+			BitSet nextX = automaton.successors(state[0]);
+			BitSet nextY = automaton.successors(state[1]);
+			BitSet nextZ = automaton.successors(state[2]);
+			for (int x = nextX.nextSetBit(0); x >= 0; x = nextX.nextSetBit(x + 1)) {
+				if (!from.get(x)) {
+					continue;
+				}
+				for (int y = nextY.nextSetBit(0); y >= 0; y = nextY.nextSetBit(y + 1)) {
+					if (!between.get(y)) {
+						continue;
+					}
+					RangeSet common = automaton.charClass(x).intersection(automaton.charClass(y));
+					if (common.isEmpty()) {
+						continue;
+					}
+					for (int z = nextZ.nextSetBit(0); z >= 0; z = nextZ.nextSetBit(z + 1)) {
+						if (!to.get(z) || !common.intersects(automaton.charClass(z))) {
+							continue;
+						}
+						if (x == p && y == q && z == q) {
+							return true;
+						}
+						if (visited.add(key(x, y, z, n))) {
+							queue.add(new int[] {x, y, z});
+						}
+					}
+				}
+			}
+		}
+		return false;
+	}
+
+	private static long key(int x, int y, int z, long n) {
+		return (x * n + y) * n + z;
+	}
+
+	/**
+	 * The states reachable from the state, including itself.
+	 */
+	private BitSet reachableFrom(int state) {
+		if (reachable[state] == null) {
+			reachable[state] = search(state, successors);
+		}
+		return reachable[state];
+	}
+
+	/**
+	 * The states from which the state is reachable, including itself.
+	 */
+	private BitSet reaching(int state) {
+		return search(state, predecessors);
+	}
+
+	private static BitSet search(int state, List<BitSet> edges) {
+		BitSet seen = new BitSet();
+		ArrayDeque<Integer> queue = new ArrayDeque<Integer>();
+		seen.set(state);
+		queue.add(state);
+		while (!queue.isEmpty()) {
+			BitSet next = edges.get(queue.poll());
+			for (int s = next.nextSetBit(0); s >= 0; s = next.nextSetBit(s + 1)) {
+				if (!seen.get(s)) {
+					seen.set(s);
+					queue.add(s);
+				}
+			}
+		}
+		return seen;
+	}
+
+	private PositionAutomaton.Path commonAncestor(int[] states) {
+		PositionAutomaton.Path result = automaton.path(states[0]);
+		for (int state : states) {
+			result = PositionAutomaton.Path.commonAncestor(result, automaton.path(state));
+		}
+		return result;
+	}
+
+	/**
+	 * The innermost repetition containing the node, or the node itself if there is none.
+	 */
+	private static PositionAutomaton.Path enclosingRepetition(PositionAutomaton.Path path) {
+		for (PositionAutomaton.Path p = path; p != null; p = p.parent) {
+			Class<?> type = p.node.getClass();
+			if (PositionAutomaton.isQuantifier(type) || type == Atomic.class) {
+				return p;
+			}
+		}
+		return path;
+	}
+
+	private static int[] toArray(BitSet set) {
+		int[] result = new int[set.cardinality()];
+		int n = 0;
+		for (int i = set.nextSetBit(0); i >= 0; i = set.nextSetBit(i + 1)) {
+			result[n++] = i;
+		}
+		return result;
+	}
+}
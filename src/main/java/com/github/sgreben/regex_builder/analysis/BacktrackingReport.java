@@ -0,0 +1,62 @@
+package com.github.sgreben.regex_builder.analysis;
+
+import java.util.Collections;
+import java.util.List;
+import com.github.sgreben.regex_builder.Expression;
+
+/**
+ * The result of {@link BacktrackingAnalyzer}: the worst-case complexity of an expression, and the
+ * path from the root of the expression to the node responsible for it.
+ */
+public class BacktrackingReport {
+	static final BacktrackingReport LINEAR = new BacktrackingReport(Complexity.LINEAR,
+			Collections.<Expression>emptyList());
+
+	private final Complexity complexity;
+	private final List<Expression> path;
+
+	BacktrackingReport(Complexity complexity, List<Expression> path) {
+		this.complexity = complexity;
+		this.path = Collections.unmodifiableList(path);
+	}
+
+	public Complexity getComplexity() {
+		return complexity;
+	}
+
+	/**
+	 * The nodes from the root of the analyzed expression down to the offending node: for
+	 * exponential complexity, the innermost repetition that can match the same input in two ways;
+	 * for polynomial complexity, the smallest node containing the chain of repetitions that can
+	 * match the same input. Empty if the complexity is linear.
+	 */
+	public List<Expression> getPath() {
+		return path;
+	}
+
+	/**
+	 * The offending node, or null if the complexity is linear.
+	 */
+	public Expression getNode() {
+		return path.isEmpty() ? null : path.get(path.size() - 1);
+	}
+
+	/**
+	 * The path as the simple class names of its nodes, e.g. "Sequence > Repeat1 > Choice".
+	 */
+	public String describePath() {
+		StringBuilder sb = new StringBuilder();
+		for (Expression node : path) {
+			if (sb.length() > 0) {
+				sb.append(" > ");
+			}
+			sb.append(node.getClass().getSimpleName());
+		}
+		return sb.toString();
+	}
+
+	@Override
+	public String toString() {
+		return path.isEmpty() ? complexity.toString() : complexity + " at " + describePath();
+	}
+}
@@ -0,0 +1,80 @@
+package com.github.sgreben.regex_builder.analysis;
+
+/**
+ * The worst-case number of steps a backtracking matcher takes for one match attempt, as a function
+ * of the input length: linear, polynomial of some degree, or exponential. Complexities are ordered
+ * from linear to exponential.
+ */
+public final class Complexity implements Comparable<Complexity> {
+	public static final Complexity LINEAR = new Complexity(1);
+	public static final Complexity QUADRATIC = new Complexity(2);
+	public static final Complexity EXPONENTIAL = new Complexity(Integer.MAX_VALUE);
+
+	private final int degree;
+
+	private Complexity(int degree) {
+		this.degree = degree;
+	}
+
+	/**
+	 * The polynomial complexity of the given degree; degree 1 is {@link #LINEAR}.
+	 */
+	public static Complexity polynomial(int degree) {
+		if (degree < 1 || degree == Integer.MAX_VALUE) {
+			throw new IllegalArgumentException("invalid degree " + degree);
+		}
+		switch (degree) {
+		case 1:
+			return LINEAR;
+		case 2:
+			return QUADRATIC;
+		default:
+			return new Complexity(degree);
+		}
+	}
+
+	public boolean isLinear() {
+		return degree == 1;
+	}
+
+	public boolean isExponential() {
+		return degree == Integer.MAX_VALUE;
+	}
+
+	/**
+	 * The degree of the polynomial (1 for linear), or {@link Integer#MAX_VALUE} if exponential.
+	 */
+	public int getDegree() {
+		return degree;
+	}
+
+	public boolean exceeds(Complexity other) {
+		return compareTo(other) > 0;
+	}
+
+	@Override
+	public int compareTo(Complexity other) {
+		return Integer.compare(degree, other.degree);
+	}
+
+	@Override
+	public boolean equals(Object o) {
+		return o instanceof Complexity && ((Complexity) o).degree == degree;
+	}
+
+	@Override
+	public int hashCode() {
+		return degree;
+	}
+
+	@Override
+	public String toString() {
+		if (isLinear()) {
+			return "linear";
+		}
+		if (isExponential()) {
+			return "exponential";
+		}
+		return "polynomial of degree " + degree;
+	}
+}
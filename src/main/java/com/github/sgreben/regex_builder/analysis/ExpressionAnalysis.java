@@ -0,0 +1,263 @@
+package com.github.sgreben.regex_builder.analysis;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import com.github.sgreben.regex_builder.CharClass;
+import com.github.sgreben.regex_builder.Expression;
+import com.github.sgreben.regex_builder.charclass.BeginInput;
+import com.github.sgreben.regex_builder.charclass.EndInput;
+import com.github.sgreben.regex_builder.charclass.RangeSet;
+import com.github.sgreben.regex_builder.expression.Atomic;
+import com.github.sgreben.regex_builder.expression.BeginLine;
+import com.github.sgreben.regex_builder.expression.CharClassExpression;
+import com.github.sgreben.regex_builder.expression.Choice;
+import com.github.sgreben.regex_builder.expression.Expressions;
+import com.github.sgreben.regex_builder.expression.Literal;
+import com.github.sgreben.regex_builder.expression.Raw;
+import com.github.sgreben.regex_builder.expression.Sequence;
+import com.github.sgreben.regex_builder.expression.Unary;
+
+/**
+ * Facts about the strings matched by an expression, derived from the expression tree: bounds on
+ * the match length and on how far lookarounds read, whether matches are anchored at the start or
+ * end of the input, the characters a match can start with, and whether the language is finite. All facts are conservative: an
+ * unknown length is unbounded, an unknown first character may be any character.
+ */
+public class ExpressionAnalysis {
+	/**
+	 * Flags under which the regex does not match what the expression describes.
+	 */
+	private static final int UNSUPPORTED_FLAGS = java.util.regex.Pattern.LITERAL | java.util.regex.Pattern.CANON_EQ;
+
+	private static final ExpressionAnalysis UNKNOWN = new ExpressionAnalysis(0, Lengths.UNBOUNDED, Lengths.UNBOUNDED,
+			Lengths.UNBOUNDED, false, false, RangeSet.ALL);
+
+	private final int minLength;
+	private final int maxLength;
+	private final int maxLookbehind;
+	private final int maxLookahead;
+	private final boolean anchoredAtStart;
+	private final boolean anchoredAtEnd;
+	private final RangeSet firstChars;
+
+	private ExpressionAnalysis(int minLength, int maxLength, int maxLookbehind, int maxLookahead,
+			boolean anchoredAtStart, boolean anchoredAtEnd, RangeSet firstChars) {
+		this.minLength = minLength;
+		this.maxLength = maxLength;
+		this.maxLookbehind = maxLookbehind;
+		this.maxLookahead = maxLookahead;
+		this.anchoredAtStart = anchoredAtStart;
+		this.anchoredAtEnd = anchoredAtEnd;
+		this.firstChars = firstChars;
+	}
+
+	public static ExpressionAnalysis analyze(Expression expression) {
+		return analyze(expression, 0);
+	}
+
+	/**
+	 * Analyzes the expression as compiled with the given flags. Expressions with raw fragments are not
+	 * analyzed, since the fragments may set flags inline.
+	 */
+	public static ExpressionAnalysis analyze(Expression expression, int flags) {
+		if ((flags & UNSUPPORTED_FLAGS) != 0 || contains(expression, Raw.class)) {
+			return UNKNOWN;
+		}
+		int minLength = Lengths.min(expression, flags);
+		RangeSet firstChars = RangeSet.ALL;
+		if (minLength > 0 && RangeSet.isEvaluable(flags)) {
+			firstChars = firstChars(expression, flags);
+		}
+		return new ExpressionAnalysis(minLength, Lengths.max(expression, flags),
+				Lengths.lookaround(expression, flags, true), Lengths.lookaround(expression, flags, false),
+				isAnchored(expression, flags, true), isAnchored(expression, flags, false), firstChars);
+	}
+
+	/**
+	 * The minimal length of a match, in chars.
+	 */
+	public int getMinLength() {
+		return minLength;
+	}
+
+	/**
+	 * The maximal length of a match, in chars, or -1 if it is unbounded or unknown.
+	 */
+	public int getMaxLength() {
+		return maxLength;
+	}
+
+	/**
+	 * The most chars before the start of a match that its lookbehinds read, or -1 if unbounded or
+	 * unknown. Anchors and boundaries, which read the char before, are not counted.
+	 */
+	public int getMaxLookbehind() {
+		return maxLookbehind;
+	}
+
+	/**
+	 * The most chars after the end of a match that its lookaheads read, or -1 if unbounded or
+	 * unknown. Anchors and boundaries, which read up to two chars after, are not counted.
+	 */
+	public int getMaxLookahead() {
+		return maxLookahead;
+	}
+
+	/**
+	 * Whether every match starts at the beginning of the input ("\A", or "^" without MULTILINE).
+	 */
+	public boolean isAnchoredAtStart() {
+		return anchoredAtStart;
+	}
+
+	/**
+	 * Whether every match ends at the end of the input ("\z").
+	 */
+	public boolean isAnchoredAtEnd() {
+		return anchoredAtEnd;
+	}
+
+	/**
+	 * The code points a match can start with. All code points if the expression can match the empty
+	 * string, or if the set is unknown.
+	 */
+	public RangeSet getFirstChars() {
+		return firstChars;
+	}
+
+	/**
+	 * Whether the expression matches finitely many strings. False if this is unknown, e.g. for
+	 * expressions with back references.
+	 */
+	public boolean isFinite() {
+		return maxLength != Lengths.UNBOUNDED;
+	}
+
+	/**
+	 * Whether an input of the given length may match the whole expression.
+	 */
+	public boolean admitsLength(int length) {
+		return length >= minLength && (maxLength == Lengths.UNBOUNDED || length <= maxLength);
+	}
+
+	/**
+	 * Whether every match of the node starts (or ends) at the start (or end) of the input.
+	 */
+	private static boolean isAnchored(Expression node, int flags, boolean atStart) {
+		Class<?> type = node.getClass();
+		if (type == Sequence.class) {
+			List<Expression> children = new ArrayList<Expression>();
+			for (Expression child : node.children()) {
+				children.add(child);
+			}
+			if (!atStart) {
+				Collections.reverse(children);
+			}
+			for (Expression child : children) {
+				if (isAnchored(child, flags, atStart)) {
+					return true;
+				}
+				if (Lengths.max(child, flags) != 0) {
+					return false;
+				}
+			}
+			return false;
+		}
+		if (type == Choice.class) {
+			boolean any = false;
+			for (Expression child : node.children()) {
+				if (!isAnchored(child, flags, atStart)) {
+					return false;
+				}
+				any = true;
+			}
+			return any;
+		}
+		if (Expressions.isWrapper(node) || type == Atomic.class) {
+			return isAnchored(node.children().iterator().next(), flags, atStart);
+		}
+		if (PositionAutomaton.isQuantifier(type)) {
+			Unary quantifier = (Unary) node;
+			return PositionAutomaton.minIterations(quantifier) > 0 && isAnchored(quantifier.child(), flags, atStart);
+		}
+		if (type == CharClassExpression.class) {
+			Class<?> charClass = ((CharClassExpression) node).getCharClass().getClass();
+			return charClass == (atStart ? BeginInput.class : EndInput.class);
+		}
+		if (type == BeginLine.class) {
+			return atStart && (flags & java.util.regex.Pattern.MULTILINE) == 0;
+		}
+		return false;
+	}
+
+	/**
+	 * The code points a non-empty match of the node can start with (all code points if unknown).
+	 */
+	private static RangeSet firstChars(Expression node, int flags) {
+		Class<?> type = node.getClass();
+		if (type == Sequence.class) {
+			RangeSet result = RangeSet.EMPTY;
+			for (Expression child : node.children()) {
+				result = result.union(firstChars(child, flags));
+				if (result.isFull() || Lengths.min(child, flags) > 0) {
+					break;
+				}
+			}
+			return result;
+		}
+		if (type == Choice.class) {
+			RangeSet result = RangeSet.EMPTY;
+			for (Expression child : node.children()) {
+				result = result.union(firstChars(child, flags));
+			}
+			return result;
+		}
+		if (Expressions.isWrapper(node) || type == Atomic.class || PositionAutomaton.isQuantifier(type)) {
+			return firstChars(node.children().iterator().next(), flags);
+		}
+		if (type == Literal.class) {
+			String literal = ((Literal) node).getLiteral();
+			if (literal.isEmpty()) {
+				return RangeSet.EMPTY;
+			}
+			int c = literal.codePointAt(0);
+			return RangeSet.of(c, c);
+		}
+		if (type == CharClassExpression.class) {
+			CharClass charClass = ((CharClassExpression) node).getCharClass();
+			if (PositionAutomaton.isZeroWidth(charClass)) {
+				return RangeSet.EMPTY;
+			}
+			RangeSet set = charClass.toRangeSet(flags & (java.util.regex.Pattern.DOTALL | java.util.regex.Pattern.UNIX_LINES));
+			return set == null ? RangeSet.ALL : set;
+		}
+		if (Lengths.isZeroWidth(type)) {
+			return RangeSet.EMPTY;
+		}
+		// Back references, raw fragments
+		return RangeSet.ALL;
+	}
+
+	/**
+	 * Whether the expression contains a node of the given type.
+	 */
+	static boolean contains(Expression node, Class<? extends Expression> type) {
+		if (node.getClass() == type) {
+			return true;
+		}
+		for (Expression child : node.children()) {
+			if (contains(child, type)) {
+				return true;
+			}
+		}
+		return false;
+	}
+
+	@Override
+	public String toString() {
+		return "length " + minLength + ".." + (maxLength == Lengths.UNBOUNDED ? "" : Integer.toString(maxLength))
+				+ (anchoredAtStart ? ", anchored at start" : "") + (anchoredAtEnd ? ", anchored at end" : "")
+				+ (firstChars.isFull() ? "" : ", first chars " + firstChars);
+	}
+}
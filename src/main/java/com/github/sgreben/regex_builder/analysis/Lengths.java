@@ -0,0 +1,185 @@
+package com.github.sgreben.regex_builder.analysis;
+
+import com.github.sgreben.regex_builder.CharClass;
+import com.github.sgreben.regex_builder.Expression;
+import com.github.sgreben.regex_builder.charclass.RangeSet;
+import com.github.sgreben.regex_builder.expression.Atomic;
+import com.github.sgreben.regex_builder.expression.BeginLine;
+import com.github.sgreben.regex_builder.expression.CharClassExpression;
+import com.github.sgreben.regex_builder.expression.Choice;
+import com.github.sgreben.regex_builder.expression.EndLine;
+import com.github.sgreben.regex_builder.expression.Expressions;
+import com.github.sgreben.regex_builder.expression.Literal;
+import com.github.sgreben.regex_builder.expression.NegativeLookahead;
+import com.github.sgreben.regex_builder.expression.NegativeLookbehind;
+import com.github.sgreben.regex_builder.expression.PositiveLookahead;
+import com.github.sgreben.regex_builder.expression.PositiveLookbehind;
+import com.github.sgreben.regex_builder.expression.Sequence;
+import com.github.sgreben.regex_builder.expression.Unary;
+
+/**
+ * Bounds on the number of chars (UTF-16 code units) matched by an expression.
+ */
+class Lengths {
+	static final int UNBOUNDED = -1;
+
+	private static final RangeSet SUPPLEMENTARY = RangeSet.of(Character.MIN_SUPPLEMENTARY_CODE_POINT,
+			RangeSet.MAX_CODE_POINT);
+
+	private Lengths() {
+	}
+
+	/**
+	 * The minimal length of a match of the expression.
+	 */
+	static int min(Expression node, int flags) {
+		if ((flags & java.util.regex.Pattern.CANON_EQ) != 0) {
+			return 0;
+		}
+		Class<?> type = node.getClass();
+		if (type == Sequence.class) {
+			int result = 0;
+			for (Expression child : node.children()) {
+				result = saturatedAdd(result, min(child, flags));
+			}
+			return result;
+		}
+		if (type == Choice.class) {
+			int result = -1;
+			for (Expression child : node.children()) {
+				int branch = min(child, flags);
+				result = result < 0 ? branch : Math.min(result, branch);
+			}
+			return Math.max(result, 0);
+		}
+		if (Expressions.isWrapper(node) || type == Atomic.class) {
+			return min(node.children().iterator().next(), flags);
+		}
+		if (type == Literal.class) {
+			return ((Literal) node).getLiteral().length();
+		}
+		if (type == CharClassExpression.class) {
+			return PositionAutomaton.isZeroWidth(((CharClassExpression) node).getCharClass()) ? 0 : 1;
+		}
+		if (PositionAutomaton.isQuantifier(type)) {
+			Unary quantifier = (Unary) node;
+			long result = (long) min(quantifier.child(), flags) * PositionAutomaton.minIterations(quantifier);
+			return (int) Math.min(result, Integer.MAX_VALUE);
+		}
+		// Zero-width nodes, back references (which may refer to an empty group), raw fragments
+		return 0;
+	}
+
+	/**
+	 * The maximal length of a match of the expression, or {@link #UNBOUNDED}.
+	 */
+	static int max(Expression node, int flags) {
+		if ((flags & java.util.regex.Pattern.CANON_EQ) != 0) {
+			return UNBOUNDED;
+		}
+		Class<?> type = node.getClass();
+		if (type == Sequence.class) {
+			int result = 0;
+			for (Expression child : node.children()) {
+				result = add(result, max(child, flags));
+			}
+			return result;
+		}
+		if (type == Choice.class) {
+			int result = 0;
+			for (Expression child : node.children()) {
+				int branch = max(child, flags);
+				if (branch == UNBOUNDED) {
+					return UNBOUNDED;
+				}
+				result = Math.max(result, branch);
+			}
+			return result;
+		}
+		if (Expressions.isWrapper(node) || type == Atomic.class) {
+			return max(node.children().iterator().next(), flags);
+		}
+		if (type == Literal.class) {
+			return ((Literal) node).getLiteral().length();
+		}
+		if (type == CharClassExpression.class) {
+			return maxCharLength(((CharClassExpression) node).getCharClass(), flags);
+		}
+		if (PositionAutomaton.isQuantifier(type)) {
+			Unary quantifier = (Unary) node;
+			int body = max(quantifier.child(), flags);
+			int iterations = PositionAutomaton.maxIterations(quantifier);
+			if (body == 0 || iterations == 0) {
+				return 0;
+			}
+			return multiply(body, iterations);
+		}
+		if (isZeroWidth(type)) {
+			return 0;
+		}
+		// Back references, raw fragments
+		return UNBOUNDED;
+	}
+
+	/**
+	 * The most chars before the start of a match (or after its end, if not behind) that the
+	 * lookbehinds (or lookaheads) in the expression read, or {@link #UNBOUNDED}.
+	 */
+	static int lookaround(Expression node, int flags, boolean behind) {
+		if ((flags & java.util.regex.Pattern.CANON_EQ) != 0) {
+			return UNBOUNDED;
+		}
+		int result = 0;
+		for (Expression child : node.children()) {
+			int reach = lookaround(child, flags, behind);
+			if (reach == UNBOUNDED) {
+				return UNBOUNDED;
+			}
+			result = Math.max(result, reach);
+		}
+		Class<?> type = node.getClass();
+		if (behind ? type == PositiveLookbehind.class || type == NegativeLookbehind.class
+				: type == PositiveLookahead.class || type == NegativeLookahead.class) {
+			// A lookaround inside the body reads from where the body does.
+			return add(result, max(node.children().iterator().next(), flags));
+		}
+		return result;
+	}
+
+	static boolean isZeroWidth(Class<?> type) {
+		return type == PositiveLookahead.class || type == NegativeLookahead.class || type == PositiveLookbehind.class
+				|| type == NegativeLookbehind.class || type == BeginLine.class || type == EndLine.class;
+	}
+
+	/**
+	 * The number of chars consumed by the class: two if it may match a supplementary code point.
+	 */
+	static int maxCharLength(CharClass charClass, int flags) {
+		if (PositionAutomaton.isZeroWidth(charClass)) {
+			return 0;
+		}
+		RangeSet set = charClass.toRangeSet(flags & (java.util.regex.Pattern.DOTALL | java.util.regex.Pattern.UNIX_LINES));
+		if (set == null || !RangeSet.isEvaluable(flags)) {
+			return 2;
+		}
+		return set.intersects(SUPPLEMENTARY) ? 2 : 1;
+	}
+
+	private static int saturatedAdd(int a, int b) {
+		return (int) Math.min((long) a + b, Integer.MAX_VALUE);
+	}
+
+	static int add(int a, int b) {
+		if (a == UNBOUNDED || b == UNBOUNDED || (long) a + b > Integer.MAX_VALUE) {
+			return UNBOUNDED;
+		}
+		return a + b;
+	}
+
+	static int multiply(int a, int b) {
+		if (a == UNBOUNDED || b == UNBOUNDED || (long) a * b > Integer.MAX_VALUE) {
+			return UNBOUNDED;
+		}
+		return a * b;
+	}
+}
@@ -0,0 +1,481 @@
+package com.github.sgreben.regex_builder.analysis;
+
+import java.util.ArrayList;
+import java.util.BitSet;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import com.github.sgreben.regex_builder.CharClass;
+import com.github.sgreben.regex_builder.Expression;
+import com.github.sgreben.regex_builder.charclass.BeginInput;
+import com.github.sgreben.regex_builder.charclass.EndInput;
+import com.github.sgreben.regex_builder.charclass.EndInputBeforeFinalTerminator;
+import com.github.sgreben.regex_builder.charclass.NonWordBoundary;
+import com.github.sgreben.regex_builder.charclass.RangeSet;
+import com.github.sgreben.regex_builder.charclass.WordBoundary;
+import com.github.sgreben.regex_builder.expression.Atomic;
+import com.github.sgreben.regex_builder.expression.CharClassExpression;
+import com.github.sgreben.regex_builder.expression.Choice;
+import com.github.sgreben.regex_builder.expression.Expressions;
+import com.github.sgreben.regex_builder.expression.Literal;
+import com.github.sgreben.regex_builder.expression.NegativeLookahead;
+import com.github.sgreben.regex_builder.expression.NegativeLookbehind;
+import com.github.sgreben.regex_builder.expression.Optional;
+import com.github.sgreben.regex_builder.expression.OptionalPossessive;
+import com.github.sgreben.regex_builder.expression.PositiveLookahead;
+import com.github.sgreben.regex_builder.expression.PositiveLookbehind;
+import com.github.sgreben.regex_builder.expression.Repeat;
+import com.github.sgreben.regex_builder.expression.Repeat1;
+import com.github.sgreben.regex_builder.expression.Repeat1Possessive;
+import com.github.sgreben.regex_builder.expression.RepeatAtLeast;
+import com.github.sgreben.regex_builder.expression.RepeatAtLeastPossessive;
+import com.github.sgreben.regex_builder.expression.RepeatPossessive;
+import com.github.sgreben.regex_builder.expression.Sequence;
+import com.github.sgreben.regex_builder.expression.Unary;
+
+/**
+ * The position (Glushkov) automaton of an expression, as seen by a backtracking matcher: one state
+ * per character-consuming leaf, plus the initial state 0. Entering a state consumes one character
+ * of its class. Two paths through the automaton with the same labels are two ways for a
+ * backtracking matcher to match the same input.
+ *
+ * The automaton over-approximates what the matcher can do:
+ * <ul>
+ * <li>Bounded repetitions are unrolled into at most {@link #MAX_COPIES} copies of their operand;
+ * upper bounds above {@link #UNBOUNDED_FROM} are treated as unbounded.</li>
+ * <li>Anchors, boundaries, lookarounds, back references and raw fragments match the empty string.
+ * </li>
+ * <li>Atomic groups and possessive repetitions are never backtracked into, so they become a single
+ * state (with a loop if they can consume more than one character). Their contents are analyzed
+ * separately, as a nested automaton that ends by accepting.</li>
+ * </ul>
+ */
+class PositionAutomaton {
+	static final int MAX_COPIES = 3;
+	static final int UNBOUNDED_FROM = 16;
+	private static final int MAX_POSITIONS = 4096;
+
+	private static final int CASE_FLAGS = java.util.regex.Pattern.CASE_INSENSITIVE
+			| java.util.regex.Pattern.UNICODE_CASE;
+
+	/**
+	 * The chain of nodes from the root to a leaf.
+	 */
+	static final class Path {
+		final Expression node;
+		final Path parent;
+		final int depth;
+
+		Path(Expression node, Path parent) {
+			this.node = node;
+			this.parent = parent;
+			this.depth = parent == null ? 0 : parent.depth + 1;
+		}
+
+		List<Expression> toList() {
+			List<Expression> nodes = new ArrayList<Expression>();
+			for (Path p = this; p != null; p = p.parent) {
+				nodes.add(0, p.node);
+			}
+			return nodes;
+		}
+
+		static Path commonAncestor(Path a, Path b) {
+			while (a.depth > b.depth) {
+				a = a.parent;
+			}
+			while (b.depth > a.depth) {
+				b = b.parent;
+			}
+			while (a != b) {
+				a = a.parent;
+				b = b.parent;
+			}
+			return a;
+		}
+	}
+
+	/**
+	 * The first and last states of a sub-expression, and whether it matches the empty string.
+	 */
+	private static final class Fragment {
+		final BitSet first;
+		final BitSet last;
+		final boolean nullable;
+
+		Fragment(BitSet first, BitSet last, boolean nullable) {
+			this.first = first;
+			this.last = last;
+			this.nullable = nullable;
+		}
+	}
+
+	private final int flags;
+	private final int evaluationFlags;
+	private final List<RangeSet> classes = new ArrayList<RangeSet>();
+	private final List<Path> paths = new ArrayList<Path>();
+	private final List<BitSet> follow = new ArrayList<BitSet>();
+	private final BitSet blocks = new BitSet();
+	private final Map<Long, Path> duplicates = new HashMap<Long, Path>();
+	private final List<BacktrackingReport> nested = new ArrayList<BacktrackingReport>();
+	private final Map<RangeSet, RangeSet> caseClosures;
+	private BitSet last;
+	private boolean nullable;
+
+	private PositionAutomaton(int flags, Map<RangeSet, RangeSet> caseClosures) {
+		this.flags = flags;
+		this.evaluationFlags = flags & (java.util.regex.Pattern.DOTALL | java.util.regex.Pattern.UNIX_LINES);
+		this.caseClosures = caseClosures;
+		classes.add(null);
+		paths.add(null);
+		follow.add(new BitSet());
+	}
+
+	/**
+	 * The automaton of the given expression.
+	 */
+	static PositionAutomaton of(Expression node, int flags) {
+		PositionAutomaton automaton = new PositionAutomaton(flags, new HashMap<RangeSet, RangeSet>());
+		automaton.finish(automaton.build(node, null));
+		return automaton;
+	}
+
+	/**
+	 * The automaton of the contents of an atomic group, possessive repetition or lookaround, whose
+	 * node has the given path.
+	 */
+	private PositionAutomaton nestedAutomaton(Path path) {
+		PositionAutomaton automaton = new PositionAutomaton(flags, caseClosures);
+		Expression node = path.node;
+		Fragment fragment;
+		if (node instanceof Unary && !isQuantifier(node.getClass())) {
+			fragment = automaton.build(((Unary) node).child(), path);
+		} else {
+			fragment = automaton.buildQuantifier((Unary) node, path);
+		}
+		automaton.finish(fragment);
+		return automaton;
+	}
+
+	private void finish(Fragment fragment) {
+		follow.get(0).or(fragment.first);
+		last = fragment.last;
+		nullable = fragment.nullable;
+	}
+
+	int stateCount() {
+		return classes.size();
+	}
+
+	/**
+	 * The class of characters consumed on entering the state (null for the initial state).
+	 */
+	RangeSet charClass(int state) {
+		return classes.get(state);
+	}
+
+	Path path(int state) {
+		return paths.get(state);
+	}
+
+	BitSet successors(int state) {
+		return follow.get(state);
+	}
+
+	/**
+	 * Whether the state stands for an atomic group or possessive repetition. Such a state consumes
+	 * as much as it can and never gives characters back.
+	 */
+	boolean isBlock(int state) {
+		return blocks.get(state);
+	}
+
+	/**
+	 * If the transition between the states can be taken in more than one way, the node that added
+	 * the second way; otherwise null.
+	 */
+	Path duplicateTransition(int from, int to) {
+		return duplicates.isEmpty() ? null : duplicates.get(((long) from << 32) | to);
+	}
+
+	/**
+	 * Whether the expression may end after entering the state.
+	 */
+	boolean isFinal(int state) {
+		return state == 0 ? nullable : last.get(state);
+	}
+
+	/**
+	 * The reports of nested automata (atomic groups, possessive repetitions and lookarounds).
+	 */
+	List<BacktrackingReport> nestedReports() {
+		return nested;
+	}
+
+	private Fragment build(Expression node, Path parent) {
+		Path path = new Path(node, parent);
+		Class<?> type = node.getClass();
+		if (type == Sequence.class) {
+			Fragment result = empty();
+			for (Expression child : node.children()) {
+				result = concat(result, build(child, path), path);
+			}
+			return result;
+		}
+		if (type == Choice.class) {
+			Fragment result = null;
+			for (Expression child : node.children()) {
+				Fragment branch = build(child, path);
+				result = result == null ? branch : union(result, branch);
+			}
+			return result == null ? empty() : result;
+		}
+		if (Expressions.isWrapper(node)) {
+			return build(node.children().iterator().next(), path);
+		}
+		if (type == Literal.class) {
+			String literal = ((Literal) node).getLiteral();
+			Fragment result = empty();
+			for (int i = 0; i < literal.length(); i += Character.charCount(literal.codePointAt(i))) {
+				int c = literal.codePointAt(i);
+				result = concat(result, state(foldCase(RangeSet.of(c, c)), path), path);
+			}
+			return result;
+		}
+		if (type == CharClassExpression.class) {
+			CharClass charClass = ((CharClassExpression) node).getCharClass();
+			if (isZeroWidth(charClass)) {
+				return empty();
+			}
+			RangeSet set = charClass.toRangeSet(evaluationFlags);
+			return state(set == null ? RangeSet.ALL : foldCase(set), path);
+		}
+		if (type == Atomic.class || type == RepeatPossessive.class || type == Repeat1Possessive.class
+				|| type == RepeatAtLeastPossessive.class || type == OptionalPossessive.class) {
+			return block(path);
+		}
+		if (isQuantifier(type)) {
+			return buildQuantifier((Unary) node, path);
+		}
+		if (type == PositiveLookahead.class || type == NegativeLookahead.class) {
+			analyzeContents(path, false);
+			return empty();
+		}
+		if (type == PositiveLookbehind.class || type == NegativeLookbehind.class) {
+			analyzeContents(path, true);
+			return empty();
+		}
+		return empty();
+	}
+
+	/**
+	 * Builds a repetition as if it were greedy.
+	 */
+	private Fragment buildQuantifier(Unary node, Path path) {
+		int min = minIterations(node);
+		int max = maxIterations(node);
+		if (max > UNBOUNDED_FROM && max > min) {
+			max = -1;
+		}
+		int copies = classes.size() > MAX_POSITIONS / MAX_COPIES ? 1 : MAX_COPIES;
+		min = Math.min(min, copies);
+		max = max < 0 ? -1 : Math.min(max, copies);
+		Expression body = node.child();
+		Fragment result = empty();
+		for (int i = 0; i < min; i++) {
+			Fragment copy = build(body, path);
+			if (i == min - 1 && max < 0) {
+				copy = loop(copy, path);
+			}
+			result = concat(result, copy, path);
+		}
+		if (max < 0 && min == 0) {
+			Fragment copy = loop(build(body, path), path);
+			result = concat(result, new Fragment(copy.first, copy.last, true), path);
+		}
+		for (int i = min; i < max; i++) {
+			Fragment copy = build(body, path);
+			result = concat(result, new Fragment(copy.first, copy.last, true), path);
+		}
+		return result;
+	}
+
+	/**
+	 * Analyzes the contents of the node as a nested automaton. Lookbehinds are matched up to the
+	 * current position, so their contents are analyzed as if anchored at the end; lookaheads, atomic
+	 * groups and possessive repetitions stop backtracking once their contents match, so theirs are
+	 * analyzed as ending by accepting.
+	 */
+	private PositionAutomaton analyzeContents(Path path, boolean anchored) {
+		PositionAutomaton contents = nestedAutomaton(path);
+		nested.add(BacktrackingAnalyzer.analyze(contents, anchored));
+		return contents;
+	}
+
+	/**
+	 * A node that is never backtracked into: a single state consuming any character its contents
+	 * may consume.
+	 */
+	private Fragment block(Path path) {
+		PositionAutomaton contents = analyzeContents(path, false);
+		RangeSet consumed = RangeSet.EMPTY;
+		boolean repeats = false;
+		for (int state = 1; state < contents.stateCount(); state++) {
+			consumed = consumed.union(contents.charClass(state));
+			repeats |= !contents.successors(state).isEmpty();
+		}
+		if (consumed.isEmpty()) {
+			return empty();
+		}
+		Fragment state = state(consumed, path);
+		int index = state.first.nextSetBit(0);
+		blocks.set(index);
+		if (repeats) {
+			// Consuming more than one character is not a choice of the matcher.
+			follow.get(index).set(index);
+		}
+		return new Fragment(state.first, state.last, contents.isFinal(0));
+	}
+
+	private Fragment state(RangeSet charClass, Path path) {
+		int state = classes.size();
+		classes.add(charClass);
+		paths.add(path);
+		follow.add(new BitSet());
+		BitSet singleton = new BitSet();
+		singleton.set(state);
+		return new Fragment(singleton, singleton, false);
+	}
+
+	private static Fragment empty() {
+		return new Fragment(new BitSet(), new BitSet(), true);
+	}
+
+	private Fragment concat(Fragment a, Fragment b, Path path) {
+		for (int i = a.last.nextSetBit(0); i >= 0; i = a.last.nextSetBit(i + 1)) {
+			addFollow(i, b.first, path);
+		}
+		BitSet first = (BitSet) a.first.clone();
+		if (a.nullable) {
+			first.or(b.first);
+		}
+		BitSet last = (BitSet) b.last.clone();
+		if (b.nullable) {
+			last.or(a.last);
+		}
+		return new Fragment(first, last, a.nullable && b.nullable);
+	}
+
+	private static Fragment union(Fragment a, Fragment b) {
+		BitSet first = (BitSet) a.first.clone();
+		first.or(b.first);
+		BitSet last = (BitSet) a.last.clone();
+		last.or(b.last);
+		return new Fragment(first, last, a.nullable || b.nullable);
+	}
+
+	private Fragment loop(Fragment a, Path path) {
+		for (int i = a.last.nextSetBit(0); i >= 0; i = a.last.nextSetBit(i + 1)) {
+			addFollow(i, a.first, path);
+		}
+		return a;
+	}
+
+	/**
+	 * Adds transitions from the state to the given states, added by the node with the given path.
+	 * A transition that is added a second time is a second way for the matcher to go from one
+	 * character to the next, e.g. by another iteration of either the inner or the outer loop in
+	 * "(a+)+".
+	 */
+	private void addFollow(int state, BitSet states, Path path) {
+		BitSet successors = follow.get(state);
+		if (successors.intersects(states)) {
+			BitSet twice = (BitSet) successors.clone();
+			twice.and(states);
+			if (blocks.get(state)) {
+				// A block consumes all it can, so repeating it is the only way to consume more.
+				twice.clear(state);
+			}
+			for (int next = twice.nextSetBit(0); next >= 0; next = twice.nextSetBit(next + 1)) {
+				duplicates.put(((long) state << 32) | next, path);
+			}
+		}
+		successors.or(states);
+	}
+
+	static boolean isZeroWidth(CharClass charClass) {
+		Class<?> type = charClass.getClass();
+		return type == BeginInput.class || type == EndInput.class || type == EndInputBeforeFinalTerminator.class
+				|| type == WordBoundary.class || type == NonWordBoundary.class;
+	}
+
+	/**
+	 * The characters matched by the set under case-insensitive matching.
+	 */
+	private RangeSet foldCase(final RangeSet set) {
+		if ((flags & java.util.regex.Pattern.CASE_INSENSITIVE) == 0) {
+			return set;
+		}
+		if (set.rangeCount() == 1 && set.getRanges()[0] == set.getRanges()[1]) {
+			int c = set.getRanges()[0];
+			return RangeSet.of(c, c, Character.toLowerCase(c), Character.toLowerCase(c), Character.toUpperCase(c),
+					Character.toUpperCase(c), Character.toTitleCase(c), Character.toTitleCase(c));
+		}
+		RangeSet closure = caseClosures.get(set);
+		if (closure == null) {
+			if ((flags & CASE_FLAGS) == CASE_FLAGS) {
+				closure = set.union(RangeSet.matching(c -> set.contains(Character.toLowerCase(c))
+						|| set.contains(Character.toUpperCase(c)) || set.contains(Character.toTitleCase(c))));
+			} else {
+				RangeSet upper = set.intersection(RangeSet.of('A', 'Z'));
+				RangeSet lower = set.intersection(RangeSet.of('a', 'z'));
+				closure = set.union(shift(upper, 'a' - 'A')).union(shift(lower, 'A' - 'a'));
+			}
+			caseClosures.put(set, closure);
+		}
+		return closure;
+	}
+
+	private static RangeSet shift(RangeSet set, int offset) {
+		int[] ranges = set.getRanges();
+		for (int i = 0; i < ranges.length; i++) {
+			ranges[i] += offset;
+		}
+		return RangeSet.of(ranges);
+	}
+
+	static boolean isQuantifier(Class<?> type) {
+		return Repeat.class.isAssignableFrom(type) || Repeat1.class.isAssignableFrom(type)
+				|| RepeatAtLeast.class.isAssignableFrom(type) || Optional.class.isAssignableFrom(type);
+	}
+
+	static int minIterations(Unary node) {
+		if (node instanceof Repeat) {
+			Repeat repeat = (Repeat) node;
+			Integer lower = repeat.getLowerBound() != null ? repeat.getLowerBound() : repeat.getUpperBound();
+			return lower != null ? lower : 0;
+		}
+		if (node instanceof RepeatAtLeast) {
+			return ((RepeatAtLeast) node).getLowerBound();
+		}
+		if (node instanceof Repeat1) {
+			return 1;
+		}
+		return 0;
+	}
+
+	/**
+	 * The maximal number of iterations, or -1 if unbounded.
+	 */
+	static int maxIterations(Unary node) {
+		if (node instanceof Repeat) {
+			Repeat repeat = (Repeat) node;
+			Integer upper = repeat.getUpperBound() != null ? repeat.getUpperBound() : repeat.getLowerBound();
+			return upper != null ? upper : -1;
+		}
+		if (node instanceof Optional) {
+			return 1;
+		}
+		return -1;
+	}
+}
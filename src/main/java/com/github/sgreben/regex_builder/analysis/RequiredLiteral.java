@@ -0,0 +1,45 @@
+package com.github.sgreben.regex_builder.analysis;
+
+/**
+ * A literal that every match of an expression contains (see {@link RequiredLiterals}).
+ */
+public class RequiredLiteral {
+	private final String literal;
+	private final int maxOffset;
+
+	RequiredLiteral(String literal, int maxOffset) {
+		this.literal = literal;
+		this.maxOffset = maxOffset;
+	}
+
+	public String getLiteral() {
+		return literal;
+	}
+
+	/**
+	 * A bound on the distance from the start of a match to the start of an occurrence of the literal
+	 * in the match, or -1 if there is none.
+	 */
+	public int getMaxOffset() {
+		return maxOffset;
+	}
+
+	@Override
+	public boolean equals(Object o) {
+		if (!(o instanceof RequiredLiteral)) {
+			return false;
+		}
+		RequiredLiteral other = (RequiredLiteral) o;
+		return literal.equals(other.literal) && maxOffset == other.maxOffset;
+	}
+
+	@Override
+	public int hashCode() {
+		return 31 * literal.hashCode() + maxOffset;
+	}
+
+	@Override
+	public String toString() {
+		return maxOffset < 0 ? '"' + literal + '"' : '"' + literal + "\" at offset <= " + maxOffset;
+	}
+}
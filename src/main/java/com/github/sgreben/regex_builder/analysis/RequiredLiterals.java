@@ -0,0 +1,139 @@
+package com.github.sgreben.regex_builder.analysis;
+
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import com.github.sgreben.regex_builder.Expression;
+import com.github.sgreben.regex_builder.expression.Atomic;
+import com.github.sgreben.regex_builder.expression.Choice;
+import com.github.sgreben.regex_builder.expression.Expressions;
+import com.github.sgreben.regex_builder.expression.Literal;
+import com.github.sgreben.regex_builder.expression.Raw;
+import com.github.sgreben.regex_builder.expression.Sequence;
+import com.github.sgreben.regex_builder.expression.Unary;
+
+/**
+ * Finds the literals that every match of an expression must contain: literals in mandatory
+ * positions of sequences, inside groups and inside repetitions of at least one iteration, and
+ * literals common to all alternatives of a choice.
+ */
+public class RequiredLiterals {
+	/**
+	 * Flags under which a literal in the expression may match other strings.
+	 */
+	private static final int UNSUPPORTED_FLAGS = java.util.regex.Pattern.CASE_INSENSITIVE
+			| java.util.regex.Pattern.COMMENTS | java.util.regex.Pattern.CANON_EQ | java.util.regex.Pattern.LITERAL;
+
+	/**
+	 * Characters ordered from the most to the least frequent in typical text and log lines. Characters
+	 * not listed are rarer than all listed ones.
+	 */
+	private static final String FREQUENT_CHARACTERS = " etaoinsrhldcu0123456789mfpgwyb.,:-/vkETAOINSRHLDCUMFPGWYB\"=_'()[]xjqzVKXJQZ";
+
+	private RequiredLiterals() {
+	}
+
+	/**
+	 * The literals that every match contains, in the order in which they occur in the expression.
+	 * Empty under flags that change how literals match, such as CASE_INSENSITIVE, and for expressions
+	 * with raw fragments, which may set such flags inline.
+	 */
+	public static List<RequiredLiteral> of(Expression expression, int flags) {
+		List<RequiredLiteral> result = new ArrayList<RequiredLiteral>();
+		if ((flags & UNSUPPORTED_FLAGS) != 0 || ExpressionAnalysis.contains(expression, Raw.class)) {
+			return result;
+		}
+		for (Map.Entry<String, Integer> entry : required(expression, flags).entrySet()) {
+			result.add(new RequiredLiteral(entry.getKey(), entry.getValue()));
+		}
+		return result;
+	}
+
+	public static List<RequiredLiteral> of(Expression expression) {
+		return of(expression, 0);
+	}
+
+	/**
+	 * The required literal that is least likely to occur in the input, or null if there is none.
+	 * Literals are compared by their rarest character, using a fixed table of character frequencies,
+	 * and then by length.
+	 */
+	public static RequiredLiteral rarest(Expression expression, int flags) {
+		RequiredLiteral best = null;
+		int bestRarity = -1;
+		for (RequiredLiteral literal : of(expression, flags)) {
+			int rarity = rarity(literal.getLiteral());
+			if (rarity > bestRarity || (rarity == bestRarity && literal.getLiteral().length() > best.getLiteral().length())) {
+				best = literal;
+				bestRarity = rarity;
+			}
+		}
+		return best;
+	}
+
+	private static int rarity(String literal) {
+		int result = 0;
+		for (int i = 0; i < literal.length(); i++) {
+			int rank = FREQUENT_CHARACTERS.indexOf(literal.charAt(i));
+			result = Math.max(result, rank < 0 ? FREQUENT_CHARACTERS.length() : rank);
+		}
+		return result;
+	}
+
+	/**
+	 * The required literals of the node, mapped to their offset bounds.
+	 */
+	private static Map<String, Integer> required(Expression node, int flags) {
+		Map<String, Integer> result = new LinkedHashMap<String, Integer>();
+		Class<?> type = node.getClass();
+		if (type == Literal.class) {
+			String literal = ((Literal) node).getLiteral();
+			if (!literal.isEmpty()) {
+				result.put(literal, 0);
+			}
+		} else if (type == Sequence.class) {
+			int prefix = 0;
+			for (Expression child : node.children()) {
+				for (Map.Entry<String, Integer> entry : required(child, flags).entrySet()) {
+					int offset = Lengths.add(prefix, entry.getValue());
+					Integer previous = result.get(entry.getKey());
+					result.put(entry.getKey(), previous == null ? offset : tighter(previous, offset));
+				}
+				prefix = Lengths.add(prefix, Lengths.max(child, flags));
+			}
+		} else if (type == Choice.class) {
+			Iterator<Expression> children = node.children().iterator();
+			if (children.hasNext()) {
+				result.putAll(required(children.next(), flags));
+			}
+			while (children.hasNext() && !result.isEmpty()) {
+				Map<String, Integer> branch = required(children.next(), flags);
+				Iterator<Map.Entry<String, Integer>> entries = result.entrySet().iterator();
+				while (entries.hasNext()) {
+					Map.Entry<String, Integer> entry = entries.next();
+					Integer offset = branch.get(entry.getKey());
+					if (offset == null) {
+						entries.remove();
+					} else {
+						entry.setValue(looser(entry.getValue(), offset));
+					}
+				}
+			}
+		} else if (Expressions.isWrapper(node) || type == Atomic.class) {
+			result.putAll(required(node.children().iterator().next(), flags));
+		} else if (PositionAutomaton.isQuantifier(type) && PositionAutomaton.minIterations((Unary) node) > 0) {
+			result.putAll(required(((Unary) node).child(), flags));
+		}
+		return result;
+	}
+
+	private static int tighter(int a, int b) {
+		return a == Lengths.UNBOUNDED ? b : b == Lengths.UNBOUNDED ? a : Math.min(a, b);
+	}
+
+	private static int looser(int a, int b) {
+		return a == Lengths.UNBOUNDED || b == Lengths.UNBOUNDED ? Lengths.UNBOUNDED : Math.max(a, b);
+	}
+}
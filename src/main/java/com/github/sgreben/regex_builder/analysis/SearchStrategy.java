@@ -0,0 +1,121 @@
+package com.github.sgreben.regex_builder.analysis;
+
+import java.util.ArrayList;
+import java.util.List;
+import com.github.sgreben.regex_builder.CharClass;
+import com.github.sgreben.regex_builder.Expression;
+import com.github.sgreben.regex_builder.charclass.RangeSet;
+import com.github.sgreben.regex_builder.expression.BackReference;
+import com.github.sgreben.regex_builder.expression.CharClassExpression;
+import com.github.sgreben.regex_builder.expression.Expressions;
+import com.github.sgreben.regex_builder.expression.Literal;
+import com.github.sgreben.regex_builder.expression.Raw;
+import com.github.sgreben.regex_builder.expression.Sequence;
+import com.github.sgreben.regex_builder.expression.Unary;
+
+/**
+ * A way to find matches of an expression of the form {@code C* L S}, where {@code C*} is an
+ * unbounded repetition of a character class, {@code L} a literal and {@code S} the rest of the
+ * expression. Instead of trying every offset, a matcher searches for {@code L}, scans backwards over
+ * the characters in {@code C} to find the earliest offset where a match using that occurrence can
+ * start, and tries the regex only there.
+ * <ul>
+ * <li>{@link Kind#REVERSE_SUFFIX}: {@code L} is a suffix, i.e. {@code S} consumes nothing (e.g.
+ * {@code \S+\.log$}).</li>
+ * <li>{@link Kind#INNER_LITERAL}: {@code L} is an inner literal; the regex expands the match in both
+ * directions from the start found (e.g. {@code \w+@\w+\.com}).</li>
+ * </ul>
+ * If the regex fails there, no match starts in the run of characters in {@code C} that follows: a
+ * later start within the run only drops choices for where {@code C*} ends. The expression must not
+ * contain back references, which could make the rest depend on where the match starts.
+ */
+public class SearchStrategy {
+	public enum Kind {
+		REVERSE_SUFFIX, INNER_LITERAL
+	}
+
+	private final Kind kind;
+	private final String literal;
+	private final RangeSet prefixChars;
+	private final int prefixMinLength;
+
+	private SearchStrategy(Kind kind, String literal, RangeSet prefixChars, int prefixMinLength) {
+		this.kind = kind;
+		this.literal = literal;
+		this.prefixChars = prefixChars;
+		this.prefixMinLength = prefixMinLength;
+	}
+
+	/**
+	 * The strategy for the expression compiled with the given flags, or null if the expression does
+	 * not have the required form.
+	 */
+	public static SearchStrategy select(Expression expression, int flags) {
+		// A back reference in the rest of the expression may need a later start.
+		if (!RangeSet.isEvaluable(flags) || ExpressionAnalysis.contains(expression, Raw.class)
+				|| ExpressionAnalysis.contains(expression, BackReference.class)) {
+			return null;
+		}
+		List<Expression> elements = new ArrayList<Expression>();
+		for (Expression child : Expressions.unwrap(expression).children()) {
+			elements.add(child);
+		}
+		if (Expressions.unwrap(expression).getClass() != Sequence.class || elements.size() < 2) {
+			return null;
+		}
+		Expression prefix = Expressions.unwrap(elements.get(0));
+		Expression literal = elements.get(1);
+		if (!PositionAutomaton.isQuantifier(prefix.getClass()) || literal.getClass() != Literal.class
+				|| ((Literal) literal).getLiteral().isEmpty()) {
+			return null;
+		}
+		Unary repetition = (Unary) prefix;
+		Expression body = Expressions.unwrap(repetition.child());
+		if (PositionAutomaton.maxIterations(repetition) >= 0 || body.getClass() != CharClassExpression.class) {
+			return null;
+		}
+		CharClass charClass = ((CharClassExpression) body).getCharClass();
+		RangeSet prefixChars = charClass.toRangeSet(flags & (java.util.regex.Pattern.DOTALL | java.util.regex.Pattern.UNIX_LINES));
+		if (prefixChars == null || PositionAutomaton.isZeroWidth(charClass)) {
+			return null;
+		}
+		Kind kind = Kind.REVERSE_SUFFIX;
+		for (Expression rest : elements.subList(2, elements.size())) {
+			if (Lengths.max(rest, flags) != 0) {
+				kind = Kind.INNER_LITERAL;
+			}
+		}
+		return new SearchStrategy(kind, ((Literal) literal).getLiteral(), prefixChars,
+				PositionAutomaton.minIterations(repetition));
+	}
+
+	public Kind getKind() {
+		return kind;
+	}
+
+	/**
+	 * The literal searched for.
+	 */
+	public String getLiteral() {
+		return literal;
+	}
+
+	/**
+	 * The characters of the repetition before the literal.
+	 */
+	public RangeSet getPrefixChars() {
+		return prefixChars;
+	}
+
+	/**
+	 * The minimal number of code points matched by the repetition before the literal.
+	 */
+	public int getPrefixMinLength() {
+		return prefixMinLength;
+	}
+
+	@Override
+	public String toString() {
+		return kind + " on \"" + literal + "\"";
+	}
+}
@@ -0,0 +1,79 @@
+package com.github.sgreben.regex_builder.analysis;
+
+import java.util.Arrays;
+
+/**
+ * Strongly connected components of a graph given by a successor function (Tarjan's algorithm,
+ * without recursion).
+ */
+class StronglyConnected {
+	interface Successors {
+		int[] of(int node);
+	}
+
+	private StronglyConnected() {
+	}
+
+	/**
+	 * The component of each node. Components are numbered in reverse topological order: every edge
+	 * leads to a component with the same or a smaller number.
+	 */
+	static int[] components(int nodeCount, Successors successors) {
+		int[] index = new int[nodeCount];
+		int[] low = new int[nodeCount];
+		int[] component = new int[nodeCount];
+		Arrays.fill(index, -1);
+		Arrays.fill(component, -1);
+		int[] stack = new int[nodeCount];
+		int stackSize = 0;
+		int[] callNodes = new int[nodeCount];
+		int[][] callSuccessors = new int[nodeCount][];
+		int[] callPositions = new int[nodeCount];
+		int counter = 0;
+		int components = 0;
+		for (int root = 0; root < nodeCount; root++) {
+			if (index[root] >= 0) {
+				continue;
+			}
+			int depth = 0;
+			callNodes[0] = root;
+			callSuccessors[0] = successors.of(root);
+			callPositions[0] = 0;
+			index[root] = low[root] = counter++;
+			stack[stackSize++] = root;
+			while (depth >= 0) {
+				int node = callNodes[depth];
+				int[] next = callSuccessors[depth];
+				if (callPositions[depth] < next.length) {
+					int successor = next[callPositions[depth]++];
+					if (index[successor] < 0) {
+						index[successor] = low[successor] = counter++;
+						stack[stackSize++] = successor;
+						depth++;
+						callNodes[depth] = successor;
+						callSuccessors[depth] = successors.of(successor);
+						callPositions[depth] = 0;
+					} else if (component[successor] < 0) {
+						low[node] = Math.min(low[node], index[successor]);
+					}
+					continue;
+				}
+				if (low[node] == index[node]) {
+					int member;
+					do {
+						member = stack[--stackSize];
+						component[member] = components;
+					} while (member != node);
+					components++;
+				}
+				callSuccessors[depth] = null;
+				depth--;
+				if (depth >= 0) {
+					int caller = callNodes[depth];
+					low[caller] = Math.min(low[caller], low[node]);
+				}
+			}
+		}
+		return component;
+	}
+}
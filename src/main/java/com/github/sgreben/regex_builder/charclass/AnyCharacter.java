@@ -5,13 +5,25 @@ import com.github.sgreben.regex_builder.tokens.DOT;
 import com.github.sgreben.regex_builder.tokens.TOKEN;
 
 public class AnyCharacter extends Nullary {
+	private static final RangeSet allButLineTerminators =
+			RangeSet.of('\n', '\n', '\r', '\r', 0x85, 0x85, 0x2028, 0x2029).complement();
+	private static final RangeSet allButNewline = RangeSet.of('\n', '\n').complement();
+
 	@Override
 	public CharClass complement() {
 		return oneOf("");
 	}
 
+	@Override
+	protected RangeSet evaluate(int flags) {
+		if ((flags & java.util.regex.Pattern.DOTALL) != 0) {
+			return RangeSet.ALL;
+		}
+		return (flags & java.util.regex.Pattern.UNIX_LINES) != 0 ? allButNewline : allButLineTerminators;
+	}
+
 	@Override
 	public void compile(java.util.List<TOKEN> output) {
-		output.add(new DOT());
+		output.add(DOT.INSTANCE);
 	}
 }
@@ -1,8 +1,11 @@
 package com.github.sgreben.regex_builder.charclass;
 
+import java.util.Iterator;
 import com.github.sgreben.regex_builder.CharClass;
 
 public abstract class CharClassBase extends CharClass {
+	private int hash;
+
 	@Override
 	public void accept(CharClassVisitor visitor) {
 		visitor.visitPre(this);
@@ -11,4 +14,80 @@ public abstract class CharClassBase extends CharClass {
 		}
 		visitor.visitPost(this);
 	}
+
+	@Override
+	public final RangeSet toRangeSet(int flags) {
+		if (!RangeSet.isEvaluable(flags)) {
+			return null;
+		}
+		return evaluate(flags);
+	}
+
+	/**
+	 * The characters matched by this class, or null if they are not known. Of the flags, only
+	 * DOTALL and UNIX_LINES need to be considered.
+	 */
+	protected RangeSet evaluate(int flags) {
+		return null;
+	}
+
+	/**
+	 * The characters matched by a class written inside a bracket class, where the "." of
+	 * {@link AnyCharacter} is a literal dot.
+	 */
+	protected static RangeSet memberRangeSet(CharClass member, int flags) {
+		return member instanceof AnyCharacter ? RangeSet.of('.', '.') : member.toRangeSet(flags);
+	}
+
+	/**
+	 * Structural equality: same class, same attributes and equal children.
+	 */
+	@Override
+	public boolean equals(Object o) {
+		if (this == o) {
+			return true;
+		}
+		if (o == null || o.getClass() != getClass()) {
+			return false;
+		}
+		CharClassBase other = (CharClassBase) o;
+		return hashCode() == other.hashCode()
+				&& attributesEqual(other)
+				&& childrenEqual(children(), other.children());
+	}
+
+	@Override
+	public int hashCode() {
+		int h = hash;
+		if (h == 0) {
+			h = getClass().getName().hashCode() * 31 + attributesHashCode();
+			for (CharClass child : children()) {
+				h = h * 31 + child.hashCode();
+			}
+			hash = h;
+		}
+		return h;
+	}
+
+	/**
+	 * Compares the class's own attributes (not its children) with those of a class of the same type.
+	 */
+	protected boolean attributesEqual(CharClassBase other) {
+		return true;
+	}
+
+	protected int attributesHashCode() {
+		return 0;
+	}
+
+	private static boolean childrenEqual(Iterable<CharClass> a, Iterable<CharClass> b) {
+		Iterator<CharClass> i = a.iterator();
+		Iterator<CharClass> j = b.iterator();
+		while (i.hasNext() && j.hasNext()) {
+			if (!i.next().equals(j.next())) {
+				return false;
+			}
+		}
+		return !i.hasNext() && !j.hasNext();
+	}
 }
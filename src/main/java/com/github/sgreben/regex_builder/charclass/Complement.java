@@ -16,6 +16,11 @@ public class Complement extends Unary {
 		return child;
 	}
 
+	@Override
+	protected RangeSet evaluate(int flags) {
+		return child.complement().toRangeSet(flags);
+	}
+
 	@Override
 	public void compile(final java.util.List<TOKEN> output) {
 		child.complement().compile(output);
@@ -5,6 +5,8 @@ import com.github.sgreben.regex_builder.tokens.RAW;
 import com.github.sgreben.regex_builder.tokens.TOKEN;
 
 public class Digit extends Nullary {
+	private static final RangeSet set = RangeSet.of('0', '9');
+
 	public Digit() {
 	}
 
@@ -13,6 +15,11 @@ public class Digit extends Nullary {
 		return new NonDigit();
 	}
 
+	@Override
+	protected RangeSet evaluate(int flags) {
+		return set;
+	}
+
 	@Override
 	public void compile(java.util.List<TOKEN> output) {
 		output.add(new RAW("\\d"));
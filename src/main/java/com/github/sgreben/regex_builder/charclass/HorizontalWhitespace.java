@@ -5,6 +5,9 @@ import com.github.sgreben.regex_builder.tokens.RAW;
 import com.github.sgreben.regex_builder.tokens.TOKEN;
 
 public class HorizontalWhitespace extends Nullary {
+	private static final RangeSet set = RangeSet.of(' ', ' ', '\t', '\t', 0xA0, 0xA0, 0x1680, 0x1680,
+			0x180E, 0x180E, 0x2000, 0x200A, 0x202F, 0x202F, 0x205F, 0x205F, 0x3000, 0x3000);
+
 	public HorizontalWhitespace() {
 	}
 
@@ -13,6 +16,11 @@ public class HorizontalWhitespace extends Nullary {
 		return new NonHorizontalWhitespace();
 	}
 
+	@Override
+	protected RangeSet evaluate(int flags) {
+		return set;
+	}
+
 	@Override
 	public void compile(java.util.List<TOKEN> output) {
 		output.add(new RAW("\\h"));
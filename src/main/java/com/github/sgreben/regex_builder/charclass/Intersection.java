@@ -22,20 +22,33 @@ public class Intersection extends Nary {
 		return new Union(newChildren.toArray(new CharClass[newChildren.size()]));
 	}
 
+	@Override
+	protected RangeSet evaluate(int flags) {
+		RangeSet result = RangeSet.ALL;
+		for (CharClass child : children()) {
+			RangeSet set = memberRangeSet(child, flags);
+			if (set == null) {
+				return null;
+			}
+			result = result.intersection(set);
+		}
+		return result;
+	}
+
 	@Override
 	public void compile(java.util.List<TOKEN> output) {
 		boolean first = true;
-		output.add(new START_CHAR_CLASS());
+		output.add(START_CHAR_CLASS.INSTANCE);
 		for (CharClass child : children()) {
 			if (!first) {
-				output.add(new CHAR_CLASS_INTERSECTION());
+				output.add(CHAR_CLASS_INTERSECTION.INSTANCE);
 			}
 			first = false;
-			output.add(new START_CHAR_CLASS());
+			output.add(START_CHAR_CLASS.INSTANCE);
 			child.compile(output);
-			output.add(new END_CHAR_CLASS());
+			output.add(END_CHAR_CLASS.INSTANCE);
 
 		}
-		output.add(new END_CHAR_CLASS());
+		output.add(END_CHAR_CLASS.INSTANCE);
 	}
 }
@@ -1,6 +1,9 @@
 package com.github.sgreben.regex_builder.charclass;
 
 import java.util.List;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.function.IntPredicate;
 import com.github.sgreben.regex_builder.CharClass;
 import com.github.sgreben.regex_builder.tokens.CHAR_CLASS_NAMED;
 import com.github.sgreben.regex_builder.tokens.TOKEN;
@@ -9,6 +12,8 @@ import com.github.sgreben.regex_builder.tokens.TOKEN;
  * Created by Sergey on 04.10.2016.
  */
 public class Java extends Nullary {
+    private static final ConcurrentMap<String, RangeSet> sets = new ConcurrentHashMap<>();
+
     private final String name;
 
     public Java(String name) {
@@ -20,6 +25,46 @@ public class Java extends Nullary {
         return new RawComplement(this);
     }
 
+    @Override
+    protected boolean attributesEqual(CharClassBase other) {
+        return name.equals(((com.github.sgreben.regex_builder.charclass.Java) other).name);
+    }
+
+    @Override
+    protected int attributesHashCode() {
+        return name.hashCode();
+    }
+
+    @Override
+    protected RangeSet evaluate(int flags) {
+        RangeSet set = sets.get(name);
+        if (set != null) {
+            return set;
+        }
+        IntPredicate predicate = predicate(name);
+        if (predicate == null) {
+            return null;
+        }
+        set = RangeSet.matching(predicate);
+        sets.putIfAbsent(name, set);
+        return set;
+    }
+
+    private static IntPredicate predicate(String name) {
+        switch (name) {
+        case "javaLowerCase":
+            return Character::isLowerCase;
+        case "javaUpperCase":
+            return Character::isUpperCase;
+        case "javaWhitespace":
+            return Character::isWhitespace;
+        case "javaMirrored":
+            return Character::isMirrored;
+        default:
+            return null;
+        }
+    }
+
     @Override
     public void compile(List<TOKEN> output) {
         output.add(new CHAR_CLASS_NAMED(name));
@@ -13,6 +13,11 @@ public class NonHorizontalWhitespace extends Nullary {
 		return new HorizontalWhitespace();
 	}
 
+	@Override
+	protected RangeSet evaluate(int flags) {
+		return complement().toRangeSet(flags).complement();
+	}
+
 	@Override
 	public void compile(java.util.List<TOKEN> output) {
 		output.add(new RAW("\\H"));
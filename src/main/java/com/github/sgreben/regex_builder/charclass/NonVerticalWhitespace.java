@@ -13,6 +13,11 @@ public class NonVerticalWhitespace extends Nullary {
 		return new VerticalWhitespace();
 	}
 
+	@Override
+	protected RangeSet evaluate(int flags) {
+		return complement().toRangeSet(flags).complement();
+	}
+
 	@Override
 	public void compile(java.util.List<TOKEN> output) {
 		output.add(new RAW("\\V"));
@@ -14,16 +14,36 @@ public class NoneOf extends Nullary {
 		this.chars = chars;
 	}
 
+	public String getChars() {
+		return chars;
+	}
+
 	@Override
 	public CharClass complement() {
 		return new OneOf(chars);
 	}
 
+	@Override
+	protected boolean attributesEqual(CharClassBase other) {
+		return chars.equals(((NoneOf) other).chars);
+	}
+
+	@Override
+	protected int attributesHashCode() {
+		return chars.hashCode();
+	}
+
+	@Override
+	protected RangeSet evaluate(int flags) {
+		RangeSet set = RangeSet.parseClassBody(chars);
+		return set == null ? null : set.complement();
+	}
+
 	@Override
 	public void compile(java.util.List<TOKEN> output) {
-		output.add(new START_CHAR_CLASS());
-		output.add(new CARET());
+		output.add(START_CHAR_CLASS.INSTANCE);
+		output.add(CARET.INSTANCE);
 		output.add(new RAW(chars));
-		output.add(new END_CHAR_CLASS());
+		output.add(END_CHAR_CLASS.INSTANCE);
 	}
 }
@@ -13,15 +13,34 @@ public class OneOf extends Nullary {
 		this.chars = chars;
 	}
 
+	public String getChars() {
+		return chars;
+	}
+
 	@Override
 	public CharClass complement() {
 		return new NoneOf(chars);
 	}
 
+	@Override
+	protected boolean attributesEqual(CharClassBase other) {
+		return chars.equals(((OneOf) other).chars);
+	}
+
+	@Override
+	protected int attributesHashCode() {
+		return chars.hashCode();
+	}
+
+	@Override
+	protected RangeSet evaluate(int flags) {
+		return RangeSet.parseClassBody(chars);
+	}
+
 	@Override
 	public void compile(java.util.List<TOKEN> output) {
-		output.add(new START_CHAR_CLASS());
+		output.add(START_CHAR_CLASS.INSTANCE);
 		output.add(new RAW(chars));
-		output.add(new END_CHAR_CLASS());
+		output.add(END_CHAR_CLASS.INSTANCE);
 	}
 }
@@ -7,6 +7,8 @@ import com.github.sgreben.regex_builder.tokens.TOKEN;
 import java.util.List;
 
 public class Posix extends Nullary {
+    private static final String PUNCT = "!\"#$%&'()*+,-./:;<=>?@[\\]^_`{|}~";
+
     private final String name;
     public Posix(String name) {
         this.name = name;
@@ -15,6 +17,50 @@ public class Posix extends Nullary {
     @Override
     public CharClass complement() { return new RawComplement(this); }
 
+    @Override
+    protected boolean attributesEqual(CharClassBase other) {
+        return name.equals(((com.github.sgreben.regex_builder.charclass.Posix) other).name);
+    }
+
+    @Override
+    protected int attributesHashCode() {
+        return name.hashCode();
+    }
+
+    @Override
+    protected RangeSet evaluate(int flags) {
+        switch (name) {
+        case "Lower":
+            return RangeSet.of('a', 'z');
+        case "Upper":
+            return RangeSet.of('A', 'Z');
+        case "ASCII":
+            return RangeSet.of(0, 0x7F);
+        case "Alpha":
+            return RangeSet.of('a', 'z', 'A', 'Z');
+        case "Digit":
+            return RangeSet.of('0', '9');
+        case "Alnum":
+            return RangeSet.of('a', 'z', 'A', 'Z', '0', '9');
+        case "Punct":
+            return RangeSet.ofChars(PUNCT);
+        case "Graph":
+            return RangeSet.of('a', 'z', 'A', 'Z', '0', '9').union(RangeSet.ofChars(PUNCT));
+        case "Print":
+            return RangeSet.of('a', 'z', 'A', 'Z', '0', '9', ' ', ' ').union(RangeSet.ofChars(PUNCT));
+        case "Blank":
+            return RangeSet.ofChars(" \t");
+        case "Cntrl":
+            return RangeSet.of(0, 0x1F, 0x7F, 0x7F);
+        case "XDigit":
+            return RangeSet.of('0', '9', 'a', 'f', 'A', 'F');
+        case "Space":
+            return RangeSet.ofChars(" \t\n\u000B\f\r");
+        default:
+            return null;
+        }
+    }
+
     @Override
     public void compile(List<TOKEN> output) {
         output.add(new CHAR_CLASS_NAMED(name));
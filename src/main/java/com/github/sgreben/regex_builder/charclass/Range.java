@@ -9,18 +9,40 @@ public class Range extends Nullary {
 		this.range = range;
 	}
 
+	/**
+	 * The bounds of the ranges, as pairs (from, to).
+	 */
+	public char[] getRange() {
+		return range.clone();
+	}
+
 	@Override
 	public CharClass complement() { return new RangeComplement(range); }
 
+	@Override
+	protected boolean attributesEqual(CharClassBase other) {
+		return java.util.Arrays.equals(range, ((Range) other).range);
+	}
+
+	@Override
+	protected int attributesHashCode() {
+		return java.util.Arrays.hashCode(range);
+	}
+
+	@Override
+	protected RangeSet evaluate(int flags) {
+		return RangeSet.ofCharRanges(range);
+	}
+
 	@Override
 	public void compile(java.util.List<TOKEN> output) {
-		output.add(new START_CHAR_CLASS());
+		output.add(START_CHAR_CLASS.INSTANCE);
 		for(int i = 0; i < range.length; i += 2) {
 			output.add(new RAW(""+range[i]));
-			output.add(new DASH());
+			output.add(DASH.INSTANCE);
 			output.add(new RAW(""+range[i+1]));
 
 		}
-		output.add(new END_CHAR_CLASS());
+		output.add(END_CHAR_CLASS.INSTANCE);
 	}
 }
@@ -15,21 +15,43 @@ public class RangeComplement extends Nullary {
 		this.range = range;
 	}
 
+	/**
+	 * The bounds of the excluded ranges, as pairs (from, to).
+	 */
+	public char[] getRange() {
+		return range.clone();
+	}
+
 	@Override
 	public CharClass complement() {
 		return new Range(range);
 	}
 
+	@Override
+	protected boolean attributesEqual(CharClassBase other) {
+		return java.util.Arrays.equals(range, ((RangeComplement) other).range);
+	}
+
+	@Override
+	protected int attributesHashCode() {
+		return java.util.Arrays.hashCode(range);
+	}
+
+	@Override
+	protected RangeSet evaluate(int flags) {
+		return RangeSet.ofCharRanges(range).complement();
+	}
+
 	@Override
 	public void compile(java.util.List<TOKEN> output) {
-		output.add(new START_CHAR_CLASS());
-		output.add(new CARET());
+		output.add(START_CHAR_CLASS.INSTANCE);
+		output.add(CARET.INSTANCE);
 		for (int i = 0; i < range.length; i += 2) {
 			output.add(new RAW("" + range[i]));
-			output.add(new DASH());
+			output.add(DASH.INSTANCE);
 			output.add(new RAW("" + range[i + 1]));
 
 		}
-		output.add(new END_CHAR_CLASS());
+		output.add(END_CHAR_CLASS.INSTANCE);
 	}
 }
@@ -0,0 +1,361 @@
+package com.github.sgreben.regex_builder.charclass;
+
+import java.util.Arrays;
+import java.util.function.IntPredicate;
+import java.util.regex.Pattern;
+import com.github.sgreben.regex_builder.tokens.CARET;
+import com.github.sgreben.regex_builder.tokens.END_CHAR_CLASS;
+import com.github.sgreben.regex_builder.tokens.RAW;
+import com.github.sgreben.regex_builder.tokens.START_CHAR_CLASS;
+import com.github.sgreben.regex_builder.tokens.TOKEN;
+
+/**
+ * A character class given as a canonical set of code points: sorted, disjoint, non-adjacent
+ * inclusive ranges. Range sets are what the other classes evaluate to at compile time (see
+ * {@link com.github.sgreben.regex_builder.CharClass#toRangeSet(int)}), and are emitted as a single
+ * flat bracket expression.
+ */
+public class RangeSet extends Nullary {
+	public static final int MAX_CODE_POINT = Character.MAX_CODE_POINT;
+
+	/**
+	 * Flags under which a class may match characters other than those it lists.
+	 */
+	private static final int UNEVALUABLE_FLAGS = Pattern.CASE_INSENSITIVE | Pattern.UNICODE_CHARACTER_CLASS
+			| Pattern.COMMENTS | Pattern.CANON_EQ | Pattern.LITERAL;
+
+	public static final RangeSet EMPTY = new RangeSet(new int[0]);
+	public static final RangeSet ALL = new RangeSet(new int[] {0, MAX_CODE_POINT});
+
+	private final int[] ranges;
+
+	private RangeSet(int[] ranges) {
+		this.ranges = ranges;
+	}
+
+	/**
+	 * Whether classes and literals compiled with the given flags match exactly the characters they
+	 * list, so that they can be evaluated to range sets.
+	 */
+	public static boolean isEvaluable(int flags) {
+		return (flags & UNEVALUABLE_FLAGS) == 0;
+	}
+
+	/**
+	 * The set of the given ranges, as pairs (from, to) of inclusive bounds in any order.
+	 */
+	public static RangeSet of(int... ranges) {
+		if (ranges.length % 2 != 0) {
+			throw new IllegalArgumentException("ranges must be given as pairs (from, to)");
+		}
+		long[] sorted = new long[ranges.length / 2];
+		for (int i = 0; i < sorted.length; i++) {
+			int from = ranges[2 * i];
+			int to = ranges[2 * i + 1];
+			if (from < 0 || to > MAX_CODE_POINT || from > to) {
+				throw new IllegalArgumentException("invalid range " + from + "-" + to);
+			}
+			sorted[i] = ((long) from << 32) | to;
+		}
+		Arrays.sort(sorted);
+		int[] merged = new int[ranges.length];
+		int n = 0;
+		for (long range : sorted) {
+			int from = (int) (range >>> 32);
+			int to = (int) range;
+			if (n > 0 && from <= merged[n - 1] + 1) {
+				merged[n - 1] = Math.max(merged[n - 1], to);
+			} else {
+				merged[n++] = from;
+				merged[n++] = to;
+			}
+		}
+		return new RangeSet(Arrays.copyOf(merged, n));
+	}
+
+	/**
+	 * The set of the given char ranges, as pairs (from, to).
+	 */
+	public static RangeSet ofCharRanges(char... ranges) {
+		int[] codePoints = new int[ranges.length];
+		for (int i = 0; i < ranges.length; i++) {
+			codePoints[i] = ranges[i];
+		}
+		return of(codePoints);
+	}
+
+	/**
+	 * Parses the body of a bracket expression (the part between "[" and "]") made of characters,
+	 * ranges "a-z" and escaped characters. Returns null for anything else, such as negation, nested
+	 * classes, intersections or predefined classes.
+	 */
+	static RangeSet parseClassBody(String body) {
+		if (body.startsWith("^")) {
+			return null;
+		}
+		int[] ranges = new int[2 * body.length()];
+		int n = 0;
+		int[] position = {0};
+		while (position[0] < body.length()) {
+			int from = parseClassChar(body, position);
+			if (from < 0) {
+				return null;
+			}
+			int to = from;
+			if (position[0] + 1 < body.length() && body.charAt(position[0]) == '-') {
+				position[0]++;
+				to = parseClassChar(body, position);
+				if (to < from) {
+					return null;
+				}
+			}
+			ranges[n++] = from;
+			ranges[n++] = to;
+		}
+		return of(Arrays.copyOf(ranges, n));
+	}
+
+	/**
+	 * Parses one character of a class body at the given position, advancing it. Returns -1 if the
+	 * next element is not a single character.
+	 */
+	private static int parseClassChar(String body, int[] position) {
+		int i = position[0];
+		int c = body.codePointAt(i);
+		if (c == '[' || c == ']' || (c == '&' && body.startsWith("&&", i))) {
+			return -1;
+		}
+		if (c != '\\') {
+			position[0] = i + Character.charCount(c);
+			return c;
+		}
+		if (i + 1 >= body.length()) {
+			return -1;
+		}
+		int e = body.codePointAt(i + 1);
+		position[0] = i + 1 + Character.charCount(e);
+		switch (e) {
+		case 't':
+			return '\t';
+		case 'n':
+			return '\n';
+		case 'r':
+			return '\r';
+		case 'f':
+			return '\f';
+		case 'a':
+			return 0x07;
+		case 'e':
+			return 0x1B;
+		case 'x':
+			if (i + 2 < body.length() && body.charAt(i + 2) == '{') {
+				int end = body.indexOf('}', i + 3);
+				if (end < 0) {
+					return -1;
+				}
+				position[0] = end + 1;
+				try {
+					int codePoint = Integer.parseInt(body.substring(i + 3, end), 16);
+					return codePoint <= MAX_CODE_POINT ? codePoint : -1;
+				} catch (NumberFormatException ex) {
+					return -1;
+				}
+			}
+			return -1;
+		default:
+			return Character.isLetterOrDigit(e) ? -1 : e;
+		}
+	}
+
+	public static RangeSet ofChars(String chars) {
+		int[] ranges = new int[2 * chars.codePointCount(0, chars.length())];
+		int n = 0;
+		for (int i = 0; i < chars.length(); i += Character.charCount(chars.codePointAt(i))) {
+			ranges[n++] = chars.codePointAt(i);
+			ranges[n++] = chars.codePointAt(i);
+		}
+		return of(ranges);
+	}
+
+	/**
+	 * The set of all code points satisfying the predicate.
+	 */
+	public static RangeSet matching(IntPredicate predicate) {
+		int[] ranges = new int[16];
+		int n = 0;
+		int start = -1;
+		for (int c = 0; c <= MAX_CODE_POINT + 1; c++) {
+			boolean in = c <= MAX_CODE_POINT && predicate.test(c);
+			if (in && start < 0) {
+				start = c;
+			} else if (!in && start >= 0) {
+				if (n == ranges.length) {
+					ranges = Arrays.copyOf(ranges, 2 * n);
+				}
+				ranges[n++] = start;
+				ranges[n++] = c - 1;
+				start = -1;
+			}
+		}
+		return new RangeSet(Arrays.copyOf(ranges, n));
+	}
+
+	public RangeSet union(RangeSet other) {
+		int[] all = Arrays.copyOf(ranges, ranges.length + other.ranges.length);
+		System.arraycopy(other.ranges, 0, all, ranges.length, other.ranges.length);
+		return of(all);
+	}
+
+	public RangeSet intersection(RangeSet other) {
+		int[] result = new int[ranges.length + other.ranges.length];
+		int n = 0;
+		int i = 0;
+		int j = 0;
+		while (i < ranges.length && j < other.ranges.length) {
+			int from = Math.max(ranges[i], other.ranges[j]);
+			int to = Math.min(ranges[i + 1], other.ranges[j + 1]);
+			if (from <= to) {
+				result[n++] = from;
+				result[n++] = to;
+			}
+			if (ranges[i + 1] < other.ranges[j + 1]) {
+				i += 2;
+			} else {
+				j += 2;
+			}
+		}
+		return new RangeSet(Arrays.copyOf(result, n));
+	}
+
+	/**
+	 * Whether the sets have a code point in common.
+	 */
+	public boolean intersects(RangeSet other) {
+		int i = 0;
+		int j = 0;
+		while (i < ranges.length && j < other.ranges.length) {
+			if (Math.max(ranges[i], other.ranges[j]) <= Math.min(ranges[i + 1], other.ranges[j + 1])) {
+				return true;
+			}
+			if (ranges[i + 1] < other.ranges[j + 1]) {
+				i += 2;
+			} else {
+				j += 2;
+			}
+		}
+		return false;
+	}
+
+	@Override
+	public RangeSet complement() {
+		int[] result = new int[ranges.length + 2];
+		int n = 0;
+		int next = 0;
+		for (int i = 0; i < ranges.length; i += 2) {
+			if (ranges[i] > next) {
+				result[n++] = next;
+				result[n++] = ranges[i] - 1;
+			}
+			next = ranges[i + 1] + 1;
+		}
+		if (next <= MAX_CODE_POINT) {
+			result[n++] = next;
+			result[n++] = MAX_CODE_POINT;
+		}
+		return new RangeSet(Arrays.copyOf(result, n));
+	}
+
+	public boolean contains(int codePoint) {
+		int low = 0;
+		int high = ranges.length / 2 - 1;
+		while (low <= high) {
+			int mid = (low + high) >>> 1;
+			if (codePoint < ranges[2 * mid]) {
+				high = mid - 1;
+			} else if (codePoint > ranges[2 * mid + 1]) {
+				low = mid + 1;
+			} else {
+				return true;
+			}
+		}
+		return false;
+	}
+
+	public boolean isEmpty() {
+		return ranges.length == 0;
+	}
+
+	public boolean isFull() {
+		return ranges.length == 2 && ranges[0] == 0 && ranges[1] == MAX_CODE_POINT;
+	}
+
+	public int rangeCount() {
+		return ranges.length / 2;
+	}
+
+	/**
+	 * The bounds of the ranges, as pairs (from, to).
+	 */
+	public int[] getRanges() {
+		return ranges.clone();
+	}
+
+	@Override
+	protected RangeSet evaluate(int flags) {
+		return this;
+	}
+
+	@Override
+	protected boolean attributesEqual(CharClassBase other) {
+		return Arrays.equals(ranges, ((RangeSet) other).ranges);
+	}
+
+	@Override
+	protected int attributesHashCode() {
+		return Arrays.hashCode(ranges);
+	}
+
+	/**
+	 * Emits the set, or the negation of its complement if that is shorter. The empty set is emitted
+	 * as the negation of all code points, since "[]" is not a valid class.
+	 */
+	@Override
+	public void compile(java.util.List<TOKEN> output) {
+		RangeSet complement = complement();
+		boolean negate = isEmpty() || (!complement.isEmpty() && complement.ranges.length < ranges.length);
+		output.add(START_CHAR_CLASS.INSTANCE);
+		if (negate) {
+			output.add(CARET.INSTANCE);
+		}
+		output.add(new RAW((negate ? complement : this).toClassBody()));
+		output.add(END_CHAR_CLASS.INSTANCE);
+	}
+
+	private String toClassBody() {
+		StringBuilder sb = new StringBuilder();
+		for (int i = 0; i < ranges.length; i += 2) {
+			appendEscaped(sb, ranges[i]);
+			if (ranges[i + 1] > ranges[i] + 1) {
+				sb.append('-');
+			}
+			if (ranges[i + 1] > ranges[i]) {
+				appendEscaped(sb, ranges[i + 1]);
+			}
+		}
+		return sb.toString();
+	}
+
+	private static void appendEscaped(StringBuilder sb, int codePoint) {
+		if ((codePoint >= 'a' && codePoint <= 'z') || (codePoint >= 'A' && codePoint <= 'Z')
+				|| (codePoint >= '0' && codePoint <= '9')) {
+			sb.append((char) codePoint);
+		} else {
+			sb.append("\\x{").append(Integer.toHexString(codePoint)).append('}');
+		}
+	}
+
+	@Override
+	public String toString() {
+		return "[" + toClassBody() + "]";
+	}
+}
@@ -19,13 +19,19 @@ class RawComplement extends Unary {
 		return child;
 	}
 
+	@Override
+	protected RangeSet evaluate(int flags) {
+		RangeSet set = memberRangeSet(child, flags);
+		return set == null ? null : set.complement();
+	}
+
 	@Override
 	public void compile(final java.util.List<TOKEN> output) {
-		output.add(new START_CHAR_CLASS());
-		output.add(new CARET());
+		output.add(START_CHAR_CLASS.INSTANCE);
+		output.add(CARET.INSTANCE);
 		for (final CharClass child : children()) {
 			child.compile(output);
 		}
-		output.add(new END_CHAR_CLASS());
+		output.add(END_CHAR_CLASS.INSTANCE);
 	}
 }
@@ -21,12 +21,25 @@ public class Union extends Nary {
 		return new Intersection(children.toArray(new CharClass[children.size()]));
 	}
 
+	@Override
+	protected RangeSet evaluate(int flags) {
+		RangeSet result = RangeSet.EMPTY;
+		for (CharClass child : children()) {
+			RangeSet set = memberRangeSet(child, flags);
+			if (set == null) {
+				return null;
+			}
+			result = result.union(set);
+		}
+		return result;
+	}
+
 	@Override
 	public void compile(java.util.List<TOKEN> output) {
-		output.add(new START_CHAR_CLASS());
+		output.add(START_CHAR_CLASS.INSTANCE);
 		for (CharClass child : children()) {
 			child.compile(output);
 		}
-		output.add(new END_CHAR_CLASS());
+		output.add(END_CHAR_CLASS.INSTANCE);
 	}
 }
@@ -5,6 +5,8 @@ import com.github.sgreben.regex_builder.tokens.RAW;
 import com.github.sgreben.regex_builder.tokens.TOKEN;
 
 public class VerticalWhitespace extends Nullary {
+	private static final RangeSet set = RangeSet.of('\n', '\r', 0x85, 0x85, 0x2028, 0x2029);
+
 	public VerticalWhitespace() {
 	}
 
@@ -13,6 +15,11 @@ public class VerticalWhitespace extends Nullary {
 		return new NonVerticalWhitespace();
 	}
 
+	@Override
+	protected RangeSet evaluate(int flags) {
+		return set;
+	}
+
 	@Override
 	public void compile(java.util.List<TOKEN> output) {
 		output.add(new RAW("\\v"));
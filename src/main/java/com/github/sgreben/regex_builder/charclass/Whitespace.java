@@ -5,6 +5,8 @@ import com.github.sgreben.regex_builder.tokens.RAW;
 import com.github.sgreben.regex_builder.tokens.TOKEN;
 
 public class Whitespace extends Nullary {
+	private static final RangeSet set = RangeSet.ofChars(" \t\n\u000B\f\r");
+
 	public Whitespace() {
 	}
 
@@ -13,6 +15,11 @@ public class Whitespace extends Nullary {
 		return new NonWhitespace();
 	}
 
+	@Override
+	protected RangeSet evaluate(int flags) {
+		return set;
+	}
+
 	@Override
 	public void compile(java.util.List<TOKEN> output) {
 		output.add(new RAW("\\s"));
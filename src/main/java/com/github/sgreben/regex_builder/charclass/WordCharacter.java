@@ -5,6 +5,8 @@ import com.github.sgreben.regex_builder.tokens.RAW;
 import com.github.sgreben.regex_builder.tokens.TOKEN;
 
 public class WordCharacter extends Nullary {
+	private static final RangeSet set = RangeSet.of('a', 'z', 'A', 'Z', '_', '_', '0', '9');
+
 	public WordCharacter() {
 	}
 
@@ -13,6 +15,11 @@ public class WordCharacter extends Nullary {
 		return new NonWordCharacter();
 	}
 
+	@Override
+	protected RangeSet evaluate(int flags) {
+		return set;
+	}
+
 	@Override
 	public void compile(java.util.List<TOKEN> output) {
 		output.add(new RAW("\\w"));
@@ -0,0 +1,25 @@
+package com.github.sgreben.regex_builder.codegen;
+
+import java.lang.annotation.ElementType;
+import java.lang.annotation.Retention;
+import java.lang.annotation.RetentionPolicy;
+import java.lang.annotation.Target;
+
+/**
+ * Marks a static {@code Expression} field, or a static method without parameters returning an
+ * {@code Expression}, whose matcher {@link MatcherSourceGenerator} writes as Java source during the
+ * build.
+ */
+@Retention(RetentionPolicy.RUNTIME)
+@Target({ElementType.FIELD, ElementType.METHOD})
+public @interface GenerateMatcher {
+	/**
+	 * The simple name of the generated class, which is put in the package of the annotated member.
+	 */
+	String value();
+
+	/**
+	 * The flags of {@link java.util.regex.Pattern} the expression is compiled with.
+	 */
+	int flags() default 0;
+}
@@ -0,0 +1,300 @@
+package com.github.sgreben.regex_builder.codegen;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.lang.reflect.AnnotatedElement;
+import java.lang.reflect.Field;
+import java.lang.reflect.Member;
+import java.lang.reflect.Method;
+import java.lang.reflect.Modifier;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import javax.lang.model.SourceVersion;
+import com.github.sgreben.regex_builder.CaptureGroup;
+import com.github.sgreben.regex_builder.Expression;
+import com.github.sgreben.regex_builder.Pattern;
+import com.github.sgreben.regex_builder.compiler.CompileOptions;
+import com.github.sgreben.regex_builder.compiler.Engine;
+import com.github.sgreben.regex_builder.engine.GeneratedMatcher;
+
+/**
+ * Writes the Java source of a matcher class for each expression marked with {@link GenerateMatcher},
+ * to be run during the build after the classes declaring the expressions are compiled, e.g. with
+ * the exec-maven-plugin:
+ *
+ * <pre>
+ * java com.github.sgreben.regex_builder.codegen.MatcherSourceGenerator \
+ *     target/generated-sources/matchers com.example.Patterns
+ * </pre>
+ *
+ * A generated class holds the regex of the expression as a constant, so that nothing is built or
+ * compiled when it is loaded. One-pass expressions (see
+ * {@link com.github.sgreben.regex_builder.engine.OnePass}) are matched by a scan written out as
+ * Java code; other expressions, inputs with surrogates and {@code find} use java.util.regex, whose
+ * pattern is compiled on first use. Each static {@code CaptureGroup} field of the declaring class
+ * whose group is in the expression gets an accessor named after the field.
+ */
+public final class MatcherSourceGenerator {
+	private static final Set<String> RESERVED = new HashSet<String>(Arrays.asList("match", "matches", "find",
+			"start", "end", "group", "of", "scan", "toString", "hashCode", "getClass", "notify", "notifyAll", "wait"));
+
+	private MatcherSourceGenerator() {
+	}
+
+	/**
+	 * Writes the matchers of the classes given after the output directory.
+	 */
+	public static void main(String[] args) throws IOException, ClassNotFoundException {
+		if (args.length < 1) {
+			throw new IllegalArgumentException("usage: MatcherSourceGenerator <output directory> <class>...");
+		}
+		File directory = new File(args[0]);
+		ClassLoader loader = Thread.currentThread().getContextClassLoader();
+		for (int i = 1; i < args.length; i++) {
+			Class<?> type = Class.forName(args[i], true, loader);
+			String packageName = packageName(type);
+			for (Map.Entry<String, String> source : generate(type).entrySet()) {
+				File file = new File(new File(directory, packageName.replace('.', File.separatorChar)),
+						source.getKey() + ".java");
+				file.getParentFile().mkdirs();
+				Writer out = new OutputStreamWriter(new FileOutputStream(file), "UTF-8");
+				try {
+					out.write(source.getValue());
+				} finally {
+					out.close();
+				}
+			}
+		}
+	}
+
+	/**
+	 * The sources of the matchers of the class's members marked with {@link GenerateMatcher}, by
+	 * simple class name.
+	 *
+	 * @throws IllegalArgumentException if a marked member is not static, takes parameters or is not
+	 *         an {@code Expression}
+	 */
+	public static Map<String, String> generate(Class<?> type) {
+		List<Member> members = new ArrayList<Member>();
+		members.addAll(Arrays.asList(type.getDeclaredFields()));
+		members.addAll(Arrays.asList(type.getDeclaredMethods()));
+		Map<String, String> sources = new LinkedHashMap<String, String>();
+		for (Member member : members) {
+			GenerateMatcher annotation = ((AnnotatedElement) member).getAnnotation(GenerateMatcher.class);
+			if (annotation == null) {
+				continue;
+			}
+			Expression expression = evaluate(member);
+			String source = generate(packageName(type), annotation.value(), expression, annotation.flags(),
+					groupFields(type), type.getSimpleName() + "." + member.getName());
+			if (sources.put(annotation.value(), source) != null) {
+				throw new IllegalArgumentException("two matchers named " + annotation.value() + " in " + type.getName());
+			}
+		}
+		return sources;
+	}
+
+	/**
+	 * The source of a matcher class for the expression, with an accessor for each of the given groups
+	 * that is in the expression.
+	 *
+	 * @param groups the groups by accessor name
+	 * @param origin where the expression comes from, for the class comment
+	 */
+	public static String generate(String packageName, String className, Expression expression, int flags,
+			Map<String, CaptureGroup> groups, String origin) {
+		Pattern pattern = Pattern.compile(expression, flags,
+				CompileOptions.defaults().withoutCache().withEngine(Engine.ONE_PASS));
+		int groupCount = java.util.regex.Pattern.compile(pattern.pattern(), pattern.flags()).matcher("").groupCount();
+		String scan = pattern.onePass() == null ? null : GeneratedMatcher.scanSource(pattern.onePass(), "\t\t");
+		StringBuilder out = new StringBuilder();
+		if (!packageName.isEmpty()) {
+			out.append("package ").append(packageName).append(";\n\n");
+		}
+		out.append("/**\n");
+		out.append(" * The matcher of {@code ").append(origin).append("}, generated by\n");
+		out.append(" * ").append(MatcherSourceGenerator.class.getName()).append(". Do not edit.\n");
+		out.append(" * <p>\n");
+		out.append(" * Groups are numbered as in the regex, whose group 1 spans the whole match.\n");
+		out.append(" */\n");
+		out.append("public final class ").append(className).append(" {\n");
+		out.append("\tpublic static final String REGEX = ").append(stringLiteral(pattern.pattern())).append(";\n");
+		out.append("\tpublic static final int FLAGS = ").append(pattern.flags()).append(";\n");
+		out.append("\tpublic static final int GROUP_COUNT = ").append(groupCount).append(";\n\n");
+		out.append("\tprivate final CharSequence input;\n");
+		out.append("\tprivate final int[] slots;\n\n");
+		out.append("\tprivate ").append(className).append("(CharSequence input, int[] slots) {\n");
+		out.append("\t\tthis.input = input;\n");
+		out.append("\t\tthis.slots = slots;\n");
+		out.append("\t}\n\n");
+		out.append("\t/**\n\t * The match of the whole input, or null.\n\t */\n");
+		out.append("\tpublic static ").append(className).append(" match(CharSequence input) {\n");
+		out.append("\t\tint[] slots = new int[2 * (GROUP_COUNT + 1)];\n");
+		out.append("\t\tjava.util.Arrays.fill(slots, -1);\n");
+		out.append("\t\tswitch (scan(input, slots)) {\n");
+		out.append("\t\tcase 1:\n");
+		out.append("\t\t\tslots[2] = slots[0];\n");
+		out.append("\t\t\tslots[3] = slots[1];\n");
+		out.append("\t\t\treturn new ").append(className).append("(input, slots);\n");
+		out.append("\t\tcase 0:\n");
+		out.append("\t\t\treturn null;\n");
+		out.append("\t\tdefault:\n");
+		out.append("\t\t\tjava.util.regex.Matcher m = Regex.PATTERN.matcher(input);\n");
+		out.append("\t\t\treturn m.matches() ? of(input, m) : null;\n");
+		out.append("\t\t}\n");
+		out.append("\t}\n\n");
+		out.append("\tpublic static boolean matches(CharSequence input) {\n");
+		out.append("\t\treturn match(input) != null;\n");
+		out.append("\t}\n\n");
+		out.append("\t/**\n\t * The first match starting at or after the index, or null.\n\t */\n");
+		out.append("\tpublic static ").append(className).append(" find(CharSequence input, int from) {\n");
+		out.append("\t\tjava.util.regex.Matcher m = Regex.PATTERN.matcher(input);\n");
+		out.append("\t\treturn m.find(from) ? of(input, m) : null;\n");
+		out.append("\t}\n\n");
+		out.append("\tprivate static ").append(className).append(" of(CharSequence input, java.util.regex.Matcher m) {\n");
+		out.append("\t\tint[] slots = new int[2 * (GROUP_COUNT + 1)];\n");
+		out.append("\t\tfor (int group = 0; group <= GROUP_COUNT; group++) {\n");
+		out.append("\t\t\tslots[2 * group] = m.start(group);\n");
+		out.append("\t\t\tslots[2 * group + 1] = m.end(group);\n");
+		out.append("\t\t}\n");
+		out.append("\t\treturn new ").append(className).append("(input, slots);\n");
+		out.append("\t}\n\n");
+		out.append("\tpublic int start() {\n\t\treturn slots[0];\n\t}\n\n");
+		out.append("\tpublic int end() {\n\t\treturn slots[1];\n\t}\n\n");
+		out.append("\tpublic String group() {\n\t\treturn group(0);\n\t}\n\n");
+		out.append("\t/**\n\t * The start of the group, or -1 if it did not match.\n\t */\n");
+		out.append("\tpublic int start(int group) {\n\t\treturn slots[2 * group];\n\t}\n\n");
+		out.append("\tpublic int end(int group) {\n\t\treturn slots[2 * group + 1];\n\t}\n\n");
+		out.append("\tpublic String group(int group) {\n");
+		out.append("\t\tint start = slots[2 * group];\n");
+		out.append("\t\treturn start < 0 ? null : input.subSequence(start, slots[2 * group + 1]).toString();\n");
+		out.append("\t}\n");
+		for (Map.Entry<String, CaptureGroup> group : groups.entrySet()) {
+			Integer index = pattern.groupIndex().get(group.getValue());
+			if (index == null) {
+				continue;
+			}
+			if (RESERVED.contains(group.getKey()) || !SourceVersion.isName(group.getKey())) {
+				throw new IllegalArgumentException("cannot name an accessor " + group.getKey());
+			}
+			out.append("\n\t/**\n\t * Group ").append(index).append(".\n\t */\n");
+			out.append("\tpublic String ").append(group.getKey()).append("() {\n");
+			out.append("\t\treturn group(").append(index).append(");\n");
+			out.append("\t}\n");
+		}
+		out.append("\n\tprivate static int scan(CharSequence input, int[] slots) {\n");
+		if (scan == null) {
+			out.append("\t\treturn -2;\n");
+		} else {
+			out.append(scan);
+		}
+		out.append("\t}\n\n");
+		out.append("\t/**\n\t * Compiles the regex on first use.\n\t */\n");
+		out.append("\tprivate static final class Regex {\n");
+		out.append("\t\tstatic final java.util.regex.Pattern PATTERN = java.util.regex.Pattern.compile(REGEX, FLAGS);\n");
+		out.append("\t}\n");
+		out.append("}\n");
+		return out.toString();
+	}
+
+	private static Expression evaluate(Member member) {
+		if (!Modifier.isStatic(member.getModifiers())) {
+			throw new IllegalArgumentException(member + " is not static");
+		}
+		Object value;
+		try {
+			if (member instanceof Field) {
+				Field field = (Field) member;
+				field.setAccessible(true);
+				value = field.get(null);
+			} else {
+				Method method = (Method) member;
+				if (method.getParameterTypes().length > 0) {
+					throw new IllegalArgumentException(member + " takes parameters");
+				}
+				method.setAccessible(true);
+				value = method.invoke(null);
+			}
+		} catch (ReflectiveOperationException e) {
+			throw new IllegalArgumentException(member.toString(), e);
+		}
+		if (!(value instanceof Expression)) {
+			throw new IllegalArgumentException(member + " is not an Expression");
+		}
+		return (Expression) value;
+	}
+
+	/**
+	 * The static capture group fields of the class, by accessor name.
+	 */
+	private static Map<String, CaptureGroup> groupFields(Class<?> type) {
+		Map<String, CaptureGroup> groups = new LinkedHashMap<String, CaptureGroup>();
+		for (Field field : type.getDeclaredFields()) {
+			if (Modifier.isStatic(field.getModifiers()) && CaptureGroup.class.isAssignableFrom(field.getType())) {
+				field.setAccessible(true);
+				try {
+					groups.put(accessorName(field.getName()), (CaptureGroup) field.get(null));
+				} catch (IllegalAccessException e) {
+					throw new IllegalArgumentException(field.toString(), e);
+				}
+			}
+		}
+		return groups;
+	}
+
+	/**
+	 * The name in camel case, if it is a constant name such as {@code REQUEST_PATH}.
+	 */
+	static String accessorName(String fieldName) {
+		if (!fieldName.equals(fieldName.toUpperCase())) {
+			return fieldName;
+		}
+		StringBuilder name = new StringBuilder();
+		boolean upper = false;
+		for (char c : fieldName.toCharArray()) {
+			if (c == '_') {
+				upper = name.length() > 0;
+			} else {
+				name.append(upper ? c : Character.toLowerCase(c));
+				upper = false;
+			}
+		}
+		return name.toString();
+	}
+
+	private static String packageName(Class<?> type) {
+		String name = type.getName();
+		int dot = name.lastIndexOf('.');
+		return dot < 0 ? "" : name.substring(0, dot);
+	}
+
+	/**
+	 * The string as a Java literal. Line breaks, quotes and backslashes are escaped as such, since
+	 * unicode escapes are translated before the source is parsed.
+	 */
+	private static String stringLiteral(String value) {
+		StringBuilder literal = new StringBuilder("\"");
+		for (char c : value.toCharArray()) {
+			if (c == '"' || c == '\\') {
+				literal.append('\\').append(c);
+			} else if (c == '\n') {
+				literal.append("\\n");
+			} else if (c == '\r') {
+				literal.append("\\r");
+			} else if (c < ' ' || c > '~') {
+				literal.append(String.format("\\u%04x", (int) c));
+			} else {
+				literal.append(c);
+			}
+		}
+		return literal.append('"').toString();
+	}
+}
@@ -0,0 +1,27 @@
+package com.github.sgreben.regex_builder.compiler;
+
+import com.github.sgreben.regex_builder.CaptureGroupIndex;
+import com.github.sgreben.regex_builder.Expression;
+import com.github.sgreben.regex_builder.expression.Unary;
+import com.github.sgreben.regex_builder.tokens.TOKEN;
+
+/**
+ * Marks the operand of a quantifier as a single regex atom, so that the quantifier is applied to it
+ * directly instead of to a non-capturing group "(?:...)" around it. Only the compiler's passes create
+ * it, for operands they checked to be atoms.
+ */
+final class BareOperand extends Unary {
+	BareOperand(Expression child) {
+		super(child);
+	}
+
+	@Override
+	protected boolean isBareOperand() {
+		return true;
+	}
+
+	@Override
+	public void compile(CaptureGroupIndex index, java.util.List<TOKEN> output) {
+		child().compile(index, output);
+	}
+}
@@ -10,8 +10,12 @@ class CaptureGroupVisitor implements ExpressionVisitor {
 	private int maxGroupIndex;
 	
 	public CaptureGroupVisitor() {
+		this(1);
+	}
+
+	public CaptureGroupVisitor(int firstGroupIndex) {
 		this.groupIndex = new CaptureGroupIndex();
-		this.maxGroupIndex = 1;
+		this.maxGroupIndex = firstGroupIndex;
 	}
 		
 	public CaptureGroupIndex get() {
@@ -19,7 +23,7 @@ class CaptureGroupVisitor implements ExpressionVisitor {
 	}
 
 	public void visitPre(Expression node) {
-		if(node.getClass() == CaptureGroup.class) {
+		if(node instanceof CaptureGroup) {
 			CaptureGroup group = (CaptureGroup)node;
 			groupIndex.put(group, maxGroupIndex);
 			maxGroupIndex += 1;
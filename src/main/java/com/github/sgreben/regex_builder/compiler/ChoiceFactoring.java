@@ -0,0 +1,200 @@
+package com.github.sgreben.regex_builder.compiler;
+
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import com.github.sgreben.regex_builder.Expression;
+import com.github.sgreben.regex_builder.expression.Choice;
+import com.github.sgreben.regex_builder.expression.Literal;
+import com.github.sgreben.regex_builder.expression.Optional;
+import com.github.sgreben.regex_builder.expression.Sequence;
+
+/**
+ * Factors runs of literal alternatives of a choice into a trie of shared prefixes, with common
+ * suffixes pulled out of the leaves, e.g. "Mozilla|Mozzarella|Opera" becomes
+ * "Moz(?:i|zare)lla|Opera".
+ *
+ * Leftmost-first priority is preserved: alternatives that start with different characters cannot
+ * both match at the same position, so their relative order does not matter, and alternatives are
+ * never moved across an alternative that has ended (the empty alternative of a trie node). Later
+ * duplicates of a literal can never contribute a match and are dropped. Literals contain no capture
+ * groups, and non-literal alternatives stay where they are.
+ *
+ * Factoring assumes that distinct characters match distinct characters, so it must not be applied
+ * to case-insensitive or canonically equivalent matching.
+ */
+class ChoiceFactoring {
+	private final Normalizer normalizer;
+
+	ChoiceFactoring(Normalizer normalizer) {
+		this.normalizer = normalizer;
+	}
+
+	/**
+	 * Returns the branches with each run of two or more literals factored, or the given list itself
+	 * if nothing could be factored.
+	 */
+	List<Expression> factorLiteralRuns(List<Expression> branches) {
+		List<Expression> result = new ArrayList<Expression>();
+		boolean changed = false;
+		for (int i = 0; i < branches.size();) {
+			int j = i;
+			while (j < branches.size() && branches.get(j).getClass() == Literal.class) {
+				j++;
+			}
+			if (j - i > 1) {
+				List<Expression> run = branches.subList(i, j);
+				LinkedHashSet<String> literals = new LinkedHashSet<String>();
+				for (Expression literal : run) {
+					literals.add(((Literal) literal).getLiteral());
+				}
+				List<Expression> factored = alternatives(new ArrayList<String>(literals));
+				if (factored.equals(run)) {
+					result.addAll(run);
+				} else {
+					result.addAll(factored);
+					changed = true;
+				}
+				i = j;
+			} else {
+				result.add(branches.get(i));
+				i++;
+			}
+		}
+		return changed ? result : branches;
+	}
+
+	/**
+	 * The factored alternatives for distinct literals, in priority order.
+	 */
+	private List<Expression> alternatives(List<String> literals) {
+		List<Expression> result = new ArrayList<Expression>();
+		Map<Integer, List<String>> groups = new LinkedHashMap<Integer, List<String>>();
+		for (String literal : literals) {
+			if (literal.isEmpty()) {
+				addGroups(groups, result);
+				groups.clear();
+				result.add(new Sequence());
+				continue;
+			}
+			int first = literal.codePointAt(0);
+			List<String> group = groups.get(first);
+			if (group == null) {
+				group = new ArrayList<String>();
+				groups.put(first, group);
+			}
+			group.add(literal);
+		}
+		addGroups(groups, result);
+		return factorSuffix(result);
+	}
+
+	private void addGroups(Map<Integer, List<String>> groups, List<Expression> result) {
+		for (List<String> group : groups.values()) {
+			if (group.size() == 1) {
+				result.add(new Literal(group.get(0)));
+				continue;
+			}
+			int prefix = commonPrefixLength(group);
+			List<String> rest = new ArrayList<String>();
+			for (String literal : group) {
+				rest.add(literal.substring(prefix));
+			}
+			result.add(sequence(new Literal(group.get(0).substring(0, prefix)), alternation(alternatives(rest))));
+		}
+	}
+
+	/**
+	 * Pulls a suffix shared by all alternatives out of them, if they are all plain literals.
+	 */
+	private List<Expression> factorSuffix(List<Expression> alternatives) {
+		if (alternatives.size() < 2) {
+			return alternatives;
+		}
+		List<String> literals = new ArrayList<String>();
+		for (Expression alternative : alternatives) {
+			if (alternative.getClass() != Literal.class) {
+				return alternatives;
+			}
+			literals.add(((Literal) alternative).getLiteral());
+		}
+		int suffix = commonSuffixLength(literals);
+		if (suffix == 0) {
+			return alternatives;
+		}
+		List<Expression> stripped = new ArrayList<Expression>();
+		for (String literal : literals) {
+			String head = literal.substring(0, literal.length() - suffix);
+			stripped.add(head.isEmpty() ? new Sequence() : new Literal(head));
+		}
+		String tail = literals.get(0).substring(literals.get(0).length() - suffix);
+		List<Expression> result = new ArrayList<Expression>();
+		result.add(new Sequence(alternation(stripped), new Literal(tail)));
+		return result;
+	}
+
+	private Expression alternation(List<Expression> alternatives) {
+		List<Expression> merged = normalizer.mergeSingleCharacters(alternatives);
+		if (merged.size() == 1) {
+			return merged.get(0);
+		}
+		if (merged.size() == 2 && isEmptySequence(merged.get(1))) {
+			Expression operand = merged.get(0);
+			return new Optional(Normalizer.isAtom(operand) ? new BareOperand(operand) : operand);
+		}
+		return new Choice(merged.toArray(new Expression[merged.size()]));
+	}
+
+	private static Expression sequence(Literal prefix, Expression rest) {
+		if (rest.getClass() != Sequence.class) {
+			return new Sequence(prefix, rest);
+		}
+		List<Expression> children = new ArrayList<Expression>();
+		children.add(prefix);
+		for (Expression child : rest.children()) {
+			children.add(child);
+		}
+		return new Sequence(children.toArray(new Expression[children.size()]));
+	}
+
+	private static boolean isEmptySequence(Expression node) {
+		return node.getClass() == Sequence.class && !node.children().iterator().hasNext();
+	}
+
+	private static int commonPrefixLength(List<String> literals) {
+		String first = literals.get(0);
+		int length = first.length();
+		for (String literal : literals) {
+			int i = 0;
+			while (i < length && i < literal.length() && literal.charAt(i) == first.charAt(i)) {
+				i++;
+			}
+			length = i;
+		}
+		if (length > 0 && length < first.length() && Character.isHighSurrogate(first.charAt(length - 1))) {
+			length--;
+		}
+		return length;
+	}
+
+	private static int commonSuffixLength(List<String> literals) {
+		String first = literals.get(0);
+		int length = first.length();
+		for (String literal : literals) {
+			int i = 0;
+			while (i < length && i < literal.length()
+					&& literal.charAt(literal.length() - 1 - i) == first.charAt(first.length() - 1 - i)) {
+				i++;
+			}
+			length = i;
+		}
+		int start = first.length() - length;
+		if (length > 0 && start > 0 && Character.isLowSurrogate(first.charAt(start))
+				&& Character.isHighSurrogate(first.charAt(start - 1))) {
+			length--;
+		}
+		return length;
+	}
+}
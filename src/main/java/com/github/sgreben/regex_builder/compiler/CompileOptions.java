@@ -0,0 +1,263 @@
+package com.github.sgreben.regex_builder.compiler;
+
+import java.util.Collections;
+import java.util.EnumSet;
+import java.util.Objects;
+import java.util.Set;
+import com.github.sgreben.regex_builder.analysis.Complexity;
+
+/**
+ * Options controlling how {@link Compiler} turns an expression into a pattern.
+ *
+ * Instances are immutable; the {@code with...} methods return modified copies.
+ */
+public class CompileOptions {
+	private static final CompileOptions defaults = new CompileOptions();
+
+	private PatternCache cache;
+	private boolean normalize;
+	private boolean factorChoices;
+	private boolean possessify;
+	private boolean prefilter;
+	private Complexity complexityLimit;
+	private ComplexityPolicy complexityPolicy;
+	private Engine engine;
+	private Set<Engine> excludedEngines;
+	private long dfaCacheLimit;
+	private boolean utf8Dfa;
+
+	private CompileOptions() {
+		this.cache = PatternCache.shared();
+		this.normalize = false;
+		this.factorChoices = true;
+		this.possessify = false;
+		this.prefilter = true;
+		this.complexityLimit = null;
+		this.complexityPolicy = ComplexityPolicy.REJECT;
+		this.engine = Engine.AUTO;
+		this.excludedEngines = Collections.unmodifiableSet(EnumSet.noneOf(Engine.class));
+		this.dfaCacheLimit = 1 << 21;
+		this.utf8Dfa = false;
+	}
+
+	private CompileOptions(CompileOptions other) {
+		this.cache = other.cache;
+		this.normalize = other.normalize;
+		this.factorChoices = other.factorChoices;
+		this.possessify = other.possessify;
+		this.prefilter = other.prefilter;
+		this.complexityLimit = other.complexityLimit;
+		this.complexityPolicy = other.complexityPolicy;
+		this.engine = other.engine;
+		this.excludedEngines = other.excludedEngines;
+		this.dfaCacheLimit = other.dfaCacheLimit;
+		this.utf8Dfa = other.utf8Dfa;
+	}
+
+	public static CompileOptions defaults() {
+		return defaults;
+	}
+
+	/**
+	 * The cache used to share compiled patterns, or null if caching is disabled.
+	 */
+	public PatternCache cache() {
+		return cache;
+	}
+
+	/**
+	 * Use the given cache (null disables caching).
+	 */
+	public CompileOptions withCache(PatternCache cache) {
+		CompileOptions options = new CompileOptions(this);
+		options.cache = cache;
+		return options;
+	}
+
+	public CompileOptions withoutCache() {
+		return withCache(null);
+	}
+
+	/**
+	 * Whether the expression is simplified by {@link Normalizer} before it is compiled, which also
+	 * enables {@link #factorChoices()}. Off by default: it costs several times the rest of the
+	 * compilation, which every pattern compiled once and matched little would pay. Turn it on for
+	 * patterns matched often; the cache keeps the normalized pattern for later compilations.
+	 */
+	public boolean normalize() {
+		return normalize;
+	}
+
+	public CompileOptions withNormalization(boolean normalize) {
+		CompileOptions options = new CompileOptions(this);
+		options.normalize = normalize;
+		return options;
+	}
+
+	/**
+	 * Whether normalization factors runs of literal alternatives into a trie of shared prefixes and
+	 * suffixes (see {@link ChoiceFactoring}). Has no effect without normalization, and is skipped for
+	 * case-insensitive patterns.
+	 */
+	public boolean factorChoices() {
+		return factorChoices;
+	}
+
+	public CompileOptions withChoiceFactoring(boolean factorChoices) {
+		CompileOptions options = new CompileOptions(this);
+		options.factorChoices = factorChoices;
+		return options;
+	}
+
+	/**
+	 * Whether greedy quantifiers that never need to backtrack are made possessive (see
+	 * {@link Possessifier}). Off by default.
+	 */
+	public boolean possessify() {
+		return possessify;
+	}
+
+	public CompileOptions withPossessification(boolean possessify) {
+		CompileOptions options = new CompileOptions(this);
+		options.possessify = possessify;
+		return options;
+	}
+
+	/**
+	 * Whether patterns search for the rarest literal that every match contains (see
+	 * {@link com.github.sgreben.regex_builder.analysis.RequiredLiterals}) before running the regex in
+	 * {@code find()}.
+	 */
+	public boolean prefilter() {
+		return prefilter;
+	}
+
+	public CompileOptions withPrefilter(boolean prefilter) {
+		CompileOptions options = new CompileOptions(this);
+		options.prefilter = prefilter;
+		return options;
+	}
+
+	/**
+	 * The highest backtracking complexity (see
+	 * {@link com.github.sgreben.regex_builder.analysis.BacktrackingAnalyzer}) accepted without
+	 * applying the {@link #complexityPolicy()}, or null if expressions are not analyzed.
+	 */
+	public Complexity complexityLimit() {
+		return complexityLimit;
+	}
+
+	public ComplexityPolicy complexityPolicy() {
+		return complexityPolicy;
+	}
+
+	/**
+	 * Analyze expressions after normalization, and apply the policy to those whose backtracking
+	 * complexity exceeds the limit.
+	 */
+	public CompileOptions withComplexityLimit(Complexity limit, ComplexityPolicy policy) {
+		CompileOptions options = new CompileOptions(this);
+		options.complexityLimit = limit;
+		options.complexityPolicy = policy;
+		return options;
+	}
+
+	public CompileOptions withoutComplexityLimit() {
+		return withComplexityLimit(null, ComplexityPolicy.REJECT);
+	}
+
+	/**
+	 * The engine used by matchers; {@link Engine#AUTO} by default.
+	 */
+	public Engine engine() {
+		return engine;
+	}
+
+	/**
+	 * Use the given engine, or choose one for each expression with {@link Engine#AUTO}.
+	 */
+	public CompileOptions withEngine(Engine engine) {
+		CompileOptions options = new CompileOptions(this);
+		options.engine = engine;
+		return options;
+	}
+
+	/**
+	 * The engines {@link Engine#AUTO} does not choose.
+	 */
+	public Set<Engine> excludedEngines() {
+		return excludedEngines;
+	}
+
+	/**
+	 * Never choose the given engine with {@link Engine#AUTO}. java.util.regex cannot be excluded, as
+	 * it is the engine of the expressions no other engine supports.
+	 */
+	public CompileOptions withoutEngine(Engine engine) {
+		if (engine == Engine.AUTO || engine == Engine.BACKTRACKING) {
+			throw new IllegalArgumentException("cannot exclude " + engine);
+		}
+		EnumSet<Engine> excluded = EnumSet.of(engine);
+		excluded.addAll(excludedEngines);
+		CompileOptions options = new CompileOptions(this);
+		options.excludedEngines = Collections.unmodifiableSet(excluded);
+		return options;
+	}
+
+	/**
+	 * The size in bytes up to which a pattern compiled for {@link Engine#LAZY_DFA} caches the states
+	 * of its DFA; 2 MiB by default.
+	 */
+	public long dfaCacheLimit() {
+		return dfaCacheLimit;
+	}
+
+	public CompileOptions withDfaCacheLimit(long bytes) {
+		if (bytes <= 0) {
+			throw new IllegalArgumentException("cache limit must be positive: " + bytes);
+		}
+		CompileOptions options = new CompileOptions(this);
+		options.dfaCacheLimit = bytes;
+		return options;
+	}
+
+	/**
+	 * Whether patterns are also compiled to a DFA over UTF-8 bytes (see
+	 * {@link com.github.sgreben.regex_builder.engine.Utf8Dfa}), with which their byte matchers find
+	 * matches without decoding the input. Only expressions in the regular subset have one.
+	 */
+	public boolean utf8Dfa() {
+		return utf8Dfa;
+	}
+
+	public CompileOptions withUtf8Dfa(boolean utf8Dfa) {
+		CompileOptions options = new CompileOptions(this);
+		options.utf8Dfa = utf8Dfa;
+		return options;
+	}
+
+	/**
+	 * Options are equal if they compile expressions alike, whatever their cache.
+	 */
+	@Override
+	public boolean equals(Object o) {
+		if (this == o) {
+			return true;
+		}
+		if (!(o instanceof CompileOptions)) {
+			return false;
+		}
+		CompileOptions other = (CompileOptions) o;
+		return normalize == other.normalize && factorChoices == other.factorChoices && possessify == other.possessify
+				&& prefilter == other.prefilter && Objects.equals(complexityLimit, other.complexityLimit)
+				&& complexityPolicy == other.complexityPolicy && engine == other.engine
+				&& excludedEngines.equals(other.excludedEngines) && dfaCacheLimit == other.dfaCacheLimit
+				&& utf8Dfa == other.utf8Dfa;
+	}
+
+	@Override
+	public int hashCode() {
+		return Objects.hash(normalize, factorChoices, possessify, prefilter, complexityLimit, complexityPolicy, engine,
+				excludedEngines, dfaCacheLimit, utf8Dfa);
+	}
+}
@@ -1,11 +1,14 @@
 package com.github.sgreben.regex_builder.compiler;
 
-import java.util.LinkedList;
-import com.github.sgreben.regex_builder.CaptureGroup;
 import com.github.sgreben.regex_builder.CaptureGroupIndex;
 import com.github.sgreben.regex_builder.Expression;
 import com.github.sgreben.regex_builder.Pattern;
-import com.github.sgreben.regex_builder.tokens.TOKEN;
+import com.github.sgreben.regex_builder.analysis.BacktrackingAnalyzer;
+import com.github.sgreben.regex_builder.analysis.BacktrackingReport;
+import com.github.sgreben.regex_builder.analysis.Complexity;
+import com.github.sgreben.regex_builder.engine.Utf8Dfa;
+import com.github.sgreben.regex_builder.tokens.END_GROUP;
+import com.github.sgreben.regex_builder.tokens.START_GROUP;
 
 public class Compiler {
 	public static Pattern compile(Expression expression) {
@@ -13,19 +16,85 @@ public class Compiler {
 	}
 
 	public static Pattern compile(Expression expression, final int flags) {
-		CaptureGroupVisitor visitor = new CaptureGroupVisitor();
-		CaptureGroup entireMatch = new CaptureGroup(expression);
-		LinkedList<TOKEN> tokens = new LinkedList<TOKEN>();
-		StringBuilder sb = new StringBuilder();
-		entireMatch.accept(visitor);
-		CaptureGroupIndex index = visitor.get();
-		entireMatch.compile(index, tokens);
-		for (TOKEN op : tokens) {
-			sb.append(op.regexString());
-		}
-		String regexString = sb.toString();
+		return compile(expression, flags, CompileOptions.defaults());
+	}
+
+	public static Pattern compile(Expression expression, final int flags, CompileOptions options) {
+		// The cache is looked up before any pass, so a hit costs one lookup of the tree.
+		PatternCache cache = options.cache();
+		if (cache == null) {
+			return compileUncached(expression, flags, options);
+		}
+		Pattern cached = cache.get(expression, flags, options);
+		if (cached != null) {
+			return cached;
+		}
+		return cache.put(expression, flags, options, compileUncached(expression, flags, options));
+	}
+
+	private static Pattern compileUncached(Expression expression, int flags, CompileOptions options) {
+		if (options.normalize()) {
+			expression = Normalizer.normalize(expression, flags, options.factorChoices());
+		}
+		Expression regular = expression;
+		if (options.possessify()) {
+			expression = Possessifier.possessify(expression, flags);
+		}
+		Complexity matchBudget = null;
+		Complexity limit = options.complexityLimit();
+		if (limit != null) {
+			BacktrackingReport report = BacktrackingAnalyzer.analyze(expression, flags);
+			if (report.getComplexity().exceeds(limit)) {
+				if (options.complexityPolicy() == ComplexityPolicy.REJECT) {
+					throw new ComplexityLimitExceededException(report, limit);
+				}
+				matchBudget = limit;
+			}
+		}
+		return compileTree(expression, regular, flags, options).withMatchBudget(matchBudget);
+	}
+
+	private static Pattern compileTree(Expression expression, Expression regular, int flags, CompileOptions options) {
+		// The entire match is wrapped in an unnamed group, so user groups are numbered from 2.
+		CaptureGroupIndex index = CaptureGroupIndex.numberedFrom(2);
+		String regexString = write(expression, index);
+		if (!index.finishNumbering()) {
+			// A back reference precedes (an occurrence of) its group: number the groups first.
+			CaptureGroupVisitor visitor = new CaptureGroupVisitor(2);
+			expression.accept(visitor);
+			index = visitor.get();
+			regexString = write(expression, index);
+		}
 		java.util.regex.Pattern rawPattern = java.util.regex.Pattern.compile(regexString, flags);
-		return new Pattern(rawPattern, index);
+		final int groupCount = rawPattern.matcher("").groupCount();
+		// Engines and prefilters are built on the first match, so patterns that are compiled but rarely
+		// matched do not pay for them.
+		Pattern pattern = new Pattern(rawPattern, index)
+				.withLazyEngine(() -> EngineSelector.select(expression, regular, flags, options, groupCount));
+		if (options.prefilter()) {
+			pattern = pattern.withLazyAnalysis(expression, flags);
+		}
+		if (options.utf8Dfa()) {
+			Utf8Dfa utf8Dfa = Utf8Dfa.of(pattern.dfa());
+			pattern = pattern.withUtf8Dfa(utf8Dfa != null ? utf8Dfa : Utf8Dfa.compile(regular, flags));
+		}
+		return pattern;
+	}
+
+	/**
+	 * Writes the regex for the expression, wrapped in a group, in a single traversal.
+	 */
+	static String write(Expression expression, CaptureGroupIndex index) {
+		RegexWriter writer = RegexWriter.open();
+		try {
+			writer.add(START_GROUP.INSTANCE);
+			expression.compile(index, writer);
+			writer.add(END_GROUP.INSTANCE);
+		} catch (RuntimeException e) {
+			writer.close();
+			throw e;
+		}
+		return writer.close();
 	}
 
 }
@@ -0,0 +1,29 @@
+package com.github.sgreben.regex_builder.compiler;
+
+import com.github.sgreben.regex_builder.analysis.BacktrackingReport;
+import com.github.sgreben.regex_builder.analysis.Complexity;
+
+/**
+ * Thrown when an expression is compiled with {@link ComplexityPolicy#REJECT} and its backtracking
+ * complexity exceeds the limit.
+ */
+public class ComplexityLimitExceededException extends IllegalArgumentException {
+	private static final long serialVersionUID = 1L;
+
+	private final transient BacktrackingReport report;
+	private final Complexity limit;
+
+	public ComplexityLimitExceededException(BacktrackingReport report, Complexity limit) {
+		super("Backtracking complexity is " + report + ", the limit is " + limit + ".");
+		this.report = report;
+		this.limit = limit;
+	}
+
+	public BacktrackingReport getReport() {
+		return report;
+	}
+
+	public Complexity getLimit() {
+		return limit;
+	}
+}
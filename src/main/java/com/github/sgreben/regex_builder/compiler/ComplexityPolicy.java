@@ -0,0 +1,21 @@
+package com.github.sgreben.regex_builder.compiler;
+
+/**
+ * What {@link Compiler} does with an expression whose backtracking complexity exceeds the limit
+ * set with {@link CompileOptions#withComplexityLimit}.
+ */
+public enum ComplexityPolicy {
+	/**
+	 * Throw a {@link ComplexityLimitExceededException}.
+	 */
+	REJECT,
+	/**
+	 * Compile the pattern with a match budget (see
+	 * {@link com.github.sgreben.regex_builder.Pattern#withMatchBudget}): matching gives up with a
+	 * {@link com.github.sgreben.regex_builder.MatchBudgetExceededException} once it takes more steps
+	 * than a matcher within the limit would. The budget applies to java.util.regex: with
+	 * {@link Engine#AUTO}, such expressions are run by an engine that runs in linear time if they
+	 * are in its subset.
+	 */
+	REROUTE
+}
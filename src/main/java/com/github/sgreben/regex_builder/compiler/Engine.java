@@ -0,0 +1,58 @@
+package com.github.sgreben.regex_builder.compiler;
+
+/**
+ * The engine matchers use to match and find (see
+ * {@link com.github.sgreben.regex_builder.engine.MatchEngine}). Each engine other than
+ * java.util.regex supports a subset of expressions; outside it, and for calls and inputs it cannot
+ * handle, matchers use java.util.regex.
+ */
+public enum Engine {
+	/**
+	 * Chosen by {@link EngineSelector} from the expression tree, among the engines not excluded with
+	 * {@link CompileOptions#withoutEngine}.
+	 */
+	AUTO,
+	/**
+	 * java.util.regex only.
+	 */
+	BACKTRACKING,
+	/**
+	 * A DFA (see {@link com.github.sgreben.regex_builder.engine.Dfa}), which runs in time linear in
+	 * the input. Group captures are taken from java.util.regex, run once at the start of the match.
+	 * Expressions outside the regular subset, and inputs the DFA cannot handle, use java.util.regex.
+	 */
+	DFA,
+	/**
+	 * A DFA built while matching (see {@link com.github.sgreben.regex_builder.engine.LazyDfa}), for
+	 * expressions whose full DFA is too large. Its states are cached up to
+	 * {@link CompileOptions#dfaCacheLimit()} bytes per pattern, shared by the pattern's matchers.
+	 */
+	LAZY_DFA,
+	/**
+	 * A Pike VM (see {@link com.github.sgreben.regex_builder.engine.PikeVm}), which runs in time
+	 * linear in the input and also extracts the groups. It supports possessive quantifiers and atomic
+	 * groups. Expressions with lookarounds, back references or word boundaries, and inputs the VM
+	 * cannot handle, use java.util.regex.
+	 */
+	PIKE_VM,
+	/**
+	 * A one-pass matcher (see {@link com.github.sgreben.regex_builder.engine.OnePass}) for
+	 * expressions where the next char always tells which way to go, such as field extraction
+	 * patterns. It extracts the groups in one scan, for {@code matches()}, and for {@code find()}
+	 * when matches start at the start of the input. Other expressions and calls use java.util.regex.
+	 */
+	ONE_PASS,
+	/**
+	 * A bit-parallel matcher (see {@link com.github.sgreben.regex_builder.engine.BitParallel}) for
+	 * expressions with at most 64 character positions and no anchors, for {@code matches()} and to
+	 * fail {@code find()} without running java.util.regex. Matches found and groups are taken from
+	 * java.util.regex.
+	 */
+	BIT_PARALLEL,
+	/**
+	 * The one-pass matcher of {@link #ONE_PASS}, compiled to a JVM class at compile time (see
+	 * {@link com.github.sgreben.regex_builder.engine.GeneratedMatcher}), for hot patterns where the
+	 * cost of generating and loading a class pays off. Never chosen by {@link #AUTO}.
+	 */
+	GENERATED
+}
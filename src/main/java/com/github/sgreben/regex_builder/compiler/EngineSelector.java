@@ -0,0 +1,157 @@
+package com.github.sgreben.regex_builder.compiler;
+
+import java.util.ArrayList;
+import java.util.List;
+import com.github.sgreben.regex_builder.CaptureGroup;
+import com.github.sgreben.regex_builder.Expression;
+import com.github.sgreben.regex_builder.analysis.BacktrackingAnalyzer;
+import com.github.sgreben.regex_builder.engine.BitParallel;
+import com.github.sgreben.regex_builder.engine.Dfa;
+import com.github.sgreben.regex_builder.engine.GeneratedMatcher;
+import com.github.sgreben.regex_builder.engine.MatchEngine;
+import com.github.sgreben.regex_builder.engine.OnePass;
+import com.github.sgreben.regex_builder.engine.PikeVm;
+import com.github.sgreben.regex_builder.expression.BackReference;
+import com.github.sgreben.regex_builder.expression.Literal;
+import com.github.sgreben.regex_builder.expression.NegativeLookahead;
+import com.github.sgreben.regex_builder.expression.NegativeLookbehind;
+import com.github.sgreben.regex_builder.expression.PositiveLookahead;
+import com.github.sgreben.regex_builder.expression.PositiveLookbehind;
+import com.github.sgreben.regex_builder.expression.Raw;
+import com.github.sgreben.regex_builder.expression.Sequence;
+
+/**
+ * Chooses the engine of an expression for {@link Engine#AUTO}, from its tree:
+ * <ul>
+ * <li>Expressions with back references, lookarounds or raw fragments, which only java.util.regex
+ * supports, and literal strings, which java.util.regex and the literal prefilter search fastest,
+ * use java.util.regex.</li>
+ * <li>Expressions with groups try the one-pass matcher, which extracts them in a single scan.</li>
+ * <li>Small expressions try the bit-parallel matcher.</li>
+ * <li>Expressions on which java.util.regex may backtrack super-linearly (see
+ * {@link BacktrackingAnalyzer}) try an engine that runs in linear time: the Pike VM if they have
+ * groups, and otherwise the DFA if they are small, or else the lazy DFA.</li>
+ * </ul>
+ * Excluded engines, and engines that cannot be built for the expression, are skipped; the last
+ * candidate is java.util.regex.
+ */
+public class EngineSelector {
+	/**
+	 * The largest tree, in nodes, for which the DFA is built in full.
+	 */
+	static final int MAX_DFA_NODES = 256;
+
+	private EngineSelector() {
+	}
+
+	/**
+	 * The engines to try for the expression, best first, ending with {@link Engine#BACKTRACKING}.
+	 */
+	public static List<Engine> candidates(Expression expression, int flags) {
+		Features features = new Features();
+		features.visit(expression);
+		List<Engine> candidates = new ArrayList<Engine>();
+		if (!features.backtrackingOnly && !features.literal) {
+			if (features.groups) {
+				candidates.add(Engine.ONE_PASS);
+			}
+			if (features.nodes <= BitParallel.MAX_POSITIONS) {
+				candidates.add(Engine.BIT_PARALLEL);
+			}
+			if (!BacktrackingAnalyzer.analyze(expression, flags).getComplexity().isLinear()) {
+				if (features.groups) {
+					candidates.add(Engine.PIKE_VM);
+				} else {
+					if (features.nodes <= MAX_DFA_NODES) {
+						candidates.add(Engine.DFA);
+					}
+					candidates.add(Engine.LAZY_DFA);
+				}
+			}
+		}
+		candidates.add(Engine.BACKTRACKING);
+		return candidates;
+	}
+
+	/**
+	 * The engine of the options for the expression, or null for java.util.regex: the first
+	 * candidate not excluded that can be built, with {@link Engine#AUTO}.
+	 *
+	 * @param expression the expression of the regex, after possessification
+	 * @param regular the expression before possessification
+	 * @param groupCount the number of groups of the regex
+	 */
+	static MatchEngine select(Expression expression, Expression regular, int flags, CompileOptions options,
+			int groupCount) {
+		if (options.engine() != Engine.AUTO) {
+			return build(options.engine(), expression, regular, flags, options, groupCount);
+		}
+		for (Engine engine : candidates(expression, flags)) {
+			if (options.excludedEngines().contains(engine)) {
+				continue;
+			}
+			MatchEngine built = build(engine, expression, regular, flags, options, groupCount);
+			if (built != null || engine == Engine.BACKTRACKING) {
+				return built;
+			}
+		}
+		return null;
+	}
+
+	/**
+	 * The given engine for the expression, or null if it cannot be built. The DFAs and the
+	 * bit-parallel and one-pass matchers are built from the tree before possessification, as
+	 * possessive quantifiers are not regular. The Pike VM is built from the tree of the regex, as its
+	 * groups must be those of the regex; so are the groups of a one-pass matcher, whose expression
+	 * the Pike VM must support. The generated matcher is that of the one-pass matcher.
+	 */
+	static MatchEngine build(Engine engine, Expression expression, Expression regular, int flags,
+			CompileOptions options, int groupCount) {
+		switch (engine) {
+		case DFA:
+			return Dfa.compile(regular, flags);
+		case LAZY_DFA:
+			return Dfa.compileLazy(regular, flags, options.dfaCacheLimit());
+		case PIKE_VM:
+			PikeVm pikeVm = PikeVm.compile(expression, flags, 2);
+			return pikeVm != null && pikeVm.groupCount() == groupCount ? pikeVm : null;
+		case ONE_PASS:
+			OnePass onePass = OnePass.compile(regular, flags, 2);
+			if (onePass == null || onePass.groupCount() != groupCount) {
+				return null;
+			}
+			return PikeVm.compile(expression, flags, 2) != null ? onePass : null;
+		case GENERATED:
+			MatchEngine built = build(Engine.ONE_PASS, expression, regular, flags, options, groupCount);
+			return built == null ? null : GeneratedMatcher.generate((OnePass) built);
+		case BIT_PARALLEL:
+			return BitParallel.compile(regular, flags);
+		default:
+			return null;
+		}
+	}
+
+	/**
+	 * What the choice depends on in the tree.
+	 */
+	private static final class Features {
+		boolean backtrackingOnly;
+		boolean groups;
+		boolean literal = true;
+		int nodes;
+
+		void visit(Expression node) {
+			nodes++;
+			Class<?> type = node.getClass();
+			if (type == BackReference.class || type == PositiveLookahead.class || type == NegativeLookahead.class
+					|| type == PositiveLookbehind.class || type == NegativeLookbehind.class || type == Raw.class) {
+				backtrackingOnly = true;
+			}
+			groups |= node instanceof CaptureGroup;
+			literal &= type == Sequence.class || type == Literal.class;
+			for (Expression child : node.children()) {
+				visit(child);
+			}
+		}
+	}
+}
@@ -0,0 +1,490 @@
+package com.github.sgreben.regex_builder.compiler;
+
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import com.github.sgreben.regex_builder.CaptureGroup;
+import com.github.sgreben.regex_builder.CharClass;
+import com.github.sgreben.regex_builder.Expression;
+import com.github.sgreben.regex_builder.ExpressionWrapper;
+import com.github.sgreben.regex_builder.charclass.AnyCharacter;
+import com.github.sgreben.regex_builder.charclass.BeginInput;
+import com.github.sgreben.regex_builder.charclass.Complement;
+import com.github.sgreben.regex_builder.charclass.Digit;
+import com.github.sgreben.regex_builder.charclass.EndInput;
+import com.github.sgreben.regex_builder.charclass.EndInputBeforeFinalTerminator;
+import com.github.sgreben.regex_builder.charclass.HorizontalWhitespace;
+import com.github.sgreben.regex_builder.charclass.Intersection;
+import com.github.sgreben.regex_builder.charclass.NonDigit;
+import com.github.sgreben.regex_builder.charclass.NonHorizontalWhitespace;
+import com.github.sgreben.regex_builder.charclass.NonVerticalWhitespace;
+import com.github.sgreben.regex_builder.charclass.NonWhitespace;
+import com.github.sgreben.regex_builder.charclass.NonWordBoundary;
+import com.github.sgreben.regex_builder.charclass.NonWordCharacter;
+import com.github.sgreben.regex_builder.charclass.OneOf;
+import com.github.sgreben.regex_builder.charclass.Range;
+import com.github.sgreben.regex_builder.charclass.RangeSet;
+import com.github.sgreben.regex_builder.charclass.Union;
+import com.github.sgreben.regex_builder.charclass.VerticalWhitespace;
+import com.github.sgreben.regex_builder.charclass.Whitespace;
+import com.github.sgreben.regex_builder.charclass.WordBoundary;
+import com.github.sgreben.regex_builder.charclass.WordCharacter;
+import com.github.sgreben.regex_builder.expression.Atomic;
+import com.github.sgreben.regex_builder.expression.BackReference;
+import com.github.sgreben.regex_builder.expression.CharClassExpression;
+import com.github.sgreben.regex_builder.expression.Choice;
+import com.github.sgreben.regex_builder.expression.Literal;
+import com.github.sgreben.regex_builder.expression.NegativeLookahead;
+import com.github.sgreben.regex_builder.expression.NegativeLookbehind;
+import com.github.sgreben.regex_builder.expression.Optional;
+import com.github.sgreben.regex_builder.expression.OptionalPossessive;
+import com.github.sgreben.regex_builder.expression.OptionalReluctant;
+import com.github.sgreben.regex_builder.expression.PositiveLookahead;
+import com.github.sgreben.regex_builder.expression.PositiveLookbehind;
+import com.github.sgreben.regex_builder.expression.Raw;
+import com.github.sgreben.regex_builder.expression.Repeat;
+import com.github.sgreben.regex_builder.expression.Repeat1;
+import com.github.sgreben.regex_builder.expression.Repeat1Possessive;
+import com.github.sgreben.regex_builder.expression.Repeat1Reluctant;
+import com.github.sgreben.regex_builder.expression.RepeatAtLeast;
+import com.github.sgreben.regex_builder.expression.RepeatAtLeastPossessive;
+import com.github.sgreben.regex_builder.expression.RepeatAtLeastReluctant;
+import com.github.sgreben.regex_builder.expression.RepeatPossessive;
+import com.github.sgreben.regex_builder.expression.RepeatReluctant;
+import com.github.sgreben.regex_builder.expression.Sequence;
+import com.github.sgreben.regex_builder.expression.Unary;
+
+/**
+ * Rewrites an expression tree into an equivalent, simpler one before it is compiled:
+ * <ul>
+ * <li>nested sequences and choices are flattened,</li>
+ * <li>adjacent literals are merged,</li>
+ * <li>quantifiers over a single atom are emitted without a "(?:...)" group,</li>
+ * <li>runs of single-character alternatives become one character class,</li>
+ * <li>alternatives that cannot match are dropped.</li>
+ * </ul>
+ * Capture groups are never removed, and the alternatives of a choice keep their order, so the
+ * rewritten tree matches the same strings with the same groups.
+ * Node classes that are not known to the normalizer are left as they are.
+ */
+public class Normalizer {
+	private final int flags;
+	private final boolean factorChoices;
+	private final boolean evaluateClasses;
+
+	private Normalizer(int flags, boolean factorChoices, boolean containsRaw) {
+		this.flags = flags;
+		// Raw fragments may set flags inline, which changes what characters match each other.
+		this.factorChoices = factorChoices && !containsRaw
+				&& (flags & (java.util.regex.Pattern.CASE_INSENSITIVE | java.util.regex.Pattern.CANON_EQ)) == 0;
+		this.evaluateClasses = !containsRaw;
+	}
+
+	public static Expression normalize(Expression node) {
+		return normalize(node, 0, true);
+	}
+
+	/**
+	 * @param flags the flags the expression will be compiled with.
+	 * @param factorChoices whether runs of literal alternatives are factored by {@link ChoiceFactoring}.
+	 */
+	public static Expression normalize(Expression node, int flags, boolean factorChoices) {
+		return new Normalizer(flags, factorChoices, containsRaw(node)).rewrite(node);
+	}
+
+	private Expression rewrite(Expression node) {
+		Class<?> type = node.getClass();
+		if (type == Sequence.class) {
+			return normalizeSequence(node);
+		}
+		if (type == Choice.class) {
+			return normalizeChoice(node);
+		}
+		if (type == CharClassExpression.class) {
+			return normalizeCharClass((CharClassExpression) node);
+		}
+		if (node instanceof ExpressionWrapper) {
+			return rewrite(node.children().iterator().next());
+		}
+		if (type == BareOperand.class) {
+			return rewrite(((BareOperand) node).child());
+		}
+		if (node instanceof CaptureGroup) {
+			CaptureGroup group = (CaptureGroup) node;
+			Expression child = group.children().iterator().next();
+			Expression normalized = rewrite(child);
+			return normalized == child ? group : new RewrittenCaptureGroup(group, normalized);
+		}
+		if (node instanceof Unary) {
+			return normalizeUnary((Unary) node);
+		}
+		return node;
+	}
+
+	/**
+	 * The expression "(?!)", which matches nowhere.
+	 */
+	static Expression never() {
+		return new NegativeLookahead(new Sequence());
+	}
+
+	static boolean isNever(Expression node) {
+		return node.getClass() == NegativeLookahead.class
+				&& ((Unary) node).child().getClass() == Sequence.class
+				&& !((Unary) node).child().children().iterator().hasNext();
+	}
+
+	/**
+	 * Replaces composite classes by the flat range set they evaluate to, and empty classes by an
+	 * expression that never matches.
+	 */
+	private Expression normalizeCharClass(CharClassExpression node) {
+		CharClass charClass = node.getCharClass();
+		if (isEmpty(charClass)) {
+			return never();
+		}
+		RangeSet set = rangeSet(charClass);
+		if (set == null) {
+			return node;
+		}
+		if (set.isEmpty()) {
+			return never();
+		}
+		return isFlat(charClass) ? node : new CharClassExpression(set);
+	}
+
+	private RangeSet rangeSet(CharClass charClass) {
+		return evaluateClasses ? charClass.toRangeSet(flags) : null;
+	}
+
+	/**
+	 * Whether the class is emitted as a single shorthand or bracket expression without nesting.
+	 */
+	private static boolean isFlat(CharClass charClass) {
+		Class<?> type = charClass.getClass();
+		return type == RangeSet.class
+				|| type == OneOf.class
+				|| type == Range.class
+				|| type == AnyCharacter.class
+				|| type == Digit.class
+				|| type == NonDigit.class
+				|| type == WordCharacter.class
+				|| type == NonWordCharacter.class
+				|| type == Whitespace.class
+				|| type == NonWhitespace.class
+				|| type == HorizontalWhitespace.class
+				|| type == NonHorizontalWhitespace.class
+				|| type == VerticalWhitespace.class
+				|| type == NonVerticalWhitespace.class;
+	}
+
+	private Expression normalizeSequence(Expression node) {
+		List<Expression> children = new ArrayList<Expression>();
+		boolean changed = false;
+		for (Expression child : node.children()) {
+			Expression normalized = rewrite(child);
+			changed |= normalized != child;
+			if (normalized.getClass() == Sequence.class) {
+				for (Expression grandChild : normalized.children()) {
+					children.add(grandChild);
+				}
+				changed = true;
+			} else {
+				children.add(normalized);
+			}
+		}
+		List<Expression> merged = new ArrayList<Expression>();
+		boolean never = false;
+		for (Expression child : children) {
+			never |= isNever(child);
+			if (child.getClass() == Literal.class) {
+				String literal = ((Literal) child).getLiteral();
+				if (literal.isEmpty()) {
+					changed = true;
+					continue;
+				}
+				int last = merged.size() - 1;
+				if (last >= 0 && merged.get(last).getClass() == Literal.class) {
+					merged.set(last, new Literal(((Literal) merged.get(last)).getLiteral() + literal));
+					changed = true;
+					continue;
+				}
+			}
+			merged.add(child);
+		}
+		if (never && merged.size() > 1 && !containsCapture(node)) {
+			return never();
+		}
+		if (merged.size() == 1) {
+			return merged.get(0);
+		}
+		return changed ? new Sequence(toArray(merged)) : node;
+	}
+
+	private Expression normalizeChoice(Expression node) {
+		List<Expression> branches = new ArrayList<Expression>();
+		List<Expression> alternatives = new ArrayList<Expression>();
+		boolean changed = collectAlternatives(node, alternatives);
+		for (Expression child : alternatives) {
+			Expression normalized = rewrite(child);
+			changed |= normalized != child;
+			if (normalized.getClass() == Choice.class) {
+				for (Expression grandChild : normalized.children()) {
+					branches.add(grandChild);
+				}
+				changed = true;
+			} else if (isNever(normalized) && !containsCapture(child)) {
+				changed = true;
+			} else {
+				branches.add(normalized);
+			}
+		}
+		if (factorChoices) {
+			List<Expression> factored = new ChoiceFactoring(this).factorLiteralRuns(branches);
+			changed |= factored != branches;
+			branches = factored;
+		}
+		List<Expression> merged = mergeSingleCharacters(branches);
+		changed |= merged.size() != branches.size();
+		if (merged.isEmpty()) {
+			return never();
+		}
+		if (merged.size() == 1) {
+			return merged.get(0);
+		}
+		return changed ? new Choice(toArray(merged)) : node;
+	}
+
+	/**
+	 * Collects the alternatives of a choice, splicing in those of nested choices. Returns true if
+	 * there were nested choices.
+	 */
+	private static boolean collectAlternatives(Expression choice, List<Expression> alternatives) {
+		boolean nested = false;
+		for (Expression child : choice.children()) {
+			if (child.getClass() == Choice.class) {
+				collectAlternatives(child, alternatives);
+				nested = true;
+			} else {
+				alternatives.add(child);
+			}
+		}
+		return nested;
+	}
+
+	private Expression normalizeUnary(Unary node) {
+		Expression child = node.child();
+		Expression normalized = rewrite(child);
+		Class<?> type = node.getClass();
+		if (type == Atomic.class) {
+			return normalized == child ? node : new Atomic(normalized);
+		}
+		if (type == PositiveLookahead.class) {
+			return normalized == child ? node : new PositiveLookahead(normalized);
+		}
+		if (type == NegativeLookahead.class) {
+			return normalized == child ? node : new NegativeLookahead(normalized);
+		}
+		if (type == PositiveLookbehind.class) {
+			return normalized == child ? node : new PositiveLookbehind(normalized);
+		}
+		if (type == NegativeLookbehind.class) {
+			return normalized == child ? node : new NegativeLookbehind(normalized);
+		}
+		Expression operand = isAtom(normalized) ? new BareOperand(normalized) : normalized;
+		if (type == Repeat.class) {
+			Repeat repeat = (Repeat) node;
+			return new Repeat(operand, repeat.getLowerBound(), repeat.getUpperBound());
+		}
+		if (type == RepeatPossessive.class) {
+			Repeat repeat = (Repeat) node;
+			return new RepeatPossessive(operand, repeat.getLowerBound(), repeat.getUpperBound());
+		}
+		if (type == RepeatReluctant.class) {
+			Repeat repeat = (Repeat) node;
+			return new RepeatReluctant(operand, repeat.getLowerBound(), repeat.getUpperBound());
+		}
+		if (type == RepeatAtLeast.class) {
+			return new RepeatAtLeast(operand, ((RepeatAtLeast) node).getLowerBound());
+		}
+		if (type == RepeatAtLeastPossessive.class) {
+			return new RepeatAtLeastPossessive(operand, ((RepeatAtLeast) node).getLowerBound());
+		}
+		if (type == RepeatAtLeastReluctant.class) {
+			return new RepeatAtLeastReluctant(operand, ((RepeatAtLeast) node).getLowerBound());
+		}
+		if (type == Repeat1.class) {
+			return new Repeat1(operand);
+		}
+		if (type == Repeat1Possessive.class) {
+			return new Repeat1Possessive(operand);
+		}
+		if (type == Repeat1Reluctant.class) {
+			return new Repeat1Reluctant(operand);
+		}
+		if (type == Optional.class) {
+			return new Optional(operand);
+		}
+		if (type == OptionalPossessive.class) {
+			return new OptionalPossessive(operand);
+		}
+		if (type == OptionalReluctant.class) {
+			return new OptionalReluctant(operand);
+		}
+		return node;
+	}
+
+	/**
+	 * Whether the node is emitted as a single regex atom that a quantifier can be applied to
+	 * without grouping it first.
+	 */
+	static boolean isAtom(Expression node) {
+		Class<?> type = node.getClass();
+		if (type == Literal.class) {
+			String literal = ((Literal) node).getLiteral();
+			return !literal.isEmpty() && literal.codePointCount(0, literal.length()) == 1;
+		}
+		if (type == CharClassExpression.class) {
+			return !isZeroWidth(((CharClassExpression) node).getCharClass());
+		}
+		// A quantified capture group keeps its (?:...) wrapper: java.util.regex compiles "(x)*" as
+		// a group loop that reports different captures than "(?:(x))*".
+		return type == Choice.class
+				|| type == Atomic.class
+				|| type == BackReference.class;
+	}
+
+	/**
+	 * Replaces runs of adjacent single-character branches by one character class. Such branches
+	 * match exactly one character, so the order among them does not matter.
+	 */
+	List<Expression> mergeSingleCharacters(List<Expression> branches) {
+		List<Expression> merged = new ArrayList<Expression>();
+		for (int i = 0; i < branches.size();) {
+			int j = i;
+			while (j < branches.size() && isSingleCharacter(branches.get(j))) {
+				j++;
+			}
+			if (j - i > 1) {
+				merged.add(charClassOf(branches.subList(i, j)));
+				i = j;
+			} else {
+				merged.add(branches.get(i));
+				i++;
+			}
+		}
+		return merged;
+	}
+
+	/**
+	 * Whether the node matches a single character that can be written inside a bracket union: a
+	 * literal, or a class whose set can be evaluated. "." would mean a literal dot there.
+	 */
+	private boolean isSingleCharacter(Expression node) {
+		if (node.getClass() == Literal.class) {
+			return isAtom(node);
+		}
+		if (node.getClass() != CharClassExpression.class || !isAtom(node)) {
+			return false;
+		}
+		CharClass charClass = ((CharClassExpression) node).getCharClass();
+		return charClass.getClass() != AnyCharacter.class && rangeSet(charClass) != null;
+	}
+
+	private static boolean isZeroWidth(CharClass charClass) {
+		Class<?> type = charClass.getClass();
+		return type == BeginInput.class
+				|| type == EndInput.class
+				|| type == EndInputBeforeFinalTerminator.class
+				|| type == WordBoundary.class
+				|| type == NonWordBoundary.class;
+	}
+
+	private Expression charClassOf(List<Expression> branches) {
+		StringBuilder chars = new StringBuilder();
+		List<CharClass> classes = new ArrayList<CharClass>();
+		for (Expression branch : branches) {
+			if (branch.getClass() == Literal.class) {
+				appendEscaped(chars, ((Literal) branch).getLiteral().codePointAt(0));
+			} else {
+				classes.add(((CharClassExpression) branch).getCharClass());
+			}
+		}
+		if (chars.length() > 0) {
+			classes.add(0, new OneOf(chars.toString()));
+		}
+		CharClass union = classes.size() == 1 ? classes.get(0) : new Union(classes.toArray(new CharClass[classes.size()]));
+		RangeSet set = rangeSet(union);
+		return new CharClassExpression(set != null ? set : union);
+	}
+
+	private static void appendEscaped(StringBuilder sb, int codePoint) {
+		if (codePoint < 128 && Character.isLetterOrDigit(codePoint)) {
+			sb.append((char) codePoint);
+		} else {
+			sb.append("\\x{").append(Integer.toHexString(codePoint)).append('}');
+		}
+	}
+
+	private static boolean containsCapture(Expression node) {
+		if (node instanceof CaptureGroup) {
+			return true;
+		}
+		for (Expression child : node.children()) {
+			if (containsCapture(child)) {
+				return true;
+			}
+		}
+		return false;
+	}
+
+	/**
+	 * Detects classes that are empty whatever the flags, such as the complement of any character.
+	 */
+	static boolean isEmpty(CharClass charClass) {
+		Class<?> type = charClass.getClass();
+		if (type == OneOf.class) {
+			return ((OneOf) charClass).getChars().isEmpty();
+		}
+		if (type == Complement.class) {
+			return isEmpty(charClass.children().iterator().next().complement());
+		}
+		if (type == Intersection.class) {
+			for (CharClass child : charClass.children()) {
+				if (isEmpty(child)) {
+					return true;
+				}
+			}
+			return false;
+		}
+		if (type == Union.class) {
+			Iterator<CharClass> children = charClass.children().iterator();
+			if (!children.hasNext()) {
+				return false;
+			}
+			while (children.hasNext()) {
+				if (!isEmpty(children.next())) {
+					return false;
+				}
+			}
+			return true;
+		}
+		return false;
+	}
+
+	static boolean containsRaw(Expression node) {
+		if (node.getClass() == Raw.class) {
+			return true;
+		}
+		for (Expression child : node.children()) {
+			if (containsRaw(child)) {
+				return true;
+			}
+		}
+		return false;
+	}
+
+	private static Expression[] toArray(List<Expression> expressions) {
+		return expressions.toArray(new Expression[expressions.size()]);
+	}
+}
@@ -0,0 +1,178 @@
+package com.github.sgreben.regex_builder.compiler;
+
+import java.lang.ref.WeakReference;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
+import com.github.sgreben.regex_builder.Expression;
+import com.github.sgreben.regex_builder.Pattern;
+
+/**
+ * A bounded, thread-safe cache of compiled patterns.
+ *
+ * Entries are keyed by the expression tree, as given to the compiler, together with the compile
+ * flags and options. Trees are compared by their structural equality: structurally identical trees
+ * that consist of the same {@link com.github.sgreben.regex_builder.CaptureGroup} objects (groups
+ * are compared by identity) share one compiled pattern, and a hit skips every compiler pass. Trees
+ * must not change once compiled. The least recently used entry is evicted once the cache is full.
+ * With weak values, entries are dropped as soon as no compiled pattern is referenced from outside
+ * the cache.
+ */
+public class PatternCache {
+	private static final PatternCache shared = new PatternCache(256);
+
+	private final int maximumSize;
+	private final boolean weakValues;
+	private final Map<Key, Object> entries;
+	private final AtomicLong hits = new AtomicLong();
+	private final AtomicLong misses = new AtomicLong();
+	private final AtomicLong evictions = new AtomicLong();
+
+	public PatternCache(int maximumSize) {
+		this(maximumSize, false);
+	}
+
+	public PatternCache(int maximumSize, boolean weakValues) {
+		if (maximumSize < 1) {
+			throw new IllegalArgumentException("The maximum cache size must be positive.");
+		}
+		this.maximumSize = maximumSize;
+		this.weakValues = weakValues;
+		this.entries = new LinkedHashMap<Key, Object>(16, 0.75f, true) {
+			@Override
+			protected boolean removeEldestEntry(Map.Entry<Key, Object> eldest) {
+				if (size() > PatternCache.this.maximumSize) {
+					evictions.incrementAndGet();
+					return true;
+				}
+				return false;
+			}
+		};
+	}
+
+	/**
+	 * The cache used by {@link Compiler} unless configured otherwise.
+	 */
+	public static PatternCache shared() {
+		return shared;
+	}
+
+	/**
+	 * Returns the pattern cached for the given expression, flags and options, or null.
+	 */
+	public Pattern get(Expression expression, int flags, CompileOptions options) {
+		Key key = new Key(expression, flags, options);
+		Pattern pattern;
+		synchronized (this) {
+			pattern = unwrap(entries.get(key));
+			if (pattern == null) {
+				entries.remove(key);
+			}
+		}
+		if (pattern == null) {
+			misses.incrementAndGet();
+		} else {
+			hits.incrementAndGet();
+		}
+		return pattern;
+	}
+
+	/**
+	 * Stores the pattern unless an entry for the expression, flags and options already exists, and
+	 * returns the pattern that is now cached.
+	 */
+	public Pattern put(Expression expression, int flags, CompileOptions options, Pattern pattern) {
+		Key key = new Key(expression, flags, options);
+		synchronized (this) {
+			Pattern existing = unwrap(entries.get(key));
+			if (existing != null) {
+				return existing;
+			}
+			if (weakValues) {
+				expungeCleared();
+				entries.put(key, new WeakReference<Pattern>(pattern));
+			} else {
+				entries.put(key, pattern);
+			}
+			return pattern;
+		}
+	}
+
+	public synchronized void clear() {
+		entries.clear();
+	}
+
+	public synchronized int size() {
+		return entries.size();
+	}
+
+	public int maximumSize() {
+		return maximumSize;
+	}
+
+	public boolean hasWeakValues() {
+		return weakValues;
+	}
+
+	public long hitCount() {
+		return hits.get();
+	}
+
+	public long missCount() {
+		return misses.get();
+	}
+
+	public long evictionCount() {
+		return evictions.get();
+	}
+
+	@Override
+	public String toString() {
+		return "PatternCache[size=" + size() + ", maximumSize=" + maximumSize + ", hits=" + hitCount()
+				+ ", misses=" + missCount() + ", evictions=" + evictionCount() + "]";
+	}
+
+	private void expungeCleared() {
+		Iterator<Object> it = entries.values().iterator();
+		while (it.hasNext()) {
+			if (unwrap(it.next()) == null) {
+				it.remove();
+			}
+		}
+	}
+
+	@SuppressWarnings("unchecked")
+	private static Pattern unwrap(Object value) {
+		if (value instanceof WeakReference) {
+			return ((WeakReference<Pattern>) value).get();
+		}
+		return (Pattern) value;
+	}
+
+	private static final class Key {
+		private final Expression expression;
+		private final int flags;
+		private final CompileOptions options;
+
+		Key(Expression expression, int flags, CompileOptions options) {
+			this.expression = expression;
+			this.flags = flags;
+			this.options = options;
+		}
+
+		@Override
+		public boolean equals(Object o) {
+			if (!(o instanceof Key)) {
+				return false;
+			}
+			Key other = (Key) o;
+			return flags == other.flags && expression.equals(other.expression) && options.equals(other.options);
+		}
+
+		@Override
+		public int hashCode() {
+			return (31 * expression.hashCode() + flags) * 31 + options.hashCode();
+		}
+	}
+}
@@ -0,0 +1,351 @@
+package com.github.sgreben.regex_builder.compiler;
+
+import java.util.ArrayList;
+import java.util.List;
+import com.github.sgreben.regex_builder.CaptureGroup;
+import com.github.sgreben.regex_builder.CharClass;
+import com.github.sgreben.regex_builder.Expression;
+import com.github.sgreben.regex_builder.charclass.EndInput;
+import com.github.sgreben.regex_builder.charclass.EndInputBeforeFinalTerminator;
+import com.github.sgreben.regex_builder.charclass.RangeSet;
+import com.github.sgreben.regex_builder.expression.Atomic;
+import com.github.sgreben.regex_builder.expression.CharClassExpression;
+import com.github.sgreben.regex_builder.expression.Choice;
+import com.github.sgreben.regex_builder.expression.EndLine;
+import com.github.sgreben.regex_builder.expression.Expressions;
+import com.github.sgreben.regex_builder.expression.Literal;
+import com.github.sgreben.regex_builder.expression.NegativeLookahead;
+import com.github.sgreben.regex_builder.expression.Optional;
+import com.github.sgreben.regex_builder.expression.OptionalPossessive;
+import com.github.sgreben.regex_builder.expression.OptionalReluctant;
+import com.github.sgreben.regex_builder.expression.PositiveLookahead;
+import com.github.sgreben.regex_builder.expression.Repeat;
+import com.github.sgreben.regex_builder.expression.Repeat1;
+import com.github.sgreben.regex_builder.expression.Repeat1Possessive;
+import com.github.sgreben.regex_builder.expression.Repeat1Reluctant;
+import com.github.sgreben.regex_builder.expression.RepeatAtLeast;
+import com.github.sgreben.regex_builder.expression.RepeatAtLeastPossessive;
+import com.github.sgreben.regex_builder.expression.RepeatAtLeastReluctant;
+import com.github.sgreben.regex_builder.expression.RepeatPossessive;
+import com.github.sgreben.regex_builder.expression.RepeatReluctant;
+import com.github.sgreben.regex_builder.expression.Sequence;
+import com.github.sgreben.regex_builder.expression.Unary;
+
+/**
+ * Makes greedy quantifiers possessive where backtracking into them can never lead to a match.
+ *
+ * A greedy quantifier gives back iterations only if what follows fails. After giving back an
+ * iteration, what follows has to match at the position where that iteration started, i.e. at a
+ * character from the first-set of the body. If no match of what follows can start with such a
+ * character, giving back is useless, and if the body itself can only match in one way (a sequence
+ * of literals and character classes, without groups), so is backtracking into the last iteration.
+ * Such a quantifier is replaced by its possessive equivalent.
+ *
+ * The pass does nothing for flags under which characters match other characters (case folding and
+ * the like), and for trees with raw fragments.
+ */
+public class Possessifier {
+	private static final RangeSet lineTerminators = RangeSet.of('\n', '\n', '\r', '\r', 0x85, 0x85, 0x2028, 0x2029);
+
+	private final int flags;
+
+	private Possessifier(int flags) {
+		this.flags = flags;
+	}
+
+	public static Expression possessify(Expression node, int flags) {
+		if (!RangeSet.isEvaluable(flags) || Normalizer.containsRaw(node)) {
+			return node;
+		}
+		return new Possessifier(flags).rewrite(node, Follow.ACCEPT);
+	}
+
+	/**
+	 * What can come after a node: the characters a match of the rest of the pattern may start
+	 * with, and whether the rest may match without consuming anything. A null Follow means nothing
+	 * is known.
+	 */
+	private static final class Follow {
+		static final Follow ACCEPT = new Follow(RangeSet.EMPTY, true);
+		static final Follow NOTHING = new Follow(RangeSet.EMPTY, false);
+
+		final RangeSet chars;
+		final boolean canBeEmpty;
+
+		Follow(RangeSet chars, boolean canBeEmpty) {
+			this.chars = chars;
+			this.canBeEmpty = canBeEmpty;
+		}
+
+		Follow union(Follow other) {
+			return new Follow(chars.union(other.chars), canBeEmpty || other.canBeEmpty);
+		}
+	}
+
+	private Expression rewrite(Expression node, Follow follow) {
+		Class<?> type = node.getClass();
+		if (type == Sequence.class) {
+			List<Expression> children = new ArrayList<Expression>();
+			for (Expression child : node.children()) {
+				children.add(child);
+			}
+			Expression[] rewritten = new Expression[children.size()];
+			boolean changed = false;
+			Follow rest = follow;
+			for (int i = children.size() - 1; i >= 0; i--) {
+				rewritten[i] = rewrite(children.get(i), rest);
+				changed |= rewritten[i] != children.get(i);
+				rest = prepend(children.get(i), rest);
+			}
+			return changed ? new Sequence(rewritten) : node;
+		}
+		if (type == Choice.class) {
+			List<Expression> branches = new ArrayList<Expression>();
+			boolean changed = false;
+			for (Expression branch : node.children()) {
+				Expression rewritten = rewrite(branch, follow);
+				changed |= rewritten != branch;
+				branches.add(rewritten);
+			}
+			return changed ? new Choice(branches.toArray(new Expression[branches.size()])) : node;
+		}
+		if (node instanceof CaptureGroup) {
+			CaptureGroup group = (CaptureGroup) node;
+			Expression child = group.children().iterator().next();
+			Expression rewritten = rewrite(child, follow);
+			return rewritten == child ? group : new RewrittenCaptureGroup(group, rewritten);
+		}
+		if (type == BareOperand.class) {
+			Expression child = ((BareOperand) node).child();
+			Expression rewritten = rewrite(child, follow);
+			return rewritten == child ? node : new BareOperand(rewritten);
+		}
+		// Lookaheads and atomic groups are not backtracked into: their content is followed by nothing.
+		if (type == Atomic.class) {
+			Expression child = ((Unary) node).child();
+			Expression rewritten = rewrite(child, Follow.ACCEPT);
+			return rewritten == child ? node : new Atomic(rewritten);
+		}
+		if (type == PositiveLookahead.class) {
+			Expression child = ((Unary) node).child();
+			Expression rewritten = rewrite(child, Follow.ACCEPT);
+			return rewritten == child ? node : new PositiveLookahead(rewritten);
+		}
+		if (type == NegativeLookahead.class) {
+			Expression child = ((Unary) node).child();
+			Expression rewritten = rewrite(child, Follow.ACCEPT);
+			return rewritten == child ? node : new NegativeLookahead(rewritten);
+		}
+		if (isQuantifier(type)) {
+			return rewriteQuantifier((Unary) node, follow);
+		}
+		return node;
+	}
+
+	private Expression rewriteQuantifier(Unary node, Follow follow) {
+		Class<?> type = node.getClass();
+		Expression body = node.child();
+		// Each iteration is followed by either another iteration or by what follows the quantifier.
+		Follow afterIteration = follow;
+		if (follow != null && maxIterations(node) != 1) {
+			Follow again = prepend(body, follow);
+			afterIteration = again == null ? null : again.union(follow);
+		}
+		Expression rewritten = rewrite(body, afterIteration);
+		boolean greedy = type == Repeat.class || type == Repeat1.class || type == RepeatAtLeast.class
+				|| type == Optional.class;
+		// An exact count has no iterations to give back.
+		boolean exact = minIterations(node) == maxIterations(node);
+		if (greedy && !exact && follow != null && isDeterministic(body)) {
+			Follow first = prepend(body, Follow.NOTHING);
+			if (first != null && !first.canBeEmpty && first.chars.intersection(follow.chars).isEmpty()) {
+				return possessive(node, rewritten);
+			}
+		}
+		return rewritten == body ? node : rebuild(node, rewritten);
+	}
+
+	/**
+	 * What can come after the start of the node, given what comes after its end.
+	 */
+	private Follow prepend(Expression node, Follow follow) {
+		Class<?> type = node.getClass();
+		if (type == Literal.class) {
+			String literal = ((Literal) node).getLiteral();
+			if (literal.isEmpty()) {
+				return follow;
+			}
+			int first = literal.codePointAt(0);
+			return new Follow(RangeSet.of(first, first), false);
+		}
+		if (type == CharClassExpression.class) {
+			CharClass charClass = ((CharClassExpression) node).getCharClass();
+			if (charClass.getClass() == EndInput.class) {
+				return Follow.ACCEPT;
+			}
+			if (charClass.getClass() == EndInputBeforeFinalTerminator.class) {
+				return follow == null ? null : new Follow(follow.chars.union(lineTerminators), follow.canBeEmpty);
+			}
+			RangeSet set = charClass.toRangeSet(flags);
+			return set == null ? null : new Follow(set, false);
+		}
+		if (type == EndLine.class) {
+			return follow == null ? null : new Follow(follow.chars.union(lineTerminators), follow.canBeEmpty);
+		}
+		if (type == Sequence.class) {
+			List<Expression> children = new ArrayList<Expression>();
+			for (Expression child : node.children()) {
+				children.add(child);
+			}
+			Follow rest = follow;
+			for (int i = children.size() - 1; i >= 0; i--) {
+				rest = prepend(children.get(i), rest);
+			}
+			return rest;
+		}
+		if (type == Choice.class) {
+			Follow result = Follow.NOTHING;
+			for (Expression branch : node.children()) {
+				Follow start = prepend(branch, follow);
+				if (start == null) {
+					return null;
+				}
+				result = result.union(start);
+			}
+			return result;
+		}
+		if (Expressions.isWrapper(node) || type == Atomic.class) {
+			return prepend(node.children().iterator().next(), follow);
+		}
+		if (isQuantifier(type)) {
+			Unary quantifier = (Unary) node;
+			Follow start = prepend(quantifier.child(), follow);
+			if (start == null || minIterations(quantifier) > 0) {
+				return start;
+			}
+			return follow == null ? null : start.union(follow);
+		}
+		return null;
+	}
+
+	/**
+	 * Whether the node can match in at most one way at a given position, and captures nothing.
+	 */
+	private static boolean isDeterministic(Expression node) {
+		Class<?> type = node.getClass();
+		if (type == Literal.class) {
+			return true;
+		}
+		if (type == CharClassExpression.class) {
+			return true;
+		}
+		if (type == Sequence.class) {
+			for (Expression child : node.children()) {
+				if (!isDeterministic(child)) {
+					return false;
+				}
+			}
+			return true;
+		}
+		if (Expressions.isWrapper(node) && !(node instanceof CaptureGroup)) {
+			return isDeterministic(node.children().iterator().next());
+		}
+		// Groups are not: java.util.regex keeps the captures of an iteration a possessive quantifier
+		// gave up on.
+		return false;
+	}
+
+	private static boolean isQuantifier(Class<?> type) {
+		return Repeat.class.isAssignableFrom(type)
+				|| Repeat1.class.isAssignableFrom(type)
+				|| RepeatAtLeast.class.isAssignableFrom(type)
+				|| Optional.class.isAssignableFrom(type);
+	}
+
+	private static int minIterations(Unary node) {
+		if (node instanceof Repeat) {
+			Repeat repeat = (Repeat) node;
+			Integer lower = repeat.getLowerBound() != null ? repeat.getLowerBound() : repeat.getUpperBound();
+			return lower != null ? lower : 0;
+		}
+		if (node instanceof RepeatAtLeast) {
+			return ((RepeatAtLeast) node).getLowerBound();
+		}
+		if (node instanceof Repeat1) {
+			return 1;
+		}
+		return 0;
+	}
+
+	/**
+	 * The maximal number of iterations, or -1 if unbounded.
+	 */
+	private static int maxIterations(Unary node) {
+		if (node instanceof Repeat) {
+			Repeat repeat = (Repeat) node;
+			Integer upper = repeat.getUpperBound() != null ? repeat.getUpperBound() : repeat.getLowerBound();
+			return upper != null ? upper : -1;
+		}
+		if (node instanceof Optional) {
+			return 1;
+		}
+		return -1;
+	}
+
+	private static Expression possessive(Unary node, Expression body) {
+		Class<?> type = node.getClass();
+		if (type == Repeat.class) {
+			Repeat repeat = (Repeat) node;
+			return new RepeatPossessive(body, repeat.getLowerBound(), repeat.getUpperBound());
+		}
+		if (type == Repeat1.class) {
+			return new Repeat1Possessive(body);
+		}
+		if (type == RepeatAtLeast.class) {
+			return new RepeatAtLeastPossessive(body, ((RepeatAtLeast) node).getLowerBound());
+		}
+		return new OptionalPossessive(body);
+	}
+
+	private static Expression rebuild(Unary node, Expression body) {
+		Class<?> type = node.getClass();
+		if (type == Repeat.class || type == RepeatPossessive.class || type == RepeatReluctant.class) {
+			Repeat repeat = (Repeat) node;
+			if (type == RepeatPossessive.class) {
+				return new RepeatPossessive(body, repeat.getLowerBound(), repeat.getUpperBound());
+			}
+			if (type == RepeatReluctant.class) {
+				return new RepeatReluctant(body, repeat.getLowerBound(), repeat.getUpperBound());
+			}
+			return new Repeat(body, repeat.getLowerBound(), repeat.getUpperBound());
+		}
+		if (type == RepeatAtLeast.class) {
+			return new RepeatAtLeast(body, ((RepeatAtLeast) node).getLowerBound());
+		}
+		if (type == RepeatAtLeastPossessive.class) {
+			return new RepeatAtLeastPossessive(body, ((RepeatAtLeast) node).getLowerBound());
+		}
+		if (type == RepeatAtLeastReluctant.class) {
+			return new RepeatAtLeastReluctant(body, ((RepeatAtLeast) node).getLowerBound());
+		}
+		if (type == Repeat1.class) {
+			return new Repeat1(body);
+		}
+		if (type == Repeat1Possessive.class) {
+			return new Repeat1Possessive(body);
+		}
+		if (type == Repeat1Reluctant.class) {
+			return new Repeat1Reluctant(body);
+		}
+		if (type == Optional.class) {
+			return new Optional(body);
+		}
+		if (type == OptionalPossessive.class) {
+			return new OptionalPossessive(body);
+		}
+		if (type == OptionalReluctant.class) {
+			return new OptionalReluctant(body);
+		}
+		return node;
+	}
+}
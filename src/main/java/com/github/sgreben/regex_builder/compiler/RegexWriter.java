@@ -0,0 +1,87 @@
+package com.github.sgreben.regex_builder.compiler;
+
+import java.util.AbstractList;
+import java.util.Arrays;
+import com.github.sgreben.regex_builder.tokens.TOKEN;
+
+/**
+ * A token list that writes each added token straight into a buffer as well as keeping it. The
+ * buffer and the token array are kept per thread and reused across compilations, so that compiling
+ * allocates little beyond the resulting regex string.
+ */
+class RegexWriter extends AbstractList<TOKEN> {
+	private static final int INITIAL_CAPACITY = 256;
+	/**
+	 * Buffers that grew beyond this are not kept for reuse.
+	 */
+	private static final int MAX_RETAINED_CAPACITY = 1 << 16;
+	private static final int INITIAL_TOKENS = 64;
+
+	private static final ThreadLocal<RegexWriter> WRITERS = new ThreadLocal<RegexWriter>() {
+		@Override
+		protected RegexWriter initialValue() {
+			return new RegexWriter();
+		}
+	};
+
+	private StringBuilder buffer = new StringBuilder(INITIAL_CAPACITY);
+	private TOKEN[] tokens = new TOKEN[INITIAL_TOKENS];
+	private int size;
+	private boolean inUse;
+
+	/**
+	 * An empty writer. Returns the thread's shared writer unless it is in use further up the stack,
+	 * e.g. by a compilation started from within {@link TOKEN#regexString()}.
+	 */
+	static RegexWriter open() {
+		RegexWriter writer = WRITERS.get();
+		if (writer.inUse) {
+			writer = new RegexWriter();
+		}
+		writer.inUse = true;
+		return writer;
+	}
+
+	/**
+	 * Returns the regex written so far and releases the writer.
+	 */
+	String close() {
+		String regex = buffer.toString();
+		if (buffer.capacity() > MAX_RETAINED_CAPACITY) {
+			buffer = new StringBuilder(INITIAL_CAPACITY);
+		} else {
+			buffer.setLength(0);
+		}
+		if (tokens.length > MAX_RETAINED_CAPACITY) {
+			tokens = new TOKEN[INITIAL_TOKENS];
+		} else {
+			Arrays.fill(tokens, 0, size, null);
+		}
+		size = 0;
+		inUse = false;
+		return regex;
+	}
+
+	@Override
+	public boolean add(TOKEN token) {
+		buffer.append(token.regexString());
+		if (size == tokens.length) {
+			tokens = Arrays.copyOf(tokens, 2 * size);
+		}
+		tokens[size++] = token;
+		return true;
+	}
+
+	@Override
+	public TOKEN get(int index) {
+		if (index < 0 || index >= size) {
+			throw new IndexOutOfBoundsException("Index: " + index + ", Size: " + size);
+		}
+		return tokens[index];
+	}
+
+	@Override
+	public int size() {
+		return size;
+	}
+}
@@ -0,0 +1,21 @@
+package com.github.sgreben.regex_builder.compiler;
+
+import com.github.sgreben.regex_builder.CaptureGroup;
+import com.github.sgreben.regex_builder.Expression;
+
+/**
+ * A capture group whose expression was rewritten by a compiler pass.
+ */
+class RewrittenCaptureGroup extends CaptureGroup {
+	private final CaptureGroup origin;
+
+	RewrittenCaptureGroup(CaptureGroup origin, Expression expression) {
+		super(expression, origin.getName());
+		this.origin = origin instanceof RewrittenCaptureGroup ? ((RewrittenCaptureGroup) origin).origin : origin;
+	}
+
+	@Override
+	protected CaptureGroup origin() {
+		return origin;
+	}
+}
@@ -0,0 +1,198 @@
+package com.github.sgreben.regex_builder.engine;
+
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeSet;
+import com.github.sgreben.regex_builder.charclass.RangeSet;
+
+/**
+ * The chars partitioned into equivalence classes: two chars are in the same class if every set of
+ * a program contains both or neither, and if they are in the same category for anchors. Automata
+ * have one transition per class instead of one per char.
+ */
+final class Alphabet {
+	/**
+	 * Categories of the char on either side of a position, for anchors. EDGE is the start or end of
+	 * the input.
+	 */
+	static final int EDGE = 0;
+	static final int LINE_FEED = 1;
+	static final int CARRIAGE_RETURN = 2;
+	/**
+	 * U+0085, U+2028 and U+2029.
+	 */
+	static final int OTHER_TERMINATOR = 3;
+	static final int OTHER = 4;
+	static final int CATEGORIES = 5;
+
+	/**
+	 * The class of each char, as 256 blocks of 256 chars. Equal blocks are shared.
+	 */
+	private final char[][] blocks;
+	private final int[] categories;
+	private final char[] representatives;
+
+	private Alphabet(char[][] blocks, int[] categories, char[] representatives) {
+		this.blocks = blocks;
+		this.categories = categories;
+		this.representatives = representatives;
+	}
+
+	static Alphabet of(List<RangeSet> sets) {
+		TreeSet<Integer> cutSet = new TreeSet<Integer>();
+		cutSet.add(0);
+		for (char c : new char[] {'\n', '\r', '\u0085', '\u2028', '\u2029'}) {
+			cutSet.add((int) c);
+			cutSet.add(c + 1);
+		}
+		cutSet.add((int) Character.MIN_SURROGATE);
+		cutSet.add(Character.MAX_SURROGATE + 1);
+		cutSet.add(Character.MAX_VALUE + 1);
+		for (RangeSet set : sets) {
+			int[] ranges = set.getRanges();
+			for (int i = 0; i < ranges.length && ranges[i] <= Character.MAX_VALUE; i += 2) {
+				cutSet.add(ranges[i]);
+				cutSet.add(Math.min(ranges[i + 1], Character.MAX_VALUE) + 1);
+			}
+		}
+		int[] cuts = new int[cutSet.size()];
+		int n = 0;
+		for (int cut : cutSet) {
+			cuts[n++] = cut;
+		}
+		// The signature of each interval between cuts: its category and the sets containing it.
+		StringBuilder[] signatures = new StringBuilder[cuts.length - 1];
+		for (int k = 0; k < signatures.length; k++) {
+			signatures[k] = new StringBuilder().append(category((char) cuts[k]));
+		}
+		for (int s = 0; s < sets.size(); s++) {
+			int[] ranges = sets.get(s).getRanges();
+			for (int i = 0; i < ranges.length && ranges[i] <= Character.MAX_VALUE; i += 2) {
+				for (int k = Arrays.binarySearch(cuts, ranges[i]); k < signatures.length && cuts[k] <= ranges[i + 1]; k++) {
+					signatures[k].append(',').append(s);
+				}
+			}
+		}
+		char[] classOf = new char[Character.MAX_VALUE + 1];
+		Map<String, Integer> classes = new HashMap<String, Integer>();
+		int[] categories = new int[16];
+		char[] representatives = new char[16];
+		for (int k = 0; k < signatures.length; k++) {
+			char c = (char) cuts[k];
+			String signature = signatures[k].toString();
+			Integer id = classes.get(signature);
+			if (id == null) {
+				id = classes.size();
+				classes.put(signature, id);
+				if (id == categories.length) {
+					categories = Arrays.copyOf(categories, 2 * id);
+					representatives = Arrays.copyOf(representatives, 2 * id);
+				}
+				categories[id] = category(c);
+				representatives[id] = c;
+			}
+			Arrays.fill(classOf, cuts[k], cuts[k + 1], (char) (int) id);
+		}
+		char[][] blocks = new char[256][];
+		Map<String, char[]> distinct = new HashMap<String, char[]>();
+		for (int i = 0; i < 256; i++) {
+			char[] block = Arrays.copyOfRange(classOf, i << 8, (i + 1) << 8);
+			String key = new String(block);
+			char[] shared = distinct.get(key);
+			if (shared == null) {
+				distinct.put(key, block);
+				shared = block;
+			}
+			blocks[i] = shared;
+		}
+		return new Alphabet(blocks, Arrays.copyOf(categories, classes.size()),
+				Arrays.copyOf(representatives, classes.size()));
+	}
+
+	int classCount() {
+		return categories.length;
+	}
+
+	/**
+	 * Writes the classes of the chars as read by {@link MappedDfa}: the class count, the number of
+	 * distinct blocks, the index of the block of each of the 256 blocks, then the distinct blocks.
+	 */
+	void write(DataOutputStream out) throws IOException {
+		Map<char[], Integer> distinct = new IdentityHashMap<char[], Integer>();
+		int[] blockOf = new int[blocks.length];
+		for (int i = 0; i < blocks.length; i++) {
+			Integer index = distinct.get(blocks[i]);
+			if (index == null) {
+				index = distinct.size();
+				distinct.put(blocks[i], index);
+			}
+			blockOf[i] = index;
+		}
+		out.writeInt(classCount());
+		out.writeInt(distinct.size());
+		for (int index : blockOf) {
+			out.writeInt(index);
+		}
+		char[][] ordered = new char[distinct.size()][];
+		for (Map.Entry<char[], Integer> block : distinct.entrySet()) {
+			ordered[block.getValue()] = block.getKey();
+		}
+		for (char[] block : ordered) {
+			for (char c : block) {
+				out.writeChar(c);
+			}
+		}
+	}
+
+	int classOf(char c) {
+		return blocks[c >>> 8][c & 0xFF];
+	}
+
+	/**
+	 * The anchor category of the chars of the class.
+	 */
+	int category(int charClass) {
+		return categories[charClass];
+	}
+
+	/**
+	 * A char of the class.
+	 */
+	char representative(int charClass) {
+		return representatives[charClass];
+	}
+
+	static int category(char c) {
+		switch (c) {
+		case '\n':
+			return LINE_FEED;
+		case '\r':
+			return CARRIAGE_RETURN;
+		case '\u0085':
+		case '\u2028':
+		case '\u2029':
+			return OTHER_TERMINATOR;
+		default:
+			return OTHER;
+		}
+	}
+
+	/**
+	 * The category of the char before the index, or EDGE at the start.
+	 */
+	static int categoryBefore(CharSequence input, int index) {
+		return index == 0 ? EDGE : category(input.charAt(index - 1));
+	}
+
+	/**
+	 * The category of the char at the index, or EDGE at the end.
+	 */
+	static int categoryAt(CharSequence input, int index) {
+		return index == input.length() ? EDGE : category(input.charAt(index));
+	}
+}
@@ -0,0 +1,262 @@
+package com.github.sgreben.regex_builder.engine;
+
+import java.util.Arrays;
+import com.github.sgreben.regex_builder.Expression;
+
+/**
+ * A bit-parallel matcher for short expressions in the regular subset (see {@link ProgramCompiler})
+ * without anchors: the positions of the Glushkov automaton, i.e. the CHAR instructions of the
+ * program, are the bits of one {@code long}, and reading a char keeps the positions whose set
+ * contains it (a mask per class of chars), then moves to the positions that follow them. If each
+ * position is followed only by the next one, as in fixed sequences of character classes, the move
+ * is a shift (Shift-And); otherwise it is the union of one table entry per byte of the state.
+ *
+ * It decides whether the whole input matches, and whether a match starts at or after an index,
+ * without allocating. Inputs with surrogates are not handled: the result is then {@link #UNKNOWN}.
+ */
+public final class BitParallel implements MatchEngine {
+	public static final int MAX_POSITIONS = 64;
+
+	private final Alphabet alphabet;
+	private final int positions;
+	/**
+	 * The positions whose set contains each class of chars.
+	 */
+	private final long[] masks;
+	/**
+	 * The positions at the start, and the positions after which the expression may end.
+	 */
+	private final long initial;
+	private final long finals;
+	private final boolean matchesEmpty;
+	private final boolean shift;
+	/**
+	 * The positions following each byte of the state, indexed by the byte's index times 256 plus
+	 * its value.
+	 */
+	private final long[] follows;
+	private final int bytes;
+
+	private BitParallel(Alphabet alphabet, int positions, long[] masks, long initial, long finals,
+			boolean matchesEmpty, long[] follow) {
+		this.alphabet = alphabet;
+		this.positions = positions;
+		this.masks = masks;
+		this.initial = initial;
+		this.finals = finals;
+		this.matchesEmpty = matchesEmpty;
+		boolean shift = true;
+		for (int p = 0; p < positions; p++) {
+			shift &= follow[p] == (p + 1 < positions ? 1L << (p + 1) : 0);
+		}
+		this.shift = shift;
+		this.bytes = (positions + 7) / 8;
+		this.follows = new long[bytes * 256];
+		for (int b = 0; b < bytes; b++) {
+			for (int value = 1; value < 256; value++) {
+				int p = 8 * b + Integer.numberOfTrailingZeros(value);
+				follows[b * 256 + value] = follows[b * 256 + (value & (value - 1))] | (p < positions ? follow[p] : 0);
+			}
+		}
+	}
+
+	/**
+	 * The matcher of the expression, or null if the expression or the flags are outside the regular
+	 * subset, if it has anchors, or if it has more than {@link #MAX_POSITIONS} positions.
+	 */
+	public static BitParallel compile(Expression expression, int flags) {
+		Program program = ProgramCompiler.compile(expression, flags, false);
+		if (program == null) {
+			return null;
+		}
+		int chars = 0;
+		for (int pc = 0; pc < program.size(); pc++) {
+			int op = program.op(pc);
+			if (op == Program.CHAR) {
+				chars++;
+			} else if (op != Program.SPLIT && op != Program.MATCH) {
+				return null;
+			}
+		}
+		if (chars > MAX_POSITIONS) {
+			return null;
+		}
+		return new Builder(program).build();
+	}
+
+	/**
+	 * The number of positions, i.e. of bits of the state.
+	 */
+	public int positionCount() {
+		return positions;
+	}
+
+	/**
+	 * Whether each position is followed only by the next one, so that the state moves by a shift.
+	 */
+	public boolean shiftAnd() {
+		return shift;
+	}
+
+	@Override
+	public String name() {
+		return "BIT_PARALLEL";
+	}
+
+	/**
+	 * No slots: matches are located by java.util.regex.
+	 */
+	@Override
+	public int slotCount() {
+		return 0;
+	}
+
+	@Override
+	public boolean finds() {
+		return true;
+	}
+
+	@Override
+	public int matches(CharSequence input, int[] slots) {
+		return matches(input);
+	}
+
+	@Override
+	public int find(CharSequence input, int from, int[] slots) {
+		return find(input, from);
+	}
+
+	/**
+	 * 1 if the whole input matches, 0 if not, or {@link #UNKNOWN}.
+	 */
+	public int matches(CharSequence input) {
+		int length = input.length();
+		long state = initial;
+		long matched = 0;
+		for (int i = 0; i < length; i++) {
+			char c = input.charAt(i);
+			if (Character.isSurrogate(c)) {
+				return UNKNOWN;
+			}
+			matched = state & masks[alphabet.classOf(c)];
+			if (matched == 0) {
+				return 0;
+			}
+			state = shift ? matched << 1 : follow(matched);
+		}
+		return length == 0 ? (matchesEmpty ? 1 : 0) : (matched & finals) != 0 ? 1 : 0;
+	}
+
+	/**
+	 * 1 if a match starts at or after the given index, 0 if not, or {@link #UNKNOWN}. Stops at the
+	 * end of the first match to end.
+	 */
+	public int find(CharSequence input, int from) {
+		if (matchesEmpty) {
+			return 1;
+		}
+		long state = initial;
+		for (int i = from, length = input.length(); i < length; i++) {
+			char c = input.charAt(i);
+			if (Character.isSurrogate(c)) {
+				return UNKNOWN;
+			}
+			long matched = state & masks[alphabet.classOf(c)];
+			if ((matched & finals) != 0) {
+				return 1;
+			}
+			state = (shift ? matched << 1 : follow(matched)) | initial;
+		}
+		return 0;
+	}
+
+	private long follow(long matched) {
+		long next = 0;
+		for (int b = 0; b < bytes; b++) {
+			next |= follows[b << 8 | (int) (matched >>> (b << 3)) & 0xff];
+		}
+		return next;
+	}
+
+	/**
+	 * Numbers the CHAR instructions in the order in which they are first reached from the start, so
+	 * that the positions of a chain are consecutive.
+	 */
+	private static final class Builder {
+		final Program program;
+		final int[] positionOf;
+		final int[] pcs;
+		int count;
+		final int[] visited;
+		int generation;
+		final int[] stack;
+		boolean reachesMatch;
+
+		Builder(Program program) {
+			this.program = program;
+			this.positionOf = new int[program.size()];
+			Arrays.fill(positionOf, -1);
+			this.pcs = new int[program.size()];
+			this.visited = new int[program.size()];
+			this.stack = new int[2 * program.size() + 1];
+		}
+
+		BitParallel build() {
+			long initial = closure(program.start());
+			boolean matchesEmpty = reachesMatch;
+			long[] follow = new long[program.size()];
+			long finals = 0;
+			for (int p = 0; p < count; p++) {
+				follow[p] = closure(program.next(pcs[p]));
+				if (reachesMatch) {
+					finals |= 1L << p;
+				}
+			}
+			Alphabet alphabet = Alphabet.of(program.sets());
+			long[] masks = new long[alphabet.classCount()];
+			for (int c = 0; c < masks.length; c++) {
+				for (int p = 0; p < count; p++) {
+					if (program.sets().get(program.arg(pcs[p])).contains(alphabet.representative(c))) {
+						masks[c] |= 1L << p;
+					}
+				}
+			}
+			return new BitParallel(alphabet, count, masks, initial, finals, matchesEmpty, follow);
+		}
+
+		/**
+		 * The positions reached from the instruction without consuming a char; sets
+		 * {@link #reachesMatch}.
+		 */
+		long closure(int from) {
+			generation++;
+			reachesMatch = false;
+			long reached = 0;
+			int top = 0;
+			stack[top++] = from;
+			while (top > 0) {
+				int pc = stack[--top];
+				if (visited[pc] == generation) {
+					continue;
+				}
+				visited[pc] = generation;
+				switch (program.op(pc)) {
+				case Program.SPLIT:
+					stack[top++] = program.alt(pc);
+					stack[top++] = program.next(pc);
+					break;
+				case Program.MATCH:
+					reachesMatch = true;
+					break;
+				default:
+					if (positionOf[pc] < 0) {
+						positionOf[pc] = count;
+						pcs[count++] = pc;
+					}
+					reached |= 1L << positionOf[pc];
+				}
+			}
+			return reached;
+		}
+	}
+}
@@ -0,0 +1,290 @@
+package com.github.sgreben.regex_builder.engine;
+
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * A writer of class files with the instructions {@link MatcherGenerator} uses. Classes have version
+ * 49, which needs no stack map frames.
+ */
+final class ClassFile {
+	static final int ACC_PUBLIC = 0x0001;
+	static final int ACC_PROTECTED = 0x0004;
+	static final int ACC_FINAL = 0x0010;
+	static final int ACC_SUPER = 0x0020;
+
+	static final int ICONST_0 = 0x03;
+	static final int ICONST_1 = 0x04;
+	static final int BIPUSH = 0x10;
+	static final int SIPUSH = 0x11;
+	static final int LDC_W = 0x13;
+	static final int ILOAD = 0x15;
+	static final int ALOAD = 0x19;
+	static final int ISTORE = 0x36;
+	static final int IASTORE = 0x4f;
+	static final int IINC = 0x84;
+	static final int IFEQ = 0x99;
+	static final int IF_ICMPEQ = 0x9f;
+	static final int IF_ICMPLT = 0xa1;
+	static final int IF_ICMPGE = 0xa2;
+	static final int IF_ICMPGT = 0xa3;
+	static final int IF_ICMPLE = 0xa4;
+	static final int GOTO = 0xa7;
+	static final int IRETURN = 0xac;
+	static final int RETURN = 0xb1;
+	static final int INVOKEVIRTUAL = 0xb6;
+	static final int INVOKESPECIAL = 0xb7;
+	static final int INVOKEINTERFACE = 0xb9;
+
+	private static final int UTF8 = 1;
+	private static final int INTEGER = 3;
+	private static final int CLASS = 7;
+	private static final int METHOD_REF = 10;
+	private static final int INTERFACE_METHOD_REF = 11;
+	private static final int NAME_AND_TYPE = 12;
+
+	private final ByteArrayOutputStream poolBytes = new ByteArrayOutputStream();
+	private final DataOutputStream pool = new DataOutputStream(poolBytes);
+	private final Map<String, Integer> constants = new HashMap<String, Integer>();
+	private int constantCount = 1;
+	private final String name;
+	private final String superName;
+	private final List<byte[]> methods = new ArrayList<byte[]>();
+
+	/**
+	 * @param name the internal name of the class, e.g. {@code a/b/C}
+	 */
+	ClassFile(String name, String superName) {
+		this.name = name;
+		this.superName = superName;
+	}
+
+	int utf8(String value) {
+		Integer index = constants.get("U" + value);
+		if (index == null) {
+			index = constantCount++;
+			constants.put("U" + value, index);
+			write(UTF8);
+			try {
+				pool.writeUTF(value);
+			} catch (IOException e) {
+				throw new IllegalStateException(e);
+			}
+		}
+		return index;
+	}
+
+	int integer(int value) {
+		Integer index = constants.get("I" + value);
+		if (index == null) {
+			index = constantCount++;
+			constants.put("I" + value, index);
+			write(INTEGER);
+			writeShort(value >>> 16);
+			writeShort(value);
+		}
+		return index;
+	}
+
+	int classRef(String internalName) {
+		return constant(CLASS, "C" + internalName, utf8(internalName), -1);
+	}
+
+	int methodRef(String owner, String name, String descriptor) {
+		return constant(METHOD_REF, "M" + owner + "." + name + descriptor, classRef(owner),
+				nameAndType(name, descriptor));
+	}
+
+	int interfaceMethodRef(String owner, String name, String descriptor) {
+		return constant(INTERFACE_METHOD_REF, "N" + owner + "." + name + descriptor, classRef(owner),
+				nameAndType(name, descriptor));
+	}
+
+	private int nameAndType(String name, String descriptor) {
+		return constant(NAME_AND_TYPE, "T" + name + descriptor, utf8(name), utf8(descriptor));
+	}
+
+	private int constant(int tag, String key, int first, int second) {
+		Integer index = constants.get(key);
+		if (index == null) {
+			index = constantCount++;
+			constants.put(key, index);
+			write(tag);
+			writeShort(first);
+			if (second >= 0) {
+				writeShort(second);
+			}
+		}
+		return index;
+	}
+
+	private void write(int b) {
+		poolBytes.write(b);
+	}
+
+	private void writeShort(int value) {
+		poolBytes.write(value >>> 8);
+		poolBytes.write(value);
+	}
+
+	/**
+	 * Adds a method with the given code, which must be resolved.
+	 */
+	void method(int access, String name, String descriptor, Code code) {
+		ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+		DataOutputStream out = new DataOutputStream(bytes);
+		try {
+			out.writeShort(access);
+			out.writeShort(utf8(name));
+			out.writeShort(utf8(descriptor));
+			out.writeShort(1);
+			out.writeShort(utf8("Code"));
+			out.writeInt(12 + code.size());
+			out.writeShort(code.maxStack);
+			out.writeShort(code.maxLocals);
+			out.writeInt(code.size());
+			out.write(code.bytes.toByteArray());
+			out.writeShort(0);
+			out.writeShort(0);
+		} catch (IOException e) {
+			throw new IllegalStateException(e);
+		}
+		methods.add(bytes.toByteArray());
+	}
+
+	byte[] toByteArray(int access) {
+		int thisClass = classRef(name);
+		int superClass = classRef(superName);
+		ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+		DataOutputStream out = new DataOutputStream(bytes);
+		try {
+			out.writeInt(0xCAFEBABE);
+			out.writeShort(0);
+			out.writeShort(49);
+			out.writeShort(constantCount);
+			out.write(poolBytes.toByteArray());
+			out.writeShort(access);
+			out.writeShort(thisClass);
+			out.writeShort(superClass);
+			out.writeShort(0);
+			out.writeShort(0);
+			out.writeShort(methods.size());
+			for (byte[] method : methods) {
+				out.write(method);
+			}
+			out.writeShort(0);
+		} catch (IOException e) {
+			throw new IllegalStateException(e);
+		}
+		return bytes.toByteArray();
+	}
+
+	/**
+	 * The code of a method, with labels for the targets of jumps.
+	 */
+	static final class Code {
+		private final ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+		private final int maxStack;
+		private final int maxLocals;
+		private int[] labels = new int[16];
+		private int labelCount;
+		/**
+		 * The offset of each jump and the label it jumps to.
+		 */
+		private int[] jumps = new int[32];
+		private int jumpCount;
+
+		Code(int maxStack, int maxLocals) {
+			this.maxStack = maxStack;
+			this.maxLocals = maxLocals;
+		}
+
+		int size() {
+			return bytes.size();
+		}
+
+		int newLabel() {
+			if (labelCount == labels.length) {
+				labels = Arrays.copyOf(labels, 2 * labelCount);
+			}
+			labels[labelCount] = -1;
+			return labelCount++;
+		}
+
+		void mark(int label) {
+			labels[label] = bytes.size();
+		}
+
+		void op(int opcode) {
+			bytes.write(opcode);
+		}
+
+		void op(int opcode, int operand) {
+			bytes.write(opcode);
+			bytes.write(operand);
+		}
+
+		void op2(int opcode, int operand) {
+			bytes.write(opcode);
+			bytes.write(operand >>> 8);
+			bytes.write(operand);
+		}
+
+		void iinc(int local, int delta) {
+			op(IINC, local);
+			bytes.write(delta);
+		}
+
+		void invokeInterface(int methodRef, int argumentSlots) {
+			op2(INVOKEINTERFACE, methodRef);
+			bytes.write(argumentSlots + 1);
+			bytes.write(0);
+		}
+
+		/**
+		 * Pushes the int, from the constant pool of the class if it does not fit in a short.
+		 */
+		void push(ClassFile classFile, int value) {
+			if (value >= -1 && value <= 5) {
+				op(ICONST_0 + value);
+			} else if (value >= Byte.MIN_VALUE && value <= Byte.MAX_VALUE) {
+				op(BIPUSH, value);
+			} else if (value >= Short.MIN_VALUE && value <= Short.MAX_VALUE) {
+				op2(SIPUSH, value);
+			} else {
+				op2(LDC_W, classFile.integer(value));
+			}
+		}
+
+		void jump(int opcode, int label) {
+			if (2 * jumpCount == jumps.length) {
+				jumps = Arrays.copyOf(jumps, 2 * jumps.length);
+			}
+			jumps[2 * jumpCount] = bytes.size();
+			jumps[2 * jumpCount + 1] = label;
+			jumpCount++;
+			op2(opcode, 0);
+		}
+
+		/**
+		 * Sets the offsets of the jumps. The code must be at most {@link Short#MAX_VALUE} bytes long.
+		 */
+		void resolve() {
+			byte[] code = bytes.toByteArray();
+			for (int j = 0; j < jumpCount; j++) {
+				int at = jumps[2 * j];
+				int offset = labels[jumps[2 * j + 1]] - at;
+				code[at + 1] = (byte) (offset >>> 8);
+				code[at + 2] = (byte) offset;
+			}
+			bytes.reset();
+			bytes.write(code, 0, code.length);
+		}
+	}
+}
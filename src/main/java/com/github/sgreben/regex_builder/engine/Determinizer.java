@@ -0,0 +1,286 @@
+package com.github.sgreben.regex_builder.engine;
+
+import java.util.Arrays;
+import java.util.BitSet;
+
+/**
+ * Subset construction of one automaton of a DFA from a {@link Program}. A {@link DfaState} is an
+ * ordered list of NFA threads waiting for the next character, in priority order, plus the category
+ * of the character already read next to them (for anchors).
+ *
+ * <ul>
+ * <li>{@link #FIRST} scans forwards from any start, and finds where the leftmost-first match ends:
+ * a new thread starts at every offset with the lowest priority, and when a thread matches, the
+ * threads of lower priority (including new starts) are dropped, as a backtracking matcher would
+ * never try them. Threads of higher priority may still match later and override the match.</li>
+ * <li>{@link #ALL} scans forwards from the start, and accepts if any thread matches at the end.
+ * </li>
+ * <li>{@link #LONGEST} runs the reversed program backwards from the end of a match, and finds the
+ * leftmost offset where a match can start.</li>
+ * </ul>
+ *
+ * "$" without MULTILINE at the end of the expression holds before a final line terminator. In
+ * {@link #FIRST}, a thread reaching it before the end of the input becomes a tail thread that
+ * reads the terminator, and accepts at the end of the input with a match ending one or two chars
+ * earlier.
+ *
+ * Instances keep scratch space, and are not thread-safe.
+ */
+final class Determinizer {
+	static final int FIRST = 0;
+	static final int ALL = 1;
+	static final int LONGEST = 2;
+
+	private final Program program;
+	private final Alphabet alphabet;
+	private final int mode;
+	/**
+	 * The classes in each set of the program, computed when first needed.
+	 */
+	private final BitSet[] members;
+	/**
+	 * Tail threads: after "$" (before reading the terminator), after a carriage return, and after
+	 * one or two chars of terminator that must end the input.
+	 */
+	private final int tail;
+	private final int tailAfterCarriageReturn;
+	private final int tailAfterTerminator;
+	private final int tailAfterCrLf;
+
+	// Scratch space of the closure.
+	private final int[] visited;
+	private int generation;
+	private final int[] stack;
+	private int[] leaves;
+	private int leafCount;
+	private int accepted;
+
+	Determinizer(Program program, Alphabet alphabet, int mode) {
+		this.program = program;
+		this.alphabet = alphabet;
+		this.mode = mode;
+		this.members = new BitSet[program.sets().size()];
+		this.tail = program.size();
+		this.tailAfterCarriageReturn = tail + 1;
+		this.tailAfterTerminator = tail + 2;
+		this.tailAfterCrLf = tail + 3;
+		this.visited = new int[tail + 4];
+		this.stack = new int[2 * (tail + 4) + 1];
+		this.leaves = new int[16];
+	}
+
+	int mode() {
+		return mode;
+	}
+
+	Alphabet alphabet() {
+		return alphabet;
+	}
+
+	/**
+	 * The number of start contexts: the category of the char before the start, and in
+	 * {@link #LONGEST}, whether "$" without MULTILINE holds at the start.
+	 */
+	int contexts() {
+		return mode == LONGEST ? 2 * Alphabet.CATEGORIES : Alphabet.CATEGORIES;
+	}
+
+	DfaState start(int context) {
+		return state(context, mode == FIRST, new int[] {program.start()});
+	}
+
+	/**
+	 * Whether a match ends (starts, in {@link #LONGEST}) at the position of the state, given the
+	 * category of the char on the side not yet read: -1 if not, else how many chars before this
+	 * position the first match ends.
+	 */
+	int accepts(DfaState state, int category) {
+		closure(state, category);
+		return accepted;
+	}
+
+	/**
+	 * The state after reading a char of the class. {@link #accepted()} then returns whether a match
+	 * ends before the char, as {@link #accepts} would.
+	 */
+	DfaState step(DfaState state, int charClass) {
+		int category = alphabet.category(charClass);
+		closure(state, category);
+		return step(state, charClass, category);
+	}
+
+	int accepted() {
+		return accepted;
+	}
+
+	private static DfaState state(int context, boolean searching, int[] threads) {
+		return !searching && threads.length == 0 ? DfaState.DEAD : new DfaState(context, searching, threads);
+	}
+
+	/**
+	 * Follows the threads of the state to the instructions that read a char, given the category of
+	 * the char on the side not yet read. Sets {@link #leaves} and {@link #accepted}: -1 if no thread
+	 * matched, else how many chars before this position the first match ended.
+	 */
+	private void closure(DfaState state, int category) {
+		int left;
+		int right;
+		boolean endText = false;
+		if (mode == LONGEST) {
+			left = category;
+			right = state.context % Alphabet.CATEGORIES;
+			endText = state.context >= Alphabet.CATEGORIES;
+		} else {
+			left = state.context;
+			right = category;
+		}
+		generation++;
+		leafCount = 0;
+		accepted = -1;
+		for (int root : state.threads) {
+			int top = 0;
+			stack[top++] = root;
+			while (top > 0) {
+				int pc = stack[--top];
+				if (visited[pc] == generation) {
+					continue;
+				}
+				visited[pc] = generation;
+				if (pc >= tail) {
+					if (right == Alphabet.EDGE && pc != tail) {
+						if (accept(pc == tailAfterCrLf ? 2 : 1)) {
+							return;
+						}
+					} else {
+						addLeaf(pc);
+					}
+					continue;
+				}
+				switch (program.op(pc)) {
+				case Program.CHAR:
+					addLeaf(pc);
+					break;
+				case Program.MATCH:
+					if (accept(0)) {
+						return;
+					}
+					break;
+				case Program.SPLIT:
+					stack[top++] = program.alt(pc);
+					stack[top++] = program.next(pc);
+					break;
+				default:
+					int assertion = program.arg(pc);
+					if (assertion == Program.END_TEXT && mode == FIRST && right != Alphabet.EDGE) {
+						stack[top++] = tail;
+					} else if (assertion == Program.END_TEXT && mode == LONGEST ? endText
+							: holds(assertion, left, right, program.unixLines)) {
+						stack[top++] = program.next(pc);
+					}
+				}
+			}
+		}
+	}
+
+	/**
+	 * Records a match; returns true if the threads of lower priority are dropped.
+	 */
+	private boolean accept(int charsBefore) {
+		if (accepted < 0) {
+			accepted = charsBefore;
+		}
+		return mode == FIRST;
+	}
+
+	private void addLeaf(int pc) {
+		if (leafCount == leaves.length) {
+			leaves = Arrays.copyOf(leaves, 2 * leafCount);
+		}
+		leaves[leafCount++] = pc;
+	}
+
+	/**
+	 * Whether the anchor holds between chars of the given categories.
+	 */
+	static boolean holds(int assertion, int left, int right, boolean unix) {
+		switch (assertion) {
+		case Program.BEGIN_INPUT:
+			return left == Alphabet.EDGE;
+		case Program.END_INPUT:
+		case Program.END_TEXT:
+			return right == Alphabet.EDGE;
+		case Program.BEGIN_LINE:
+			if (right == Alphabet.EDGE) {
+				// Not even after a final line terminator, as in Perl.
+				return false;
+			}
+			if (unix) {
+				return left == Alphabet.EDGE || left == Alphabet.LINE_FEED;
+			}
+			return left == Alphabet.EDGE || left == Alphabet.LINE_FEED || left == Alphabet.OTHER_TERMINATOR
+					|| (left == Alphabet.CARRIAGE_RETURN && right != Alphabet.LINE_FEED);
+		default:
+			if (unix) {
+				return right == Alphabet.EDGE || right == Alphabet.LINE_FEED;
+			}
+			return right == Alphabet.EDGE || right == Alphabet.CARRIAGE_RETURN || right == Alphabet.OTHER_TERMINATOR
+					|| (right == Alphabet.LINE_FEED && left != Alphabet.CARRIAGE_RETURN);
+		}
+	}
+
+	/**
+	 * The state after reading a char of the class from the leaves of the last closure.
+	 */
+	private DfaState step(DfaState state, int charClass, int category) {
+		int[] next = new int[leafCount + 1];
+		int n = 0;
+		boolean unix = program.unixLines;
+		for (int i = 0; i < leafCount; i++) {
+			int pc = leaves[i];
+			int target = -1;
+			if (pc == tail) {
+				if (category == Alphabet.LINE_FEED) {
+					target = unix || state.context != Alphabet.CARRIAGE_RETURN ? tailAfterTerminator : -1;
+				} else if (!unix && category == Alphabet.CARRIAGE_RETURN) {
+					target = tailAfterCarriageReturn;
+				} else if (!unix && category == Alphabet.OTHER_TERMINATOR) {
+					target = tailAfterTerminator;
+				}
+			} else if (pc == tailAfterCarriageReturn) {
+				target = category == Alphabet.LINE_FEED ? tailAfterCrLf : -1;
+			} else if (pc < tail && contains(program.arg(pc), charClass)) {
+				target = program.next(pc);
+			}
+			if (target >= 0 && !contains(next, n, target)) {
+				next[n++] = target;
+			}
+		}
+		boolean searching = state.searching && accepted < 0;
+		if (searching && !contains(next, n, program.start())) {
+			next[n++] = program.start();
+		}
+		return state(category, searching, Arrays.copyOf(next, n));
+	}
+
+	private boolean contains(int set, int charClass) {
+		BitSet classes = members[set];
+		if (classes == null) {
+			classes = new BitSet(alphabet.classCount());
+			for (int c = 0; c < alphabet.classCount(); c++) {
+				classes.set(c, program.sets().get(set).contains(alphabet.representative(c)));
+			}
+			members[set] = classes;
+		}
+		return classes.get(charClass);
+	}
+
+	private static boolean contains(int[] array, int length, int value) {
+		for (int i = 0; i < length; i++) {
+			if (array[i] == value) {
+				return true;
+			}
+		}
+		return false;
+	}
+
+}
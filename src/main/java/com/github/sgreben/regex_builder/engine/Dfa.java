@@ -0,0 +1,153 @@
+package com.github.sgreben.regex_builder.engine;
+
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.List;
+import com.github.sgreben.regex_builder.Expression;
+import com.github.sgreben.regex_builder.charclass.RangeSet;
+
+/**
+ * A deterministic automaton for an expression in the regular subset (see {@link ProgramCompiler}),
+ * which matches and finds in time linear in the input, with the same results as
+ * java.util.regex.
+ *
+ * Finding scans forwards to the end of the leftmost-first match, then backwards to its start.
+ * Transitions are indexed by equivalence classes of chars. Inputs with surrogates are not handled:
+ * the result is then {@link #UNKNOWN}.
+ */
+public abstract class Dfa implements MatchEngine {
+	Dfa() {
+	}
+
+	/**
+	 * The DFA of the expression, built in full and minimized, or null if the expression or the
+	 * flags are outside the regular subset, or if the automaton would be too large.
+	 */
+	public static Dfa compile(Expression expression, int flags) {
+		Program forward = ProgramCompiler.compile(expression, flags, false);
+		Program reverse = forward == null ? null : ProgramCompiler.compile(expression, flags, true);
+		if (reverse == null) {
+			return null;
+		}
+		try {
+			return new TableDfa(alphabet(forward, reverse), forward, reverse);
+		} catch (DfaBuilder.TooManyStates e) {
+			return null;
+		}
+	}
+
+	/**
+	 * The DFA of the expression, whose states are built while matching and kept in a cache of at
+	 * most the given size in bytes, or null if the expression or the flags are outside the regular
+	 * subset.
+	 */
+	public static LazyDfa compileLazy(Expression expression, int flags, long cacheLimit) {
+		if (cacheLimit <= 0) {
+			throw new IllegalArgumentException("cache limit must be positive: " + cacheLimit);
+		}
+		Program forward = ProgramCompiler.compile(expression, flags, false);
+		Program reverse = forward == null ? null : ProgramCompiler.compile(expression, flags, true);
+		if (reverse == null) {
+			return null;
+		}
+		return new LazyDfa(alphabet(forward, reverse), forward, reverse, cacheLimit);
+	}
+
+	/**
+	 * A DFA that matches from tables written by {@link #tables()}, reading them from the buffer
+	 * without copying them, e.g. from a memory-mapped file. The buffer must not change.
+	 *
+	 * @throws IllegalArgumentException if the tables are malformed
+	 */
+	public static Dfa map(ByteBuffer tables) {
+		return new MappedDfa(tables);
+	}
+
+	private static Alphabet alphabet(Program forward, Program reverse) {
+		List<RangeSet> sets = new ArrayList<RangeSet>(forward.sets());
+		sets.addAll(reverse.sets());
+		return Alphabet.of(sets);
+	}
+
+	/**
+	 * The number of states of the automata.
+	 */
+	public abstract int stateCount();
+
+	/**
+	 * The number of equivalence classes of chars.
+	 */
+	public abstract int classCount();
+
+	/**
+	 * The tables of the DFA, which {@link #map} reads, or null for a DFA built while matching.
+	 */
+	public byte[] tables() {
+		return null;
+	}
+
+	/**
+	 * 1 if the whole input matches, 0 if not, or {@link #UNKNOWN}.
+	 */
+	public abstract int matches(CharSequence input);
+
+	/**
+	 * The leftmost-first match starting at or after the given index, as its start shifted left by
+	 * 32 bits or-ed with its end; -1 if there is none, or {@link #UNKNOWN}.
+	 */
+	public abstract long find(CharSequence input, int from);
+
+	@Override
+	public int slotCount() {
+		return 2;
+	}
+
+	@Override
+	public boolean finds() {
+		return true;
+	}
+
+	@Override
+	public int matches(CharSequence input, int[] slots) {
+		int matched = matches(input);
+		if (matched == 1) {
+			slots[0] = 0;
+			slots[1] = input.length();
+		}
+		return matched;
+	}
+
+	@Override
+	public int find(CharSequence input, int from, int[] slots) {
+		long match = find(input, from);
+		if (match < 0) {
+			return match == UNKNOWN ? UNKNOWN : 0;
+		}
+		slots[0] = (int) (match >>> 32);
+		slots[1] = (int) match;
+		return 1;
+	}
+
+	/**
+	 * Whether "$" without MULTILINE holds at the index: at the end, or before a final line
+	 * terminator.
+	 */
+	static boolean endsText(CharSequence input, int index, boolean unixLines) {
+		int length = input.length();
+		if (index == length) {
+			return true;
+		}
+		char c = input.charAt(index);
+		if (unixLines) {
+			return index == length - 1 && c == '\n';
+		}
+		if (index == length - 2) {
+			return c == '\r' && input.charAt(index + 1) == '\n';
+		}
+		if (index == length - 1) {
+			return c == '\n' ? index == 0 || input.charAt(index - 1) != '\r' : Alphabet.category(c) > Alphabet.LINE_FEED
+					&& Alphabet.category(c) != Alphabet.OTHER;
+		}
+		return false;
+	}
+}
@@ -0,0 +1,174 @@
+package com.github.sgreben.regex_builder.engine;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Builds one automaton of a {@link Dfa} with a {@link Determinizer}, and minimizes it.
+ */
+final class DfaBuilder {
+	static final int MAX_STATES = 10000;
+	static final int MAX_TRANSITIONS = 1 << 21;
+
+	/**
+	 * Thrown when the automaton would have more than {@link #MAX_STATES} states, or more than
+	 * {@link #MAX_TRANSITIONS} transitions.
+	 */
+	static final class TooManyStates extends RuntimeException {
+		private static final long serialVersionUID = 1L;
+
+		TooManyStates() {
+			super(null, null, false, false);
+		}
+	}
+
+	private final Determinizer determinizer;
+	private final List<DfaState> states = new ArrayList<DfaState>();
+	private final Map<DfaState, Integer> ids = new HashMap<DfaState, Integer>();
+
+	private DfaBuilder(Program program, Alphabet alphabet, int mode) {
+		this.determinizer = new Determinizer(program, alphabet, mode);
+	}
+
+	/**
+	 * Builds the minimal automaton of the program in the given mode (see {@link Determinizer}).
+	 *
+	 * @throws TooManyStates if it would have more than {@link #MAX_STATES} states
+	 */
+	static TableDfa.Automaton build(Program program, Alphabet alphabet, int mode) {
+		return new DfaBuilder(program, alphabet, mode).build();
+	}
+
+	private TableDfa.Automaton build() {
+		Alphabet alphabet = determinizer.alphabet();
+		int classes = alphabet.classCount();
+		int dead = id(DfaState.DEAD);
+		int[] starts = new int[determinizer.contexts()];
+		for (int context = 0; context < starts.length; context++) {
+			starts[context] = id(determinizer.start(context));
+		}
+		boolean longest = determinizer.mode() == Determinizer.LONGEST;
+		int[] targets = new int[16 * classes];
+		boolean[] matches = new boolean[16 * classes];
+		int[] ends = new int[16 * Alphabet.CATEGORIES];
+		for (int s = 0; s < states.size(); s++) {
+			if ((s + 1) * classes > targets.length) {
+				targets = Arrays.copyOf(targets, 2 * targets.length);
+				matches = Arrays.copyOf(matches, 2 * matches.length);
+				ends = Arrays.copyOf(ends, 2 * ends.length);
+			}
+			DfaState state = states.get(s);
+			for (int c = 0; c < classes; c++) {
+				targets[s * classes + c] = id(determinizer.step(state, c));
+				matches[s * classes + c] = determinizer.accepted() >= 0;
+			}
+			for (int before = 0; before < Alphabet.CATEGORIES; before++) {
+				ends[s * Alphabet.CATEGORIES + before] = determinizer.accepts(state, longest ? before : Alphabet.EDGE);
+			}
+		}
+		return minimize(states.size(), classes, targets, matches, ends, starts, dead);
+	}
+
+	private int id(DfaState state) {
+		Integer id = ids.get(state);
+		if (id == null) {
+			if (states.size() == MAX_STATES
+					|| (long) (states.size() + 1) * determinizer.alphabet().classCount() > MAX_TRANSITIONS) {
+				throw new TooManyStates();
+			}
+			id = states.size();
+			states.add(state);
+			ids.put(state, id);
+		}
+		return id;
+	}
+
+	/**
+	 * Merges equivalent states by partition refinement (Moore's algorithm): states start out
+	 * grouped by their outputs, and groups are split until the transitions of the states in a group
+	 * lead to the same groups.
+	 */
+	private static TableDfa.Automaton minimize(int count, int classes, int[] targets, boolean[] matches, int[] ends,
+			int[] starts, int dead) {
+		int[] block = new int[count];
+		int blocks = partition(count, s -> {
+			int[] key = new int[classes + Alphabet.CATEGORIES];
+			for (int c = 0; c < classes; c++) {
+				key[c] = matches[s * classes + c] ? 1 : 0;
+			}
+			System.arraycopy(ends, s * Alphabet.CATEGORIES, key, classes, Alphabet.CATEGORIES);
+			return key;
+		}, block);
+		while (true) {
+			int[] previous = block.clone();
+			int refined = partition(count, s -> {
+				int[] key = new int[classes + 1];
+				key[0] = previous[s];
+				for (int c = 0; c < classes; c++) {
+					key[c + 1] = previous[targets[s * classes + c]];
+				}
+				return key;
+			}, block);
+			if (refined == blocks) {
+				break;
+			}
+			blocks = refined;
+		}
+		int[] table = new int[blocks * classes];
+		int[] endTable = new int[blocks * Alphabet.CATEGORIES];
+		for (int s = 0; s < count; s++) {
+			int b = block[s];
+			for (int c = 0; c < classes; c++) {
+				table[b * classes + c] = (block[targets[s * classes + c]] * classes) << 1
+						| (matches[s * classes + c] ? 1 : 0);
+			}
+			System.arraycopy(ends, s * Alphabet.CATEGORIES, endTable, b * Alphabet.CATEGORIES, Alphabet.CATEGORIES);
+		}
+		int[] startRows = new int[starts.length];
+		for (int i = 0; i < starts.length; i++) {
+			startRows[i] = block[starts[i]] * classes;
+		}
+		return new TableDfa.Automaton(blocks, classes, table, endTable, startRows, block[dead] * classes);
+	}
+
+	private interface Key {
+		int[] of(int state);
+	}
+
+	private static int partition(int count, Key key, int[] block) {
+		Map<IntArray, Integer> ids = new HashMap<IntArray, Integer>();
+		for (int s = 0; s < count; s++) {
+			IntArray k = new IntArray(key.of(s));
+			Integer id = ids.get(k);
+			if (id == null) {
+				id = ids.size();
+				ids.put(k, id);
+			}
+			block[s] = id;
+		}
+		return ids.size();
+	}
+
+	static final class IntArray {
+		final int[] values;
+		final int hash;
+
+		IntArray(int[] values) {
+			this.values = values;
+			this.hash = Arrays.hashCode(values);
+		}
+
+		@Override
+		public boolean equals(Object other) {
+			return Arrays.equals(values, ((IntArray) other).values);
+		}
+
+		@Override
+		public int hashCode() {
+			return hash;
+		}
+	}
+}
@@ -0,0 +1,43 @@
+package com.github.sgreben.regex_builder.engine;
+
+import java.util.Arrays;
+
+/**
+ * A state of a DFA under construction: the threads of a {@link Program} in priority order, the
+ * category of the char before them (after them, when scanning backwards), and whether new
+ * threads still start at each offset.
+ */
+final class DfaState {
+	static final DfaState DEAD = new DfaState(0, false, new int[0]);
+
+	final int context;
+	final boolean searching;
+	final int[] threads;
+	private final int hash;
+
+	DfaState(int context, boolean searching, int[] threads) {
+		this.context = context;
+		this.searching = searching;
+		this.threads = threads;
+		this.hash = 31 * (31 * context + (searching ? 1 : 0)) + Arrays.hashCode(threads);
+	}
+
+	/**
+	 * The size of the state in memory, in bytes, roughly.
+	 */
+	int footprint() {
+		return 48 + 4 * threads.length;
+	}
+
+	@Override
+	public boolean equals(Object other) {
+		DfaState state = (DfaState) other;
+		return hash == state.hash && context == state.context && searching == state.searching
+				&& Arrays.equals(threads, state.threads);
+	}
+
+	@Override
+	public int hashCode() {
+		return hash;
+	}
+}
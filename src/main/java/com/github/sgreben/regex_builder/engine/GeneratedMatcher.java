@@ -0,0 +1,114 @@
+package com.github.sgreben.regex_builder.engine;
+
+import java.util.Arrays;
+import com.github.sgreben.regex_builder.Expression;
+
+/**
+ * A one-pass matcher (see {@link OnePass}) compiled to a JVM class: each state of the automaton is a
+ * block of code that reads a char, tests it against the ranges of its transitions with unrolled
+ * compares (a binary search when there are many), saves the slots of the transition taken and
+ * jumps to the block of its target. There are no tables and no interpretive loop, so the JIT
+ * compiles the scan of each pattern to its own tight code.
+ *
+ * Each class is defined by its own class loader, and is unloaded with its pattern. The scan of
+ * {@code find()} is that of the one-pass matcher, for anchored expressions.
+ */
+public abstract class GeneratedMatcher implements MatchEngine {
+	private final OnePass onePass;
+
+	protected GeneratedMatcher(OnePass onePass) {
+		this.onePass = onePass;
+	}
+
+	/**
+	 * The generated matcher of the expression, or null if it is not one-pass (see
+	 * {@link OnePass#compile}), or if its code would be too large for a method.
+	 */
+	public static GeneratedMatcher generate(Expression expression, int flags, int firstGroup) {
+		OnePass onePass = OnePass.compile(expression, flags, firstGroup);
+		return onePass == null ? null : generate(onePass);
+	}
+
+	/**
+	 * The generated matcher of the one-pass matcher, or null if its code would be too large for a
+	 * method.
+	 */
+	public static GeneratedMatcher generate(OnePass onePass) {
+		return MatcherGenerator.generate(onePass);
+	}
+
+	/**
+	 * The scan of the one-pass matcher as Java source: the statements of a method
+	 * {@code int scan(CharSequence input, int[] slots)} that returns as {@link #run}, with the slots
+	 * already filled with -1. Returns null if the code would be too large for a method.
+	 *
+	 * @param indent the indentation of the statements
+	 */
+	public static String scanSource(OnePass onePass, String indent) {
+		return ScanSourceWriter.write(onePass, indent);
+	}
+
+	/**
+	 * The one-pass matcher the class was generated from.
+	 */
+	public OnePass onePass() {
+		return onePass;
+	}
+
+	@Override
+	public String name() {
+		return "GENERATED";
+	}
+
+	@Override
+	public int slotCount() {
+		return onePass.slotCount();
+	}
+
+	@Override
+	public boolean finds() {
+		return onePass.finds();
+	}
+
+	/**
+	 * As {@link OnePass#matches}.
+	 */
+	@Override
+	public int matches(CharSequence input, int[] slots) {
+		Arrays.fill(slots, 0, onePass.slotCount(), -1);
+		int result = run(input, slots);
+		if (result == 1) {
+			for (int group = 1; group < onePass.firstGroup(); group++) {
+				slots[2 * group] = slots[0];
+				slots[2 * group + 1] = slots[1];
+			}
+		}
+		return result;
+	}
+
+	@Override
+	public int find(CharSequence input, int from, int[] slots) {
+		return onePass.find(input, from, slots);
+	}
+
+	/**
+	 * The generated scan of the whole input: 1 if it matches, saving the slots of the groups, 0 if
+	 * not, or {@link #UNKNOWN}.
+	 */
+	protected abstract int run(CharSequence input, int[] slots);
+
+	/**
+	 * Whether the assertions of the mask hold at the index, for transitions with conditions.
+	 */
+	protected final boolean holds(int conditions, CharSequence input, int pos) {
+		return onePass.holds(conditions, input, pos);
+	}
+
+	/**
+	 * Whether the assertions of the mask hold at the index, for the scans of generated sources (see
+	 * {@link #scanSource}).
+	 */
+	public static boolean assertionsHold(int conditions, CharSequence input, int pos, boolean unixLines) {
+		return OnePass.holds(conditions, input, pos, unixLines);
+	}
+}
@@ -0,0 +1,327 @@
+package com.github.sgreben.regex_builder.engine;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * A DFA whose states are built from the NFA when a scan first needs them, so that expressions
+ * whose full DFA is too large, such as {@code .*x.{20}}, still match in linear time.
+ *
+ * Each automaton keeps its states in a cache bounded in bytes, shared by all threads: scans follow
+ * cached transitions without locking, and build missing ones under the lock of the cache. When the
+ * cache is full, it is cleared, and scans build the states they need again. A scan that clears the
+ * cache more than {@link #MAX_RESETS_PER_SCAN} times stops caching, and simulates the NFA for the
+ * rest of the input.
+ */
+public final class LazyDfa extends Dfa {
+	static final int MAX_RESETS_PER_SCAN = 3;
+
+	/**
+	 * A cached state, with whether a match ends (starts, scanning backwards) at its position for
+	 * each category of the next char, and the transitions built so far. Transitions are written
+	 * under the lock of the cache and read without it; the fields are final, so a node read through
+	 * a transition is fully built.
+	 */
+	private static final class Node {
+		final DfaState state;
+		final int[] accepts;
+		final Node[] next;
+		final boolean dead;
+
+		Node(DfaState state, int[] accepts, Node[] next) {
+			this.state = state;
+			this.accepts = accepts;
+			this.next = next;
+			this.dead = !state.searching && state.threads.length == 0;
+		}
+	}
+
+	private static final class Cache {
+		final Program program;
+		final Alphabet alphabet;
+		final int mode;
+		final long limit;
+		/**
+		 * The transitions of nodes built while simulating, which are never filled.
+		 */
+		final Node[] uncached;
+		// Guarded by this.
+		final Determinizer determinizer;
+		final Map<DfaState, Node> nodes = new HashMap<DfaState, Node>();
+		long size;
+		// Read without locking.
+		volatile Node[] starts;
+		volatile int resets;
+
+		Cache(Program program, Alphabet alphabet, int mode, long limit) {
+			this.program = program;
+			this.alphabet = alphabet;
+			this.mode = mode;
+			this.limit = limit;
+			this.uncached = new Node[alphabet.classCount()];
+			this.determinizer = new Determinizer(program, alphabet, mode);
+			this.starts = new Node[determinizer.contexts()];
+		}
+
+		Node start(int context) {
+			Node start = starts[context];
+			return start != null ? start : buildStart(context);
+		}
+
+		private synchronized Node buildStart(int context) {
+			Node start = node(determinizer.start(context));
+			starts[context] = start;
+			return start;
+		}
+
+		synchronized Node next(Node node, int charClass) {
+			Node next = node.next[charClass];
+			if (next == null) {
+				next = node(determinizer.step(node.state, charClass));
+				node.next[charClass] = next;
+			}
+			return next;
+		}
+
+		private Node node(DfaState state) {
+			Node node = nodes.get(state);
+			if (node == null) {
+				long footprint = state.footprint() + 4L * alphabet.classCount() + 160;
+				if (size + footprint > limit && !nodes.isEmpty()) {
+					nodes.clear();
+					starts = new Node[starts.length];
+					size = 0;
+					resets++;
+				}
+				node = new Node(state, accepts(determinizer, state), new Node[alphabet.classCount()]);
+				nodes.put(state, node);
+				size += footprint;
+			}
+			return node;
+		}
+
+		synchronized int stateCount() {
+			return nodes.size();
+		}
+
+		Node uncachedNode(Determinizer determinizer, DfaState state) {
+			return new Node(state, accepts(determinizer, state), uncached);
+		}
+
+		private static int[] accepts(Determinizer determinizer, DfaState state) {
+			int[] accepts = new int[Alphabet.CATEGORIES];
+			for (int category = 0; category < accepts.length; category++) {
+				accepts[category] = determinizer.accepts(state, category);
+			}
+			return accepts;
+		}
+	}
+
+	/**
+	 * The transitions a scan missed in the cache, and the NFA simulation it switched to if the
+	 * cache thrashed.
+	 */
+	private final class Scan {
+		final Cache cache;
+		final int resets;
+		int misses;
+		Determinizer simulation;
+
+		Scan(Cache cache) {
+			this.cache = cache;
+			this.resets = cache.resets;
+		}
+
+		Node next(Node node, int charClass) {
+			misses++;
+			if (simulation == null && cache.resets - resets > MAX_RESETS_PER_SCAN) {
+				simulation = new Determinizer(cache.program, cache.alphabet, cache.mode);
+				fallbacks.increment();
+			}
+			if (simulation != null) {
+				return cache.uncachedNode(simulation, simulation.step(node.state, charClass));
+			}
+			return cache.next(node, charClass);
+		}
+	}
+
+	private final Alphabet alphabet;
+	private final Cache first;
+	private final Cache all;
+	private final Cache longest;
+	private final boolean unixLines;
+	private final LongAdder hits = new LongAdder();
+	private final LongAdder misses = new LongAdder();
+	private final LongAdder fallbacks = new LongAdder();
+
+	LazyDfa(Alphabet alphabet, Program forward, Program reverse, long cacheLimit) {
+		this.alphabet = alphabet;
+		this.first = new Cache(forward, alphabet, Determinizer.FIRST, cacheLimit / 3);
+		this.all = new Cache(forward, alphabet, Determinizer.ALL, cacheLimit / 3);
+		this.longest = new Cache(reverse, alphabet, Determinizer.LONGEST, cacheLimit / 3);
+		this.unixLines = forward.unixLines;
+	}
+
+	@Override
+	public String name() {
+		return "LAZY_DFA";
+	}
+
+	/**
+	 * The number of states currently cached.
+	 */
+	@Override
+	public int stateCount() {
+		return first.stateCount() + all.stateCount() + longest.stateCount();
+	}
+
+	@Override
+	public int classCount() {
+		return alphabet.classCount();
+	}
+
+	/**
+	 * The number of transitions taken from the cache.
+	 */
+	public long cacheHits() {
+		return hits.sum();
+	}
+
+	/**
+	 * The number of transitions built (or simulated) because they were not cached.
+	 */
+	public long cacheMisses() {
+		return misses.sum();
+	}
+
+	/**
+	 * The fraction of transitions taken from the cache, or 0 before the first scan.
+	 */
+	public double hitRate() {
+		long hits = cacheHits();
+		long total = hits + cacheMisses();
+		return total == 0 ? 0 : (double) hits / total;
+	}
+
+	/**
+	 * The number of times a cache was cleared because it was full.
+	 */
+	public int cacheResets() {
+		return first.resets + all.resets + longest.resets;
+	}
+
+	/**
+	 * The number of scans that switched to simulating the NFA.
+	 */
+	public long nfaFallbacks() {
+		return fallbacks.sum();
+	}
+
+	@Override
+	public int matches(CharSequence input) {
+		Node node = all.start(Alphabet.EDGE);
+		Scan scan = null;
+		int length = input.length();
+		int i = 0;
+		for (; i < length; i++) {
+			char c = input.charAt(i);
+			if (Character.isSurrogate(c)) {
+				return record(i, scan, UNKNOWN);
+			}
+			int charClass = alphabet.classOf(c);
+			Node next = node.next[charClass];
+			if (next == null) {
+				if (scan == null) {
+					scan = new Scan(all);
+				}
+				next = scan.next(node, charClass);
+			}
+			node = next;
+			if (node.dead) {
+				return record(i + 1, scan, 0);
+			}
+		}
+		return record(length, scan, node.accepts[Alphabet.EDGE] >= 0 ? 1 : 0);
+	}
+
+	@Override
+	public long find(CharSequence input, int from) {
+		int length = input.length();
+		Node node = first.start(Alphabet.categoryBefore(input, from));
+		Scan scan = null;
+		int end = -1;
+		int i = from;
+		for (; i < length; i++) {
+			char c = input.charAt(i);
+			if (Character.isSurrogate(c)) {
+				return record(i - from, scan, UNKNOWN);
+			}
+			int charClass = alphabet.classOf(c);
+			if (node.accepts[alphabet.category(charClass)] >= 0) {
+				end = i;
+			}
+			Node next = node.next[charClass];
+			if (next == null) {
+				if (scan == null) {
+					scan = new Scan(first);
+				}
+				next = scan.next(node, charClass);
+			}
+			node = next;
+			if (node.dead) {
+				break;
+			}
+		}
+		if (i == length && node.accepts[Alphabet.EDGE] >= 0) {
+			end = length - node.accepts[Alphabet.EDGE];
+		}
+		record(i < length ? i + 1 - from : length - from, scan, 0);
+		if (end < 0) {
+			return -1;
+		}
+		return (long) start(input, from, end) << 32 | end;
+	}
+
+	/**
+	 * The leftmost start at or after the given index of a match ending at the given end.
+	 */
+	private int start(CharSequence input, int from, int end) {
+		int context = Alphabet.categoryAt(input, end) + (endsText(input, end, unixLines) ? Alphabet.CATEGORIES : 0);
+		Node node = longest.start(context);
+		Scan scan = null;
+		int start = end;
+		int i = end;
+		for (; i > from; i--) {
+			int charClass = alphabet.classOf(input.charAt(i - 1));
+			if (node.accepts[alphabet.category(charClass)] >= 0) {
+				start = i;
+			}
+			Node next = node.next[charClass];
+			if (next == null) {
+				if (scan == null) {
+					scan = new Scan(longest);
+				}
+				next = scan.next(node, charClass);
+			}
+			node = next;
+			if (node.dead) {
+				return record(end - i + 1, scan, start);
+			}
+		}
+		record(end - from, scan, 0);
+		return node.accepts[Alphabet.categoryBefore(input, from)] >= 0 ? from : start;
+	}
+
+	/**
+	 * Adds the transitions of a scan to the statistics, and returns the result.
+	 */
+	private int record(int transitions, Scan scan, int result) {
+		int missed = scan == null ? 0 : scan.misses;
+		hits.add(transitions - missed);
+		if (missed > 0) {
+			misses.add(missed);
+		}
+		return result;
+	}
+}
@@ -0,0 +1,179 @@
+package com.github.sgreben.regex_builder.engine;
+
+import java.nio.Buffer;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+
+/**
+ * A {@link TableDfa} read in place from its tables (see {@link TableDfa#tables()}): the classes of
+ * the chars and the transitions are read from the buffer by absolute index as the DFA runs, so
+ * mapping a file of tables costs no copy and no heap beyond a few offsets.
+ */
+final class MappedDfa extends Dfa {
+	private static final int BLOCKS = 256;
+
+	/**
+	 * An automaton of the tables, as the offsets of its arrays in the buffer.
+	 */
+	private static final class Automaton {
+		final int states;
+		final int classes;
+		final int dead;
+		final int starts;
+		final int ends;
+		final int table;
+
+		Automaton(ByteBuffer tables, int offset) {
+			this.states = tables.getInt(offset);
+			this.classes = tables.getInt(offset + 4);
+			this.dead = tables.getInt(offset + 8);
+			this.starts = offset + 16;
+			this.ends = starts + 4 * tables.getInt(starts - 4) + 4;
+			this.table = ends + 4 * tables.getInt(ends - 4) + 4;
+			int end = table + 4 * tables.getInt(table - 4);
+			if (classes <= 0 || end > tables.limit() || tables.getInt(table - 4) != states * classes) {
+				throw new IllegalArgumentException("malformed automaton at " + offset);
+			}
+		}
+
+		/**
+		 * The offset after the automaton.
+		 */
+		int end(ByteBuffer tables) {
+			return table + 4 * tables.getInt(table - 4);
+		}
+	}
+
+	private final ByteBuffer tables;
+	private final boolean unixLines;
+	private final int classCount;
+	private final int blocks;
+	private final Automaton first;
+	private final Automaton all;
+	private final Automaton longest;
+
+	MappedDfa(ByteBuffer tables) {
+		this.tables = tables.slice().order(ByteOrder.BIG_ENDIAN);
+		try {
+			this.unixLines = this.tables.getInt(0) != 0;
+			this.classCount = this.tables.getInt(4);
+			this.blocks = 12 + 4 * BLOCKS;
+			int offset = blocks + 2 * BLOCKS * this.tables.getInt(8);
+			this.first = new Automaton(this.tables, offset);
+			this.all = new Automaton(this.tables, first.end(this.tables));
+			this.longest = new Automaton(this.tables, all.end(this.tables));
+		} catch (IndexOutOfBoundsException e) {
+			throw new IllegalArgumentException("truncated tables", e);
+		}
+	}
+
+	@Override
+	public String name() {
+		return "DFA";
+	}
+
+	@Override
+	public int stateCount() {
+		return first.states + all.states + longest.states;
+	}
+
+	@Override
+	public int classCount() {
+		return classCount;
+	}
+
+	@Override
+	public byte[] tables() {
+		byte[] bytes = new byte[longest.end(tables)];
+		ByteBuffer copy = tables.duplicate();
+		((Buffer) copy).position(0);
+		copy.get(bytes);
+		return bytes;
+	}
+
+	private int classOf(char c) {
+		return tables.getChar(blocks + (tables.getInt(12 + 4 * (c >>> 8)) << 9) + ((c & 0xFF) << 1));
+	}
+
+	private int transition(Automaton automaton, int index) {
+		return tables.getInt(automaton.table + 4 * index);
+	}
+
+	private int start(Automaton automaton, int context) {
+		return tables.getInt(automaton.starts + 4 * context);
+	}
+
+	private int end(Automaton automaton, int row, int category) {
+		return tables.getInt(automaton.ends + 4 * (row / automaton.classes * Alphabet.CATEGORIES + category));
+	}
+
+	@Override
+	public int matches(CharSequence input) {
+		int row = start(all, Alphabet.EDGE);
+		for (int i = 0, length = input.length(); i < length; i++) {
+			char c = input.charAt(i);
+			if (Character.isSurrogate(c)) {
+				return UNKNOWN;
+			}
+			row = transition(all, row + classOf(c)) >>> 1;
+			if (row == all.dead) {
+				return 0;
+			}
+		}
+		return end(all, row, Alphabet.EDGE) >= 0 ? 1 : 0;
+	}
+
+	@Override
+	public long find(CharSequence input, int from) {
+		int length = input.length();
+		int row = start(first, Alphabet.categoryBefore(input, from));
+		int end = -1;
+		int i = from;
+		for (; i < length; i++) {
+			char c = input.charAt(i);
+			if (Character.isSurrogate(c)) {
+				return UNKNOWN;
+			}
+			int transition = transition(first, row + classOf(c));
+			if ((transition & 1) != 0) {
+				end = i;
+			}
+			row = transition >>> 1;
+			if (row == first.dead) {
+				break;
+			}
+		}
+		if (i == length) {
+			int before = end(first, row, Alphabet.EDGE);
+			if (before >= 0) {
+				end = length - before;
+			}
+		}
+		if (end < 0) {
+			return -1;
+		}
+		return (long) start(input, from, end) << 32 | end;
+	}
+
+	/**
+	 * As {@link TableDfa}: the leftmost start at or after the given index of a match ending at the
+	 * given end.
+	 */
+	private int start(CharSequence input, int from, int end) {
+		int context = Alphabet.categoryAt(input, end) + (endsText(input, end, unixLines) ? Alphabet.CATEGORIES : 0);
+		int row = start(longest, context);
+		int start = end;
+		int i = end;
+		for (; i > from; i--) {
+			int transition = transition(longest, row + classOf(input.charAt(i - 1)));
+			if ((transition & 1) != 0) {
+				start = i;
+			}
+			row = transition >>> 1;
+			if (row == longest.dead) {
+				return start;
+			}
+		}
+		return end(longest, row, Alphabet.categoryBefore(input, from)) >= 0 ? from : start;
+	}
+}
@@ -0,0 +1,45 @@
+package com.github.sgreben.regex_builder.engine;
+
+/**
+ * An engine that matches and finds for a pattern instead of java.util.regex (see
+ * {@link com.github.sgreben.regex_builder.Pattern#withEngine}). A pattern's matchers share its
+ * engine, so implementations must be thread-safe.
+ *
+ * Calls return 1 for a match, 0 for none, or {@link #UNKNOWN} to leave the call to
+ * java.util.regex, e.g. for inputs the engine does not handle. On a match, the engine fills the
+ * first {@link #slotCount()} slots with the start and end of each group, from group 0 (the whole
+ * match), or -1 for groups that did not match. Groups are numbered as in the pattern's regex, whose
+ * group 1 spans the whole match. Groups the engine does not report are taken from java.util.regex,
+ * run once at the start of the match.
+ */
+public interface MatchEngine {
+	int UNKNOWN = -2;
+
+	/**
+	 * The name of the engine, e.g. that of its {@link com.github.sgreben.regex_builder.compiler.Engine}.
+	 */
+	String name();
+
+	/**
+	 * The number of slots filled by a match: 0 if the engine only decides whether there is a match,
+	 * 2 if it reports the bounds of the match, or twice the number of groups, counting group 0, if
+	 * it reports the bounds of every group.
+	 */
+	int slotCount();
+
+	/**
+	 * Whether {@link #find} may be called. If not, {@code find()} uses java.util.regex.
+	 */
+	boolean finds();
+
+	/**
+	 * Whether the whole input matches.
+	 */
+	int matches(CharSequence input, int[] slots);
+
+	/**
+	 * Whether there is a match starting at or after the given index. The slots hold the
+	 * leftmost-first match; an engine without slots only decides whether there is one.
+	 */
+	int find(CharSequence input, int from, int[] slots);
+}
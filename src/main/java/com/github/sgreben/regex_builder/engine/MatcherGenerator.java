@@ -0,0 +1,246 @@
+package com.github.sgreben.regex_builder.engine;
+
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Generates the class of a {@link GeneratedMatcher} from a one-pass matcher. The {@code run} method
+ * has the locals {@code this}, the input, the slots, the position, the length and the current char.
+ */
+final class MatcherGenerator {
+	/**
+	 * The most ranges of a state tested one after another; beyond, the ranges are searched.
+	 */
+	static final int MAX_LINEAR_RANGES = 6;
+
+	private static final String SUPER = GeneratedMatcher.class.getName().replace('.', '/');
+	private static final String CHAR_SEQUENCE = "java/lang/CharSequence";
+	private static final AtomicInteger classCount = new AtomicInteger();
+
+	private static final int THIS = 0;
+	private static final int INPUT = 1;
+	private static final int SLOTS = 2;
+	private static final int POS = 3;
+	private static final int LENGTH = 4;
+	private static final int CHAR = 5;
+
+	private final OnePass onePass;
+	private final ClassFile classFile;
+	private final ClassFile.Code code = new ClassFile.Code(4, 6);
+	/**
+	 * The ranges of the alphabet (see {@link StateTransitions#classRanges}).
+	 */
+	private final int[] ranges;
+	private final int[] stateLabels;
+	private final int fail;
+	private final int unknown;
+	private final int miss;
+
+	private MatcherGenerator(OnePass onePass, String name) {
+		this.onePass = onePass;
+		this.classFile = new ClassFile(name, SUPER);
+		this.ranges = StateTransitions.classRanges(onePass.alphabet());
+		this.stateLabels = new int[onePass.stateCount()];
+		for (int s = 0; s < stateLabels.length; s++) {
+			stateLabels[s] = code.newLabel();
+		}
+		this.fail = code.newLabel();
+		this.unknown = code.newLabel();
+		this.miss = code.newLabel();
+	}
+
+	/**
+	 * The matcher, or null if its code would be longer than {@link Short#MAX_VALUE} bytes, the
+	 * longest whose jumps all fit in a short offset.
+	 */
+	static GeneratedMatcher generate(OnePass onePass) {
+		String name = SUPER + "$Generated" + classCount.incrementAndGet();
+		MatcherGenerator generator = new MatcherGenerator(onePass, name);
+		byte[] bytes = generator.generate();
+		if (bytes == null) {
+			return null;
+		}
+		try {
+			Class<?> type = new Loader().define(name.replace('/', '.'), bytes);
+			return (GeneratedMatcher) type.getConstructor(OnePass.class).newInstance(onePass);
+		} catch (ReflectiveOperationException e) {
+			throw new IllegalStateException(e);
+		}
+	}
+
+	private byte[] generate() {
+		code.op(ClassFile.ALOAD, INPUT);
+		code.invokeInterface(classFile.interfaceMethodRef(CHAR_SEQUENCE, "length", "()I"), 0);
+		code.op(ClassFile.ISTORE, LENGTH);
+		code.op(ClassFile.ICONST_0);
+		code.op(ClassFile.ISTORE, POS);
+		for (int s = 0; s < stateLabels.length; s++) {
+			state(s);
+			if (code.size() > Short.MAX_VALUE) {
+				return null;
+			}
+		}
+		code.mark(miss);
+		code.op(ClassFile.ILOAD, CHAR);
+		code.push(classFile, Character.MIN_SURROGATE);
+		code.jump(ClassFile.IF_ICMPLT, fail);
+		code.op(ClassFile.ILOAD, CHAR);
+		code.push(classFile, Character.MAX_SURROGATE);
+		code.jump(ClassFile.IF_ICMPLE, unknown);
+		code.mark(fail);
+		code.op(ClassFile.ICONST_0);
+		code.op(ClassFile.IRETURN);
+		code.mark(unknown);
+		code.push(classFile, MatchEngine.UNKNOWN);
+		code.op(ClassFile.IRETURN);
+		if (code.size() > Short.MAX_VALUE) {
+			return null;
+		}
+		code.resolve();
+		ClassFile.Code init = new ClassFile.Code(2, 2);
+		init.op(ClassFile.ALOAD, THIS);
+		init.op(ClassFile.ALOAD, INPUT);
+		init.op2(ClassFile.INVOKESPECIAL,
+				classFile.methodRef(SUPER, "<init>", "(L" + OnePass.class.getName().replace('.', '/') + ";)V"));
+		init.op(ClassFile.RETURN);
+		classFile.method(ClassFile.ACC_PUBLIC, "<init>", "(L" + OnePass.class.getName().replace('.', '/') + ";)V",
+				init);
+		classFile.method(ClassFile.ACC_PROTECTED | ClassFile.ACC_FINAL, "run", "(L" + CHAR_SEQUENCE + ";[I)I", code);
+		return classFile.toByteArray(ClassFile.ACC_PUBLIC | ClassFile.ACC_FINAL | ClassFile.ACC_SUPER);
+	}
+
+	/**
+	 * The block of the state: at the end of the input, its match; otherwise the test of the char,
+	 * then the code of each distinct transition.
+	 */
+	private void state(int s) {
+		code.mark(stateLabels[s]);
+		int end = onePass.matchSaves(s) == null ? fail : code.newLabel();
+		code.op(ClassFile.ILOAD, POS);
+		code.op(ClassFile.ILOAD, LENGTH);
+		code.jump(ClassFile.IF_ICMPGE, end);
+		code.op(ClassFile.ALOAD, INPUT);
+		code.op(ClassFile.ILOAD, POS);
+		code.invokeInterface(classFile.interfaceMethodRef(CHAR_SEQUENCE, "charAt", "(I)C"), 1);
+		code.op(ClassFile.ISTORE, CHAR);
+
+		StateTransitions transitions = new StateTransitions(onePass, ranges, s);
+		int[] labels = new int[transitions.classes.length];
+		for (int t = 0; t < labels.length; t++) {
+			labels[t] = code.newLabel();
+		}
+		if (transitions.transitionRanges <= MAX_LINEAR_RANGES) {
+			for (int r = 0; r < transitions.rangeCount; r++) {
+				int destination = transitions.destinations[r];
+				if (destination >= 0) {
+					test(transitions.starts[r], transitions.starts[r + 1] - 1, labels[destination]);
+				}
+			}
+			code.jump(ClassFile.GOTO, miss);
+		} else {
+			search(transitions, labels, 0, transitions.rangeCount);
+		}
+
+		for (int t = 0; t < labels.length; t++) {
+			int charClass = transitions.classes[t];
+			code.mark(labels[t]);
+			conditions(onePass.conditions(s, charClass));
+			save(onePass.saves(s, charClass));
+			code.iinc(POS, 1);
+			code.jump(ClassFile.GOTO, stateLabels[onePass.target(s, charClass)]);
+		}
+
+		if (end != fail) {
+			code.mark(end);
+			conditions(onePass.matchConditions(s));
+			save(onePass.matchSaves(s));
+			code.op(ClassFile.ICONST_1);
+			code.op(ClassFile.IRETURN);
+		}
+	}
+
+	/**
+	 * Jumps to the label if the char is in the range.
+	 */
+	private void test(int first, int last, int label) {
+		if (first == last) {
+			code.op(ClassFile.ILOAD, CHAR);
+			code.push(classFile, first);
+			code.jump(ClassFile.IF_ICMPEQ, label);
+		} else if (first == 0) {
+			code.op(ClassFile.ILOAD, CHAR);
+			code.push(classFile, last);
+			code.jump(ClassFile.IF_ICMPLE, label);
+		} else if (last == Character.MAX_VALUE) {
+			code.op(ClassFile.ILOAD, CHAR);
+			code.push(classFile, first);
+			code.jump(ClassFile.IF_ICMPGE, label);
+		} else {
+			int next = code.newLabel();
+			code.op(ClassFile.ILOAD, CHAR);
+			code.push(classFile, first);
+			code.jump(ClassFile.IF_ICMPLT, next);
+			code.op(ClassFile.ILOAD, CHAR);
+			code.push(classFile, last);
+			code.jump(ClassFile.IF_ICMPLE, label);
+			code.mark(next);
+		}
+	}
+
+	/**
+	 * Jumps to the destination of the char, searching the ranges from {@code from} to {@code to}
+	 * (exclusive), which contain it.
+	 */
+	private void search(StateTransitions transitions, int[] labels, int from, int to) {
+		if (to - from == 1) {
+			int destination = transitions.destinations[from];
+			code.jump(ClassFile.GOTO, destination == StateTransitions.FAIL ? fail
+					: destination == StateTransitions.SURROGATE ? unknown : labels[destination]);
+			return;
+		}
+		int middle = (from + to) >>> 1;
+		int upper = code.newLabel();
+		code.op(ClassFile.ILOAD, CHAR);
+		code.push(classFile, transitions.starts[middle]);
+		code.jump(ClassFile.IF_ICMPGE, upper);
+		search(transitions, labels, from, middle);
+		code.mark(upper);
+		search(transitions, labels, middle, to);
+	}
+
+	/**
+	 * Fails unless the assertions of the mask hold at the position.
+	 */
+	private void conditions(int conditions) {
+		if (conditions == 0) {
+			return;
+		}
+		code.op(ClassFile.ALOAD, THIS);
+		code.push(classFile, conditions);
+		code.op(ClassFile.ALOAD, INPUT);
+		code.op(ClassFile.ILOAD, POS);
+		code.op2(ClassFile.INVOKEVIRTUAL, classFile.methodRef(SUPER, "holds", "(IL" + CHAR_SEQUENCE + ";I)Z"));
+		code.jump(ClassFile.IFEQ, fail);
+	}
+
+	private void save(int[] slots) {
+		for (int slot : slots) {
+			code.op(ClassFile.ALOAD, SLOTS);
+			code.push(classFile, slot);
+			code.op(ClassFile.ILOAD, POS);
+			code.op(ClassFile.IASTORE);
+		}
+	}
+
+	/**
+	 * A class loader per generated class, so that the class is unloaded with its matcher.
+	 */
+	private static final class Loader extends ClassLoader {
+		Loader() {
+			super(GeneratedMatcher.class.getClassLoader());
+		}
+
+		Class<?> define(String name, byte[] bytes) {
+			return defineClass(name, bytes, 0, bytes.length);
+		}
+	}
+}
@@ -0,0 +1,498 @@
+package com.github.sgreben.regex_builder.engine;
+
+import java.util.Arrays;
+import com.github.sgreben.regex_builder.Expression;
+
+/**
+ * A matcher for one-pass expressions (see {@link #compile}), which extracts the groups in a single
+ * scan from left to right, with one array of slots and no threads: the program position after each
+ * char is a state, and each state has a table of transitions by class of chars, each with the slots
+ * it saves.
+ *
+ * The scan is anchored: it runs for {@code matches()}, and for {@code find()} when every match
+ * starts at the start of the input. Inputs with surrogates are not handled: the result is then
+ * {@link #UNKNOWN}.
+ */
+public final class OnePass implements MatchEngine {
+	static final int MAX_TRANSITIONS = 1 << 21;
+
+	private static final int[] NO_SAVES = new int[0];
+
+	/**
+	 * Flags of a transition: it saves slots, it has conditions, its target has a match.
+	 */
+	private static final int SAVES = 1;
+	private static final int CONDITIONS = 2;
+	private static final int TARGET_MATCHES = 4;
+	private static final int FLAG_BITS = 3;
+
+	/**
+	 * Thrown when the program is not one-pass.
+	 */
+	private static final class NotOnePass extends RuntimeException {
+		private static final long serialVersionUID = 1L;
+
+		NotOnePass() {
+			super(null, null, false, false);
+		}
+	}
+
+	private final Alphabet alphabet;
+	private final int classes;
+	private final boolean unixLines;
+	private final int firstGroup;
+	private final int slotCount;
+	private final boolean anchored;
+	/**
+	 * The transitions, indexed by the row of the state (the state times the class count) plus the
+	 * class: -1, or the row of the target shifted left by {@link #FLAG_BITS} or-ed with the flags.
+	 */
+	private final int[] transitions;
+	/**
+	 * The slots each transition saves before consuming its char.
+	 */
+	private final int[][] saves;
+	/**
+	 * The assertions that must hold before each transition, as a mask of bits 1 << assertion.
+	 */
+	private final int[] conditions;
+	/**
+	 * Whether the match of the state has priority over each transition.
+	 */
+	private final boolean[] matchFirst;
+	/**
+	 * The slots saved by the match of each state, or null if the state has no match.
+	 */
+	private final int[][] matchSaves;
+	private final int[] matchConditions;
+
+	private OnePass(Builder builder, int firstGroup, int groupCount) {
+		this.alphabet = builder.alphabet;
+		this.classes = alphabet.classCount();
+		this.unixLines = builder.program.unixLines;
+		this.firstGroup = firstGroup;
+		this.slotCount = 2 * (firstGroup + groupCount);
+		this.anchored = builder.anchored;
+		int count = builder.stateCount * classes;
+		this.saves = Arrays.copyOf(builder.saves, count);
+		this.conditions = Arrays.copyOf(builder.conditions, count);
+		this.matchFirst = Arrays.copyOf(builder.matchFirst, count);
+		this.matchSaves = Arrays.copyOf(builder.matchSaves, builder.stateCount);
+		this.matchConditions = Arrays.copyOf(builder.matchConditions, builder.stateCount);
+		this.transitions = new int[count];
+		for (int t = 0; t < count; t++) {
+			int target = builder.targets[t];
+			if (target < 0) {
+				transitions[t] = -1;
+			} else {
+				transitions[t] = target * classes << FLAG_BITS | (saves[t].length > 0 ? SAVES : 0)
+						| (conditions[t] != 0 ? CONDITIONS : 0) | (matchSaves[target] != null ? TARGET_MATCHES : 0);
+			}
+		}
+	}
+
+	/**
+	 * The one-pass matcher of the expression, or null if the expression is outside the subset of
+	 * the Pike VM, or not one-pass: if, at some position, two of the chars or matches that can come
+	 * next are reached by different paths and the char does not tell them apart. Groups are
+	 * numbered as by {@link PikeVm#compile}.
+	 */
+	public static OnePass compile(Expression expression, int flags, int firstGroup) {
+		Program program = ProgramCompiler.compileCaptures(expression, flags, firstGroup);
+		if (program == null) {
+			return null;
+		}
+		Builder builder = new Builder(program);
+		try {
+			builder.build();
+		} catch (NotOnePass e) {
+			return null;
+		}
+		return new OnePass(builder, firstGroup, ProgramCompiler.groupCount(expression));
+	}
+
+	@Override
+	public String name() {
+		return "ONE_PASS";
+	}
+
+	/**
+	 * The number of slots filled by a match: the start and end of each group, from group 0.
+	 */
+	@Override
+	public int slotCount() {
+		return slotCount;
+	}
+
+	/**
+	 * The number of groups, not counting group 0.
+	 */
+	public int groupCount() {
+		return slotCount / 2 - 1;
+	}
+
+	/**
+	 * Whether every match starts at the start of the input, so that {@link #find} can be used.
+	 */
+	public boolean anchored() {
+		return anchored;
+	}
+
+	@Override
+	public boolean finds() {
+		return anchored;
+	}
+
+	/**
+	 * 1 if the whole input matches, 0 if not, or {@link #UNKNOWN}. On a match, the slots hold the
+	 * start and end of each group, or -1 for groups that did not match.
+	 */
+	@Override
+	public int matches(CharSequence input, int[] slots) {
+		Arrays.fill(slots, 0, slotCount, -1);
+		int length = input.length();
+		int row = 0;
+		for (int pos = 0; pos < length; pos++) {
+			char c = input.charAt(pos);
+			if (Character.isSurrogate(c)) {
+				return UNKNOWN;
+			}
+			int t = row + alphabet.classOf(c);
+			int transition = transitions[t];
+			if (transition < 0) {
+				return 0;
+			}
+			if ((transition & (SAVES | CONDITIONS)) != 0) {
+				if ((transition & CONDITIONS) != 0 && !holds(conditions[t], input, pos)) {
+					return 0;
+				}
+				save(slots, saves[t], pos);
+			}
+			row = transition >>> FLAG_BITS;
+		}
+		int state = row / classes;
+		int[] match = matchSaves[state];
+		if (match == null || !holds(matchConditions[state], input, length)) {
+			return 0;
+		}
+		return matched(slots, match, length);
+	}
+
+	/**
+	 * As {@link PikeVm#find}, for an anchored matcher.
+	 *
+	 * @throws IllegalStateException if the matcher is not {@link #anchored()}
+	 */
+	@Override
+	public int find(CharSequence input, int from, int[] slots) {
+		if (!anchored) {
+			throw new IllegalStateException("not anchored");
+		}
+		return from == 0 ? scan(input, slots) : 0;
+	}
+
+	/**
+	 * The first match from the start, keeping the last match of lower priority than the transition
+	 * taken, in case the scan fails later.
+	 */
+	private int scan(CharSequence input, int[] slots) {
+		Arrays.fill(slots, 0, slotCount, -1);
+		int[] fallback = null;
+		int length = input.length();
+		int row = 0;
+		boolean matchable = matchSaves[0] != null;
+		for (int pos = 0;; pos++) {
+			int[] match = matchable ? matchSaves[row / classes] : null;
+			boolean matches = match != null && holds(matchConditions[row / classes], input, pos);
+			if (pos == length) {
+				if (matches) {
+					return matched(slots, match, pos);
+				}
+				break;
+			}
+			char c = input.charAt(pos);
+			if (Character.isSurrogate(c)) {
+				return UNKNOWN;
+			}
+			int t = row + alphabet.classOf(c);
+			int transition = transitions[t];
+			if (transition >= 0 && (transition & CONDITIONS) != 0 && !holds(conditions[t], input, pos)) {
+				transition = -1;
+			}
+			if (matches) {
+				if (transition < 0 || matchFirst[t]) {
+					return matched(slots, match, pos);
+				}
+				// The match is taken if the scan fails later.
+				fallback = Arrays.copyOf(slots, slotCount);
+				save(fallback, match, pos);
+			}
+			if (transition < 0) {
+				break;
+			}
+			save(slots, saves[t], pos);
+			row = transition >>> FLAG_BITS;
+			matchable = (transition & TARGET_MATCHES) != 0;
+		}
+		if (fallback == null) {
+			return 0;
+		}
+		System.arraycopy(fallback, 0, slots, 0, slotCount);
+		return matched(slots, NO_SAVES, -1);
+	}
+
+	private int matched(int[] slots, int[] match, int pos) {
+		save(slots, match, pos);
+		for (int group = 1; group < firstGroup; group++) {
+			slots[2 * group] = slots[0];
+			slots[2 * group + 1] = slots[1];
+		}
+		return 1;
+	}
+
+	private static void save(int[] slots, int[] saves, int pos) {
+		for (int slot : saves) {
+			slots[slot] = pos;
+		}
+	}
+
+	// The automaton, as read by MatcherGenerator.
+
+	Alphabet alphabet() {
+		return alphabet;
+	}
+
+	int firstGroup() {
+		return firstGroup;
+	}
+
+	boolean unixLines() {
+		return unixLines;
+	}
+
+	int stateCount() {
+		return matchSaves.length;
+	}
+
+	/**
+	 * The state the state moves to on a char of the class, or -1.
+	 */
+	int target(int state, int charClass) {
+		int transition = transitions[state * classes + charClass];
+		return transition < 0 ? -1 : (transition >>> FLAG_BITS) / classes;
+	}
+
+	int[] saves(int state, int charClass) {
+		return saves[state * classes + charClass];
+	}
+
+	int conditions(int state, int charClass) {
+		return conditions[state * classes + charClass];
+	}
+
+	/**
+	 * The slots saved by the match of the state, or null if the state has no match.
+	 */
+	int[] matchSaves(int state) {
+		return matchSaves[state];
+	}
+
+	int matchConditions(int state) {
+		return matchConditions[state];
+	}
+
+	boolean holds(int conditions, CharSequence input, int pos) {
+		return holds(conditions, input, pos, unixLines);
+	}
+
+	static boolean holds(int conditions, CharSequence input, int pos, boolean unixLines) {
+		for (int assertion = 0; conditions != 0; assertion++, conditions >>>= 1) {
+			if ((conditions & 1) == 0) {
+				continue;
+			}
+			boolean holds = assertion == Program.END_TEXT ? Dfa.endsText(input, pos, unixLines)
+					: Determinizer.holds(assertion, Alphabet.categoryBefore(input, pos), Alphabet.categoryAt(input, pos),
+							unixLines);
+			if (!holds) {
+				return false;
+			}
+		}
+		return true;
+	}
+
+	/**
+	 * Builds the states: the start of the program, and the instruction after each CHAR reached from
+	 * a state.
+	 */
+	private static final class Builder {
+		final Program program;
+		final Alphabet alphabet;
+		final boolean[] members;
+		/**
+		 * The state of each instruction, or -1.
+		 */
+		final int[] states;
+		int[] pcs = new int[16];
+		int stateCount;
+		boolean anchored;
+		int[] targets = new int[0];
+		int[][] saves = new int[0][];
+		int[] conditions = new int[0];
+		boolean[] matchFirst = new boolean[0];
+		int[][] matchSaves = new int[16][];
+		int[] matchConditions = new int[16];
+		/**
+		 * The leaves of the closure being explored, in priority order.
+		 */
+		int[] leaves = new int[16];
+		int[][] leafSaves = new int[16][];
+		int[] leafConditions = new int[16];
+		int leafCount;
+		final int[] visited;
+		int visit;
+
+		Builder(Program program) {
+			this.program = program;
+			this.alphabet = Alphabet.of(program.sets());
+			int classes = alphabet.classCount();
+			this.members = new boolean[program.sets().size() * classes];
+			for (int set = 0; set < program.sets().size(); set++) {
+				for (int c = 0; c < classes; c++) {
+					members[set * classes + c] = program.sets().get(set).contains(alphabet.representative(c));
+				}
+			}
+			this.states = new int[program.size()];
+			Arrays.fill(states, -1);
+			this.visited = new int[program.size()];
+		}
+
+		void build() {
+			int classes = alphabet.classCount();
+			state(program.start());
+			for (int state = 0; state < stateCount; state++) {
+				if ((long) stateCount * classes > MAX_TRANSITIONS) {
+					throw new NotOnePass();
+				}
+				closure(pcs[state]);
+				if (state == 0) {
+					anchored = true;
+					for (int i = 0; i < leafCount; i++) {
+						anchored &= (leafConditions[i] & 1 << Program.BEGIN_INPUT) != 0;
+					}
+				}
+				int matchLeaf = -1;
+				for (int i = 0; i < leafCount; i++) {
+					if (program.op(leaves[i]) == Program.MATCH) {
+						if (matchLeaf >= 0) {
+							throw new NotOnePass();
+						}
+						matchLeaf = i;
+						matchSaves[state] = leafSaves[i];
+						matchConditions[state] = leafConditions[i];
+					}
+				}
+				int row = state * classes;
+				ensureTransitions(row + classes);
+				Arrays.fill(targets, row, row + classes, -1);
+				for (int i = 0; i < leafCount; i++) {
+					int pc = leaves[i];
+					if (program.op(pc) != Program.CHAR) {
+						continue;
+					}
+					int set = program.arg(pc);
+					int[] leafSave = leafSaves[i];
+					int leafCondition = leafConditions[i];
+					for (int c = 0; c < classes; c++) {
+						if (!members[set * classes + c]) {
+							continue;
+						}
+						if (targets[row + c] >= 0) {
+							throw new NotOnePass();
+						}
+						int target = state(program.next(pc));
+						targets[row + c] = target;
+						saves[row + c] = leafSave;
+						conditions[row + c] = leafCondition;
+						matchFirst[row + c] = matchLeaf >= 0 && matchLeaf < i;
+					}
+				}
+			}
+		}
+
+		private int state(int pc) {
+			if (states[pc] < 0) {
+				if (stateCount == pcs.length) {
+					pcs = Arrays.copyOf(pcs, 2 * stateCount);
+					matchSaves = Arrays.copyOf(matchSaves, 2 * stateCount);
+					matchConditions = Arrays.copyOf(matchConditions, 2 * stateCount);
+				}
+				pcs[stateCount] = pc;
+				states[pc] = stateCount++;
+			}
+			return states[pc];
+		}
+
+		private void ensureTransitions(int size) {
+			if (size > targets.length) {
+				int capacity = Math.max(size, 2 * targets.length);
+				targets = Arrays.copyOf(targets, capacity);
+				saves = Arrays.copyOf(saves, capacity);
+				conditions = Arrays.copyOf(conditions, capacity);
+				matchFirst = Arrays.copyOf(matchFirst, capacity);
+			}
+		}
+
+		/**
+		 * Collects the CHARs and the MATCH reached from the instruction without consuming a char, in
+		 * priority order, with the slots saved and the assertions passed on the way. Reaching an
+		 * instruction twice makes the program ambiguous.
+		 */
+		private void closure(int start) {
+			leafCount = 0;
+			visit++;
+			explore(start, NO_SAVES, 0);
+		}
+
+		private void explore(int pc, int[] saved, int condition) {
+			while (true) {
+				if (visited[pc] == visit) {
+					throw new NotOnePass();
+				}
+				visited[pc] = visit;
+				switch (program.op(pc)) {
+				case Program.SPLIT:
+					explore(program.next(pc), saved, condition);
+					pc = program.alt(pc);
+					break;
+				case Program.SAVE:
+					saved = Arrays.copyOf(saved, saved.length + 1);
+					saved[saved.length - 1] = program.arg(pc);
+					pc = program.next(pc);
+					break;
+				case Program.ASSERT:
+					condition |= 1 << program.arg(pc);
+					pc = program.next(pc);
+					break;
+				case Program.CHAR:
+				case Program.MATCH:
+					addLeaf(pc, saved, condition);
+					return;
+				default:
+					// Runs and atomic groups consume a number of chars that depends on the input.
+					throw new NotOnePass();
+				}
+			}
+		}
+
+		private void addLeaf(int pc, int[] saved, int condition) {
+			if (leafCount == leaves.length) {
+				leaves = Arrays.copyOf(leaves, 2 * leafCount);
+				leafSaves = Arrays.copyOf(leafSaves, 2 * leafCount);
+				leafConditions = Arrays.copyOf(leafConditions, 2 * leafCount);
+			}
+			leaves[leafCount] = pc;
+			leafSaves[leafCount] = saved;
+			leafConditions[leafCount++] = condition;
+		}
+	}
+}
@@ -0,0 +1,386 @@
+package com.github.sgreben.regex_builder.engine;
+
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+import com.github.sgreben.regex_builder.Expression;
+
+/**
+ * A Pike VM for an expression (see {@link ProgramCompiler}): simulates its NFA with at most one
+ * thread per instruction, each carrying the positions of the groups it has matched, so that
+ * matching with groups takes time linear in the input, with the same groups as java.util.regex.
+ *
+ * Threads are kept in priority order, and a match drops the threads of lower priority, which gives
+ * the leftmost-first match of a backtracking matcher. A possessive quantifier over a single char
+ * consumes its run of chars at once. Other possessive quantifiers and atomic groups run their body
+ * as a nested search anchored at the position, whose first match is kept for each position. Inputs
+ * with surrogates are not handled: the result is then {@link #UNKNOWN}.
+ *
+ * Expressions whose groups java.util.regex does not restore when it backtracks are outside the
+ * subset: groups inside atomic groups and possessive quantifiers, and quantified groups inside
+ * loops.
+ */
+public final class PikeVm implements MatchEngine {
+	/**
+	 * Thrown when a thread reads a surrogate.
+	 */
+	private static final class Surrogate extends RuntimeException {
+		private static final long serialVersionUID = 1L;
+
+		Surrogate() {
+			super(null, null, false, false);
+		}
+	}
+
+	private static final Surrogate SURROGATE = new Surrogate();
+
+	/**
+	 * Threads in priority order. A thread is either at a CHAR or MATCH, or waits at an instruction
+	 * until the position where a run or an atomic group it went through ends.
+	 */
+	private static final class Threads {
+		int[] pcs = new int[16];
+		int[][] slots = new int[16][];
+		int[] wakes = new int[16];
+		int size;
+
+		void add(int pc, int[] slots, int wake) {
+			if (size == pcs.length) {
+				pcs = Arrays.copyOf(pcs, 2 * size);
+				this.slots = Arrays.copyOf(this.slots, 2 * size);
+				wakes = Arrays.copyOf(wakes, 2 * size);
+			}
+			pcs[size] = pc;
+			this.slots[size] = slots;
+			wakes[size] = wake;
+			size++;
+		}
+	}
+
+	private final Program program;
+	private final Alphabet alphabet;
+	/**
+	 * Whether each set contains each class of chars, indexed by set times class count plus class.
+	 */
+	private final boolean[] members;
+	private final int firstGroup;
+	private final int slotCount;
+
+	private PikeVm(Program program, int firstGroup, int groupCount) {
+		this.program = program;
+		this.alphabet = Alphabet.of(program.sets());
+		int classes = alphabet.classCount();
+		this.members = new boolean[program.sets().size() * classes];
+		for (int set = 0; set < program.sets().size(); set++) {
+			for (int c = 0; c < classes; c++) {
+				members[set * classes + c] = program.sets().get(set).contains(alphabet.representative(c));
+			}
+		}
+		this.firstGroup = firstGroup;
+		this.slotCount = 2 * (firstGroup + groupCount);
+	}
+
+	/**
+	 * The VM of the expression, or null if the expression or the flags are outside the subset. The
+	 * groups of the expression are numbered from the given group in the order in which they are
+	 * opened, as in the regex written for the expression; the groups before it span the match.
+	 */
+	public static PikeVm compile(Expression expression, int flags, int firstGroup) {
+		Program program = ProgramCompiler.compileCaptures(expression, flags, firstGroup);
+		if (program == null) {
+			return null;
+		}
+		return new PikeVm(program, firstGroup, ProgramCompiler.groupCount(expression));
+	}
+
+	@Override
+	public String name() {
+		return "PIKE_VM";
+	}
+
+	/**
+	 * The number of slots filled by a match: the start and end of each group, from group 0.
+	 */
+	@Override
+	public int slotCount() {
+		return slotCount;
+	}
+
+	/**
+	 * The number of groups, not counting group 0.
+	 */
+	public int groupCount() {
+		return slotCount / 2 - 1;
+	}
+
+	@Override
+	public boolean finds() {
+		return true;
+	}
+
+	/**
+	 * 1 if the whole input matches, 0 if not, or {@link #UNKNOWN}. On a match, the slots hold the
+	 * start and end of each group, or -1 for groups that did not match.
+	 */
+	@Override
+	public int matches(CharSequence input, int[] slots) {
+		return new Run(input).run(0, true, slots);
+	}
+
+	/**
+	 * 1 if there is a match starting at or after the given index, 0 if not, or {@link #UNKNOWN}. On
+	 * a match, the slots hold the start and end of each group of the leftmost-first match, or -1 for
+	 * groups that did not match.
+	 */
+	@Override
+	public int find(CharSequence input, int from, int[] slots) {
+		return new Run(input).run(from, false, slots);
+	}
+
+	/**
+	 * The state of one call: the ends of atomic groups by position, and the last run of each RUN.
+	 */
+	private final class Run {
+		final CharSequence input;
+		final int length;
+		final Map<Long, Integer> atomics = new HashMap<Long, Integer>();
+		final int[] runFrom;
+		final int[] runStop;
+
+		Run(CharSequence input) {
+			this.input = input;
+			this.length = input.length();
+			this.runFrom = new int[program.size()];
+			this.runStop = new int[program.size()];
+			Arrays.fill(runFrom, -1);
+		}
+
+		int run(int from, boolean whole, int[] slots) {
+			int[] match;
+			try {
+				match = new Search(program.start(), from, whole, whole).run();
+			} catch (Surrogate e) {
+				return UNKNOWN;
+			}
+			if (match == null) {
+				return 0;
+			}
+			System.arraycopy(match, 0, slots, 0, slotCount);
+			for (int group = 1; group < firstGroup; group++) {
+				slots[2 * group] = match[0];
+				slots[2 * group + 1] = match[1];
+			}
+			return 1;
+		}
+
+		boolean member(int set, int index) {
+			char c = input.charAt(index);
+			if (Character.isSurrogate(c)) {
+				throw SURROGATE;
+			}
+			return members[set * alphabet.classCount() + alphabet.classOf(c)];
+		}
+
+		/**
+		 * The end of the run of a RUN at the position, or -1 if it is too short. The run is kept, so
+		 * that the runs of later positions inside it end without rescanning.
+		 */
+		int runEnd(int pc, int pos) {
+			int[] run = program.run(pc);
+			int stop;
+			if (runFrom[pc] >= 0 && runFrom[pc] <= pos && pos <= runStop[pc]) {
+				stop = runStop[pc];
+			} else {
+				stop = pos;
+				while (stop < length && member(run[0], stop)) {
+					stop++;
+				}
+				runFrom[pc] = pos;
+				runStop[pc] = stop;
+			}
+			int end = run[2] < 0 ? stop : (int) Math.min(stop, (long) pos + run[2]);
+			return end - pos < run[1] ? -1 : end;
+		}
+
+		/**
+		 * The end of the first match of the body of an ATOMIC at the position, or -1 if it does not
+		 * match.
+		 */
+		int atomicEnd(int pc, int pos) {
+			Long key = (long) pc << 32 | pos;
+			Integer end = atomics.get(key);
+			if (end == null) {
+				int[] match = new Search(program.arg(pc), pos, true, false).run();
+				end = match == null ? -1 : match[slotCount];
+				atomics.put(key, end);
+			}
+			return end;
+		}
+
+		boolean holds(int assertion, int pos) {
+			if (assertion == Program.END_TEXT) {
+				return Dfa.endsText(input, pos, program.unixLines);
+			}
+			return Determinizer.holds(assertion, Alphabet.categoryBefore(input, pos), Alphabet.categoryAt(input, pos),
+					program.unixLines);
+		}
+
+		/**
+		 * A search for the first match of the instructions from a start, at a position or after it.
+		 */
+		private final class Search {
+			final int start;
+			final int from;
+			final boolean anchored;
+			final boolean whole;
+			/**
+			 * The step in which each instruction was last added, counting from 1.
+			 */
+			final int[] visited = new int[program.size()];
+			final int[] pcStack = new int[2 * program.size() + 2];
+			final int[][] slotStack = new int[2 * program.size() + 2][];
+			/**
+			 * The step in which a thread waiting for a position at an instruction was last added.
+			 */
+			final Map<Long, Integer> waiting = new HashMap<Long, Integer>();
+
+			Search(int start, int from, boolean anchored, boolean whole) {
+				this.start = start;
+				this.from = from;
+				this.anchored = anchored;
+				this.whole = whole;
+			}
+
+			/**
+			 * The slots of the match followed by its end, or null.
+			 */
+			int[] run() {
+				Threads current = new Threads();
+				Threads next = new Threads();
+				int[] match = null;
+				int[] none = new int[slotCount + 1];
+				Arrays.fill(none, -1);
+				for (int pos = from;; pos++) {
+					int step = pos - from + 1;
+					if (match == null && (pos == from || !anchored)) {
+						add(current, start, none, pos, step);
+					}
+					if (current.size == 0 && (match != null || anchored)) {
+						return match;
+					}
+					if (pos == length) {
+						for (int i = 0; i < current.size; i++) {
+							if (current.wakes[i] < 0 && program.op(current.pcs[i]) == Program.MATCH) {
+								return ended(current.slots[i], pos);
+							}
+						}
+						return match;
+					}
+					char c = input.charAt(pos);
+					if (Character.isSurrogate(c) && current.size > 0) {
+						throw SURROGATE;
+					}
+					int charClass = alphabet.classOf(c);
+					next.size = 0;
+					for (int i = 0; i < current.size; i++) {
+						int pc = current.pcs[i];
+						int wake = current.wakes[i];
+						if (wake >= 0) {
+							if (wake == pos + 1) {
+								add(next, pc, current.slots[i], pos + 1, step + 1);
+							} else {
+								wait(next, pc, current.slots[i], wake, step + 1);
+							}
+						} else if (program.op(pc) == Program.MATCH) {
+							if (!whole) {
+								match = ended(current.slots[i], pos);
+								break;
+							}
+						} else if (members[program.arg(pc) * alphabet.classCount() + charClass]) {
+							add(next, program.next(pc), current.slots[i], pos + 1, step + 1);
+						}
+					}
+					Threads swap = current;
+					current = next;
+					next = swap;
+				}
+			}
+
+			private int[] ended(int[] slots, int pos) {
+				int[] match = slots.clone();
+				match[slotCount] = pos;
+				return match;
+			}
+
+			/**
+			 * Adds the threads reached from the instruction without consuming a char, in priority
+			 * order.
+			 */
+			private void add(Threads threads, int pc, int[] slots, int pos, int step) {
+				int top = 0;
+				pcStack[top] = pc;
+				slotStack[top++] = slots;
+				while (top > 0) {
+					pc = pcStack[--top];
+					slots = slotStack[top];
+					if (visited[pc] == step) {
+						continue;
+					}
+					visited[pc] = step;
+					switch (program.op(pc)) {
+					case Program.SPLIT:
+						pcStack[top] = program.alt(pc);
+						slotStack[top++] = slots;
+						pcStack[top] = program.next(pc);
+						slotStack[top++] = slots;
+						break;
+					case Program.SAVE:
+						slots = slots.clone();
+						slots[program.arg(pc)] = pos;
+						pcStack[top] = program.next(pc);
+						slotStack[top++] = slots;
+						break;
+					case Program.ASSERT:
+						if (holds(program.arg(pc), pos)) {
+							pcStack[top] = program.next(pc);
+							slotStack[top++] = slots;
+						}
+						break;
+					case Program.RUN:
+						top = resume(threads, program.next(pc), slots, pos, runEnd(pc, pos), step, top);
+						break;
+					case Program.ATOMIC:
+						top = resume(threads, program.next(pc), slots, pos, atomicEnd(pc, pos), step, top);
+						break;
+					default:
+						threads.add(pc, slots, -1);
+					}
+				}
+			}
+
+			/**
+			 * Continues at the instruction after a run or an atomic group ending at the given end:
+			 * at once if it is the position, or else by adding a thread waiting for the end.
+			 */
+			private int resume(Threads threads, int pc, int[] slots, int pos, int end, int step, int top) {
+				if (end == pos) {
+					pcStack[top] = pc;
+					slotStack[top++] = slots;
+				} else if (end > pos) {
+					wait(threads, pc, slots, end, step);
+				}
+				return top;
+			}
+
+			/**
+			 * Adds a thread waiting for the position at the instruction, unless a thread of higher
+			 * priority in the same step already waits for it there.
+			 */
+			private void wait(Threads threads, int pc, int[] slots, int wake, int step) {
+				if (!Integer.valueOf(step).equals(waiting.put((long) wake << 32 | pc, step))) {
+					threads.add(pc, slots, wake);
+				}
+			}
+		}
+	}
+}
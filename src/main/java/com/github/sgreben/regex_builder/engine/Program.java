@@ -0,0 +1,191 @@
+package com.github.sgreben.regex_builder.engine;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import com.github.sgreben.regex_builder.charclass.RangeSet;
+
+/**
+ * A Thompson NFA as a list of instructions. Instructions are numbered; SPLIT prefers its first
+ * successor, which gives the priority order of a backtracking matcher.
+ */
+final class Program {
+	static final int CHAR = 0;
+	static final int SPLIT = 1;
+	static final int ASSERT = 2;
+	static final int MATCH = 3;
+	/**
+	 * Stores the position in a capture slot (Pike VM only).
+	 */
+	static final int SAVE = 4;
+	/**
+	 * Matches the instructions from {@code arg} to their MATCH as an atomic group, and continues
+	 * at the position of their first match (Pike VM only).
+	 */
+	static final int ATOMIC = 5;
+	/**
+	 * Consumes as many chars of a set as possible, as a possessive quantifier; {@code alt} is the
+	 * index of the run (Pike VM only).
+	 */
+	static final int RUN = 6;
+
+	/**
+	 * Assertions, evaluated between the character to the left and the character to the right.
+	 */
+	static final int BEGIN_INPUT = 0;
+	static final int END_INPUT = 1;
+	/**
+	 * "^" under MULTILINE.
+	 */
+	static final int BEGIN_LINE = 2;
+	/**
+	 * "$" under MULTILINE.
+	 */
+	static final int END_LINE = 3;
+	/**
+	 * "$" without MULTILINE: at the end of the input, or before a line terminator at the end.
+	 */
+	static final int END_TEXT = 4;
+
+	private int[] op = new int[64];
+	private int[] arg = new int[64];
+	private int[] next = new int[64];
+	private int[] alt = new int[64];
+	private int size;
+	private final List<RangeSet> sets = new ArrayList<RangeSet>();
+	/**
+	 * The set, minimum and maximum (-1 if unbounded) of each RUN.
+	 */
+	private final List<int[]> runs = new ArrayList<int[]>();
+	private int start;
+	final boolean unixLines;
+
+	Program(boolean unixLines) {
+		this.unixLines = unixLines;
+	}
+
+	int size() {
+		return size;
+	}
+
+	int op(int pc) {
+		return op[pc];
+	}
+
+	/**
+	 * The set of a CHAR, or the assertion of an ASSERT.
+	 */
+	int arg(int pc) {
+		return arg[pc];
+	}
+
+	int next(int pc) {
+		return next[pc];
+	}
+
+	/**
+	 * The second successor of a SPLIT.
+	 */
+	int alt(int pc) {
+		return alt[pc];
+	}
+
+	int start() {
+		return start;
+	}
+
+	void setStart(int start) {
+		this.start = start;
+	}
+
+	List<RangeSet> sets() {
+		return sets;
+	}
+
+	int add(int op, int arg, int next, int alt) {
+		if (size == this.op.length) {
+			this.op = Arrays.copyOf(this.op, 2 * size);
+			this.arg = Arrays.copyOf(this.arg, 2 * size);
+			this.next = Arrays.copyOf(this.next, 2 * size);
+			this.alt = Arrays.copyOf(this.alt, 2 * size);
+		}
+		this.op[size] = op;
+		this.arg[size] = arg;
+		this.next[size] = next;
+		this.alt[size] = alt;
+		return size++;
+	}
+
+	int addChar(RangeSet set, int next) {
+		sets.add(set);
+		return add(CHAR, sets.size() - 1, next, -1);
+	}
+
+	int addRun(RangeSet set, int min, int max, int next) {
+		sets.add(set);
+		runs.add(new int[] {sets.size() - 1, min, max});
+		return add(RUN, sets.size() - 1, next, runs.size() - 1);
+	}
+
+	int[] run(int pc) {
+		return runs.get(alt[pc]);
+	}
+
+	void setSplit(int pc, int next, int alt) {
+		this.next[pc] = next;
+		this.alt[pc] = alt;
+	}
+
+	/**
+	 * Whether the target can be reached from the instruction without consuming a character.
+	 */
+	boolean reachesEmpty(int from, int target) {
+		boolean[] visited = new boolean[size];
+		int[] stack = new int[2 * size + 1];
+		int top = 0;
+		stack[top++] = from;
+		while (top > 0) {
+			int pc = stack[--top];
+			if (pc == target) {
+				return true;
+			}
+			if (pc < 0 || visited[pc]) {
+				continue;
+			}
+			visited[pc] = true;
+			if (op[pc] == SPLIT) {
+				stack[top++] = alt[pc];
+				stack[top++] = next[pc];
+			} else if (op[pc] != CHAR && op[pc] != MATCH) {
+				// Assertions, saves, and atomic groups and runs that may match the empty string.
+				stack[top++] = next[pc];
+			}
+		}
+		return false;
+	}
+
+	/**
+	 * Whether the instructions reachable from the given one without consuming a character are
+	 * only SPLITs and the MATCH.
+	 */
+	boolean onlyMatchFollows(int from) {
+		boolean[] visited = new boolean[size];
+		int[] stack = new int[2 * size + 1];
+		int top = 0;
+		stack[top++] = from;
+		while (top > 0) {
+			int pc = stack[--top];
+			if (visited[pc]) {
+				continue;
+			}
+			visited[pc] = true;
+			if (op[pc] == SPLIT) {
+				stack[top++] = alt[pc];
+				stack[top++] = next[pc];
+			} else if (op[pc] != MATCH) {
+				return false;
+			}
+		}
+		return true;
+	}
+}
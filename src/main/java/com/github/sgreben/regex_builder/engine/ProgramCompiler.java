@@ -0,0 +1,400 @@
+package com.github.sgreben.regex_builder.engine;
+
+import java.util.ArrayList;
+import java.util.List;
+import com.github.sgreben.regex_builder.CaptureGroup;
+import com.github.sgreben.regex_builder.CharClass;
+import com.github.sgreben.regex_builder.Expression;
+import com.github.sgreben.regex_builder.charclass.BeginInput;
+import com.github.sgreben.regex_builder.charclass.EndInput;
+import com.github.sgreben.regex_builder.charclass.EndInputBeforeFinalTerminator;
+import com.github.sgreben.regex_builder.charclass.RangeSet;
+import com.github.sgreben.regex_builder.expression.Atomic;
+import com.github.sgreben.regex_builder.expression.BeginLine;
+import com.github.sgreben.regex_builder.expression.CharClassExpression;
+import com.github.sgreben.regex_builder.expression.Choice;
+import com.github.sgreben.regex_builder.expression.EndLine;
+import com.github.sgreben.regex_builder.expression.Expressions;
+import com.github.sgreben.regex_builder.expression.Literal;
+import com.github.sgreben.regex_builder.expression.Optional;
+import com.github.sgreben.regex_builder.expression.OptionalPossessive;
+import com.github.sgreben.regex_builder.expression.OptionalReluctant;
+import com.github.sgreben.regex_builder.expression.Repeat;
+import com.github.sgreben.regex_builder.expression.Repeat1;
+import com.github.sgreben.regex_builder.expression.Repeat1Possessive;
+import com.github.sgreben.regex_builder.expression.Repeat1Reluctant;
+import com.github.sgreben.regex_builder.expression.RepeatAtLeast;
+import com.github.sgreben.regex_builder.expression.RepeatAtLeastPossessive;
+import com.github.sgreben.regex_builder.expression.RepeatAtLeastReluctant;
+import com.github.sgreben.regex_builder.expression.RepeatPossessive;
+import com.github.sgreben.regex_builder.expression.RepeatReluctant;
+import com.github.sgreben.regex_builder.expression.Sequence;
+import com.github.sgreben.regex_builder.expression.Unary;
+
+/**
+ * Compiles the regular subset of expressions to a {@link Program}, forwards or reversed (for
+ * scanning from right to left). The subset has literals, evaluable character classes, sequences,
+ * choices, groups, greedy and reluctant repetitions whose operand cannot match the empty string,
+ * and the anchors "^", "$", "\A" and "\z". Without MULTILINE, "$" must end the expression.
+ *
+ * For the Pike VM, groups also save their bounds, "$" may appear anywhere, and the subset extends to
+ * possessive quantifiers and atomic groups.
+ *
+ * Characters are UTF-16 code units outside the surrogate block; code points above U+FFFF are
+ * dropped from classes, and matchers leave inputs with surrogates to the backtracking engine.
+ */
+final class ProgramCompiler {
+	static final int MAX_INSTRUCTIONS = 10000;
+
+	static final int SUPPORTED_FLAGS = java.util.regex.Pattern.MULTILINE | java.util.regex.Pattern.DOTALL
+			| java.util.regex.Pattern.UNIX_LINES | java.util.regex.Pattern.UNICODE_CASE;
+
+	static final RangeSet NON_SURROGATES = RangeSet.of(0, Character.MIN_SURROGATE - 1, Character.MAX_SURROGATE + 1,
+			Character.MAX_VALUE);
+
+	/**
+	 * Thrown for nodes outside the subset.
+	 */
+	private static final class Unsupported extends RuntimeException {
+		private static final long serialVersionUID = 1L;
+
+		Unsupported() {
+			super(null, null, false, false);
+		}
+	}
+
+	private final Program program;
+	private final int flags;
+	private final boolean reverse;
+	private final boolean captures;
+	/**
+	 * The number of loops around the node being emitted.
+	 */
+	private int loopDepth;
+
+	private ProgramCompiler(int flags, boolean reverse, boolean captures) {
+		this.program = new Program((flags & java.util.regex.Pattern.UNIX_LINES) != 0);
+		this.flags = flags;
+		this.reverse = reverse;
+		this.captures = captures;
+	}
+
+	/**
+	 * The program of the expression, or null if it is outside the subset.
+	 */
+	static Program compile(Expression expression, int flags, boolean reverse) {
+		if ((flags & ~SUPPORTED_FLAGS) != 0) {
+			return null;
+		}
+		ProgramCompiler compiler = new ProgramCompiler(flags, reverse, false);
+		Program program = compiler.program;
+		try {
+			int match = program.add(Program.MATCH, 0, -1, -1);
+			program.setStart(compiler.emit(expression, match, 0));
+		} catch (Unsupported e) {
+			return null;
+		}
+		for (int pc = 0; pc < program.size(); pc++) {
+			if (program.op(pc) == Program.ASSERT && program.arg(pc) == Program.END_TEXT && !reverse
+					&& !program.onlyMatchFollows(program.next(pc))) {
+				return null;
+			}
+		}
+		return program;
+	}
+
+	/**
+	 * The program of the expression for the Pike VM, or null if it is outside the subset. The
+	 * program saves the bounds of the match in slots 0 and 1, and those of the n-th group opened in
+	 * the expression in slots {@code 2 * (firstGroup + n)} and {@code 2 * (firstGroup + n) + 1}, as
+	 * java.util.regex numbers the groups of the regex written for the expression.
+	 */
+	static Program compileCaptures(Expression expression, int flags, int firstGroup) {
+		if ((flags & ~SUPPORTED_FLAGS) != 0) {
+			return null;
+		}
+		ProgramCompiler compiler = new ProgramCompiler(flags, false, true);
+		Program program = compiler.program;
+		try {
+			int match = program.add(Program.MATCH, 0, -1, -1);
+			int body = compiler.emit(expression, program.add(Program.SAVE, 1, match, -1), firstGroup);
+			program.setStart(program.add(Program.SAVE, 0, body, -1));
+		} catch (Unsupported e) {
+			return null;
+		}
+		return program;
+	}
+
+	/**
+	 * Emits the instructions of the node, continuing at the given instruction, and returns the first.
+	 * The first group opened in the node has the given number.
+	 */
+	private int emit(Expression node, int next, int group) {
+		if (program.size() > MAX_INSTRUCTIONS) {
+			throw new Unsupported();
+		}
+		Class<?> type = node.getClass();
+		if (type == Sequence.class) {
+			List<Expression> children = children(node);
+			int[] groups = firstGroups(children, group);
+			for (int i = 0; i < children.size(); i++) {
+				int child = reverse ? i : children.size() - 1 - i;
+				next = emit(children.get(child), next, groups[child]);
+			}
+			return next;
+		}
+		if (type == Choice.class) {
+			List<Expression> children = children(node);
+			if (children.isEmpty()) {
+				return next;
+			}
+			int[] groups = firstGroups(children, group);
+			int[] entries = new int[children.size()];
+			for (int i = 0; i < entries.length; i++) {
+				entries[i] = emit(children.get(i), next, groups[i]);
+			}
+			int entry = entries[entries.length - 1];
+			for (int i = entries.length - 2; i >= 0; i--) {
+				entry = program.add(Program.SPLIT, 0, entries[i], entry);
+			}
+			return entry;
+		}
+		if (node instanceof CaptureGroup && captures) {
+			int end = program.add(Program.SAVE, 2 * group + 1, next, -1);
+			int body = emit(node.children().iterator().next(), end, group + 1);
+			return program.add(Program.SAVE, 2 * group, body, -1);
+		}
+		if (Expressions.isWrapper(node)) {
+			return emit(node.children().iterator().next(), next, group);
+		}
+		if (type == Literal.class) {
+			String literal = ((Literal) node).getLiteral();
+			int[] codePoints = literal.codePoints().toArray();
+			for (int i = 0; i < codePoints.length; i++) {
+				int c = codePoints[reverse ? i : codePoints.length - 1 - i];
+				next = program.addChar(RangeSet.of(c, c).intersection(NON_SURROGATES), next);
+			}
+			return next;
+		}
+		if (type == CharClassExpression.class) {
+			return emitCharClass(((CharClassExpression) node).getCharClass(), next);
+		}
+		boolean multiline = (flags & java.util.regex.Pattern.MULTILINE) != 0;
+		if (type == BeginLine.class) {
+			return program.add(Program.ASSERT, multiline ? Program.BEGIN_LINE : Program.BEGIN_INPUT, next, -1);
+		}
+		if (type == EndLine.class) {
+			return program.add(Program.ASSERT, multiline ? Program.END_LINE : Program.END_TEXT, next, -1);
+		}
+		if (type == Repeat.class || type == Repeat1.class || type == RepeatAtLeast.class || type == Optional.class) {
+			return emitRepeat((Unary) node, true, next, group);
+		}
+		if (type == RepeatReluctant.class || type == Repeat1Reluctant.class || type == RepeatAtLeastReluctant.class
+				|| type == OptionalReluctant.class) {
+			return emitRepeat((Unary) node, false, next, group);
+		}
+		if (captures && (type == RepeatPossessive.class || type == Repeat1Possessive.class
+				|| type == RepeatAtLeastPossessive.class || type == OptionalPossessive.class)) {
+			return emitPossessive((Unary) node, next, group);
+		}
+		if (captures && type == Atomic.class) {
+			return emitAtomic(node.children().iterator().next(), next, group);
+		}
+		// Possessive quantifiers and atomic groups (for DFAs), lookarounds, back references and raw
+		// regex fragments.
+		throw new Unsupported();
+	}
+
+	/**
+	 * Emits a possessive quantifier over a single char as a RUN, and others as an atomic group
+	 * around the greedy quantifier.
+	 */
+	private int emitPossessive(Unary node, int next, int group) {
+		if (groupCount(node) > 0) {
+			// java.util.regex does not restore the groups of an atomic body when it backtracks.
+			throw new Unsupported();
+		}
+		RangeSet set = singleChar(node.child());
+		if (set != null) {
+			return program.addRun(set, minIterations(node), maxIterations(node), next);
+		}
+		int match = program.add(Program.MATCH, 0, -1, -1);
+		return program.add(Program.ATOMIC, emitRepeat(node, true, match, group), next, -1);
+	}
+
+	private int emitAtomic(Expression body, int next, int group) {
+		if (groupCount(body) > 0) {
+			throw new Unsupported();
+		}
+		int match = program.add(Program.MATCH, 0, -1, -1);
+		return program.add(Program.ATOMIC, emit(body, match, group), next, -1);
+	}
+
+	/**
+	 * The chars matched by the node if it matches a single char, or null.
+	 */
+	private RangeSet singleChar(Expression node) {
+		node = unwrap(node);
+		if (node.getClass() == Literal.class) {
+			String literal = ((Literal) node).getLiteral();
+			if (literal.length() == 1) {
+				return RangeSet.of(literal.charAt(0), literal.charAt(0)).intersection(NON_SURROGATES);
+			}
+		}
+		if (node.getClass() == CharClassExpression.class) {
+			CharClass charClass = ((CharClassExpression) node).getCharClass();
+			Class<?> type = charClass.getClass();
+			if (type != BeginInput.class && type != EndInput.class && type != EndInputBeforeFinalTerminator.class) {
+				RangeSet set = charClass.toRangeSet(flags & (java.util.regex.Pattern.DOTALL | java.util.regex.Pattern.UNIX_LINES));
+				return set == null ? null : set.intersection(NON_SURROGATES);
+			}
+		}
+		return null;
+	}
+
+	private int emitCharClass(CharClass charClass, int next) {
+		Class<?> type = charClass.getClass();
+		if (type == BeginInput.class) {
+			return program.add(Program.ASSERT, Program.BEGIN_INPUT, next, -1);
+		}
+		if (type == EndInput.class || type == EndInputBeforeFinalTerminator.class) {
+			// EndInputBeforeFinalTerminator is emitted as "\z".
+			return program.add(Program.ASSERT, Program.END_INPUT, next, -1);
+		}
+		RangeSet set = charClass.toRangeSet(flags & (java.util.regex.Pattern.DOTALL | java.util.regex.Pattern.UNIX_LINES));
+		if (set == null) {
+			// Word boundaries and classes that depend on the JDK's Unicode tables.
+			throw new Unsupported();
+		}
+		return program.addChar(set.intersection(NON_SURROGATES), next);
+	}
+
+	/**
+	 * Emits the mandatory iterations, followed by a loop or by nested optional iterations. The
+	 * operand of a loop must not match the empty string, since java.util.regex ends such loops
+	 * differently from an NFA.
+	 */
+	private int emitRepeat(Unary node, boolean greedy, int next, int group) {
+		int min = minIterations(node);
+		int max = maxIterations(node);
+		if (max >= 0 && max < min) {
+			throw new Unsupported();
+		}
+		Expression body = node.child();
+		boolean loops = max < 0 || max > 1;
+		if (captures && loops && loopDepth > 0 && unwrap(body) instanceof CaptureGroup) {
+			// java.util.regex runs a quantified group with its own loop, whose group does not always
+			// end at the last iteration when the loop is nested in another.
+			throw new Unsupported();
+		}
+		if (loops) {
+			loopDepth++;
+		}
+		int entry = emitIterations(body, min, max, loops, greedy, next, group);
+		if (loops) {
+			loopDepth--;
+		}
+		return entry;
+	}
+
+	private int emitIterations(Expression body, int min, int max, boolean loops, boolean greedy, int next, int group) {
+		int entry = next;
+		if (max < 0) {
+			int split = program.add(Program.SPLIT, 0, -1, -1);
+			int start = emit(body, split, group);
+			if (program.reachesEmpty(start, split)) {
+				throw new Unsupported();
+			}
+			setSplit(split, start, next, greedy);
+			entry = split;
+		} else {
+			for (int i = min; i < max; i++) {
+				int start = emit(body, entry, group);
+				if (loops && program.reachesEmpty(start, entry)) {
+					throw new Unsupported();
+				}
+				int split = program.add(Program.SPLIT, 0, -1, -1);
+				setSplit(split, start, next, greedy);
+				entry = split;
+			}
+		}
+		for (int i = 0; i < min; i++) {
+			int start = emit(body, entry, group);
+			if (loops && program.reachesEmpty(start, entry)) {
+				throw new Unsupported();
+			}
+			entry = start;
+		}
+		return entry;
+	}
+
+	private void setSplit(int split, int iterate, int exit, boolean greedy) {
+		if (greedy) {
+			program.setSplit(split, iterate, exit);
+		} else {
+			program.setSplit(split, exit, iterate);
+		}
+	}
+
+	private static Expression unwrap(Expression node) {
+		while (Expressions.isWrapper(node) && !(node instanceof CaptureGroup)) {
+			node = node.children().iterator().next();
+		}
+		return node;
+	}
+
+	private static List<Expression> children(Expression node) {
+		List<Expression> children = new ArrayList<Expression>();
+		for (Expression child : node.children()) {
+			children.add(child);
+		}
+		return children;
+	}
+
+	/**
+	 * The number of the first group opened in each of the nodes, given that of the first node.
+	 */
+	private static int[] firstGroups(List<Expression> nodes, int group) {
+		int[] groups = new int[nodes.size()];
+		for (int i = 0; i < groups.length; i++) {
+			groups[i] = group;
+			group += groupCount(nodes.get(i));
+		}
+		return groups;
+	}
+
+	/**
+	 * The number of groups opened in the node.
+	 */
+	static int groupCount(Expression node) {
+		int count = node instanceof CaptureGroup ? 1 : 0;
+		for (Expression child : node.children()) {
+			count += groupCount(child);
+		}
+		return count;
+	}
+
+	private static int minIterations(Unary node) {
+		if (node instanceof Repeat) {
+			Repeat repeat = (Repeat) node;
+			Integer lower = repeat.getLowerBound() != null ? repeat.getLowerBound() : repeat.getUpperBound();
+			return lower != null ? lower : 0;
+		}
+		if (node instanceof RepeatAtLeast) {
+			return ((RepeatAtLeast) node).getLowerBound();
+		}
+		return node instanceof Repeat1 ? 1 : 0;
+	}
+
+	/**
+	 * The maximal number of iterations, or -1 if unbounded.
+	 */
+	private static int maxIterations(Unary node) {
+		if (node instanceof Repeat) {
+			Repeat repeat = (Repeat) node;
+			Integer upper = repeat.getUpperBound() != null ? repeat.getUpperBound() : repeat.getLowerBound();
+			return upper != null ? upper : -1;
+		}
+		return node instanceof Optional ? 1 : -1;
+	}
+}
@@ -0,0 +1,160 @@
+package com.github.sgreben.regex_builder.engine;
+
+/**
+ * Writes the scan of a one-pass matcher as Java statements (see {@link GeneratedMatcher#scanSource}):
+ * a loop over the input switching on the state, in which each state tests the char against the
+ * ranges of its transitions as {@link MatcherGenerator} does, then a switch on the state at the end
+ * of the input for the matches.
+ */
+final class ScanSourceWriter {
+	/**
+	 * The most lines written; javac rejects methods of more than 64k bytes of code.
+	 */
+	static final int MAX_LINES = 4000;
+
+	private static final String ASSERTIONS_HOLD = GeneratedMatcher.class.getName() + ".assertionsHold";
+
+	private final OnePass onePass;
+	private final String indent;
+	private final StringBuilder out = new StringBuilder();
+	private int lines;
+
+	private ScanSourceWriter(OnePass onePass, String indent) {
+		this.onePass = onePass;
+		this.indent = indent;
+	}
+
+	static String write(OnePass onePass, String indent) {
+		ScanSourceWriter writer = new ScanSourceWriter(onePass, indent);
+		writer.write();
+		return writer.lines > MAX_LINES ? null : writer.out.toString();
+	}
+
+	private void write() {
+		int[] ranges = StateTransitions.classRanges(onePass.alphabet());
+		line(0, "int length = input.length();");
+		line(0, "int state = 0;");
+		line(0, "for (int pos = 0; pos < length; pos++) {");
+		line(1, "char c = input.charAt(pos);");
+		line(1, "switch (state) {");
+		for (int s = 0; s < onePass.stateCount() && lines <= MAX_LINES; s++) {
+			StateTransitions transitions = new StateTransitions(onePass, ranges, s);
+			if (transitions.classes.length == 0) {
+				continue;
+			}
+			line(1, "case " + s + ": {");
+			if (transitions.transitionRanges <= MatcherGenerator.MAX_LINEAR_RANGES) {
+				for (int t = 0; t < transitions.classes.length; t++) {
+					StringBuilder test = new StringBuilder();
+					for (int r = 0; r < transitions.rangeCount; r++) {
+						if (transitions.destinations[r] == t) {
+							test.append(test.length() > 0 ? " || " : "")
+									.append(test(transitions.starts[r], transitions.starts[r + 1] - 1));
+						}
+					}
+					line(2, "if (" + test + ") {");
+					transition(3, s, transitions.classes[t]);
+					line(2, "}");
+				}
+			} else {
+				line(2, "int next = " + search(transitions, 0, transitions.rangeCount) + ";");
+				line(2, "switch (next) {");
+				for (int t = 0; t < transitions.classes.length; t++) {
+					line(2, "case " + t + ":");
+					transition(3, s, transitions.classes[t]);
+				}
+				line(2, "}");
+			}
+			line(2, "break;");
+			line(1, "}");
+		}
+		line(1, "}");
+		line(1, "return c >= 0xd800 && c <= 0xdfff ? " + MatchEngine.UNKNOWN + " : 0;");
+		line(0, "}");
+		line(0, "switch (state) {");
+		for (int s = 0; s < onePass.stateCount(); s++) {
+			int[] saves = onePass.matchSaves(s);
+			if (saves == null) {
+				continue;
+			}
+			line(0, "case " + s + ":");
+			conditions(1, onePass.matchConditions(s), "length");
+			save(1, saves, "length");
+			line(1, "return 1;");
+		}
+		line(0, "default:");
+		line(1, "return 0;");
+		line(0, "}");
+	}
+
+	private void transition(int depth, int state, int charClass) {
+		conditions(depth, onePass.conditions(state, charClass), "pos");
+		save(depth, onePass.saves(state, charClass), "pos");
+		line(depth, "state = " + onePass.target(state, charClass) + ";");
+		line(depth, "continue;");
+	}
+
+	private void conditions(int depth, int conditions, String pos) {
+		if (conditions != 0) {
+			line(depth, "if (!" + ASSERTIONS_HOLD + "(" + conditions + ", input, " + pos + ", " + onePass.unixLines()
+					+ ")) {");
+			line(depth + 1, "return 0;");
+			line(depth, "}");
+		}
+	}
+
+	private void save(int depth, int[] slots, String pos) {
+		for (int slot : slots) {
+			line(depth, "slots[" + slot + "] = " + pos + ";");
+		}
+	}
+
+	/**
+	 * Whether the char is in the range.
+	 */
+	private static String test(int first, int last) {
+		if (first == last) {
+			return "c == " + literal(first);
+		} else if (first == 0) {
+			return "c <= " + literal(last);
+		} else if (last == Character.MAX_VALUE) {
+			return "c >= " + literal(first);
+		}
+		return "c >= " + literal(first) + " && c <= " + literal(last);
+	}
+
+	/**
+	 * The destination of the char among the ranges from {@code from} to {@code to} (exclusive),
+	 * which contain it, as nested conditionals.
+	 */
+	private static String search(StateTransitions transitions, int from, int to) {
+		if (to - from == 1) {
+			return String.valueOf(transitions.destinations[from]);
+		}
+		int middle = (from + to) >>> 1;
+		String lower = search(transitions, from, middle);
+		String upper = search(transitions, middle, to);
+		return "c < " + literal(transitions.starts[middle]) + " ? " + (middle - from > 1 ? "(" + lower + ")" : lower)
+				+ " : " + (to - middle > 1 ? "(" + upper + ")" : upper);
+	}
+
+	/**
+	 * The char as a char literal if it is printable ASCII, or else as a hexadecimal int; unicode
+	 * escapes would be translated before the source is parsed.
+	 */
+	private static String literal(int c) {
+		if (c >= ' ' && c <= '~' && c != '\'' && c != '\\') {
+			return "'" + (char) c + "'";
+		}
+		return String.format("0x%04x", c);
+	}
+
+	private void line(int depth, String text) {
+		lines++;
+		out.append(indent);
+		for (int i = 0; i < depth; i++) {
+			out.append('\t');
+		}
+		out.append(text).append('\n');
+	}
+}
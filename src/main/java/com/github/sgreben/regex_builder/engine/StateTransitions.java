@@ -0,0 +1,105 @@
+package com.github.sgreben.regex_builder.engine;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * The transitions of a state of a one-pass matcher, as code generators see them: the distinct
+ * transitions, and the ranges of chars leading to each, with adjacent ranges of the same
+ * destination merged.
+ */
+final class StateTransitions {
+	/**
+	 * The destination of chars without a transition, and of surrogates.
+	 */
+	static final int FAIL = -1;
+	static final int SURROGATE = -2;
+
+	/**
+	 * A class of chars of each distinct transition.
+	 */
+	final int[] classes;
+	/**
+	 * The first char of each range, then {@code Character.MAX_VALUE + 1}.
+	 */
+	final int[] starts;
+	/**
+	 * The destination of each range: FAIL, SURROGATE, or the index of a transition.
+	 */
+	final int[] destinations;
+	final int rangeCount;
+	/**
+	 * The number of ranges leading to a transition.
+	 */
+	final int transitionRanges;
+
+	/**
+	 * @param classRanges the ranges of the alphabet, from {@link #classRanges}
+	 */
+	StateTransitions(OnePass onePass, int[] classRanges, int state) {
+		List<Integer> classes = new ArrayList<Integer>();
+		Map<String, Integer> transitionOf = new HashMap<String, Integer>();
+		int[] starts = new int[classRanges.length / 2 + 1];
+		int[] destinations = new int[classRanges.length / 2];
+		int count = 0;
+		int transitionRanges = 0;
+		for (int r = 0; r < destinations.length; r++) {
+			int charClass = classRanges[2 * r + 1];
+			int target = onePass.target(state, charClass);
+			int destination;
+			if (Character.isSurrogate((char) classRanges[2 * r])) {
+				destination = SURROGATE;
+			} else if (target < 0) {
+				destination = FAIL;
+			} else {
+				// Equal transitions of different classes are merged.
+				String key = target + ":" + onePass.conditions(state, charClass) + ":"
+						+ Arrays.toString(onePass.saves(state, charClass));
+				Integer transition = transitionOf.get(key);
+				if (transition == null) {
+					transition = classes.size();
+					transitionOf.put(key, transition);
+					classes.add(charClass);
+				}
+				destination = transition;
+			}
+			if (count == 0 || destination != destinations[count - 1]) {
+				starts[count] = classRanges[2 * r];
+				destinations[count++] = destination;
+				transitionRanges += destination >= 0 ? 1 : 0;
+			}
+		}
+		starts[count] = Character.MAX_VALUE + 1;
+		this.classes = new int[classes.size()];
+		for (int t = 0; t < this.classes.length; t++) {
+			this.classes[t] = classes.get(t);
+		}
+		this.starts = starts;
+		this.destinations = destinations;
+		this.rangeCount = count;
+		this.transitionRanges = transitionRanges;
+	}
+
+	/**
+	 * The ranges of chars of one class each: the first char and the class of each range, then the
+	 * char after the last range.
+	 */
+	static int[] classRanges(Alphabet alphabet) {
+		int[] ranges = new int[48];
+		int n = 0;
+		for (int c = 0; c <= Character.MAX_VALUE; c++) {
+			if (c == 0 || alphabet.classOf((char) c) != alphabet.classOf((char) (c - 1))) {
+				if (n + 3 > ranges.length) {
+					ranges = Arrays.copyOf(ranges, 2 * ranges.length);
+				}
+				ranges[n++] = c;
+				ranges[n++] = alphabet.classOf((char) c);
+			}
+		}
+		ranges[n++] = Character.MAX_VALUE + 1;
+		return Arrays.copyOf(ranges, n);
+	}
+}
@@ -0,0 +1,201 @@
+package com.github.sgreben.regex_builder.engine;
+
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+
+/**
+ * A DFA whose automata are built in full when it is compiled, minimized, and stored as tables of
+ * transitions indexed by equivalence classes of chars.
+ */
+final class TableDfa extends Dfa {
+	/**
+	 * A minimized automaton. A row is the index of the first transition of a state; a transition
+	 * is the row of the target shifted left by one, with the lowest bit set if a match ends before
+	 * the char read.
+	 */
+	static final class Automaton {
+		final int states;
+		final int classes;
+		final int[] table;
+		/**
+		 * For each state and category of the char before the end: how many chars before the end
+		 * the match ends, or -1 for no match.
+		 */
+		final int[] ends;
+		/**
+		 * The start row for each context.
+		 */
+		final int[] starts;
+		final int dead;
+
+		Automaton(int states, int classes, int[] table, int[] ends, int[] starts, int dead) {
+			this.states = states;
+			this.classes = classes;
+			this.table = table;
+			this.ends = ends;
+			this.starts = starts;
+			this.dead = dead;
+		}
+
+		int end(int row, int category) {
+			return ends[row / classes * Alphabet.CATEGORIES + category];
+		}
+
+		void write(DataOutputStream out) throws IOException {
+			out.writeInt(states);
+			out.writeInt(classes);
+			out.writeInt(dead);
+			for (int[] array : new int[][] {starts, ends, table}) {
+				out.writeInt(array.length);
+				for (int value : array) {
+					out.writeInt(value);
+				}
+			}
+		}
+	}
+
+	private final Alphabet alphabet;
+	private final Automaton first;
+	private final Automaton all;
+	private final Automaton longest;
+	private final boolean unixLines;
+
+	/**
+	 * @throws DfaBuilder.TooManyStates if an automaton is too large
+	 */
+	TableDfa(Alphabet alphabet, Program forward, Program reverse) {
+		this.alphabet = alphabet;
+		this.first = DfaBuilder.build(forward, alphabet, Determinizer.FIRST);
+		this.all = DfaBuilder.build(forward, alphabet, Determinizer.ALL);
+		this.longest = DfaBuilder.build(reverse, alphabet, Determinizer.LONGEST);
+		this.unixLines = forward.unixLines;
+	}
+
+	Alphabet alphabet() {
+		return alphabet;
+	}
+
+	Automaton first() {
+		return first;
+	}
+
+	Automaton all() {
+		return all;
+	}
+
+	Automaton longest() {
+		return longest;
+	}
+
+	boolean unixLines() {
+		return unixLines;
+	}
+
+	@Override
+	public String name() {
+		return "DFA";
+	}
+
+	@Override
+	public int stateCount() {
+		return first.states + all.states + longest.states;
+	}
+
+	@Override
+	public int classCount() {
+		return alphabet.classCount();
+	}
+
+	/**
+	 * The tables, as read by {@link MappedDfa}: whether the DFA is in UNIX_LINES mode, the alphabet,
+	 * then the automata.
+	 */
+	@Override
+	public byte[] tables() {
+		ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+		DataOutputStream out = new DataOutputStream(bytes);
+		try {
+			out.writeInt(unixLines ? 1 : 0);
+			alphabet.write(out);
+			first.write(out);
+			all.write(out);
+			longest.write(out);
+		} catch (IOException e) {
+			throw new IllegalStateException(e);
+		}
+		return bytes.toByteArray();
+	}
+
+	@Override
+	public int matches(CharSequence input) {
+		int[] table = all.table;
+		int row = all.starts[Alphabet.EDGE];
+		for (int i = 0, length = input.length(); i < length; i++) {
+			char c = input.charAt(i);
+			if (Character.isSurrogate(c)) {
+				return UNKNOWN;
+			}
+			row = table[row + alphabet.classOf(c)] >>> 1;
+			if (row == all.dead) {
+				return 0;
+			}
+		}
+		return all.end(row, Alphabet.EDGE) >= 0 ? 1 : 0;
+	}
+
+	@Override
+	public long find(CharSequence input, int from) {
+		int length = input.length();
+		int[] table = first.table;
+		int row = first.starts[Alphabet.categoryBefore(input, from)];
+		int end = -1;
+		int i = from;
+		for (; i < length; i++) {
+			char c = input.charAt(i);
+			if (Character.isSurrogate(c)) {
+				return UNKNOWN;
+			}
+			int transition = table[row + alphabet.classOf(c)];
+			if ((transition & 1) != 0) {
+				end = i;
+			}
+			row = transition >>> 1;
+			if (row == first.dead) {
+				break;
+			}
+		}
+		if (i == length) {
+			int before = first.end(row, Alphabet.EDGE);
+			if (before >= 0) {
+				end = length - before;
+			}
+		}
+		if (end < 0) {
+			return -1;
+		}
+		return (long) start(input, from, end) << 32 | end;
+	}
+
+	/**
+	 * The leftmost start at or after the given index of a match ending at the given end.
+	 */
+	private int start(CharSequence input, int from, int end) {
+		int[] table = longest.table;
+		int context = Alphabet.categoryAt(input, end) + (endsText(input, end, unixLines) ? Alphabet.CATEGORIES : 0);
+		int row = longest.starts[context];
+		int start = end;
+		int i = end;
+		for (; i > from; i--) {
+			int transition = table[row + alphabet.classOf(input.charAt(i - 1))];
+			if ((transition & 1) != 0) {
+				start = i;
+			}
+			row = transition >>> 1;
+			if (row == longest.dead) {
+				return start;
+			}
+		}
+		return longest.end(row, Alphabet.categoryBefore(input, from)) >= 0 ? from : start;
+	}
+}
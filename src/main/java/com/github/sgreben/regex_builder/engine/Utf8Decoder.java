@@ -0,0 +1,188 @@
+package com.github.sgreben.regex_builder.engine;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * An automaton reading the UTF-8 encoding of chars byte by byte, forwards or backwards, that tells
+ * the class (see {@link Alphabet}) of each char once its last byte is read. Its nodes are the
+ * partial encodings read so far, merged when they lead to the same classes; node 0 is between
+ * chars. Supplementary chars, whose UTF-16 encoding has surrogates, and malformed sequences are
+ * invalid.
+ *
+ * A {@link Utf8Dfa} runs a char automaton and this automaton together; as the transitions of both
+ * only depend on the class of the byte read (see {@link #byteClasses()}), it has one transition per
+ * byte class.
+ */
+final class Utf8Decoder {
+	static final int INVALID = 0;
+	/**
+	 * The byte ends a char, whose class is the value of the action.
+	 */
+	static final int CHAR = 1;
+	/**
+	 * The byte continues a char, in the node given by the value of the action.
+	 */
+	static final int NODE = 2;
+
+	/**
+	 * The action of each node on each byte, as the value shifted left by two bits or-ed with the
+	 * kind.
+	 */
+	private final List<int[]> actions = new ArrayList<int[]>();
+	/**
+	 * For each node, how many bytes of the char it has read: when the next byte ends the char, the
+	 * char starts (forwards) or ends (backwards) that many bytes away from it.
+	 */
+	private final List<Integer> lengths = new ArrayList<Integer>();
+	private final Map<DfaBuilder.IntArray, Integer> ids = new HashMap<DfaBuilder.IntArray, Integer>();
+	private final Alphabet alphabet;
+	private int[] byteClasses;
+	private int[] representatives;
+
+	private Utf8Decoder(Alphabet alphabet) {
+		this.alphabet = alphabet;
+		actions.add(null);
+		lengths.add(0);
+	}
+
+	/**
+	 * The decoder reading bytes forwards.
+	 */
+	static Utf8Decoder forward(Alphabet alphabet) {
+		Utf8Decoder decoder = new Utf8Decoder(alphabet);
+		int[] root = new int[256];
+		for (int b = 0; b < 0x80; b++) {
+			root[b] = decoder.charAction(b);
+		}
+		for (int lead = 0xC2; lead <= 0xDF; lead++) {
+			int[] node = new int[256];
+			for (int b = 0x80; b <= 0xBF; b++) {
+				node[b] = decoder.charAction((lead & 0x1F) << 6 | (b & 0x3F));
+			}
+			root[lead] = decoder.node(node, 1);
+		}
+		for (int lead = 0xE0; lead <= 0xEF; lead++) {
+			int[] middle = new int[256];
+			// Overlong encodings and surrogates are malformed.
+			int first = lead == 0xE0 ? 0xA0 : 0x80;
+			int last = lead == 0xED ? 0x9F : 0xBF;
+			for (int second = first; second <= last; second++) {
+				int[] node = new int[256];
+				for (int b = 0x80; b <= 0xBF; b++) {
+					node[b] = decoder.charAction((lead & 0x0F) << 12 | (second & 0x3F) << 6 | (b & 0x3F));
+				}
+				middle[second] = decoder.node(node, 2);
+			}
+			root[lead] = decoder.node(middle, 1);
+		}
+		return decoder.finish(root);
+	}
+
+	/**
+	 * The decoder reading bytes backwards, from the last byte of each char to its first.
+	 */
+	static Utf8Decoder reverse(Alphabet alphabet) {
+		Utf8Decoder decoder = new Utf8Decoder(alphabet);
+		int[] root = new int[256];
+		for (int b = 0; b < 0x80; b++) {
+			root[b] = decoder.charAction(b);
+		}
+		for (int last = 0x80; last <= 0xBF; last++) {
+			int[] before = new int[256];
+			for (int lead = 0xC2; lead <= 0xDF; lead++) {
+				before[lead] = decoder.charAction((lead & 0x1F) << 6 | (last & 0x3F));
+			}
+			for (int second = 0x80; second <= 0xBF; second++) {
+				int[] node = new int[256];
+				for (int lead = 0xE0; lead <= 0xEF; lead++) {
+					int c = (lead & 0x0F) << 12 | (second & 0x3F) << 6 | (last & 0x3F);
+					if (c >= 0x800 && !Character.isSurrogate((char) c)) {
+						node[lead] = decoder.charAction(c);
+					}
+				}
+				before[second] = decoder.node(node, 2);
+			}
+			root[last] = decoder.node(before, 1);
+		}
+		return decoder.finish(root);
+	}
+
+	private int charAction(int c) {
+		return alphabet.classOf((char) c) << 2 | CHAR;
+	}
+
+	/**
+	 * The action moving to the node with the given actions, merged with an equal node.
+	 */
+	private int node(int[] node, int length) {
+		int[] key = new int[257];
+		System.arraycopy(node, 0, key, 0, 256);
+		key[256] = length;
+		DfaBuilder.IntArray k = new DfaBuilder.IntArray(key);
+		Integer id = ids.get(k);
+		if (id == null) {
+			id = actions.size();
+			actions.add(node);
+			lengths.add(length);
+			ids.put(k, id);
+		}
+		return id << 2 | NODE;
+	}
+
+	/**
+	 * Sets the actions between chars, and partitions the bytes into classes of bytes on which every
+	 * node acts the same.
+	 */
+	private Utf8Decoder finish(int[] root) {
+		actions.set(0, root);
+		byteClasses = new int[256];
+		representatives = new int[256];
+		Map<DfaBuilder.IntArray, Integer> classes = new HashMap<DfaBuilder.IntArray, Integer>();
+		for (int b = 0; b < 256; b++) {
+			int[] signature = new int[actions.size()];
+			for (int node = 0; node < signature.length; node++) {
+				signature[node] = actions.get(node)[b];
+			}
+			DfaBuilder.IntArray key = new DfaBuilder.IntArray(signature);
+			Integer id = classes.get(key);
+			if (id == null) {
+				id = classes.size();
+				classes.put(key, id);
+				representatives[id] = b;
+			}
+			byteClasses[b] = id;
+		}
+		representatives = Arrays.copyOf(representatives, classes.size());
+		return this;
+	}
+
+	int nodeCount() {
+		return actions.size();
+	}
+
+	int byteClassCount() {
+		return representatives.length;
+	}
+
+	int[] byteClasses() {
+		return byteClasses;
+	}
+
+	/**
+	 * The action of the node on the bytes of the class.
+	 */
+	int action(int node, int byteClass) {
+		return actions.get(node)[representatives[byteClass]];
+	}
+
+	/**
+	 * How many bytes of the char the node has read.
+	 */
+	int length(int node) {
+		return lengths.get(node);
+	}
+}
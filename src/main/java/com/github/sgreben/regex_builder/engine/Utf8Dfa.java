@@ -0,0 +1,317 @@
+package com.github.sgreben.regex_builder.engine;
+
+import java.nio.ByteBuffer;
+import com.github.sgreben.regex_builder.Expression;
+
+/**
+ * A {@link Dfa} that runs on the UTF-8 encoding of its input, read from a byte buffer without
+ * decoding it. Each automaton of the DFA is combined with a {@link Utf8Decoder}, so that a
+ * transition reads a byte instead of a char; transitions are indexed by classes of bytes.
+ *
+ * Matches are found as with the DFA of chars, with the same results as java.util.regex on the
+ * decoded input, and reported as indices in the buffer. Malformed input, supplementary chars, which
+ * the DFA does not handle, and searches from inside a char give {@link #UNKNOWN}.
+ */
+public final class Utf8Dfa {
+	public static final int UNKNOWN = MatchEngine.UNKNOWN;
+
+	/**
+	 * An automaton of the DFA combined with the decoder. A row is the index of the first transition
+	 * of a state of the automaton with a node of the decoder. A transition is the row of the target
+	 * shifted left by three bits, with bit 2 set if a match ends at the boundary of the char the
+	 * byte ends, and the distance in bytes of that boundary from the byte in the lowest two bits;
+	 * or -1 for bytes the DFA does not handle.
+	 */
+	private static final class Automaton {
+		final TableDfa.Automaton chars;
+		final int states;
+		/**
+		 * The number of transitions per state of the automaton of chars.
+		 */
+		final int width;
+		final int[] table;
+		final int[] starts;
+		final int dead;
+
+		Automaton(TableDfa.Automaton chars, Utf8Decoder decoder) {
+			int nodes = decoder.nodeCount();
+			int byteClasses = decoder.byteClassCount();
+			if ((long) chars.states * nodes * byteClasses > DfaBuilder.MAX_TRANSITIONS) {
+				throw new DfaBuilder.TooManyStates();
+			}
+			this.chars = chars;
+			this.states = chars.states * nodes;
+			this.width = nodes * byteClasses;
+			int deadState = chars.dead / chars.classes;
+			this.dead = deadState * width;
+			this.table = new int[chars.states * width];
+			for (int s = 0; s < chars.states; s++) {
+				for (int node = 0; node < nodes; node++) {
+					int row = s * width + node * byteClasses;
+					for (int c = 0; c < byteClasses; c++) {
+						table[row + c] = s == deadState ? dead << 3 : transition(decoder, s, node, c);
+					}
+				}
+			}
+			this.starts = new int[chars.starts.length];
+			for (int i = 0; i < starts.length; i++) {
+				starts[i] = chars.starts[i] / chars.classes * width;
+			}
+		}
+
+		private int transition(Utf8Decoder decoder, int state, int node, int byteClass) {
+			int action = decoder.action(node, byteClass);
+			switch (action & 3) {
+			case Utf8Decoder.CHAR:
+				int transition = chars.table[state * chars.classes + (action >>> 2)];
+				return (transition >>> 1) / chars.classes * width << 3 | (transition & 1) << 2 | decoder.length(node);
+			case Utf8Decoder.NODE:
+				return state * width + (action >>> 2) * decoder.byteClassCount() << 3;
+			default:
+				return -1;
+			}
+		}
+
+		/**
+		 * As {@link TableDfa.Automaton#end} for a row between chars, or {@link #UNKNOWN} inside a
+		 * char.
+		 */
+		int end(int row, int category) {
+			if (row % width != 0) {
+				return UNKNOWN;
+			}
+			return chars.ends[row / width * Alphabet.CATEGORIES + category];
+		}
+	}
+
+	private final int[] forwardClasses;
+	private final int[] reverseClasses;
+	private final int byteClassCount;
+	private final Automaton first;
+	private final Automaton all;
+	private final Automaton longest;
+	private final boolean unixLines;
+
+	private Utf8Dfa(TableDfa dfa) {
+		Utf8Decoder forward = Utf8Decoder.forward(dfa.alphabet());
+		Utf8Decoder reverse = Utf8Decoder.reverse(dfa.alphabet());
+		this.forwardClasses = forward.byteClasses();
+		this.reverseClasses = reverse.byteClasses();
+		this.byteClassCount = forward.byteClassCount();
+		this.first = new Automaton(dfa.first(), forward);
+		this.all = new Automaton(dfa.all(), forward);
+		this.longest = new Automaton(dfa.longest(), reverse);
+		this.unixLines = dfa.unixLines();
+	}
+
+	/**
+	 * The DFA of the expression over UTF-8, or null if it has no {@link Dfa} or if the automata
+	 * would be too large.
+	 */
+	public static Utf8Dfa compile(Expression expression, int flags) {
+		return of(Dfa.compile(expression, flags));
+	}
+
+	/**
+	 * The DFA over UTF-8 of the given DFA, or null if it is not built in full (as by
+	 * {@link Dfa#compile}), or if the automata would be too large.
+	 */
+	public static Utf8Dfa of(Dfa dfa) {
+		if (!(dfa instanceof TableDfa)) {
+			return null;
+		}
+		try {
+			return new Utf8Dfa((TableDfa) dfa);
+		} catch (DfaBuilder.TooManyStates e) {
+			return null;
+		}
+	}
+
+	/**
+	 * The number of pairs of a state and a node of the decoder in the automata.
+	 */
+	public int stateCount() {
+		return first.states + all.states + longest.states;
+	}
+
+	/**
+	 * The number of classes of bytes read forwards.
+	 */
+	public int classCount() {
+		return byteClassCount;
+	}
+
+	/**
+	 * 1 if the bytes from the position to the limit of the buffer match, 0 if not, or
+	 * {@link #UNKNOWN}.
+	 */
+	public int matches(ByteBuffer input) {
+		int[] classes = forwardClasses;
+		int[] table = all.table;
+		int row = all.starts[Alphabet.EDGE];
+		for (int i = input.position(), limit = input.limit(); i < limit; i++) {
+			int transition = table[row + classes[input.get(i) & 0xFF]];
+			if (transition < 0) {
+				return UNKNOWN;
+			}
+			row = transition >>> 3;
+			if (row == all.dead) {
+				return 0;
+			}
+		}
+		int end = all.end(row, Alphabet.EDGE);
+		return end == UNKNOWN ? UNKNOWN : end >= 0 ? 1 : 0;
+	}
+
+	/**
+	 * The leftmost-first match between the position and the limit of the buffer starting at or after
+	 * the given index, as its start shifted left by 32 bits or-ed with its end; -1 if there is none,
+	 * or {@link #UNKNOWN}.
+	 */
+	public long find(ByteBuffer input, int from) {
+		int begin = input.position();
+		int limit = input.limit();
+		if (from < limit && (input.get(from) & 0xC0) == 0x80) {
+			return UNKNOWN;
+		}
+		int[] classes = forwardClasses;
+		int[] table = first.table;
+		int row = first.starts[categoryBefore(input, begin, from)];
+		int end = -1;
+		int i = from;
+		for (; i < limit; i++) {
+			int transition = table[row + classes[input.get(i) & 0xFF]];
+			if (transition < 0) {
+				return UNKNOWN;
+			}
+			if ((transition & 4) != 0) {
+				end = i - (transition & 3);
+			}
+			row = transition >>> 3;
+			if (row == first.dead) {
+				break;
+			}
+		}
+		if (i == limit) {
+			int before = first.end(row, Alphabet.EDGE);
+			if (before == UNKNOWN) {
+				return UNKNOWN;
+			}
+			if (before >= 0) {
+				end = charsBefore(input, begin, limit, before);
+			}
+		}
+		if (end < 0) {
+			return -1;
+		}
+		int start = start(input, begin, limit, from, end);
+		return start == UNKNOWN ? UNKNOWN : (long) start << 32 | end;
+	}
+
+	/**
+	 * As {@link TableDfa}: the leftmost start at or after the given index of a match ending at the
+	 * given end, or {@link #UNKNOWN}.
+	 */
+	private int start(ByteBuffer input, int begin, int limit, int from, int end) {
+		int[] classes = reverseClasses;
+		int[] table = longest.table;
+		int context = categoryAt(input, end, limit)
+				+ (endsText(input, begin, end, limit) ? Alphabet.CATEGORIES : 0);
+		int row = longest.starts[context];
+		int start = end;
+		for (int i = end; i > from; i--) {
+			int transition = table[row + classes[input.get(i - 1) & 0xFF]];
+			if (transition < 0) {
+				return UNKNOWN;
+			}
+			if ((transition & 4) != 0) {
+				start = i + (transition & 3);
+			}
+			row = transition >>> 3;
+			if (row == longest.dead) {
+				return start;
+			}
+		}
+		int before = longest.end(row, categoryBefore(input, begin, from));
+		if (before == UNKNOWN) {
+			return UNKNOWN;
+		}
+		return before >= 0 ? from : start;
+	}
+
+	/**
+	 * As {@link Dfa#endsText}, over UTF-8.
+	 */
+	private boolean endsText(ByteBuffer input, int begin, int index, int limit) {
+		if (index == limit) {
+			return true;
+		}
+		int b = input.get(index) & 0xFF;
+		if (unixLines) {
+			return index == limit - 1 && b == '\n';
+		}
+		if (b == '\r' && index == limit - 2) {
+			return input.get(index + 1) == '\n';
+		}
+		int category = categoryAt(input, index, limit);
+		if (category == Alphabet.OTHER || index + (b == 0xC2 ? 2 : b == 0xE2 ? 3 : 1) != limit) {
+			return false;
+		}
+		return b != '\n' || index == begin || input.get(index - 1) != '\r';
+	}
+
+	/**
+	 * As {@link Alphabet#categoryBefore}, over UTF-8.
+	 */
+	private static int categoryBefore(ByteBuffer input, int begin, int index) {
+		if (index == begin) {
+			return Alphabet.EDGE;
+		}
+		int b = input.get(index - 1) & 0xFF;
+		if (b == '\n') {
+			return Alphabet.LINE_FEED;
+		} else if (b == '\r') {
+			return Alphabet.CARRIAGE_RETURN;
+		} else if (b == 0x85 && index - 2 >= begin && (input.get(index - 2) & 0xFF) == 0xC2) {
+			return Alphabet.OTHER_TERMINATOR;
+		} else if ((b == 0xA8 || b == 0xA9) && index - 3 >= begin && (input.get(index - 2) & 0xFF) == 0x80
+				&& (input.get(index - 3) & 0xFF) == 0xE2) {
+			return Alphabet.OTHER_TERMINATOR;
+		}
+		return Alphabet.OTHER;
+	}
+
+	/**
+	 * As {@link Alphabet#categoryAt}, over UTF-8.
+	 */
+	private static int categoryAt(ByteBuffer input, int index, int limit) {
+		if (index == limit) {
+			return Alphabet.EDGE;
+		}
+		int b = input.get(index) & 0xFF;
+		if (b == '\n') {
+			return Alphabet.LINE_FEED;
+		} else if (b == '\r') {
+			return Alphabet.CARRIAGE_RETURN;
+		} else if (b == 0xC2 && index + 1 < limit && (input.get(index + 1) & 0xFF) == 0x85) {
+			return Alphabet.OTHER_TERMINATOR;
+		} else if (b == 0xE2 && index + 2 < limit && (input.get(index + 1) & 0xFF) == 0x80
+				&& ((input.get(index + 2) & 0xFF) == 0xA8 || (input.get(index + 2) & 0xFF) == 0xA9)) {
+			return Alphabet.OTHER_TERMINATOR;
+		}
+		return Alphabet.OTHER;
+	}
+
+	/**
+	 * The index of the char the given number of chars before the end.
+	 */
+	private static int charsBefore(ByteBuffer input, int begin, int end, int chars) {
+		for (int k = 0; k < chars; k++) {
+			end--;
+			while (end > begin && (input.get(end) & 0xC0) == 0x80) {
+				end--;
+			}
+		}
+		return end;
+	}
+}
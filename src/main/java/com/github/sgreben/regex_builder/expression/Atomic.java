@@ -11,10 +11,10 @@ public class Atomic extends Unary {
 
 	@Override
 	public void compile(CaptureGroupIndex index, java.util.List<TOKEN> output) {
-		output.add(new START_GROUP_ATOMIC_NON_CAPTURING());
+		output.add(START_GROUP_ATOMIC_NON_CAPTURING.INSTANCE);
 		for(Expression child : children()) {
 			child.compile(index, output);
 		}
-		output.add(new END_GROUP());
+		output.add(END_GROUP.INSTANCE);
 	}
 }
\ No newline at end of file
@@ -12,6 +12,16 @@ public class BackReference extends Nullary {
         this.group = group;
     }
 
+    @Override
+    protected boolean attributesEqual(ExpressionBase other) {
+        return group == ((BackReference) other).group;
+    }
+
+    @Override
+    protected int attributesHashCode() {
+        return System.identityHashCode(group);
+    }
+
     @Override
     public void compile(CaptureGroupIndex index, java.util.List<TOKEN> output) {
         output.add(new BACK_REFERENCE(index.get(group)));
@@ -11,6 +11,20 @@ public class CharClassExpression extends Nullary {
         this.charClass = charClass;
     }
 
+    public CharClass getCharClass() {
+        return charClass;
+    }
+
+    @Override
+    protected boolean attributesEqual(ExpressionBase other) {
+        return charClass.equals(((CharClassExpression) other).charClass);
+    }
+
+    @Override
+    protected int attributesHashCode() {
+        return charClass.hashCode();
+    }
+
     @Override
     public void compile(CaptureGroupIndex index, java.util.List<TOKEN> output) {
         charClass.compile(output);
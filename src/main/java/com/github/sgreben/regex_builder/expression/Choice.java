@@ -13,15 +13,15 @@ public class Choice extends Nary {
 	@Override
 	public void compile(CaptureGroupIndex index, java.util.List<TOKEN> output) {
 		boolean first = true;
-		output.add(new START_GROUP_NON_CAPTURING());
+		output.add(START_GROUP_NON_CAPTURING.INSTANCE);
 		for(Expression child : children()) {
 			if(first) {
 				first = false;
 			} else {
-				output.add(new PIPE());
+				output.add(PIPE.INSTANCE);
 			}
 			child.compile(index, output);
 		}
-		output.add(new END_GROUP());
+		output.add(END_GROUP.INSTANCE);
 	}
 }
\ No newline at end of file
@@ -2,7 +2,11 @@ package com.github.sgreben.regex_builder.expression;
 
 import com.github.sgreben.regex_builder.Expression;
 
+import java.util.Iterator;
+
 abstract class ExpressionBase implements Expression {
+    private int hash;
+
     @Override
     public void accept(ExpressionVisitor visitor) {
         visitor.visitPre(this);
@@ -21,4 +25,56 @@ abstract class ExpressionBase implements Expression {
     public Expression reluctant() {
         return this;
     }
-}
\ No newline at end of file
+
+    /**
+     * Structural equality: same node class, same attributes and equal children.
+     */
+    @Override
+    public boolean equals(Object o) {
+        if (this == o) {
+            return true;
+        }
+        if (o == null || o.getClass() != getClass()) {
+            return false;
+        }
+        ExpressionBase other = (ExpressionBase) o;
+        return hashCode() == other.hashCode()
+                && attributesEqual(other)
+                && childrenEqual(children(), other.children());
+    }
+
+    @Override
+    public int hashCode() {
+        int h = hash;
+        if (h == 0) {
+            h = getClass().getName().hashCode() * 31 + attributesHashCode();
+            for (Expression child : children()) {
+                h = h * 31 + child.hashCode();
+            }
+            hash = h;
+        }
+        return h;
+    }
+
+    /**
+     * Compares the node's own attributes (not its children) with those of a node of the same class.
+     */
+    protected boolean attributesEqual(ExpressionBase other) {
+        return true;
+    }
+
+    protected int attributesHashCode() {
+        return 0;
+    }
+
+    private static boolean childrenEqual(Iterable<Expression> a, Iterable<Expression> b) {
+        Iterator<Expression> i = a.iterator();
+        Iterator<Expression> j = b.iterator();
+        while (i.hasNext() && j.hasNext()) {
+            if (!i.next().equals(j.next())) {
+                return false;
+            }
+        }
+        return !i.hasNext() && !j.hasNext();
+    }
+}
@@ -0,0 +1,32 @@
+package com.github.sgreben.regex_builder.expression;
+
+import com.github.sgreben.regex_builder.CaptureGroup;
+import com.github.sgreben.regex_builder.Expression;
+import com.github.sgreben.regex_builder.ExpressionWrapper;
+
+/**
+ * Helpers for the passes that walk expression trees.
+ */
+public final class Expressions {
+    private Expressions() {
+    }
+
+    /**
+     * Whether the node matches exactly what its single child matches: a capture group, an
+     * {@link ExpressionWrapper}, or a bare operand the compiler marked (see {@link Unary}).
+     */
+    public static boolean isWrapper(Expression node) {
+        return node instanceof CaptureGroup || node instanceof ExpressionWrapper
+                || node instanceof Unary && ((Unary) node).isBareOperand();
+    }
+
+    /**
+     * The node inside any wrappers (see {@link #isWrapper}) around it.
+     */
+    public static Expression unwrap(Expression node) {
+        while (isWrapper(node)) {
+            node = node.children().iterator().next();
+        }
+        return node;
+    }
+}
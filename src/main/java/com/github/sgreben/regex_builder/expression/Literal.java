@@ -15,6 +15,16 @@ public class Literal extends Nullary {
         return literal;
     }
 
+    @Override
+    protected boolean attributesEqual(ExpressionBase other) {
+        return literal.equals(((Literal) other).literal);
+    }
+
+    @Override
+    protected int attributesHashCode() {
+        return literal.hashCode();
+    }
+
     @Override
     public void compile(CaptureGroupIndex index, java.util.List<TOKEN> output) {
         output.add(new LITERAL(literal));
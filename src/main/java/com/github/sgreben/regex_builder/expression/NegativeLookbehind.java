@@ -13,8 +13,8 @@ public class NegativeLookbehind extends Unary {
 
     @Override
     public void compile(CaptureGroupIndex index, java.util.List<TOKEN> output) {
-        output.add(new START_NEGATIVE_LOOKBEHIND());
+        output.add(START_NEGATIVE_LOOKBEHIND.INSTANCE);
         child().compile(index, output);
-        output.add(new END_GROUP());
+        output.add(END_GROUP.INSTANCE);
     }
 }
\ No newline at end of file
@@ -13,6 +13,6 @@ public class OptionalPossessive extends Optional {
     @Override
     public void compile(CaptureGroupIndex index, java.util.List<TOKEN> output) {
         super.compile(index, output);
-        output.add(new PLUS());
+        output.add(PLUS.INSTANCE);
     }
 }
\ No newline at end of file
@@ -2,7 +2,7 @@ package com.github.sgreben.regex_builder.expression;
 
 import com.github.sgreben.regex_builder.CaptureGroupIndex;
 import com.github.sgreben.regex_builder.Expression;
-import com.github.sgreben.regex_builder.tokens.PLUS;
+import com.github.sgreben.regex_builder.tokens.QUESTION;
 import com.github.sgreben.regex_builder.tokens.TOKEN;
 
 public class OptionalReluctant extends Optional {
@@ -13,6 +13,6 @@ public class OptionalReluctant extends Optional {
     @Override
     public void compile(CaptureGroupIndex index, java.util.List<TOKEN> output) {
         super.compile(index, output);
-        output.add(new PLUS());
+        output.add(QUESTION.INSTANCE);
     }
 }
\ No newline at end of file
@@ -13,8 +13,8 @@ public class PositiveLookahead extends Unary {
 
     @Override
     public void compile(CaptureGroupIndex index, java.util.List<TOKEN> output) {
-        output.add(new START_POSITIVE_LOOKAHEAD());
+        output.add(START_POSITIVE_LOOKAHEAD.INSTANCE);
         child().compile(index, output);
-        output.add(new END_GROUP());
+        output.add(END_GROUP.INSTANCE);
     }
 }
\ No newline at end of file
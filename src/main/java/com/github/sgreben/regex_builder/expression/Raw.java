@@ -14,6 +14,16 @@ public class Raw extends Nullary {
         this.rawClass = rawClass;
     }
 
+    @Override
+    protected boolean attributesEqual(ExpressionBase other) {
+        return rawClass.equals(((Raw) other).rawClass);
+    }
+
+    @Override
+    protected int attributesHashCode() {
+        return rawClass.hashCode();
+    }
+
     @Override
     public void compile(CaptureGroupIndex index, java.util.List<TOKEN> output) {
         output.add(new RAW(rawClass));
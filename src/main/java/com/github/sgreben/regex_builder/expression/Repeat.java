@@ -24,13 +24,35 @@ public class Repeat extends Unary {
         this(child, bound, bound);
     }
 
+    /**
+     * The lower bound, or null for an unbounded repetition ("*").
+     */
+    public Integer getLowerBound() {
+        return lowerBound;
+    }
+
+    /**
+     * The upper bound, or null for an unbounded repetition ("*").
+     */
+    public Integer getUpperBound() {
+        return upperBound;
+    }
+
+    @Override
+    protected boolean attributesEqual(ExpressionBase other) {
+        Repeat repeat = (Repeat) other;
+        return java.util.Objects.equals(lowerBound, repeat.lowerBound)
+                && java.util.Objects.equals(upperBound, repeat.upperBound);
+    }
+
+    @Override
+    protected int attributesHashCode() {
+        return java.util.Objects.hash(lowerBound, upperBound);
+    }
+
     @Override
     public void compile(CaptureGroupIndex index, java.util.List<TOKEN> output) {
-        output.add(new START_GROUP_NON_CAPTURING());
-        for (Expression child : children()) {
-            child.compile(index, output);
-        }
-        output.add(new END_GROUP());
+        compileOperand(index, output);
         if (lowerBound != null && upperBound != null && !lowerBound.equals(upperBound)) {
             output.add(new BRACES(lowerBound, upperBound));
         } else if (lowerBound != null) {
@@ -38,7 +60,7 @@ public class Repeat extends Unary {
         } else if (upperBound != null) {
             output.add(new BRACES(upperBound));
         } else {
-            output.add(new STAR());
+            output.add(STAR.INSTANCE);
         }
     }
 
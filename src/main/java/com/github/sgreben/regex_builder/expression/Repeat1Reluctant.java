@@ -13,6 +13,6 @@ public class Repeat1Reluctant extends Repeat1 {
     @Override
     public void compile(CaptureGroupIndex index, java.util.List<TOKEN> output) {
         super.compile(index, output);
-        output.add(new QUESTION());
+        output.add(QUESTION.INSTANCE);
     }
 }
\ No newline at end of file
@@ -3,8 +3,6 @@ package com.github.sgreben.regex_builder.expression;
 import com.github.sgreben.regex_builder.CaptureGroupIndex;
 import com.github.sgreben.regex_builder.Expression;
 import com.github.sgreben.regex_builder.tokens.BRACES;
-import com.github.sgreben.regex_builder.tokens.END_GROUP;
-import com.github.sgreben.regex_builder.tokens.START_GROUP_NON_CAPTURING;
 import com.github.sgreben.regex_builder.tokens.TOKEN;
 
 public class RepeatAtLeast extends Unary {
@@ -15,13 +13,23 @@ public class RepeatAtLeast extends Unary {
         this.lowerBound = lowerBound;
     }
 
+    public Integer getLowerBound() {
+        return lowerBound;
+    }
+
+    @Override
+    protected boolean attributesEqual(ExpressionBase other) {
+        return java.util.Objects.equals(lowerBound, ((RepeatAtLeast) other).lowerBound);
+    }
+
+    @Override
+    protected int attributesHashCode() {
+        return java.util.Objects.hashCode(lowerBound);
+    }
+
     @Override
     public void compile(CaptureGroupIndex index, java.util.List<TOKEN> output) {
-        output.add(new START_GROUP_NON_CAPTURING());
-        for (Expression child : children()) {
-            child.compile(index, output);
-        }
-        output.add(new END_GROUP());
+        compileOperand(index, output);
         output.add(new BRACES(lowerBound, null));
     }
 
@@ -14,6 +14,6 @@ public class RepeatAtLeastPossessive extends RepeatAtLeast {
     @Override
     public void compile(CaptureGroupIndex index, java.util.List<TOKEN> output) {
         super.compile(index, output);
-        output.add(new PLUS());
+        output.add(PLUS.INSTANCE);
     }
 }
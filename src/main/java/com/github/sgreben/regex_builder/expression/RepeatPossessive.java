@@ -21,6 +21,6 @@ public class RepeatPossessive extends Repeat {
     @Override
     public void compile(CaptureGroupIndex index, java.util.List<TOKEN> output) {
         super.compile(index, output);
-        output.add(new PLUS());
+        output.add(PLUS.INSTANCE);
     }
 }
\ No newline at end of file
@@ -21,6 +21,6 @@ public class RepeatReluctant extends Repeat {
     @Override
     public void compile(CaptureGroupIndex index, java.util.List<TOKEN> output) {
         super.compile(index, output);
-        output.add(new QUESTION());
+        output.add(QUESTION.INSTANCE);
     }
 }
\ No newline at end of file
@@ -1,6 +1,10 @@
 package com.github.sgreben.regex_builder.expression;
 
+import com.github.sgreben.regex_builder.CaptureGroupIndex;
 import com.github.sgreben.regex_builder.Expression;
+import com.github.sgreben.regex_builder.tokens.END_GROUP;
+import com.github.sgreben.regex_builder.tokens.START_GROUP_NON_CAPTURING;
+import com.github.sgreben.regex_builder.tokens.TOKEN;
 
 import java.util.Collections;
 import java.util.LinkedList;
@@ -25,4 +29,25 @@ public abstract class Unary extends ExpressionBase {
     public Expression child() {
         return child;
     }
+
+    /**
+     * Whether a quantifier applies to this node without a group around it. Only the compiler marks
+     * nodes this way, around operands it checked to be single regex atoms.
+     */
+    protected boolean isBareOperand() {
+        return false;
+    }
+
+    /**
+     * Emits the child as the operand of a quantifier, grouped unless it is a bare operand.
+     */
+    protected void compileOperand(CaptureGroupIndex index, java.util.List<TOKEN> output) {
+        if (child instanceof Unary && ((Unary) child).isBareOperand()) {
+            child.compile(index, output);
+            return;
+        }
+        output.add(START_GROUP_NON_CAPTURING.INSTANCE);
+        child.compile(index, output);
+        output.add(END_GROUP.INSTANCE);
+    }
 }
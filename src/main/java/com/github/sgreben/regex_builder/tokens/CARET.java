@@ -1,6 +1,8 @@
 package com.github.sgreben.regex_builder.tokens;
 
 public class CARET implements TOKEN {
+	public static final CARET INSTANCE = new CARET();
+
 	public String regexString() {
 		return "^";
 	}
@@ -1,6 +1,8 @@
 package com.github.sgreben.regex_builder.tokens;
 
 public class CHAR_CLASS_INTERSECTION implements TOKEN {
+	public static final CHAR_CLASS_INTERSECTION INSTANCE = new CHAR_CLASS_INTERSECTION();
+
 	public String regexString() {
 		return "&&";
 	}
@@ -1,6 +1,8 @@
 package com.github.sgreben.regex_builder.tokens;
 
 public class DASH implements TOKEN {
+	public static final DASH INSTANCE = new DASH();
+
 	public String regexString() {
 		return "-";
 	}
@@ -1,6 +1,8 @@
 package com.github.sgreben.regex_builder.tokens;
 
 public class DOT implements TOKEN {
+	public static final DOT INSTANCE = new DOT();
+
 	public String regexString() {
 		return ".";
 	}
@@ -1,6 +1,8 @@
 package com.github.sgreben.regex_builder.tokens;
 
 public class END_CHAR_CLASS implements TOKEN {
+	public static final END_CHAR_CLASS INSTANCE = new END_CHAR_CLASS();
+
 	public String regexString() {
 		return "]";
 	}
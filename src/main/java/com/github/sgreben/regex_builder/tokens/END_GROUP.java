@@ -1,6 +1,8 @@
 package com.github.sgreben.regex_builder.tokens;
 
 public class END_GROUP implements TOKEN {
+	public static final END_GROUP INSTANCE = new END_GROUP();
+
 	public String regexString() {
 		return ")";
 	}
@@ -1,6 +1,8 @@
 package com.github.sgreben.regex_builder.tokens;
 
 public class PIPE implements TOKEN {
+	public static final PIPE INSTANCE = new PIPE();
+
 	public String regexString() {
 		return "|";
 	}
@@ -1,6 +1,8 @@
 package com.github.sgreben.regex_builder.tokens;
 
 public class PLUS implements TOKEN {
+	public static final PLUS INSTANCE = new PLUS();
+
 	public String regexString() {
 		return "+";
 	}
@@ -1,6 +1,8 @@
 package com.github.sgreben.regex_builder.tokens;
 
 public class QUESTION implements TOKEN {
+	public static final QUESTION INSTANCE = new QUESTION();
+
 	public String regexString() {
 		return "?";
 	}
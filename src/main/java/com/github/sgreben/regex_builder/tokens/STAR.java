@@ -1,6 +1,8 @@
 package com.github.sgreben.regex_builder.tokens;
 
 public class STAR implements TOKEN {
+	public static final STAR INSTANCE = new STAR();
+
 	public String regexString() {
 		return "*";
 	}
@@ -1,6 +1,8 @@
 package com.github.sgreben.regex_builder.tokens;
 
 public class START_CHAR_CLASS implements TOKEN {
+	public static final START_CHAR_CLASS INSTANCE = new START_CHAR_CLASS();
+
 	public String regexString() {
 		return "[";
 	}
@@ -1,6 +1,8 @@
 package com.github.sgreben.regex_builder.tokens;
 
 public class START_GROUP implements TOKEN {
+	public static final START_GROUP INSTANCE = new START_GROUP();
+
 	public String regexString() {
 		return "(";
 	}
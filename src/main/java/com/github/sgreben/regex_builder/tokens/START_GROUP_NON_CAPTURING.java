@@ -1,6 +1,8 @@
 package com.github.sgreben.regex_builder.tokens;
 
 public class START_GROUP_NON_CAPTURING implements TOKEN {
+	public static final START_GROUP_NON_CAPTURING INSTANCE = new START_GROUP_NON_CAPTURING();
+
 	public String regexString() {
 		return "(?:";
 	}
@@ -1,6 +1,8 @@
 package com.github.sgreben.regex_builder.tokens;
 
 public class START_NEGATIVE_LOOKAHEAD implements TOKEN {
+	public static final START_NEGATIVE_LOOKAHEAD INSTANCE = new START_NEGATIVE_LOOKAHEAD();
+
 	public String regexString() {
 		return "(?!";
 	}
@@ -1,6 +1,8 @@
 package com.github.sgreben.regex_builder.tokens;
 
 public class START_NEGATIVE_LOOKBEHIND implements TOKEN {
+	public static final START_NEGATIVE_LOOKBEHIND INSTANCE = new START_NEGATIVE_LOOKBEHIND();
+
 	public String regexString() {
 		return "(?<!";
 	}
@@ -1,6 +1,8 @@
 package com.github.sgreben.regex_builder.tokens;
 
 public class START_POSITIVE_LOOKAHEAD implements TOKEN {
+	public static final START_POSITIVE_LOOKAHEAD INSTANCE = new START_POSITIVE_LOOKAHEAD();
+
 	public String regexString() {
 		return "(?=";
 	}
@@ -1,6 +1,8 @@
 package com.github.sgreben.regex_builder.tokens;
 
 public class START_POSITIVE_LOOKBEHIND implements TOKEN {
+	public static final START_POSITIVE_LOOKBEHIND INSTANCE = new START_POSITIVE_LOOKBEHIND();
+
 	public String regexString() {
 		return "(?<=";
 	}
@@ -0,0 +1,110 @@
+package com.github.sgreben.regex_builder;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+import java.util.Arrays;
+import org.junit.Test;
+import com.github.sgreben.regex_builder.analysis.BacktrackingAnalyzer;
+import com.github.sgreben.regex_builder.analysis.BacktrackingReport;
+import com.github.sgreben.regex_builder.analysis.Complexity;
+import com.github.sgreben.regex_builder.compiler.CompileOptions;
+import com.github.sgreben.regex_builder.compiler.ComplexityLimitExceededException;
+import com.github.sgreben.regex_builder.compiler.ComplexityPolicy;
+import com.github.sgreben.regex_builder.compiler.Engine;
+
+public class BacktrackingAnalyzerTest {
+	private static Complexity complexity(Expression expression) {
+		return BacktrackingAnalyzer.analyze(expression).getComplexity();
+	}
+
+	@Test
+	public void ambiguousLoops_areExponential() {
+		Expression inner = Re.repeat1("a");
+		Expression nested = Re.repeat1(inner);
+		BacktrackingReport report = BacktrackingAnalyzer.analyze(Re.sequence(Re.string("x"), nested));
+		assertEquals(Complexity.EXPONENTIAL, report.getComplexity());
+		assertSame(nested, report.getNode());
+		assertEquals("Sequence > Repeat1", report.describePath());
+
+		assertEquals(Complexity.EXPONENTIAL, complexity(Re.repeat(Re.choice(Re.string("a"), CharClass.oneOf("ab")))));
+		assertEquals(Complexity.EXPONENTIAL, complexity(Re.repeat(Re.repeat("a"))));
+		assertEquals(Complexity.EXPONENTIAL,
+				complexity(Re.repeat(Re.sequence(Re.repeat1(CharClass.wordChar()), Re.optional(CharClass.whitespaceChar())))));
+		assertEquals(Complexity.EXPONENTIAL, complexity(Re.repeat(Re.repeat("a", 0, 2))));
+	}
+
+	@Test
+	public void overlappingLoopChains_arePolynomial() {
+		Expression twoLoops = Re.sequence(Re.repeat("a"), Re.repeat("a"));
+		BacktrackingReport report = BacktrackingAnalyzer.analyze(twoLoops);
+		assertEquals(Complexity.QUADRATIC, report.getComplexity());
+		assertEquals(Arrays.asList(twoLoops), report.getPath());
+		assertEquals(Complexity.polynomial(3),
+				complexity(Re.sequence(Re.repeat(CharClass.wordChar()), Re.repeat(CharClass.digit()), Re.repeat(CharClass.wordChar()))));
+		assertEquals(Complexity.QUADRATIC, complexity(Re.sequence(Re.repeat("x"), Re.repeat("y"), Re.repeat("x"))));
+	}
+
+	@Test
+	public void unambiguousExpressions_areLinear() {
+		assertEquals(Complexity.LINEAR, complexity(Re.repeat(Re.choice("a", "ab"))));
+		assertEquals(Complexity.LINEAR, complexity(Re.sequence(Re.repeat1(CharClass.digit()), " ", Re.repeat1(CharClass.digit()))));
+		assertEquals(Complexity.LINEAR, complexity(Re.sequence(Re.repeat1(CharClass.wordChar()), "@",
+				Re.repeat1(CharClass.wordChar()), Re.repeat1(Re.sequence(".", Re.repeat1(CharClass.wordChar()))))));
+		assertEquals(Complexity.LINEAR, complexity(Re.repeat("a", 2, 5)));
+		BacktrackingReport report = BacktrackingAnalyzer.analyze(Re.string("abc"));
+		assertTrue(report.getPath().isEmpty());
+		assertNull(report.getNode());
+	}
+
+	@Test
+	public void atomicGroupsAndPossessiveLoops_doNotBacktrack() {
+		Expression ambiguous = Re.repeat(Re.choice(Re.string("a"), CharClass.oneOf("ab")));
+		assertEquals(Complexity.LINEAR, complexity(Re.atomic(ambiguous)));
+		assertEquals(Complexity.LINEAR, complexity(Re.repeat1(Re.atomic(Re.repeat1("a")))));
+		assertEquals(Complexity.LINEAR, complexity(Re.sequence(Re.repeat(CharClass.wordChar()).possessive(), Re.repeat(CharClass.wordChar()))));
+		assertEquals(Complexity.QUADRATIC, complexity(Re.sequence(Re.repeat(CharClass.wordChar()), Re.atomic(Re.repeat1(CharClass.wordChar())), "c")));
+		BacktrackingReport report = BacktrackingAnalyzer.analyze(Re.atomic(Re.sequence(ambiguous, "c")));
+		assertEquals(Complexity.EXPONENTIAL, report.getComplexity());
+		assertEquals("Atomic > Sequence > Repeat", report.describePath());
+	}
+
+	@Test
+	public void caseInsensitiveClasses_overlap() {
+		Expression expression = Re.repeat(Re.choice(Re.string("a"), CharClass.oneOf("A")));
+		assertEquals(Complexity.LINEAR, BacktrackingAnalyzer.analyze(expression).getComplexity());
+		assertEquals(Complexity.EXPONENTIAL,
+				BacktrackingAnalyzer.analyze(expression, java.util.regex.Pattern.CASE_INSENSITIVE).getComplexity());
+	}
+
+	@Test
+	public void complexityLimit_rejectsOrReroutes() {
+		Expression evil = Re.sequence(Re.repeat(Re.repeat1("a"), 1, 100), "b");
+		CompileOptions options = CompileOptions.defaults().withoutCache().withEngine(Engine.BACKTRACKING);
+		try {
+			Pattern.compile(evil, 0, options.withComplexityLimit(Complexity.QUADRATIC, ComplexityPolicy.REJECT));
+			fail();
+		} catch (ComplexityLimitExceededException e) {
+			assertEquals(Complexity.EXPONENTIAL, e.getReport().getComplexity());
+			assertEquals(Complexity.QUADRATIC, e.getLimit());
+		}
+		Pattern linear = Pattern.compile(Re.repeat1("a"), 0, options.withComplexityLimit(Complexity.LINEAR, ComplexityPolicy.REJECT));
+		assertNull(linear.matchBudget());
+
+		Pattern rerouted = Pattern.compile(evil, 0, options.withComplexityLimit(Complexity.LINEAR, ComplexityPolicy.REROUTE));
+		assertEquals(Complexity.LINEAR, rerouted.matchBudget());
+		assertTrue(rerouted.matcher("aaab").matches());
+		assertFalse(rerouted.matcher("aaac").matches());
+		char[] input = new char[40];
+		Arrays.fill(input, 'a');
+		try {
+			rerouted.matcher(new String(input)).matches();
+			fail();
+		} catch (MatchBudgetExceededException e) {
+			// expected
+		}
+	}
+}
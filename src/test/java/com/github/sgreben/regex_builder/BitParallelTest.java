@@ -0,0 +1,91 @@
+package com.github.sgreben.regex_builder;
+
+import static com.github.sgreben.regex_builder.Re.repeat;
+import static com.github.sgreben.regex_builder.Re.repeat1;
+import static com.github.sgreben.regex_builder.Re.sequence;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import org.junit.Test;
+import com.github.sgreben.regex_builder.compiler.CompileOptions;
+import com.github.sgreben.regex_builder.compiler.Engine;
+import com.github.sgreben.regex_builder.engine.BitParallel;
+
+public class BitParallelTest {
+	private static final CompileOptions bitParallel = CompileOptions.defaults().withoutCache()
+			.withEngine(Engine.BIT_PARALLEL);
+	private static final CompileOptions backtracking = CompileOptions.defaults().withoutCache()
+			.withEngine(Engine.BACKTRACKING);
+
+	@Test
+	public void fixedSequencesShiftTheState() {
+		Expression color = sequence(Re.optional("#"), repeat(CharClass.hexDigit(), 6));
+		Pattern p = Pattern.compile(color, 0, bitParallel);
+		assertNotNull(p.bitParallel());
+		assertTrue(p.bitParallel().shiftAnd());
+		assertEquals(7, p.bitParallel().positionCount());
+		assertTrue(p.matcher("#00ff7F").matches());
+		assertTrue(p.matcher("00ff7F").matches());
+		assertFalse(p.matcher("#00ff7").matches());
+		assertFalse(p.matcher("#00ff7FF").matches());
+		assertFalse(p.matcher("##00ff7F").matches());
+		Matcher m = p.matcher("color: #00ff7F;");
+		assertTrue(m.find());
+		assertEquals("#00ff7F", m.group());
+		assertFalse(m.find());
+	}
+
+	@Test
+	public void loopsFollowTheTables() {
+		Expression date = sequence(repeat1(CharClass.digit()), repeat(sequence("-", repeat(CharClass.digit(), 1, 2)), 2));
+		Pattern p = Pattern.compile(date, 0, bitParallel);
+		assertNotNull(p.bitParallel());
+		assertFalse(p.bitParallel().shiftAnd());
+		assertTrue(p.matcher("2024-1-31").matches());
+		assertFalse(p.matcher("2024-1-311").matches());
+		assertFalse(p.matcher("2024-1").matches());
+		assertFalse(p.matcher("on 2024-1").find());
+		Matcher m = p.matcher("on 2024-1-31.");
+		assertTrue(m.find());
+		assertEquals("2024-1-31", m.group());
+	}
+
+	@Test
+	public void onlyShortExpressionsWithoutAnchorsAreBuilt() {
+		assertNotNull(Pattern.compile(repeat("x", 64), 0, bitParallel).bitParallel());
+		assertNull(Pattern.compile(repeat("x", 65), 0, bitParallel).bitParallel());
+		assertNull(Pattern.compile(sequence(Re.beginLine(), "x"), 0, bitParallel).bitParallel());
+		assertNull(Pattern.compile(Re.string("x"), 0, backtracking).bitParallel());
+		assertNull(Pattern.compile(Re.string("x"), 0, bitParallel.withEngine(Engine.DFA)).bitParallel());
+		assertEquals(BitParallel.UNKNOWN, Pattern.compile(repeat(CharClass.anyChar()), 0, bitParallel).bitParallel()
+				.matches("\uD83D\uDE00"));
+		assertTrue(Pattern.compile(repeat(CharClass.anyChar()), 0, bitParallel).matcher("\uD83D\uDE00").matches());
+	}
+
+	@Test
+	public void bitParallel_matchesAndFindsAsTheRegex() {
+		Random random = new Random(18);
+		int[] flagChoices = {0, java.util.regex.Pattern.CASE_INSENSITIVE, java.util.regex.Pattern.DOTALL};
+		int built = 0;
+		for (int round = 0; round < 1500; round++) {
+			List<CaptureGroup> groups = new ArrayList<CaptureGroup>();
+			Expression expression = PikeVmTest.randomExpression(random, 3, groups);
+			int flags = flagChoices[random.nextInt(flagChoices.length)];
+			Pattern actual = Pattern.compile(expression, flags, bitParallel);
+			if (actual.bitParallel() == null) {
+				continue;
+			}
+			built++;
+			Pattern expected = Pattern.compile(expression, flags, backtracking);
+			for (int k = 0; k < 20; k++) {
+				PikeVmTest.assertSameGroups(expected, actual, groups, DfaTest.randomString(random, 12));
+			}
+		}
+		assertTrue(String.valueOf(built), built > 300);
+	}
+}
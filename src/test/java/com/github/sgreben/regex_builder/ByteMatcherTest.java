@@ -0,0 +1,125 @@
+package com.github.sgreben.regex_builder;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertTrue;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import org.junit.Test;
+import com.github.sgreben.regex_builder.compiler.CompileOptions;
+
+public class ByteMatcherTest {
+	private static final CompileOptions utf8 = CompileOptions.defaults().withoutCache().withUtf8Dfa(true);
+
+	@Test
+	public void matchesAreFoundOnTheBytes() {
+		CaptureGroup user = Re.capture(Re.repeat1(CharClass.range('a', 'z')));
+		CaptureGroup host = Re.capture(Re.repeat1(CharClass.noneOf("@. ")));
+		Pattern p = Pattern.compile(Re.sequence(user, "@", host, ".com"), 0, utf8);
+		assertNotNull(p.utf8Dfa());
+		byte[] bytes = "caf\u00e9 bob@\u00e9xample.com, eve@test.com".getBytes(StandardCharsets.UTF_8);
+		ByteMatcher m = p.byteMatcher(bytes);
+		assertTrue(m.find());
+		assertEquals(6, m.start());
+		assertEquals(22, m.end());
+		assertEquals("bob@\u00e9xample.com", m.group());
+		assertEquals(10, m.start(host));
+		assertEquals("\u00e9xample", m.group(host));
+		assertTrue(m.find());
+		assertEquals("eve", m.group(user));
+		assertFalse(m.find());
+
+		// A slice of an array, and a direct buffer: offsets are indices in the array and buffer.
+		m = p.byteMatcher(bytes, 24, bytes.length - 24);
+		assertTrue(m.find());
+		assertEquals(24, m.start());
+		ByteBuffer direct = ByteBuffer.allocateDirect(bytes.length);
+		direct.put(bytes).position(6).limit(22);
+		assertTrue(m.reset(direct).matches());
+		assertEquals("bob", m.group(user));
+	}
+
+	@Test
+	public void inputsTheDfaDoesNotHandleAreDecoded() {
+		CaptureGroup word = Re.capture(Re.repeat1(CharClass.noneOf(" ")));
+		Pattern p = Pattern.compile(Re.sequence(word, "!"), 0, utf8);
+		assertNotNull(p.utf8Dfa());
+		// A supplementary char, then a malformed sequence, which decodes to U+FFFD.
+		byte[] bytes = "a \uD83D\uDE00! ".getBytes(StandardCharsets.UTF_8);
+		ByteMatcher m = p.byteMatcher(bytes);
+		assertTrue(m.find());
+		assertEquals(2, m.start());
+		assertEquals(7, m.end());
+		assertEquals("\uD83D\uDE00", m.group(word));
+		m = p.byteMatcher(new byte[] {'x', (byte) 0xC3, '!'});
+		assertTrue(m.matches());
+		assertEquals("x\ufffd!", m.group());
+
+		// Without a DFA.
+		m = Pattern.compile(Re.sequence(word, "!")).byteMatcher(bytes);
+		assertTrue(m.find());
+		assertEquals(6, m.end(word));
+	}
+
+	@Test
+	public void byteMatchers_findTheSameMatchesAsTheRegex() {
+		Random random = new Random(23);
+		int[] flagChoices = {0, java.util.regex.Pattern.MULTILINE, java.util.regex.Pattern.UNIX_LINES,
+				java.util.regex.Pattern.MULTILINE | java.util.regex.Pattern.UNIX_LINES, java.util.regex.Pattern.DOTALL};
+		int built = 0;
+		for (int round = 0; round < 600; round++) {
+			List<CaptureGroup> groups = new ArrayList<CaptureGroup>();
+			Expression expression = round % 2 == 0 ? DfaTest.randomExpression(random, 3)
+					: PikeVmTest.randomExpression(random, 3, groups);
+			int flags = flagChoices[random.nextInt(flagChoices.length)];
+			Pattern p = Pattern.compile(expression, flags, utf8);
+			if (p.utf8Dfa() != null) {
+				built++;
+			}
+			for (int k = 0; k < 20; k++) {
+				assertSameMatches(p, groups, randomString(random, 12));
+			}
+		}
+		assertTrue(String.valueOf(built), built > 300);
+	}
+
+	private static void assertSameMatches(Pattern p, List<CaptureGroup> groups, String input) {
+		java.util.regex.Pattern expected = java.util.regex.Pattern.compile(p.pattern(), p.flags());
+		byte[] bytes = input.getBytes(StandardCharsets.UTF_8);
+		java.util.regex.Matcher e = expected.matcher(input);
+		ByteMatcher a = p.byteMatcher(bytes);
+		String context = p.pattern() + " (" + p.flags() + ") on " + input;
+		while (e.find()) {
+			assertTrue(context, a.find());
+			assertEquals(context, offset(input, e.start()) + ":" + offset(input, e.end()), a.start() + ":" + a.end());
+			for (CaptureGroup group : groups) {
+				int index = p.groupIndex().get(group);
+				assertEquals(context, e.start(index) < 0 ? -1 : offset(input, e.start(index)), a.start(group));
+				assertEquals(context, e.group(index), a.group(group));
+			}
+		}
+		assertFalse(context, a.find());
+		assertEquals(context, expected.matcher(input).matches(), a.reset(bytes).matches());
+	}
+
+	/**
+	 * The index in the UTF-8 encoding of the char at the given index.
+	 */
+	private static int offset(String input, int index) {
+		return input.substring(0, index).getBytes(StandardCharsets.UTF_8).length;
+	}
+
+	private static String randomString(Random random, int maxLength) {
+		String chars = "aab\r\n\u00e9\u0085\u2028\u4e2d";
+		StringBuilder sb = new StringBuilder();
+		int length = random.nextInt(maxLength + 1);
+		for (int i = 0; i < length; i++) {
+			sb.append(chars.charAt(random.nextInt(chars.length())));
+		}
+		return sb.toString();
+	}
+}
@@ -0,0 +1,76 @@
+package com.github.sgreben.regex_builder;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import java.util.Random;
+import org.junit.Test;
+import com.github.sgreben.regex_builder.charclass.RangeSet;
+import com.github.sgreben.regex_builder.compiler.CompileOptions;
+
+public class CandidateScannerTest {
+	@Test
+	public void charRanges_excludeSurrogatesAndLargeSets() {
+		assertEquals("09ab", new String(CandidateScanner.charRanges(RangeSet.ofChars("0123456789ab"))));
+		assertNull(CandidateScanner.charRanges(RangeSet.of(0xD7FF, 0xD800)));
+		assertNull(CandidateScanner.charRanges(RangeSet.of(0x1F600, 0x1F600)));
+		assertNull(CandidateScanner.charRanges(RangeSet.ofChars("acegikmoqs")));
+		assertNull(CandidateScanner.charRanges(RangeSet.EMPTY));
+	}
+
+	@Test
+	public void vectorizedScanner_agreesWithScalarScan() {
+		Random random = new Random(12);
+		for (int round = 0; round < 500; round++) {
+			int[] bounds = new int[2 * (1 + random.nextInt(CandidateScanner.MAX_RANGES))];
+			for (int i = 0; i < bounds.length; i += 2) {
+				int from = random.nextBoolean() ? 'a' + random.nextInt(26) : random.nextInt(0xD800);
+				bounds[i] = from;
+				bounds[i + 1] = Math.min(0xD7FF, from + random.nextInt(4));
+			}
+			char[] ranges = CandidateScanner.charRanges(RangeSet.of(bounds));
+			if (ranges == null) {
+				continue;
+			}
+			CandidateScanner scalar = new CandidateScanner(ranges);
+			CandidateScanner vectorized = CandidateScanner.vectorized(RangeSet.of(bounds));
+			if (vectorized == null) {
+				vectorized = scalar;
+			}
+			char[] chars = new char[random.nextInt(300)];
+			for (int i = 0; i < chars.length; i++) {
+				chars[i] = random.nextInt(8) == 0 ? (char) (0x100 + random.nextInt(0xFF00)) : (char) ('a' + random.nextInt(40));
+			}
+			int from = chars.length == 0 ? 0 : random.nextInt(chars.length);
+			int to = from + random.nextInt(chars.length - from + 1);
+			assertEquals(scalar.indexOf(chars, from, to), vectorized.indexOf(chars, from, to));
+		}
+	}
+
+	@Test
+	public void longInputs_findSameMatches() {
+		CompileOptions options = CompileOptions.defaults().withoutCache();
+		Expression expression = Re.sequence(CharClass.oneOf("#@"), Re.repeat1(CharClass.digit()));
+		Pattern prefiltered = Pattern.compile(expression, 0, options);
+		Pattern unfiltered = Pattern.compile(expression, 0, options.withPrefilter(false));
+		StringBuilder sb = new StringBuilder();
+		Random random = new Random(7);
+		for (int i = 0; i < 20 * CandidateScanner.MIN_INPUT_LENGTH; i++) {
+			sb.append(random.nextInt(500) == 0 ? "#1" : random.nextInt(1000) == 0 ? "@" : "ab c");
+		}
+		for (CharSequence input : new CharSequence[] {sb.toString(), sb, java.nio.CharBuffer.wrap(sb)}) {
+			Matcher expected = unfiltered.matcher(input);
+			Matcher actual = prefiltered.matcher(input);
+			int count = 0;
+			while (expected.find()) {
+				assertEquals(true, actual.find());
+				assertEquals(expected.start(), actual.start());
+				assertEquals(expected.end(), actual.end());
+				count++;
+			}
+			assertEquals(false, actual.find());
+			assertNotNull(prefiltered.analysis());
+			assertEquals(true, count > 10);
+		}
+	}
+}
@@ -9,6 +9,7 @@ import static com.github.sgreben.regex_builder.CharClass.whitespaceChar;
 import static com.github.sgreben.regex_builder.Re.repeat;
 import static com.github.sgreben.regex_builder.hamcrest.MatchesPattern.matchesPattern;
 import static org.hamcrest.CoreMatchers.not;
+import static org.junit.Assert.assertEquals;
 import static org.junit.Assert.assertThat;
 import org.junit.Test;
 
@@ -48,6 +49,22 @@ public class CharClassTest {
 		assertCharClassMatch(complement(complement(oneOf("bc"))), "bcbc");
 	}
 
+	@Test
+	public void testAnyCharInUnion() throws Exception {
+		// Inside a bracket class, "." is a literal dot.
+		CharClass dotOrDigit = CharClass.union(CharClass.anyChar(), CharClass.digit());
+		assertEquals("((?:[.\\d])*)", Pattern.compile(repeat(dotOrDigit)).pattern());
+		assertCharClassMatch(dotOrDigit, ".0.1");
+		assertCharClassMismatch(dotOrDigit, "x");
+	}
+
+	@Test
+	public void testAnyCharInIntersection() throws Exception {
+		CharClass none = CharClass.intersection(CharClass.digit(), CharClass.anyChar());
+		assertCharClassMismatch(none, "1");
+		assertCharClassMismatch(none, ".");
+	}
+
 	@Test
 	public void testOneOf() throws Exception {
 		assertCharClassMatch(oneOf("abc"), "abc");
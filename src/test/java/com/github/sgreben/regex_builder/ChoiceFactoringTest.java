@@ -0,0 +1,89 @@
+package com.github.sgreben.regex_builder;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import java.util.Random;
+import org.junit.Test;
+import com.github.sgreben.regex_builder.compiler.CompileOptions;
+
+public class ChoiceFactoringTest {
+	private static final CompileOptions factored = CompileOptions.defaults().withoutCache().withNormalization(true)
+			.withPossessification(true);
+	private static final CompileOptions unfactored = factored.withChoiceFactoring(false);
+
+	private static String pattern(Expression expression) {
+		return Pattern.compile(expression, 0, factored).pattern();
+	}
+
+	@Test
+	public void sharedPrefixes_areFactored() {
+		assertEquals("((?:\\QMoz\\E(?:\\Qi\\E|\\Qzare\\E)\\Qlla\\E|\\QOpera\\E))",
+				pattern(Re.choice("Mozilla", "Mozzarella", "Opera")));
+		assertEquals("(\\Qab\\E[cd])", pattern(Re.choice("abc", "abd")));
+	}
+
+	@Test
+	public void sharedSuffixes_areFactored() {
+		assertEquals("([bcr]\\Qat\\E)", pattern(Re.choice("cat", "bat", "rat")));
+	}
+
+	@Test
+	public void endedAlternatives_keepTheirPriority() {
+		assertEquals("(\\Qa\\E(?:\\Qb\\E(?:|\\Qbc\\E))?)", pattern(Re.choice("ab", "abbc", "a")));
+		Matcher m = Pattern.compile(Re.choice("ab", "a", "abc"), 0, factored).matcher("abc");
+		assertTrue(m.find());
+		assertEquals("ab", m.group());
+	}
+
+	@Test
+	public void nonLiteralBranches_stayInPlace() {
+		CaptureGroup digits = Re.capture(Re.repeat1(CharClass.digit()));
+		Pattern p = Pattern.compile(Re.choice("foo", "fob", digits, "fox"), 0, factored);
+		assertEquals("((?:\\Qfo\\E[bo]|(\\d++)|\\Qfox\\E))", p.pattern());
+		Matcher m = p.matcher("42");
+		assertTrue(m.matches());
+		assertEquals("42", m.group(digits));
+	}
+
+	@Test
+	public void caseInsensitive_isNotFactored() {
+		Pattern p = Pattern.compile(Re.choice("ab", "Ac"), java.util.regex.Pattern.CASE_INSENSITIVE, factored);
+		assertEquals("((?:\\Qab\\E|\\QAc\\E))", p.pattern());
+	}
+
+	@Test
+	public void factoredChoices_findTheSameMatches() {
+		Random random = new Random(42);
+		for (int round = 0; round < 200; round++) {
+			Object[] literals = new Object[2 + random.nextInt(12)];
+			for (int i = 0; i < literals.length; i++) {
+				literals[i] = randomString(random, 4);
+			}
+			Expression expression = Re.sequence(Re.choice(literals), Re.optional("b"), Re.choice("a", "c", "ab"));
+			java.util.regex.Pattern expected = java.util.regex.Pattern.compile(
+					Pattern.compile(expression, 0, unfactored).pattern());
+			java.util.regex.Pattern actual = java.util.regex.Pattern.compile(
+					Pattern.compile(expression, 0, factored).pattern());
+			for (int k = 0; k < 20; k++) {
+				String input = randomString(random, 12);
+				java.util.regex.Matcher e = expected.matcher(input);
+				java.util.regex.Matcher a = actual.matcher(input);
+				while (e.find()) {
+					assertTrue(a.find());
+					assertEquals(actual.pattern() + " on " + input, e.start() + ":" + e.end(), a.start() + ":" + a.end());
+				}
+				assertFalse(a.find());
+			}
+		}
+	}
+
+	private static String randomString(Random random, int maxLength) {
+		StringBuilder sb = new StringBuilder();
+		int length = random.nextInt(maxLength + 1);
+		for (int i = 0; i < length; i++) {
+			sb.append((char) ('a' + random.nextInt(3)));
+		}
+		return sb.toString();
+	}
+}
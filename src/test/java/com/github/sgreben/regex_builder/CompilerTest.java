@@ -0,0 +1,34 @@
+package com.github.sgreben.regex_builder;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import org.junit.Test;
+
+public class CompilerTest {
+	@Test
+	public void groupsAreNumberedInOrder() {
+		CaptureGroup outer = Re.capture(Re.sequence("a", Re.capture("b")));
+		CaptureGroup last = Re.capture("c");
+		Pattern p = Pattern.compile(Re.sequence(outer, Re.backReference(outer), last));
+		assertEquals("((\\Qa\\E(\\Qb\\E))\\2(\\Qc\\E))", p.toString());
+		Matcher m = p.matcher("ababc");
+		assertTrue(m.matches());
+		assertEquals("ab", m.group(outer));
+		assertEquals("c", m.group(last));
+	}
+
+	@Test
+	public void forwardBackReference_isResolved() {
+		CaptureGroup a = Re.capture("a");
+		CaptureGroup b = Re.capture("b");
+		Expression e = Re.sequence(Re.optional(Re.backReference(b)), a, b);
+		assertEquals("((?:\\3)?(\\Qa\\E)(\\Qb\\E))", Pattern.compile(e).toString());
+	}
+
+	@Test
+	public void repeatedGroup_referencesLastOccurrence() {
+		CaptureGroup a = Re.capture("a");
+		Expression e = Re.sequence(a, Re.backReference(a), a);
+		assertEquals("((\\Qa\\E)\\3(\\Qa\\E))", Pattern.compile(e).toString());
+	}
+}
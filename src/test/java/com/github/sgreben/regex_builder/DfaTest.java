@@ -0,0 +1,163 @@
+package com.github.sgreben.regex_builder;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+import java.util.Arrays;
+import java.util.Random;
+import org.junit.Test;
+import com.github.sgreben.regex_builder.compiler.CompileOptions;
+import com.github.sgreben.regex_builder.compiler.Engine;
+
+public class DfaTest {
+	private static final CompileOptions dfa = CompileOptions.defaults().withoutCache().withEngine(Engine.DFA);
+
+	@Test
+	public void dfaIsBuiltForTheRegularSubset() {
+		Expression word = Re.repeat1(CharClass.range('a', 'z'));
+		Pattern email = Pattern.compile(Re.sequence(word, "@", word, ".com"), 0, dfa);
+		assertNotNull(email.dfa());
+		// Line terminators (3), "@", ".", "c", "o", "m", the other letters and the other chars.
+		assertEquals(10, email.dfa().classCount());
+		assertNull(Pattern.compile(Re.sequence(word, "@"), 0).dfa());
+
+		CaptureGroup group = Re.capture(word);
+		assertNull(Pattern.compile(Re.sequence(group, "=", Re.backReference(group)), 0, dfa).dfa());
+		assertNull(Pattern.compile(Re.sequence(word, Re.positiveLookahead("@")), 0, dfa).dfa());
+		assertNull(Pattern.compile(Re.sequence(CharClass.wordBoundary(), word), 0, dfa).dfa());
+		assertNull(Pattern.compile(Re.sequence(Re.endLine(), word), 0, dfa).dfa());
+		assertNull(Pattern.compile(word, java.util.regex.Pattern.CASE_INSENSITIVE, dfa).dfa());
+		assertNotNull(Pattern.compile(Re.sequence(Re.endLine(), word), java.util.regex.Pattern.MULTILINE, dfa).dfa());
+	}
+
+	@Test
+	public void dfaRunsInLinearTime() {
+		Pattern p = Pattern.compile(Re.sequence(Re.repeat(Re.choice("a", Re.repeat("a", 2))), "c"), 0, dfa);
+		assertNotNull(p.dfa());
+		char[] input = new char[10000];
+		Arrays.fill(input, 'a');
+		assertFalse(p.matcher(new String(input)).find());
+		assertFalse(p.matcher(new String(input)).matches());
+	}
+
+	@Test
+	public void groupsAreCapturedAtTheMatch() {
+		CaptureGroup user = Re.capture(Re.repeat1(CharClass.range('a', 'z')));
+		CaptureGroup host = Re.capture(Re.repeat1(CharClass.range('a', 'z')));
+		Pattern p = Pattern.compile(Re.sequence(user, "@", host, ".com"), 0, dfa);
+		Matcher m = p.matcher("mail x@y.org and bob@example.com, eve@test.com");
+		assertTrue(m.find());
+		assertEquals("bob@example.com", m.group());
+		assertEquals("bob", m.group(user));
+		assertEquals("example", m.group(host));
+		assertTrue(m.find());
+		assertEquals(34, m.start());
+		assertEquals("test", m.group(host));
+		assertFalse(m.find());
+
+		m = p.matcher("bob@example.com");
+		assertTrue(m.matches());
+		assertEquals("example", m.group(host));
+		assertEquals("X@example.com.", p.matcher("bob@example.com.").replaceAll(Re.replacement("X@", host, ".com")));
+	}
+
+	@Test
+	public void inputsWithSurrogatesUseTheRegex() {
+		Pattern p = Pattern.compile(Re.sequence(Re.repeat1(CharClass.complement(CharClass.oneOf("a"))), "a"), 0, dfa);
+		Matcher m = p.matcher("a\ud83d\ude00xa");
+		assertTrue(m.find());
+		assertEquals(1, m.start());
+		assertEquals(5, m.end());
+	}
+
+	@Test
+	public void dfa_findsTheSameMatchesAsTheRegex() {
+		int built = assertSameMatchesAsTheRegex(dfa, new Random(14), 600);
+		assertTrue(String.valueOf(built), built > 300);
+	}
+
+	/**
+	 * Compiles random expressions in and around the regular subset with the options, and compares
+	 * their matches on random inputs with those of java.util.regex. Returns how many got a DFA.
+	 */
+	static int assertSameMatchesAsTheRegex(CompileOptions options, Random random, int rounds) {
+		int[] flagChoices = {0, java.util.regex.Pattern.MULTILINE, java.util.regex.Pattern.UNIX_LINES,
+				java.util.regex.Pattern.MULTILINE | java.util.regex.Pattern.UNIX_LINES, java.util.regex.Pattern.DOTALL};
+		int built = 0;
+		for (int round = 0; round < rounds; round++) {
+			Expression expression = randomExpression(random, 3);
+			int flags = flagChoices[random.nextInt(flagChoices.length)];
+			Pattern actual = Pattern.compile(expression, flags, options);
+			if (actual.dfa() != null) {
+				built++;
+			}
+			java.util.regex.Pattern expected = java.util.regex.Pattern.compile(actual.pattern(), flags);
+			for (int k = 0; k < 20; k++) {
+				assertSameMatches(expected, actual, randomString(random, 12), random);
+			}
+		}
+		return built;
+	}
+
+	static void assertSameMatches(java.util.regex.Pattern expected, Pattern actual, String input, Random random) {
+		java.util.regex.Matcher e = expected.matcher(input);
+		Matcher a = actual.matcher(input);
+		String context = actual.pattern() + " (" + expected.flags() + ") on " + Arrays.asList(input);
+		while (e.find()) {
+			assertTrue(context, a.find());
+			assertEquals(context, e.start() + ":" + e.end(), a.start() + ":" + a.end());
+			assertEquals(context, e.group(), a.group());
+		}
+		assertFalse(context, a.find());
+		assertEquals(context, expected.matcher(input).matches(), actual.matcher(input).matches());
+		int offset = random.nextInt(input.length() + 1);
+		e = expected.matcher(input);
+		a = actual.matcher(input);
+		assertEquals(context + " from " + offset, e.find(offset), a.find(offset));
+		if (e.find(offset)) {
+			assertEquals(context, e.start() + ":" + e.end(), a.start() + ":" + a.end());
+		}
+	}
+
+	static Expression randomExpression(Random random, int depth) {
+		if (depth == 0 || random.nextInt(4) == 0) {
+			Object[] leaves = {"a", "b", "ab", "\r\n", CharClass.oneOf("ab"), CharClass.noneOf("a"), Re.anyCharacter(),
+					Re.beginLine(), Re.endLine(), CharClass.beginInput(), CharClass.endInput(), CharClass.oneOf("\n\r")};
+			return Re.sequence(leaves[random.nextInt(leaves.length)]);
+		}
+		Expression child = randomExpression(random, depth - 1);
+		switch (random.nextInt(10)) {
+		case 0:
+			return Re.sequence(child, randomExpression(random, depth - 1));
+		case 1:
+			return Re.sequence(child, randomExpression(random, depth - 1), randomExpression(random, depth - 1));
+		case 2:
+			return Re.choice(child, randomExpression(random, depth - 1));
+		case 3:
+			return Re.repeat(child);
+		case 4:
+			return Re.repeat1(child);
+		case 5:
+			return Re.optional(child);
+		case 6:
+			return Re.repeat(child, 1, 3);
+		case 7:
+			return random.nextBoolean() ? Re.repeatReluctant(child) : Re.repeat1Reluctant(child);
+		case 8:
+			return Re.repeatAtLeast(child, 2);
+		default:
+			return Re.capture(child);
+		}
+	}
+
+	static String randomString(Random random, int maxLength) {
+		StringBuilder sb = new StringBuilder();
+		int length = random.nextInt(maxLength + 1);
+		for (int i = 0; i < length; i++) {
+			sb.append("aab\r\n".charAt(random.nextInt(5)));
+		}
+		return sb.toString();
+	}
+}
@@ -0,0 +1,166 @@
+package com.github.sgreben.regex_builder;
+
+import static com.github.sgreben.regex_builder.Re.capture;
+import static com.github.sgreben.regex_builder.Re.repeat;
+import static com.github.sgreben.regex_builder.Re.repeat1;
+import static com.github.sgreben.regex_builder.Re.sequence;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+import java.util.Arrays;
+import org.junit.Test;
+import com.github.sgreben.regex_builder.compiler.CompileOptions;
+import com.github.sgreben.regex_builder.compiler.Engine;
+import com.github.sgreben.regex_builder.compiler.EngineSelector;
+import com.github.sgreben.regex_builder.compiler.PatternCache;
+import com.github.sgreben.regex_builder.engine.MatchEngine;
+
+public class EngineSelectorTest {
+	private static final CompileOptions options = CompileOptions.defaults().withoutCache();
+
+	private static final Expression color = sequence(Re.optional("#"), repeat(CharClass.hexDigit(), 6));
+	private static final Expression evil = sequence(Re.repeat(repeat1("a"), 1, 100), "b");
+
+	@Test
+	public void candidatesDependOnTheTree() {
+		CaptureGroup word = capture(repeat1(CharClass.wordChar()));
+		assertEquals(Arrays.asList(Engine.BACKTRACKING),
+				EngineSelector.candidates(sequence(word, " ", Re.backReference(word)), 0));
+		assertEquals(Arrays.asList(Engine.BACKTRACKING), EngineSelector.candidates(Re.positiveLookahead("x"), 0));
+		assertEquals(Arrays.asList(Engine.BACKTRACKING), EngineSelector.candidates(Re.string("needle"), 0));
+		assertEquals(Arrays.asList(Engine.BIT_PARALLEL, Engine.BACKTRACKING), EngineSelector.candidates(color, 0));
+		assertEquals(Arrays.asList(Engine.ONE_PASS, Engine.BIT_PARALLEL, Engine.BACKTRACKING),
+				EngineSelector.candidates(sequence(word, "=", capture(repeat(CharClass.digit()))), 0));
+		assertEquals(Arrays.asList(Engine.BIT_PARALLEL, Engine.DFA, Engine.LAZY_DFA, Engine.BACKTRACKING),
+				EngineSelector.candidates(evil, 0));
+		assertEquals(Arrays.asList(Engine.ONE_PASS, Engine.BIT_PARALLEL, Engine.PIKE_VM, Engine.BACKTRACKING),
+				EngineSelector.candidates(sequence(capture(Re.repeat(repeat1("a"), 1, 100)), "b"), 0));
+	}
+
+	@Test
+	public void theChosenEngineIsReported() {
+		assertEquals("BIT_PARALLEL", Pattern.compile(color, 0, options).engineName());
+		CaptureGroup key = capture(repeat1(CharClass.range('a', 'z')));
+		Pattern keyValue = Pattern.compile(sequence(key, "=", capture(repeat(CharClass.digit()))), 0, options);
+		assertEquals("ONE_PASS", keyValue.engineName());
+		Matcher m = keyValue.matcher("size=12");
+		assertTrue(m.matches());
+		assertEquals("size", m.group(key));
+		assertEquals("BACKTRACKING", Pattern.compile(Re.string("needle"), 0, options).engineName());
+		assertNull(Pattern.compile(Re.string("needle"), 0, options).engine());
+
+		// Beyond 64 positions, the DFA runs in linear time where java.util.regex is exponential.
+		Pattern p = Pattern.compile(evil, 0, options);
+		assertEquals("DFA", p.engineName());
+		char[] input = new char[40];
+		Arrays.fill(input, 'a');
+		assertFalse(p.matcher(new String(input)).matches());
+		assertFalse(p.matcher(new String(input)).find());
+	}
+
+	@Test
+	public void enginesCanBeForcedOrExcluded() {
+		assertEquals("PIKE_VM", Pattern.compile(color, 0, options.withEngine(Engine.PIKE_VM)).engineName());
+		assertEquals("BACKTRACKING", Pattern.compile(color, 0, options.withEngine(Engine.BACKTRACKING)).engineName());
+		assertEquals("BACKTRACKING", Pattern.compile(color, 0, options.withoutEngine(Engine.BIT_PARALLEL)).engineName());
+		assertEquals("LAZY_DFA", Pattern.compile(evil, 0, options.withoutEngine(Engine.BIT_PARALLEL)
+				.withoutEngine(Engine.DFA)).engineName());
+		try {
+			options.withoutEngine(Engine.BACKTRACKING);
+			fail();
+		} catch (IllegalArgumentException e) {
+			// expected
+		}
+
+		// The engine chosen with the default options is cached; other options choose again.
+		PatternCache cache = new PatternCache(16);
+		Pattern cached = Pattern.compile(color, 0, CompileOptions.defaults().withCache(cache));
+		assertSame(cached.engine(), Pattern.compile(color, 0, CompileOptions.defaults().withCache(cache)).engine());
+		assertEquals("BACKTRACKING", Pattern.compile(color, 0, CompileOptions.defaults().withCache(cache)
+				.withoutEngine(Engine.BIT_PARALLEL)).engineName());
+	}
+
+	@Test
+	public void matchersRunAnyEngine() {
+		final int[] calls = new int[1];
+		MatchEngine digits = new MatchEngine() {
+			@Override
+			public String name() {
+				return "DIGITS";
+			}
+
+			@Override
+			public int slotCount() {
+				return 2;
+			}
+
+			@Override
+			public boolean finds() {
+				return true;
+			}
+
+			@Override
+			public int matches(CharSequence input, int[] slots) {
+				calls[0]++;
+				for (int i = 0; i < input.length(); i++) {
+					if (!Character.isDigit(input.charAt(i))) {
+						return input.charAt(i) < 128 ? 0 : UNKNOWN;
+					}
+				}
+				slots[0] = 0;
+				slots[1] = input.length();
+				return input.length() > 0 ? 1 : 0;
+			}
+
+			@Override
+			public int find(CharSequence input, int from, int[] slots) {
+				calls[0]++;
+				int start = from;
+				while (start < input.length() && !Character.isDigit(input.charAt(start))) {
+					start++;
+				}
+				int end = start;
+				while (end < input.length() && Character.isDigit(input.charAt(end))) {
+					end++;
+				}
+				slots[0] = start;
+				slots[1] = end;
+				return end > start ? 1 : 0;
+			}
+		};
+		Pattern p = Pattern.compile(repeat1(CharClass.digit()), 0, options.withPrefilter(false)).withEngine(digits);
+		assertEquals("DIGITS", p.engineName());
+		assertTrue(p.matcher("2024").matches());
+		assertFalse(p.matcher("20x4").matches());
+		Matcher m = p.matcher("a 12 bc 345");
+		assertTrue(m.find());
+		assertEquals("12", m.group());
+		assertTrue(m.find());
+		assertEquals(8, m.start());
+		assertFalse(m.find());
+		assertEquals(5, calls[0]);
+		// An engine that cannot decide leaves the call to java.util.regex.
+		assertFalse(p.matcher("12\u00e9").matches());
+		assertEquals(6, calls[0]);
+	}
+
+	@Test
+	public void lazyEnginesAreBuiltOnceOnFirstUse() {
+		final int[] builds = new int[1];
+		final Pattern dfa = Pattern.compile(repeat1(CharClass.digit()), 0, options.withEngine(Engine.DFA));
+		Pattern p = Pattern.compile(repeat1(CharClass.digit()), 0, options).withLazyEngine(() -> {
+			builds[0]++;
+			return dfa.engine();
+		});
+		Pattern derived = p.withAnalysis(null);
+		assertTrue(derived != p);
+		assertEquals(0, builds[0]);
+		assertTrue(derived.matcher("2024").matches());
+		assertSame(dfa.engine(), p.engine());
+		assertEquals("DFA", p.engineName());
+		assertEquals(1, builds[0]);
+	}
+}
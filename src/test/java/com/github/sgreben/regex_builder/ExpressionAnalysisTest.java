@@ -0,0 +1,72 @@
+package com.github.sgreben.regex_builder;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import org.junit.Test;
+import com.github.sgreben.regex_builder.analysis.ExpressionAnalysis;
+import com.github.sgreben.regex_builder.charclass.RangeSet;
+import com.github.sgreben.regex_builder.compiler.CompileOptions;
+
+public class ExpressionAnalysisTest {
+	@Test
+	public void lengthBounds() {
+		ExpressionAnalysis analysis = ExpressionAnalysis.analyze(Re.sequence(Re.repeat(CharClass.digit(), 1, 3), "-",
+				Re.optional(Re.choice("ab", "c"))));
+		assertEquals(2, analysis.getMinLength());
+		assertEquals(6, analysis.getMaxLength());
+		assertTrue(analysis.isFinite());
+
+		analysis = ExpressionAnalysis.analyze(Re.sequence("x", Re.repeat1(CharClass.wordChar())));
+		assertEquals(2, analysis.getMinLength());
+		assertEquals(-1, analysis.getMaxLength());
+		assertFalse(analysis.isFinite());
+		assertEquals(2, ExpressionAnalysis.analyze(Re.sequence(CharClass.anyChar())).getMaxLength());
+		assertEquals(0, ExpressionAnalysis.analyze(Re.positiveLookahead("abc")).getMaxLength());
+	}
+
+	@Test
+	public void anchors() {
+		ExpressionAnalysis analysis = ExpressionAnalysis.analyze(Re.sequence(CharClass.beginInput(),
+				Re.repeat1(CharClass.digit()), CharClass.endInput()));
+		assertTrue(analysis.isAnchoredAtStart());
+		assertTrue(analysis.isAnchoredAtEnd());
+		assertTrue(ExpressionAnalysis.analyze(Re.sequence(Re.beginLine(), "a")).isAnchoredAtStart());
+		assertFalse(ExpressionAnalysis.analyze(Re.sequence(Re.beginLine(), "a"), java.util.regex.Pattern.MULTILINE)
+				.isAnchoredAtStart());
+		assertFalse(ExpressionAnalysis.analyze(Re.sequence(Re.optional("a"), CharClass.beginInput())).isAnchoredAtStart());
+		assertFalse(ExpressionAnalysis.analyze(Re.choice(Re.sequence(CharClass.beginInput(), "a"), "b")).isAnchoredAtStart());
+	}
+
+	@Test
+	public void firstChars() {
+		RangeSet first = ExpressionAnalysis.analyze(Re.sequence(Re.optional("x"), Re.choice("ab", CharClass.digit())))
+				.getFirstChars();
+		assertEquals(RangeSet.of('0', '9', 'a', 'a', 'x', 'x'), first);
+		assertTrue(ExpressionAnalysis.analyze(Re.repeat("a")).getFirstChars().isFull());
+		assertTrue(ExpressionAnalysis.analyze(Re.string("a"), java.util.regex.Pattern.CASE_INSENSITIVE).getFirstChars()
+				.isFull());
+	}
+
+	@Test
+	public void matchesAndFind_useTheAnalysis() {
+		Expression date = Re.sequence(Re.repeat(CharClass.digit(), 4), "-", Re.repeat(CharClass.digit(), 2), "-",
+				Re.repeat(CharClass.digit(), 2));
+		Pattern p = Pattern.compile(date, 0, CompileOptions.defaults().withoutCache());
+		assertEquals(10, p.analysis().getMaxLength());
+		assertTrue(p.matcher("2024-01-31").matches());
+		assertFalse(p.matcher("2024-01-311").matches());
+		assertFalse(p.matcher("x024-01-31").matches());
+		Matcher m = p.matcher("on 2024-01-31 and 2024-02-01");
+		assertTrue(m.find());
+		assertEquals(3, m.start());
+		assertTrue(m.find());
+		assertEquals(18, m.start());
+		assertFalse(m.find());
+
+		Pattern end = Pattern.compile(Re.sequence(date, CharClass.endInput()), 0, CompileOptions.defaults().withoutCache());
+		m = end.matcher("2024-01-31 and 2024-02-01");
+		assertTrue(m.find());
+		assertEquals(15, m.start());
+	}
+}
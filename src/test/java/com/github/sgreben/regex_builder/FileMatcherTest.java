@@ -0,0 +1,160 @@
+package com.github.sgreben.regex_builder;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import java.io.IOException;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Random;
+import org.junit.Test;
+import com.github.sgreben.regex_builder.analysis.ExpressionAnalysis;
+import com.github.sgreben.regex_builder.compiler.CompileOptions;
+
+public class FileMatcherTest {
+	private static final CompileOptions utf8 = CompileOptions.defaults().withoutCache().withUtf8Dfa(true);
+
+	@Test
+	public void matchesAcrossWindowsAreFoundOnce() throws IOException {
+		CaptureGroup latency = Re.capture(Re.repeat(CharClass.digit(), 1, 4));
+		Pattern p = Pattern.compile(Re.sequence("latency=", latency, "ms"), 0, utf8);
+		StringBuilder log = new StringBuilder();
+		for (int i = 0; i < 200; i++) {
+			log.append("host=web-").append(i).append(" user=J\u00f6rg latency=").append(i * 7).append("ms\n");
+		}
+		byte[] bytes = log.toString().getBytes(StandardCharsets.UTF_8);
+		Path file = write(bytes);
+		try {
+			FileMatcher m = p.scan(file);
+			try {
+				for (int i = 0; i < 200; i++) {
+					assertTrue(m.find());
+					assertEquals(String.valueOf(i * 7), m.group(latency));
+					assertEquals(m.end() - 2, m.end(latency));
+				}
+				assertFalse(m.find());
+			} finally {
+				m.close();
+			}
+			for (int windowSize : new int[] {64, 97, 1000}) {
+				assertSameMatches(p, Arrays.asList(latency), bytes, file, windowSize);
+			}
+		} finally {
+			Files.delete(file);
+		}
+	}
+
+	@Test
+	public void windowsOverlapByWhatLookaroundsRead() throws IOException {
+		Expression id = Re.sequence(Re.positiveLookbehind(Re.sequence("id=", Re.repeat(CharClass.wordChar(), 10))),
+				Re.repeat(CharClass.digit(), 3), Re.negativeLookahead(Re.sequence(Re.repeat(" ", 20), "x")));
+		ExpressionAnalysis analysis = ExpressionAnalysis.analyze(id);
+		assertEquals(13, analysis.getMaxLookbehind());
+		assertEquals(21, analysis.getMaxLookahead());
+		Pattern p = Pattern.compile(id, 0, utf8);
+		StringBuilder text = new StringBuilder();
+		for (int i = 0; i < 100; i++) {
+			text.append("id=abcdefghij").append(100 + i).append(i % 3 == 0 ? "                    x" : " y").append('\n');
+		}
+		byte[] bytes = text.toString().getBytes(StandardCharsets.UTF_8);
+		Path file = write(bytes);
+		try {
+			for (int windowSize : new int[] {256, 300, 1 << 16}) {
+				List<CaptureGroup> groups = Collections.emptyList();
+				assertEquals(66, assertSameMatches(p, groups, bytes, file, windowSize));
+			}
+		} finally {
+			Files.delete(file);
+		}
+	}
+
+	@Test
+	public void matchesLongerThanTheWindowAreFoundWhole() throws IOException {
+		CaptureGroup word = Re.capture(Re.repeat1(CharClass.wordChar()));
+		Pattern p = Pattern.compile(Re.sequence(word, "!"), 0, utf8);
+		StringBuilder text = new StringBuilder("short! ");
+		for (int i = 0; i < 100; i++) {
+			text.append("w\u00f6rd");
+		}
+		text.append("! a b ").append(text).append("?");
+		byte[] bytes = text.toString().getBytes(StandardCharsets.UTF_8);
+		Path file = write(bytes);
+		try {
+			for (int windowSize : new int[] {64, 97, 1000}) {
+				assertEquals(4, assertSameMatches(p, Arrays.asList(word), bytes, file, windowSize));
+			}
+		} finally {
+			Files.delete(file);
+		}
+	}
+
+	@Test
+	public void fileMatchers_findTheSameMatchesAsByteMatchers() throws IOException {
+		Random random = new Random(24);
+		String chars = "aab\r\n\u00e9\u2028\u4e2d";
+		for (int round = 0; round < 300; round++) {
+			List<CaptureGroup> groups = new ArrayList<CaptureGroup>();
+			Expression expression = round % 2 == 0 ? DfaTest.randomExpression(random, 3)
+					: PikeVmTest.randomExpression(random, 3, groups);
+			int flags = random.nextBoolean() ? 0 : java.util.regex.Pattern.MULTILINE;
+			Pattern p = Pattern.compile(expression, flags, utf8);
+			StringBuilder text = new StringBuilder();
+			for (int i = 0; i < 300; i++) {
+				text.append(chars.charAt(random.nextInt(chars.length())));
+			}
+			byte[] bytes = text.toString().getBytes(StandardCharsets.UTF_8);
+			Path file = write(bytes);
+			try {
+				assertSameMatches(p, groups, bytes, file, 64 + random.nextInt(64));
+			} finally {
+				Files.delete(file);
+			}
+		}
+	}
+
+	/**
+	 * Asserts that the matches in the file are those a byte matcher finds in its contents, and
+	 * returns their number.
+	 */
+	private static int assertSameMatches(Pattern p, List<CaptureGroup> groups, byte[] bytes, Path file, int windowSize)
+			throws IOException {
+		FileChannel channel = FileChannel.open(file, StandardOpenOption.READ);
+		try {
+			FileMatcher m = p.scan(channel, windowSize);
+			ByteMatcher expected = p.byteMatcher(bytes);
+			String context = p.pattern() + " in windows of " + windowSize + " on "
+					+ new String(bytes, StandardCharsets.UTF_8);
+			int count = 0;
+			while (expected.find()) {
+				assertTrue(context, m.find());
+				assertEquals(context, expected.start() + ":" + expected.end(), m.start() + ":" + m.end());
+				FileMatch match = m.toMatch();
+				assertEquals(context, m.end(), match.end());
+				for (CaptureGroup group : groups) {
+					assertEquals(context, expected.start(group), m.start(group));
+					assertEquals(context, expected.end(group), match.end(group));
+					assertEquals(context, expected.group(group), m.group(group));
+				}
+				count++;
+			}
+			assertFalse(context, m.find());
+			assertEquals(context, count, p.findAll(channel).size());
+			return count;
+		} finally {
+			channel.close();
+		}
+	}
+
+	private static Path write(byte[] bytes) throws IOException {
+		Path file = Files.createTempFile("scan", ".log");
+		Files.write(file, bytes);
+		return file;
+	}
+}
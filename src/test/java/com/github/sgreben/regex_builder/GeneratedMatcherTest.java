@@ -0,0 +1,106 @@
+package com.github.sgreben.regex_builder;
+
+import static com.github.sgreben.regex_builder.Re.capture;
+import static com.github.sgreben.regex_builder.Re.repeat;
+import static com.github.sgreben.regex_builder.Re.repeat1;
+import static com.github.sgreben.regex_builder.Re.sequence;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import org.junit.Test;
+import com.github.sgreben.regex_builder.compiler.CompileOptions;
+import com.github.sgreben.regex_builder.compiler.Engine;
+import com.github.sgreben.regex_builder.engine.MatchEngine;
+
+public class GeneratedMatcherTest {
+	private static final CompileOptions generated = CompileOptions.defaults().withoutCache()
+			.withEngine(Engine.GENERATED);
+	private static final CompileOptions backtracking = CompileOptions.defaults().withoutCache()
+			.withEngine(Engine.BACKTRACKING);
+
+	@Test
+	public void logLinesAreParsedByAGeneratedClass() {
+		Expression token = repeat1(CharClass.nonWhitespaceChar());
+		CaptureGroup ip = capture(token);
+		CaptureGroup user = capture(token);
+		CaptureGroup dateTime = capture(sequence(repeat1(CharClass.union(CharClass.wordChar(), ':', '/')),
+				CharClass.whitespaceChar(), CharClass.oneOf("+\\-"), repeat(CharClass.digit(), 4)));
+		CaptureGroup request = capture(sequence(capture(token), ' ', capture(token), ' ',
+				capture(repeat1(CharClass.noneOf(" \t\n\u000b\f\r\"")))));
+		CaptureGroup size = capture(repeat1(CharClass.digit()));
+		Expression line = sequence(ip, " - ", user, " [", dateTime, "] \"", request, "\" ",
+				capture(repeat(CharClass.digit(), 3)), ' ', size);
+		Pattern p = Pattern.compile(line, 0, generated);
+		assertEquals("GENERATED", p.engineName());
+		assertNotNull(p.generated());
+		assertNotSame(GeneratedMatcherTest.class.getClassLoader(), p.generated().getClass().getClassLoader());
+		assertNotSame(p.generated().getClass(), Pattern.compile(line, 0, generated).generated().getClass());
+
+		Matcher m = p.matcher("127.0.0.1 - - [21/Jul/2014:9:55:27 -0800] \"GET /home.html HTTP/1.1\" 200 2048");
+		assertTrue(m.matches());
+		assertEquals("127.0.0.1", m.group(ip));
+		assertEquals("-", m.group(user));
+		assertEquals("21/Jul/2014:9:55:27 -0800", m.group(dateTime));
+		assertEquals("GET /home.html HTTP/1.1", m.group(request));
+		assertEquals("2048", m.group(size));
+		assertFalse(p.matcher("127.0.0.1 - - [21/Jul/2014:9:55:27 -0800] \"GET /home.html\" 200 2048").matches());
+	}
+
+	@Test
+	public void largeClassesAreSearched() {
+		// More ranges than are tested one after another.
+		CaptureGroup word = capture(repeat1(CharClass.oneOf("acegikmoqsuwy02468")));
+		Pattern p = Pattern.compile(sequence(word, "=", capture(repeat1(CharClass.noneOf(";")))), 0, generated);
+		assertNotNull(p.generated());
+		Matcher m = p.matcher("yoga=\u00e9t\u00e9");
+		assertTrue(m.matches());
+		assertEquals("yoga", m.group(word));
+		assertFalse(p.matcher("yogb=1").matches());
+		assertFalse(p.matcher("yoga=1;").matches());
+		assertEquals(MatchEngine.UNKNOWN, p.generated().matches("yoga=\uD83D\uDE00", new int[8]));
+		assertTrue(p.matcher("yoga=\uD83D\uDE00").matches());
+	}
+
+	@Test
+	public void onlyOnePassExpressionsAreGenerated() {
+		assertNull(Pattern.compile(sequence(capture(repeat1("a")), "a"), 0, generated).generated());
+		CaptureGroup key = capture(repeat1(CharClass.range('a', 'z')));
+		Pattern p = Pattern.compile(sequence(Re.beginLine(), key, "=", capture(repeat(CharClass.digit())), Re.endLine()),
+				java.util.regex.Pattern.MULTILINE, generated);
+		assertNotNull(p.generated());
+		assertTrue(p.matcher("size=12").matches());
+		assertFalse(p.matcher("size=12\nx").matches());
+		Matcher m = p.matcher("size=12");
+		assertTrue(m.find());
+		assertEquals("size", m.group(key));
+	}
+
+	@Test
+	public void generated_matchesTheSameGroupsAsTheRegex() {
+		Random random = new Random(20);
+		int[] flagChoices = {0, java.util.regex.Pattern.MULTILINE, java.util.regex.Pattern.UNIX_LINES,
+				java.util.regex.Pattern.DOTALL, java.util.regex.Pattern.CASE_INSENSITIVE};
+		int built = 0;
+		for (int round = 0; round < 1000; round++) {
+			List<CaptureGroup> groups = new ArrayList<CaptureGroup>();
+			Expression expression = PikeVmTest.randomExpression(random, 3, groups);
+			int flags = flagChoices[random.nextInt(flagChoices.length)];
+			Pattern actual = Pattern.compile(expression, flags, generated);
+			if (actual.generated() == null) {
+				continue;
+			}
+			built++;
+			Pattern expected = Pattern.compile(expression, flags, backtracking);
+			for (int k = 0; k < 20; k++) {
+				PikeVmTest.assertSameGroups(expected, actual, groups, DfaTest.randomString(random, 12));
+			}
+		}
+		assertTrue(String.valueOf(built), built > 200);
+	}
+}
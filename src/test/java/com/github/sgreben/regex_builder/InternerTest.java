@@ -0,0 +1,89 @@
+package com.github.sgreben.regex_builder;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotEquals;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+import org.junit.After;
+import org.junit.Test;
+
+public class InternerTest {
+	@After
+	public void disableInterning() {
+		Interner.setEnabled(false);
+	}
+
+	@Test
+	public void structuralEquality_expressions() {
+		assertEquals(Re.word(), Re.word());
+		assertEquals(Re.word().hashCode(), Re.word().hashCode());
+		assertEquals(Re.sequence("a", Re.repeat(CharClass.digit(), 2, 4)),
+				Re.sequence("a", Re.repeat(CharClass.digit(), 2, 4)));
+		assertNotEquals(Re.repeat(CharClass.digit(), 2, 4), Re.repeat(CharClass.digit(), 2, 5));
+		assertNotEquals(Re.repeat1(CharClass.digit()), Re.repeat1Possessive(CharClass.digit()));
+		assertNotEquals(Re.string("a"), Re.string("b"));
+		assertNotEquals(Re.sequence("a", "b"), Re.sequence("a"));
+	}
+
+	@Test
+	public void structuralEquality_charClasses() {
+		assertEquals(CharClass.hexDigit(), CharClass.hexDigit());
+		assertEquals(CharClass.union(CharClass.digit(), "ab"), CharClass.union(CharClass.digit(), "ab"));
+		assertNotEquals(CharClass.oneOf("ab"), CharClass.noneOf("ab"));
+		assertNotEquals(CharClass.Posix.Alpha(), CharClass.Posix.Alnum());
+	}
+
+	@Test
+	public void captureGroups_keepIdentity() {
+		CaptureGroup a = Re.capture(Re.word());
+		CaptureGroup b = Re.capture(Re.word());
+		assertNotEquals(a, b);
+		assertEquals(Re.sequence(a, "x"), Re.sequence(a, "x"));
+		assertNotEquals(Re.sequence(a, "x"), Re.sequence(b, "x"));
+		assertNotEquals(Re.backReference(a), Re.backReference(b));
+	}
+
+	@Test
+	public void interning_disabledByDefault() {
+		assertFalse(Interner.isEnabled());
+		assertNotSame(Re.word(), Re.word());
+	}
+
+	@Test
+	public void interning_returnsCanonicalInstances() {
+		Interner.setEnabled(true);
+		assertSame(Re.word(), Re.word());
+		assertSame(CharClass.digit(), CharClass.digit());
+		assertSame(Re.string("GET"), Re.string("GET"));
+		Expression first = Re.sequence(Re.number(), "-", Re.word());
+		Expression second = Re.sequence(Re.number(), "-", Re.word());
+		assertSame(first, second);
+		assertSame(FluentRe.match(CharClass.digit()).repeat1().possessive().compile().pattern(),
+				FluentRe.match(CharClass.digit()).repeat1().possessive().compile().pattern());
+	}
+
+	@Test
+	public void interning_doesNotMergeCaptureGroups() {
+		Interner.setEnabled(true);
+		CaptureGroup a = Re.capture(Re.word());
+		CaptureGroup b = Re.capture(Re.word());
+		assertNotSame(a, b);
+		Pattern p = Pattern.compile(Re.sequence(a, ' ', b));
+		Matcher m = p.matcher("foo bar");
+		assertTrue(m.matches());
+		assertEquals("foo", m.group(a));
+		assertEquals("bar", m.group(b));
+	}
+
+	@Test
+	public void separateInterner() {
+		Interner interner = new Interner();
+		Expression a = Re.string("abc");
+		Expression b = Re.string("abc");
+		assertSame(a, interner.intern(a));
+		assertSame(a, interner.intern(b));
+		assertEquals(1, interner.size());
+	}
+}
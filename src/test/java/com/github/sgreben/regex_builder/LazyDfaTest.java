@@ -0,0 +1,90 @@
+package com.github.sgreben.regex_builder;
+
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import org.junit.Test;
+import com.github.sgreben.regex_builder.compiler.CompileOptions;
+import com.github.sgreben.regex_builder.compiler.Engine;
+import com.github.sgreben.regex_builder.engine.LazyDfa;
+
+public class LazyDfaTest {
+	private static final CompileOptions lazy = CompileOptions.defaults().withoutCache().withEngine(Engine.LAZY_DFA);
+	private static final Expression anyThenAnyChars = Re.sequence(Re.repeat(Re.anyCharacter()), "x",
+			Re.repeat(Re.anyCharacter(), 20));
+
+	@Test
+	public void lazyDfaHandlesExpressionsWithLargeDfas() {
+		assertNull(Pattern.compile(anyThenAnyChars, 0, lazy.withEngine(Engine.DFA)).dfa());
+		Pattern p = Pattern.compile(anyThenAnyChars, 0, lazy);
+		assertNotNull(p.dfa());
+		java.util.regex.Pattern expected = java.util.regex.Pattern.compile(p.pattern());
+		Random random = new Random(15);
+		for (int k = 0; k < 200; k++) {
+			DfaTest.assertSameMatches(expected, p, randomString(random, 60), random);
+		}
+		LazyDfa dfa = (LazyDfa) p.dfa();
+		assertTrue(dfa.stateCount() > 0);
+		assertTrue(String.valueOf(dfa.hitRate()), dfa.hitRate() > 0.5);
+	}
+
+	@Test
+	public void smallCachesAreClearedAndFallBackToTheNfa() {
+		Pattern p = Pattern.compile(anyThenAnyChars, 0, lazy.withDfaCacheLimit(10000));
+		java.util.regex.Pattern expected = java.util.regex.Pattern.compile(p.pattern());
+		Random random = new Random(16);
+		for (int k = 0; k < 50; k++) {
+			DfaTest.assertSameMatches(expected, p, randomString(random, 2000), random);
+		}
+		LazyDfa dfa = (LazyDfa) p.dfa();
+		assertTrue(dfa.cacheResets() > 0);
+		assertTrue(dfa.nfaFallbacks() > 0);
+	}
+
+	@Test
+	public void lazyDfa_findsTheSameMatchesAsTheRegex() {
+		int built = DfaTest.assertSameMatchesAsTheRegex(lazy, new Random(17), 300);
+		assertTrue(String.valueOf(built), built > 150);
+		DfaTest.assertSameMatchesAsTheRegex(lazy.withDfaCacheLimit(2000), new Random(18), 300);
+	}
+
+	@Test
+	public void matchersShareTheCacheAcrossThreads() throws Exception {
+		final Pattern p = Pattern.compile(anyThenAnyChars, 0, lazy);
+		final java.util.regex.Pattern expected = java.util.regex.Pattern.compile(p.pattern());
+		ExecutorService executor = Executors.newFixedThreadPool(4);
+		try {
+			List<Future<?>> futures = new ArrayList<Future<?>>();
+			for (int t = 0; t < 8; t++) {
+				final Random random = new Random(t);
+				futures.add(executor.submit(() -> {
+					for (int k = 0; k < 200; k++) {
+						DfaTest.assertSameMatches(expected, p, randomString(random, 200), random);
+					}
+				}));
+			}
+			for (Future<?> future : futures) {
+				future.get();
+			}
+		} finally {
+			executor.shutdown();
+		}
+		LazyDfa dfa = (LazyDfa) p.dfa();
+		assertTrue(String.valueOf(dfa.hitRate()), dfa.hitRate() > 0.5);
+	}
+
+	private static String randomString(Random random, int maxLength) {
+		StringBuilder sb = new StringBuilder();
+		int length = random.nextInt(maxLength + 1);
+		for (int i = 0; i < length; i++) {
+			sb.append("0123456789x\n".charAt(random.nextInt(12)));
+		}
+		return sb.toString();
+	}
+}
@@ -0,0 +1,169 @@
+package com.github.sgreben.regex_builder;
+
+import static com.github.sgreben.regex_builder.Re.capture;
+import static com.github.sgreben.regex_builder.Re.repeat;
+import static com.github.sgreben.regex_builder.Re.repeat1;
+import static com.github.sgreben.regex_builder.Re.sequence;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+import static org.junit.Assume.assumeNotNull;
+import java.io.File;
+import java.io.IOException;
+import java.lang.reflect.Method;
+import java.net.URL;
+import java.net.URLClassLoader;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import javax.tools.JavaCompiler;
+import javax.tools.ToolProvider;
+import org.junit.Test;
+import com.github.sgreben.regex_builder.codegen.GenerateMatcher;
+import com.github.sgreben.regex_builder.codegen.MatcherSourceGenerator;
+import com.github.sgreben.regex_builder.compiler.CompileOptions;
+import com.github.sgreben.regex_builder.compiler.Engine;
+
+public class MatcherSourceGeneratorTest {
+	private static final CompileOptions backtracking = CompileOptions.defaults().withoutCache()
+			.withEngine(Engine.BACKTRACKING);
+
+	static class Patterns {
+		static final CaptureGroup KEY = capture(repeat1(CharClass.range('a', 'z')));
+		static final CaptureGroup value = capture(repeat(CharClass.digit()));
+		static final CaptureGroup WORD = capture(repeat1(CharClass.wordChar()));
+
+		@GenerateMatcher("KeyValueMatcher")
+		static final Expression KEY_VALUE = sequence(KEY, "=", value);
+
+		// More ranges than are tested one after another: searched.
+		@GenerateMatcher("SparseMatcher")
+		static final Expression SPARSE = repeat1(CharClass.oneOf("acegikmoqsuwy"));
+
+		@GenerateMatcher(value = "RepeatedWordMatcher", flags = java.util.regex.Pattern.CASE_INSENSITIVE)
+		static Expression repeatedWord() {
+			return sequence(WORD, " ", Re.backReference(WORD));
+		}
+	}
+
+	@Test
+	public void annotatedExpressionsBecomeClasses() throws Exception {
+		Map<String, String> sources = MatcherSourceGenerator.generate(Patterns.class);
+		assertEquals(3, sources.size());
+		assertTrue(sources.get("KeyValueMatcher").contains("switch (state)"));
+		// Not one-pass: matched with java.util.regex.
+		assertTrue(sources.get("RepeatedWordMatcher").contains("return -2;"));
+		ClassLoader loader = compile(sources);
+
+		Class<?> keyValue = loader.loadClass("com.github.sgreben.regex_builder.KeyValueMatcher");
+		Object m = keyValue.getMethod("match", CharSequence.class).invoke(null, "size=12");
+		assertNotNull(m);
+		assertEquals("size", keyValue.getMethod("key").invoke(m));
+		assertEquals("12", keyValue.getMethod("value").invoke(m));
+		assertEquals("size=12", keyValue.getMethod("group").invoke(m));
+		assertNull(keyValue.getMethod("match", CharSequence.class).invoke(null, "size=1x"));
+		assertEquals(Boolean.TRUE, keyValue.getMethod("matches", CharSequence.class).invoke(null, "size="));
+		m = keyValue.getMethod("find", CharSequence.class, int.class).invoke(null, "a b=2", 0);
+		assertEquals(2, keyValue.getMethod("start").invoke(m));
+
+		Method sparse = loader.loadClass("com.github.sgreben.regex_builder.SparseMatcher").getMethod("matches",
+				CharSequence.class);
+		assertEquals(Boolean.TRUE, sparse.invoke(null, "yoga"));
+		assertEquals(Boolean.FALSE, sparse.invoke(null, "yogb"));
+
+		Class<?> repeatedWord = loader.loadClass("com.github.sgreben.regex_builder.RepeatedWordMatcher");
+		m = repeatedWord.getMethod("match", CharSequence.class).invoke(null, "the THE");
+		assertEquals("the", repeatedWord.getMethod("word").invoke(m));
+		try {
+			repeatedWord.getMethod("key");
+			fail();
+		} catch (NoSuchMethodException e) {
+			// expected: KEY is not in the expression
+		}
+	}
+
+	@Test
+	public void generatedScans_matchTheSameGroupsAsTheRegex() throws Exception {
+		Random random = new Random(21);
+		int[] flagChoices = {0, java.util.regex.Pattern.MULTILINE, java.util.regex.Pattern.UNIX_LINES,
+				java.util.regex.Pattern.DOTALL, java.util.regex.Pattern.CASE_INSENSITIVE};
+		Map<String, String> sources = new LinkedHashMap<String, String>();
+		List<Pattern> patterns = new ArrayList<Pattern>();
+		List<List<CaptureGroup>> groupLists = new ArrayList<List<CaptureGroup>>();
+		for (int round = 0; sources.size() < 80; round++) {
+			List<CaptureGroup> groups = new ArrayList<CaptureGroup>();
+			Expression expression = PikeVmTest.randomExpression(random, 3, groups);
+			int flags = flagChoices[random.nextInt(flagChoices.length)];
+			if (Pattern.compile(expression, flags, backtracking.withEngine(Engine.ONE_PASS)).onePass() == null) {
+				continue;
+			}
+			String name = "Random" + round;
+			sources.put(name, MatcherSourceGenerator.generate("com.github.sgreben.regex_builder", name, expression,
+					flags, Collections.<String, CaptureGroup>emptyMap(), name));
+			patterns.add(Pattern.compile(expression, flags, backtracking));
+			groupLists.add(groups);
+		}
+		ClassLoader loader = compile(sources);
+		int p = 0;
+		for (String name : sources.keySet()) {
+			Class<?> type = loader.loadClass("com.github.sgreben.regex_builder." + name);
+			Method match = type.getMethod("match", CharSequence.class);
+			Method start = type.getMethod("start", int.class);
+			Method end = type.getMethod("end", int.class);
+			Pattern expected = patterns.get(p);
+			List<CaptureGroup> groups = groupLists.get(p++);
+			for (int k = 0; k < 30; k++) {
+				String input = DfaTest.randomString(random, 12);
+				Matcher e = expected.matcher(input);
+				Object a = match.invoke(null, input);
+				String context = expected.pattern() + " on " + input;
+				assertEquals(context, e.matches(), a != null);
+				if (a == null) {
+					continue;
+				}
+				for (CaptureGroup group : groups) {
+					int index = expected.groupIndex().get(group);
+					assertEquals(context, e.start(group), start.invoke(a, index));
+					assertEquals(context, e.end(group), end.invoke(a, index));
+				}
+			}
+		}
+	}
+
+	@Test
+	public void constantNamesBecomeCamelCase() {
+		Map<String, String> sources = MatcherSourceGenerator.generate(Patterns.class);
+		assertTrue(sources.get("KeyValueMatcher").contains("public String key()"));
+		assertFalse(sources.get("KeyValueMatcher").contains("public String word()"));
+	}
+
+	/**
+	 * Compiles the sources, in this test's package, to a temporary directory.
+	 */
+	private static ClassLoader compile(Map<String, String> sources) throws IOException {
+		JavaCompiler compiler = ToolProvider.getSystemJavaCompiler();
+		assumeNotNull(compiler);
+		File directory = Files.createTempDirectory("matchers").toFile();
+		List<String> arguments = new ArrayList<String>();
+		arguments.add("-classpath");
+		arguments.add(System.getProperty("java.class.path"));
+		arguments.add("-d");
+		arguments.add(directory.getPath());
+		for (Map.Entry<String, String> source : sources.entrySet()) {
+			File file = new File(directory, source.getKey() + ".java");
+			Files.write(file.toPath(), source.getValue().getBytes(StandardCharsets.UTF_8));
+			arguments.add(file.getPath());
+		}
+		assertEquals(0, compiler.run(null, null, null, arguments.toArray(new String[0])));
+		return new URLClassLoader(new URL[] {directory.toURI().toURL()},
+				MatcherSourceGeneratorTest.class.getClassLoader());
+	}
+}
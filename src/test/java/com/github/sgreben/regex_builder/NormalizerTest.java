@@ -0,0 +1,104 @@
+package com.github.sgreben.regex_builder;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import org.junit.Test;
+import com.github.sgreben.regex_builder.compiler.CompileOptions;
+
+public class NormalizerTest {
+	private static final CompileOptions normalized = CompileOptions.defaults().withoutCache().withNormalization(true)
+			.withPossessification(true);
+
+	private static String pattern(Expression expression) {
+		return Pattern.compile(expression, 0, normalized).pattern();
+	}
+
+	private static String unnormalized(Expression expression) {
+		return Pattern.compile(expression, 0, normalized.withNormalization(false).withPossessification(false)).pattern();
+	}
+
+	@Test
+	public void adjacentLiterals_areMerged() {
+		assertEquals("(\\Qabc\\E)", pattern(Re.sequence("a", Re.sequence("b", "c"))));
+	}
+
+	@Test
+	public void singleAtomOperands_areNotGrouped() {
+		assertEquals("(\\d++)", pattern(Re.repeat1(CharClass.digit())));
+		assertEquals("(\\Qa\\E*+)", pattern(Re.repeat("a")));
+		assertEquals("((?:\\Qab\\E)*+)", pattern(Re.repeat("ab")));
+		assertEquals("((?:\\d++)?)", pattern(Re.optional(Re.repeat1(CharClass.digit()))));
+	}
+
+	@Test
+	public void singleCharacterChoice_becomesCharClass() {
+		assertEquals("([ab])", pattern(Re.choice("a", "b")));
+		assertEquals("([0-9ab])", pattern(Re.choice("a", "b", CharClass.digit())));
+		assertEquals("((?:\\Qxy\\E|[ab]))", pattern(Re.choice("xy", "a", "b")));
+		assertTrue(Pattern.compile(Re.choice(".", "b"), 0, normalized).matcher(".").matches());
+		assertFalse(Pattern.compile(Re.choice(".", "b"), 0, normalized).matcher("x").matches());
+	}
+
+	@Test
+	public void impossibleBranches_areDropped() {
+		Expression empty = Re.charClass(CharClass.complement(CharClass.anyChar()));
+		assertEquals("(\\Qa\\E)", pattern(Re.choice(Re.sequence("x", empty), "a")));
+		Expression disjoint = Re.charClass(CharClass.intersection(CharClass.range('a', 'f'), CharClass.oneOf("xyz")));
+		assertEquals("(\\Qb\\E)", pattern(Re.choice(disjoint, "b")));
+		assertEquals("((?!))", pattern(Re.choice(empty)));
+	}
+
+	@Test
+	public void captureGroups_arePreserved() {
+		CaptureGroup word = Re.capture(Re.sequence(Re.sequence("a", "b"), Re.repeat1(CharClass.wordChar())));
+		CaptureGroup number = Re.capture(Re.repeat1(CharClass.digit()));
+		Pattern p = Pattern.compile(Re.sequence(word, Re.choice("-", "+"), number, Re.backReference(word)), 0,
+				normalized);
+		Matcher m = p.matcher("abc+12abc");
+		assertTrue(m.matches());
+		assertEquals("abc", m.group(word));
+		assertEquals("12", m.group(number));
+	}
+
+	@Test
+	public void anyCharacter_isNotMergedIntoABracket() {
+		Expression digitOrAny = Re.choice(Re.charClass(CharClass.digit()), Re.anyCharacter());
+		for (int flags : new int[] {0, java.util.regex.Pattern.CASE_INSENSITIVE, java.util.regex.Pattern.COMMENTS}) {
+			Pattern p = Pattern.compile(digitOrAny, flags, normalized);
+			assertTrue(p.pattern(), p.matcher("x").matches());
+			assertTrue(p.pattern(), p.matcher("7").matches());
+		}
+		// Under CASE_INSENSITIVE classes are not evaluated: only the literals are merged.
+		assertEquals("((?:[ab]|\\d))", Pattern.compile(Re.choice("a", "b", CharClass.digit()),
+				java.util.regex.Pattern.CASE_INSENSITIVE, normalized).pattern());
+	}
+
+	@Test
+	public void quantifiedCaptureGroups_keepTheirWrapper() {
+		CaptureGroup notA = Re.capture(CharClass.noneOf("a"));
+		Pattern p = Pattern.compile(Re.repeat(Re.repeat1(notA), 2), 0, normalized);
+		java.util.regex.Matcher expected = java.util.regex.Pattern.compile("(?:(?:([^a]))+){2}").matcher("1b1b");
+		assertTrue(expected.matches());
+		Matcher m = p.matcher("1b1b");
+		assertTrue(m.matches());
+		assertEquals(expected.group(1), m.group(notA));
+		assertEquals("b", m.group(notA));
+
+		CaptureGroup empty = Re.capture(Re.optional("x"));
+		m = Pattern.compile(Re.sequence(Re.repeat(empty), "y"), 0, normalized).matcher("y");
+		assertTrue(m.matches());
+		expected = java.util.regex.Pattern.compile("(?:(x?))*y").matcher("y");
+		assertTrue(expected.matches());
+		assertEquals(expected.group(1), m.group(empty));
+		assertEquals("", m.group(empty));
+	}
+
+	@Test
+	public void normalizationCanBeDisabled() {
+		assertEquals("((?:\\d)+)", unnormalized(Re.repeat1(CharClass.digit())));
+		// Normalization is opt-in.
+		assertEquals(unnormalized(Re.choice("a", "b")), Pattern.compile(Re.choice("a", "b"), 0).pattern());
+		assertEquals("((?:\\Qa\\E|\\Qb\\E))", unnormalized(Re.choice("a", "b")));
+	}
+}
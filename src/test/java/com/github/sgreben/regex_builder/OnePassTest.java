@@ -0,0 +1,112 @@
+package com.github.sgreben.regex_builder;
+
+import static com.github.sgreben.regex_builder.Re.capture;
+import static com.github.sgreben.regex_builder.Re.repeat;
+import static com.github.sgreben.regex_builder.Re.repeat1;
+import static com.github.sgreben.regex_builder.Re.sequence;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import org.junit.Test;
+import com.github.sgreben.regex_builder.compiler.CompileOptions;
+import com.github.sgreben.regex_builder.compiler.Engine;
+
+public class OnePassTest {
+	private static final CompileOptions onePass = CompileOptions.defaults().withoutCache().withEngine(Engine.ONE_PASS);
+	private static final CompileOptions backtracking = CompileOptions.defaults().withoutCache()
+			.withEngine(Engine.BACKTRACKING);
+
+	@Test
+	public void logLinesAreParsedInOnePass() {
+		Expression token = repeat1(CharClass.nonWhitespaceChar());
+		CaptureGroup ip = capture(token);
+		CaptureGroup user = capture(token);
+		CaptureGroup dateTime = capture(sequence(repeat1(CharClass.union(CharClass.wordChar(), ':', '/')),
+				CharClass.whitespaceChar(), CharClass.oneOf("+\\-"), repeat(CharClass.digit(), 4)));
+		CaptureGroup method = capture(token);
+		CaptureGroup request = capture(token);
+		CaptureGroup protocol = capture(repeat1(CharClass.noneOf(" \t\n\u000b\f\r\"")));
+		CaptureGroup responseCode = capture(repeat(CharClass.digit(), 3));
+		CaptureGroup size = capture(repeat1(CharClass.digit()));
+		Pattern p = Pattern.compile(sequence(ip, " - ", user, " [", dateTime, "] \"", method, ' ', request, ' ',
+				protocol, "\" ", responseCode, ' ', size), 0, onePass);
+		assertNotNull(p.onePass());
+		assertFalse(p.onePass().anchored());
+
+		Matcher m = p.matcher("127.0.0.1 - - [21/Jul/2014:9:55:27 -0800] \"GET /home.html HTTP/1.1\" 200 2048");
+		assertTrue(m.matches());
+		assertEquals("127.0.0.1", m.group(ip));
+		assertEquals("-", m.group(user));
+		assertEquals("21/Jul/2014:9:55:27 -0800", m.group(dateTime));
+		assertEquals("GET", m.group(method));
+		assertEquals("/home.html", m.group(request));
+		assertEquals("HTTP/1.1", m.group(protocol));
+		assertEquals("200", m.group(responseCode));
+		assertEquals(72, m.start(size));
+		assertFalse(p.matcher("127.0.0.1 - - [21/Jul/2014:9:55:27 -0800] \"GET /home.html HTTP/1.1\" 200 2048 ").matches());
+	}
+
+	@Test
+	public void ambiguousExpressionsAreNotOnePass() {
+		// "\S" also matches the closing quote.
+		Expression token = repeat1(CharClass.nonWhitespaceChar());
+		assertNull(Pattern.compile(sequence(capture(token), "\""), 0, onePass).onePass());
+		assertNull(Pattern.compile(sequence(capture(repeat1("a")), "a"), 0, onePass).onePass());
+		assertNull(Pattern.compile(sequence(capture(repeat(CharClass.anyChar())), "x"), 0, onePass).onePass());
+		assertNotNull(Pattern.compile(sequence(capture(repeat(CharClass.noneOf("x"))), "x"), 0, onePass).onePass());
+	}
+
+	@Test
+	public void anchoredExpressionsAreAlsoFound() {
+		CaptureGroup key = capture(repeat1(CharClass.range('a', 'z')));
+		CaptureGroup value = capture(repeat(CharClass.digit()));
+		Pattern p = Pattern.compile(sequence(CharClass.beginInput(), key, "=", value), 0, onePass);
+		assertTrue(p.onePass().anchored());
+		Matcher m = p.matcher("size=12;rest");
+		assertTrue(m.find());
+		assertEquals("size", m.group(key));
+		assertEquals("12", m.group(value));
+		assertFalse(m.find());
+		assertFalse(p.matcher(";size=12").find());
+	}
+
+	@Test
+	public void lowerPriorityMatchesAreKeptUntilTheScanFails() {
+		// The loop is preferred to the match after each "ab", and taken back at "aba".
+		CaptureGroup first = capture("x");
+		Pattern p = Pattern.compile(sequence(CharClass.beginInput(), first, repeat("ab")), 0, onePass);
+		assertNotNull(p.onePass());
+		Matcher m = p.matcher("xababa");
+		assertTrue(m.find());
+		assertEquals("xabab", m.group());
+		assertEquals("x", m.group(first));
+	}
+
+	@Test
+	public void onePass_findsTheSameGroupsAsTheRegex() {
+		Random random = new Random(17);
+		int[] flagChoices = {0, java.util.regex.Pattern.MULTILINE, java.util.regex.Pattern.UNIX_LINES,
+				java.util.regex.Pattern.DOTALL};
+		int built = 0;
+		for (int round = 0; round < 1500; round++) {
+			List<CaptureGroup> groups = new ArrayList<CaptureGroup>();
+			Expression expression = PikeVmTest.randomExpression(random, 3, groups);
+			int flags = flagChoices[random.nextInt(flagChoices.length)];
+			Pattern actual = Pattern.compile(expression, flags, onePass);
+			if (actual.onePass() == null) {
+				continue;
+			}
+			built++;
+			Pattern expected = Pattern.compile(expression, flags, backtracking);
+			for (int k = 0; k < 20; k++) {
+				PikeVmTest.assertSameGroups(expected, actual, groups, DfaTest.randomString(random, 12));
+			}
+		}
+		assertTrue(String.valueOf(built), built > 300);
+	}
+}
@@ -0,0 +1,101 @@
+package com.github.sgreben.regex_builder;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+import org.junit.Test;
+import com.github.sgreben.regex_builder.compiler.CompileOptions;
+import com.github.sgreben.regex_builder.compiler.PatternCache;
+
+public class PatternCacheTest {
+	@Test
+	public void structurallyIdenticalTrees_shareCompiledPattern() {
+		PatternCache cache = new PatternCache(16);
+		CompileOptions options = CompileOptions.defaults().withCache(cache);
+		Pattern p1 = Pattern.compile(Re.sequence(Re.number(), "-", Re.word()), 0, options);
+		Pattern p2 = Pattern.compile(Re.sequence(Re.number(), "-", Re.word()), 0, options);
+		assertSame(p1, p2);
+		assertEquals(1, cache.hitCount());
+		assertEquals(1, cache.missCount());
+		assertEquals(1, cache.size());
+	}
+
+	@Test
+	public void sameTreeDifferentGroups_getOwnGroupIndex() {
+		PatternCache cache = new PatternCache(16);
+		CompileOptions options = CompileOptions.defaults().withCache(cache);
+		CaptureGroup first = Re.capture(Re.number());
+		CaptureGroup second = Re.capture(Re.number());
+		Pattern p1 = Pattern.compile(first, 0, options);
+		Pattern p2 = Pattern.compile(second, 0, options);
+		assertNotSame(p1, p2);
+		assertEquals(0, cache.hitCount());
+		Matcher m = p2.matcher("42");
+		assertTrue(m.matches());
+		assertEquals("42", m.group(second));
+		// Trees rebuilt around the same groups share the pattern.
+		Pattern p3 = Pattern.compile(Re.sequence("id=", second), 0, options);
+		assertSame(p3, Pattern.compile(Re.sequence("id=", second), 0, options));
+		assertEquals(1, cache.hitCount());
+	}
+
+	@Test
+	public void optionsArePartOfTheKey() {
+		PatternCache cache = new PatternCache(16);
+		CompileOptions options = CompileOptions.defaults().withCache(cache);
+		Expression digits = Re.repeat1(CharClass.digit());
+		Pattern plain = Pattern.compile(digits, 0, options);
+		Pattern normalized = Pattern.compile(digits, 0, options.withNormalization(true).withPossessification(true));
+		assertNotSame(plain, normalized);
+		assertEquals("((?:\\d)+)", plain.pattern());
+		assertEquals("(\\d++)", normalized.pattern());
+		// Options are compared by value, whatever their cache.
+		assertSame(normalized, Pattern.compile(digits, 0, CompileOptions.defaults().withNormalization(true)
+				.withPossessification(true).withCache(cache)));
+		assertEquals(1, cache.hitCount());
+	}
+
+	@Test
+	public void flagsArePartOfTheKey() {
+		PatternCache cache = new PatternCache(16);
+		CompileOptions options = CompileOptions.defaults().withCache(cache);
+		Pattern p1 = Pattern.compile(Re.string("abc"), 0, options);
+		Pattern p2 = Pattern.compile(Re.string("abc"), java.util.regex.Pattern.CASE_INSENSITIVE, options);
+		assertNotSame(p1, p2);
+		assertEquals(2, cache.size());
+		assertTrue(p2.matcher("ABC").matches());
+	}
+
+	@Test
+	public void leastRecentlyUsedEntryIsEvicted() {
+		PatternCache cache = new PatternCache(2);
+		CompileOptions options = CompileOptions.defaults().withCache(cache);
+		Pattern.compile(Re.string("a"), 0, options);
+		Pattern.compile(Re.string("b"), 0, options);
+		Pattern.compile(Re.string("a"), 0, options);
+		Pattern.compile(Re.string("c"), 0, options);
+		assertEquals(1, cache.evictionCount());
+		assertEquals(2, cache.size());
+		Pattern.compile(Re.string("a"), 0, options);
+		assertEquals(2, cache.hitCount());
+	}
+
+	@Test
+	public void weakValues_stillShareLivePatterns() {
+		PatternCache cache = new PatternCache(16, true);
+		CompileOptions options = CompileOptions.defaults().withCache(cache);
+		Pattern p1 = Pattern.compile(Re.word(), 0, options);
+		Pattern p2 = Pattern.compile(Re.word(), 0, options);
+		assertSame(p1, p2);
+		assertTrue(cache.hasWeakValues());
+	}
+
+	@Test
+	public void cachingCanBeDisabled() {
+		CompileOptions options = CompileOptions.defaults().withoutCache();
+		Pattern p1 = Pattern.compile(Re.word(), 0, options);
+		Pattern p2 = Pattern.compile(Re.word(), 0, options);
+		assertNotSame(p1, p2);
+	}
+}
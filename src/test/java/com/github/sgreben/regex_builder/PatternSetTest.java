@@ -0,0 +1,98 @@
+package com.github.sgreben.regex_builder;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.List;
+import java.util.Random;
+import org.junit.Test;
+
+public class PatternSetTest {
+	@Test
+	public void literalAutomaton_findsOverlappingLiterals() {
+		LiteralAutomaton automaton = new LiteralAutomaton(Arrays.asList("he", "she", "his", "hers"));
+		List<String> found = new ArrayList<String>();
+		automaton.scan("ushers", 0, (literal, end) -> found.add(literal + "@" + end));
+		assertEquals(Arrays.asList("1@4", "0@4", "3@6"), found);
+		found.clear();
+		assertFalse(automaton.scan("ahishe", 1, (literal, end) -> found.add(literal + "@" + end) && false));
+		assertEquals(Arrays.asList("2@4"), found);
+	}
+
+	@Test
+	public void modes_reportMatchingPatterns() {
+		PatternSet set = PatternSet.compile(Arrays.asList(
+				Re.sequence("ERROR ", Re.repeat1(CharClass.digit())),
+				Re.sequence(Re.repeat1(CharClass.wordChar()), "@", Re.repeat1(CharClass.wordChar())),
+				Re.repeat1(CharClass.digit()),
+				Re.sequence("WARN", CharClass.endInput())));
+		String input = "user@host: ERROR 42";
+		assertTrue(set.findAny(input));
+		assertArrayEquals(new int[] {0, 1, 2}, set.findAllIds(input));
+		BitSet expected = new BitSet();
+		expected.set(0, 3);
+		assertEquals(expected, set.findAll(input));
+		assertEquals("1:0-9", set.findLeftmost(input).toString());
+		assertEquals("1:1-9", set.findLeftmost(input, 1).toString());
+		assertEquals("0:11-19", set.findLeftmost(input, 10).toString());
+		assertEquals("2:17-19", set.findLeftmost(input, 12).toString());
+		assertNull(set.findLeftmost(input, 19));
+		assertFalse(set.findAny("nothing here"));
+		assertArrayEquals(new int[] {3}, set.findAllIds("WARN"));
+	}
+
+	@Test
+	public void leftmostTies_goToLowestId() {
+		PatternSet set = PatternSet.compile(Arrays.asList(Re.string("abc"), Re.string("ab"), Re.string("b")));
+		PatternSet.Match match = set.findLeftmost("xabc");
+		assertEquals(0, match.getPatternId());
+		assertEquals(1, match.getStart());
+		assertEquals(4, match.getEnd());
+	}
+
+	@Test
+	public void randomSets_agreeWithSequentialPatterns() {
+		Random random = new Random(13);
+		Expression[] parts = {Re.string("ab"), Re.string("ba"), Re.string("c"), Re.sequence(CharClass.oneOf("ab")),
+				Re.repeat1(CharClass.oneOf("ac")), Re.optional("b"), Re.string("bcb")};
+		for (int round = 0; round < 200; round++) {
+			List<Expression> expressions = new ArrayList<Expression>();
+			for (int i = 1 + random.nextInt(12); i > 0; i--) {
+				Expression[] sequence = new Expression[1 + random.nextInt(3)];
+				for (int j = 0; j < sequence.length; j++) {
+					sequence[j] = parts[random.nextInt(parts.length)];
+				}
+				expressions.add(Re.sequence(sequence));
+			}
+			PatternSet set = PatternSet.compile(expressions);
+			StringBuilder input = new StringBuilder();
+			for (int i = random.nextInt(20); i > 0; i--) {
+				input.append("abcd".charAt(random.nextInt(4)));
+			}
+			int from = random.nextInt(input.length() + 1);
+			BitSet expected = new BitSet();
+			int leftmostId = -1;
+			int leftmostStart = -1;
+			for (int id = 0; id < set.size(); id++) {
+				java.util.regex.Matcher m = java.util.regex.Pattern.compile(set.pattern(id).toString()).matcher(input);
+				if (m.find()) {
+					expected.set(id);
+				}
+				if (m.find(from) && (leftmostId < 0 || m.start() < leftmostStart)) {
+					leftmostId = id;
+					leftmostStart = m.start();
+				}
+			}
+			assertEquals(expected, set.findAll(input));
+			assertEquals(!expected.isEmpty(), set.findAny(input));
+			PatternSet.Match leftmost = set.findLeftmost(input, from);
+			assertEquals(leftmostId, leftmost == null ? -1 : leftmost.getPatternId());
+			assertEquals(leftmostStart, leftmost == null ? -1 : leftmost.getStart());
+		}
+	}
+}
@@ -0,0 +1,139 @@
+package com.github.sgreben.regex_builder;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+import org.junit.Test;
+import com.github.sgreben.regex_builder.engine.Dfa;
+
+public class PatternSnapshotTest {
+	private static final CaptureGroup user = Re.capture(Re.repeat1(CharClass.range('a', 'z')));
+	private static final CaptureGroup host = Re.capture(Re.repeat1(CharClass.range('a', 'z')));
+	private static final Expression email = Re.sequence(user, "@", host, ".com");
+
+	@Test
+	public void mappedSnapshotsMatchInPlace() throws IOException {
+		CaptureGroup word = Re.capture(Re.repeat1(CharClass.wordChar()));
+		Expression repeatedWord = Re.sequence(word, " ", Re.backReference(word));
+		Path file = Files.createTempFile("patterns", ".snapshot");
+		try {
+			OutputStream out = Files.newOutputStream(file);
+			try {
+				PatternSnapshot.write(Arrays.asList(email, repeatedWord), 0, out);
+			} finally {
+				out.close();
+			}
+			PatternSnapshot snapshot = PatternSnapshot.map(file);
+			assertEquals(2, snapshot.size());
+			assertEquals(Pattern.compile(email).pattern(), snapshot.regex(0));
+			assertEquals(0, snapshot.flags(1));
+			// Back references have no DFA: matched with java.util.regex.
+			assertNull(snapshot.dfa(1));
+
+			Pattern p = snapshot.pattern(0, email);
+			assertNotNull(p.dfa());
+			Matcher m = p.matcher("mail x@y.org and bob@example.com");
+			assertTrue(m.find());
+			assertEquals("bob@example.com", m.group());
+			assertEquals("bob", m.group(user));
+			assertEquals("example", m.group(host));
+			assertFalse(m.find());
+
+			m = snapshot.pattern(1, repeatedWord).matcher("the the");
+			assertTrue(m.matches());
+			assertEquals("the", m.group(word));
+		} finally {
+			Files.delete(file);
+		}
+	}
+
+	@Test
+	public void groupsAreBoundInTheOrderOfTheExpression() throws IOException {
+		PatternSnapshot snapshot = PatternSnapshot.read(ByteBuffer.wrap(write(email)));
+		// An equal expression built again.
+		CaptureGroup otherUser = Re.capture(Re.repeat1(CharClass.range('a', 'z')));
+		CaptureGroup otherHost = Re.capture(Re.repeat1(CharClass.range('a', 'z')));
+		Matcher m = snapshot.pattern(0, Re.sequence(otherUser, "@", otherHost, ".com")).matcher("bob@example.com");
+		assertTrue(m.matches());
+		assertEquals("example", m.group(otherHost));
+		try {
+			snapshot.pattern(0, Re.sequence(otherUser, "@"));
+			fail();
+		} catch (IllegalArgumentException e) {
+			// expected: one group instead of two
+		}
+		assertTrue(snapshot.pattern(0).matcher("bob@example.com").matches());
+	}
+
+	@Test
+	public void otherBuffersAreRejected() throws IOException {
+		byte[] bytes = write(email);
+		bytes[7] = 2;
+		try {
+			PatternSnapshot.read(ByteBuffer.wrap(bytes));
+			fail();
+		} catch (IllegalArgumentException e) {
+			assertTrue(e.getMessage().contains("version"));
+		}
+		try {
+			PatternSnapshot.read(ByteBuffer.wrap(new byte[16]));
+			fail();
+		} catch (IllegalArgumentException e) {
+			// expected
+		}
+		byte[] tables = PatternSnapshot.read(ByteBuffer.wrap(write(email))).dfa(0).tables();
+		try {
+			Dfa.map(ByteBuffer.wrap(Arrays.copyOf(tables, tables.length - 4)));
+			fail();
+		} catch (IllegalArgumentException e) {
+			// expected
+		}
+	}
+
+	@Test
+	public void snapshotPatterns_findTheSameMatchesAsTheRegex() throws IOException {
+		Random random = new Random(22);
+		int[] flagChoices = {0, java.util.regex.Pattern.MULTILINE, java.util.regex.Pattern.UNIX_LINES,
+				java.util.regex.Pattern.DOTALL};
+		for (int flags : flagChoices) {
+			List<Expression> expressions = new ArrayList<Expression>();
+			for (int i = 0; i < 100; i++) {
+				expressions.add(DfaTest.randomExpression(random, 3));
+			}
+			ByteArrayOutputStream out = new ByteArrayOutputStream();
+			PatternSnapshot.write(expressions, flags, out);
+			PatternSnapshot snapshot = PatternSnapshot.read(ByteBuffer.wrap(out.toByteArray()));
+			int mapped = 0;
+			for (int id = 0; id < snapshot.size(); id++) {
+				Pattern actual = snapshot.pattern(id, expressions.get(id));
+				if (actual.dfa() != null) {
+					mapped++;
+				}
+				java.util.regex.Pattern expected = java.util.regex.Pattern.compile(actual.pattern(), flags);
+				for (int k = 0; k < 20; k++) {
+					DfaTest.assertSameMatches(expected, actual, DfaTest.randomString(random, 12), random);
+				}
+			}
+			assertTrue(String.valueOf(mapped), mapped > 30);
+		}
+	}
+
+	private static byte[] write(Expression expression) throws IOException {
+		ByteArrayOutputStream out = new ByteArrayOutputStream();
+		PatternSnapshot.write(Arrays.asList(expression), 0, out);
+		return out.toByteArray();
+	}
+}
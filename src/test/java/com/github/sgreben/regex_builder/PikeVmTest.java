@@ -0,0 +1,173 @@
+package com.github.sgreben.regex_builder;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+import org.junit.Test;
+import com.github.sgreben.regex_builder.compiler.CompileOptions;
+import com.github.sgreben.regex_builder.compiler.Engine;
+
+public class PikeVmTest {
+	private static final CompileOptions pikeVm = CompileOptions.defaults().withoutCache().withEngine(Engine.PIKE_VM);
+	private static final CompileOptions backtracking = CompileOptions.defaults().withoutCache()
+			.withEngine(Engine.BACKTRACKING);
+
+	@Test
+	public void vmExtractsGroupsInLinearTime() {
+		CaptureGroup last = Re.capture(Re.choice("a", Re.repeat("a", 2)));
+		Pattern p = Pattern.compile(Re.sequence(Re.repeat(last), "c"), 0, pikeVm);
+		assertNotNull(p.pikeVm());
+		char[] input = new char[10000];
+		Arrays.fill(input, 'a');
+		assertFalse(p.matcher(new String(input)).find());
+		assertFalse(p.matcher(new String(input)).matches());
+
+		input[input.length - 1] = 'c';
+		Matcher m = p.matcher(new String(input));
+		assertTrue(m.matches());
+		assertEquals(input.length - 2, m.start(last));
+		assertEquals("a", m.group(last));
+	}
+
+	@Test
+	public void groupsFollowLeftmostFirstPriority() {
+		CaptureGroup left = Re.capture(Re.repeat(CharClass.anyChar()));
+		CaptureGroup right = Re.capture(Re.repeat1(CharClass.range('0', '9')));
+		Matcher m = Pattern.compile(Re.sequence(left, right), 0, pikeVm).matcher("ab123");
+		assertTrue(m.matches());
+		assertEquals("ab12", m.group(left));
+		assertEquals("3", m.group(right));
+
+		left = Re.capture(Re.repeatReluctant(CharClass.anyChar()));
+		right = Re.capture(Re.repeat1(CharClass.range('0', '9')));
+		m = Pattern.compile(Re.sequence(left, right), 0, pikeVm).matcher("ab123");
+		assertTrue(m.find());
+		assertEquals("ab", m.group(left));
+		assertEquals("123", m.group(right));
+
+		CaptureGroup unmatched = Re.capture("x");
+		m = Pattern.compile(Re.choice(unmatched, "b"), 0, pikeVm).matcher("ab");
+		assertTrue(m.find());
+		assertNull(m.group(unmatched));
+		assertEquals(-1, m.start(unmatched));
+	}
+
+	@Test
+	public void possessiveQuantifiersAndAtomicGroupsDoNotGiveBack() {
+		Pattern p = Pattern.compile(Re.sequence(Re.repeatPossessive(CharClass.anyChar()), "a"), 0, pikeVm);
+		assertNotNull(p.pikeVm());
+		assertFalse(p.matcher("aaa").find());
+		CaptureGroup group = Re.capture(Re.atomic(Re.choice("a", "ab")));
+		p = Pattern.compile(Re.sequence(group, "c"), 0, pikeVm);
+		assertNotNull(p.pikeVm());
+		assertFalse(p.matcher("abc").find());
+		Matcher m = p.matcher("ac abc");
+		assertTrue(m.find());
+		assertEquals("a", m.group(group));
+
+		// java.util.regex keeps the groups of an atomic body when it backtracks past it.
+		assertNull(Pattern.compile(Re.atomic(Re.capture("a")), 0, pikeVm).pikeVm());
+		assertNull(Pattern.compile(Re.sequence("a", Re.positiveLookahead("b")), 0, pikeVm).pikeVm());
+		assertNull(Pattern.compile(Re.sequence(CharClass.wordBoundary(), "a"), 0, pikeVm).pikeVm());
+	}
+
+	@Test
+	public void optionalReluctantPrefersToSkip() {
+		CaptureGroup group = Re.capture(Re.optionalReluctant(Re.sequence("a")));
+		Pattern p = Pattern.compile(Re.sequence(group, Re.repeat(CharClass.anyChar())), 0, pikeVm);
+		assertTrue(p.pattern(), p.pattern().contains("??"));
+		Matcher m = p.matcher("ab");
+		assertTrue(m.matches());
+		assertEquals("", m.group(group));
+	}
+
+	@Test
+	public void vm_findsTheSameGroupsAsTheRegex() {
+		Random random = new Random(16);
+		int[] flagChoices = {0, java.util.regex.Pattern.MULTILINE, java.util.regex.Pattern.UNIX_LINES,
+				java.util.regex.Pattern.DOTALL};
+		int built = 0;
+		for (int round = 0; round < 600; round++) {
+			List<CaptureGroup> groups = new ArrayList<CaptureGroup>();
+			Expression expression = randomExpression(random, 3, groups);
+			int flags = flagChoices[random.nextInt(flagChoices.length)];
+			Pattern actual = Pattern.compile(expression, flags, pikeVm);
+			if (actual.pikeVm() != null) {
+				built++;
+			}
+			Pattern expected = Pattern.compile(expression, flags, backtracking);
+			for (int k = 0; k < 20; k++) {
+				assertSameGroups(expected, actual, groups, DfaTest.randomString(random, 12));
+			}
+		}
+		assertTrue(String.valueOf(built), built > 300);
+	}
+
+	static void assertSameGroups(Pattern expected, Pattern actual, List<CaptureGroup> groups, String input) {
+		Matcher e = expected.matcher(input);
+		Matcher a = actual.matcher(input);
+		String context = actual.pattern() + " on " + Arrays.asList(input);
+		while (e.find()) {
+			assertTrue(context, a.find());
+			assertEquals(context, groups(e, groups), groups(a, groups));
+		}
+		assertFalse(context, a.find());
+		e = expected.matcher(input);
+		a = actual.matcher(input);
+		assertEquals(context, e.matches(), a.matches());
+		if (e.matches()) {
+			a.matches();
+			assertEquals(context, groups(e, groups), groups(a, groups));
+		}
+	}
+
+	private static List<String> groups(Matcher m, List<CaptureGroup> groups) {
+		List<String> bounds = new ArrayList<String>();
+		bounds.add(m.start() + ":" + m.end());
+		for (CaptureGroup group : groups) {
+			bounds.add(m.start(group) + ":" + m.end(group) + "=" + m.group(group));
+		}
+		return bounds;
+	}
+
+	static Expression randomExpression(Random random, int depth, List<CaptureGroup> groups) {
+		if (depth == 0 || random.nextInt(4) == 0) {
+			Object[] leaves = {"a", "b", "ab", "\r\n", CharClass.oneOf("ab"), CharClass.noneOf("a"), Re.anyCharacter(),
+					Re.beginLine(), Re.endLine(), CharClass.beginInput(), CharClass.endInput()};
+			return Re.sequence(leaves[random.nextInt(leaves.length)]);
+		}
+		Expression child = randomExpression(random, depth - 1, groups);
+		switch (random.nextInt(14)) {
+		case 0:
+			return Re.sequence(child, randomExpression(random, depth - 1, groups));
+		case 1:
+			return Re.choice(child, randomExpression(random, depth - 1, groups));
+		case 2:
+			return Re.repeat(child);
+		case 3:
+			return Re.repeat1(child);
+		case 4:
+			return Re.optional(child);
+		case 5:
+			return Re.repeat(child, 1, 3);
+		case 6:
+			return random.nextBoolean() ? Re.repeatReluctant(child) : Re.optionalReluctant(child);
+		case 7:
+			return random.nextBoolean() ? Re.repeatPossessive(child) : Re.repeat1Possessive(child);
+		case 8:
+			return random.nextBoolean() ? Re.optionalPossessive(child) : Re.repeatPossessive(child, 1, 2);
+		case 9:
+			return Re.atomic(child);
+		default:
+			CaptureGroup group = Re.capture(child);
+			groups.add(group);
+			return group;
+		}
+	}
+}
@@ -0,0 +1,142 @@
+package com.github.sgreben.regex_builder;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import java.util.Random;
+import org.junit.Test;
+import com.github.sgreben.regex_builder.compiler.CompileOptions;
+
+public class PossessifierTest {
+	private static final CompileOptions possessified = CompileOptions.defaults().withoutCache().withNormalization(true)
+			.withPossessification(true);
+	private static final CompileOptions greedy = possessified.withPossessification(false);
+
+	private static String pattern(Expression expression) {
+		return Pattern.compile(expression, 0, possessified).pattern();
+	}
+
+	@Test
+	public void disjointFollow_makesQuantifiersPossessive() {
+		assertEquals("(\\d++\\Q \\E)", pattern(Re.sequence(Re.repeat1(CharClass.digit()), " ")));
+		assertEquals("(\\Qa\\E*+\\Qb\\E?+\\z)", pattern(Re.sequence(Re.repeat("a"), Re.optional("b"), CharClass.endInput())));
+		assertEquals("([a-z]{2,}+\\d{1,3}+)",
+				pattern(Re.sequence(Re.repeatAtLeast(CharClass.range('a', 'z'), 2), Re.repeat(CharClass.digit(), 1, 3))));
+	}
+
+	@Test
+	public void overlappingFollow_staysGreedy() {
+		assertEquals("(\\w+\\d)", pattern(Re.sequence(Re.repeat1(CharClass.wordChar()), CharClass.digit())));
+		assertEquals("(\\Qa\\E*\\Qb\\E?+\\Qa\\E)", pattern(Re.sequence(Re.repeat("a"), Re.optional("b"), "a")));
+	}
+
+	@Test
+	public void unknownFollow_staysGreedy() {
+		CaptureGroup word = Re.capture(Re.repeat1(CharClass.wordChar()));
+		assertEquals("((\\w+)\\d+\\2)", pattern(Re.sequence(word, Re.repeat1(CharClass.digit()), Re.backReference(word))));
+		assertEquals("(\\d+(?=\\d))", pattern(Re.sequence(Re.repeat1(CharClass.digit()), Re.positiveLookahead(CharClass.digit()))));
+	}
+
+	@Test
+	public void nonDeterministicBodies_stayGreedy() {
+		assertEquals("((?:\\Qab\\E|\\Qc\\E)+\\Qd\\E)", pattern(Re.sequence(Re.repeat1(Re.choice("ab", "c")), "d")));
+	}
+
+	@Test
+	public void bodiesWithCaptureGroups_stayGreedy() {
+		Expression optionalGroup = Re.sequence(Re.optional(Re.capture(CharClass.range('a', 'b'))), CharClass.endInput());
+		assertEquals("((?:([a-b]))?\\z)", pattern(optionalGroup));
+		assertSameGroups(optionalGroup, 0, "aAa 1 1");
+		Expression boundedGroup = Re.capture(Re.sequence(CharClass.wordBoundary(),
+				Re.optional(Re.capture(CharClass.anyChar())), CharClass.endInput()));
+		for (String input : new String[] {"aAa 1 1", "ab", "a\n", ""}) {
+			assertSameGroups(boundedGroup, java.util.regex.Pattern.DOTALL, input);
+		}
+	}
+
+	/**
+	 * Asserts that the possessified pattern finds the matches and groups of the greedy one.
+	 */
+	private static void assertSameGroups(Expression expression, int flags, String input) {
+		java.util.regex.Matcher e = java.util.regex.Pattern.compile(
+				Pattern.compile(expression, flags, greedy).pattern(), flags).matcher(input);
+		java.util.regex.Matcher a = java.util.regex.Pattern.compile(
+				Pattern.compile(expression, flags, possessified).pattern(), flags).matcher(input);
+		String context = a.pattern() + " on " + input;
+		while (e.find()) {
+			assertTrue(context, a.find());
+			for (int i = 0; i <= e.groupCount(); i++) {
+				assertEquals(context, e.start(i) + ":" + e.end(i), a.start(i) + ":" + a.end(i));
+			}
+		}
+		assertFalse(context, a.find());
+	}
+
+	@Test
+	public void caseInsensitive_isNotPossessified() {
+		Pattern p = Pattern.compile(Re.sequence(Re.repeat1("a"), "B"), java.util.regex.Pattern.CASE_INSENSITIVE,
+				possessified);
+		assertEquals("(\\Qa\\E+\\QB\\E)", p.pattern());
+	}
+
+	@Test
+	public void possessificationCanBeDisabled() {
+		assertEquals("(\\d+\\Q \\E)",
+				Pattern.compile(Re.sequence(Re.repeat1(CharClass.digit()), " "), 0, greedy).pattern());
+	}
+
+	@Test
+	public void possessifiedPatterns_findTheSameMatches() {
+		Random random = new Random(42);
+		Object[] atoms = {"a", "b", "ab", CharClass.oneOf("ab"), CharClass.oneOf("bc"), CharClass.endInput(), Re.endLine()};
+		for (int round = 0; round < 300; round++) {
+			Expression[] parts = new Expression[1 + random.nextInt(5)];
+			for (int i = 0; i < parts.length; i++) {
+				Expression atom = Re.sequence(atoms[random.nextInt(atoms.length - 2)]);
+				switch (random.nextInt(6)) {
+				case 0:
+					parts[i] = Re.repeat1(atom);
+					break;
+				case 1:
+					parts[i] = Re.repeat(atom);
+					break;
+				case 2:
+					parts[i] = Re.optional(atom);
+					break;
+				case 3:
+					parts[i] = Re.repeat(atom, 1, 2);
+					break;
+				case 4:
+					parts[i] = Re.choice(atom, Re.sequence(atoms[random.nextInt(atoms.length)]));
+					break;
+				default:
+					parts[i] = atom;
+				}
+			}
+			Expression expression = Re.sequence((Object[]) parts);
+			java.util.regex.Pattern expected = java.util.regex.Pattern.compile(
+					Pattern.compile(expression, 0, greedy).pattern());
+			java.util.regex.Pattern actual = java.util.regex.Pattern.compile(
+					Pattern.compile(expression, 0, possessified).pattern());
+			for (int k = 0; k < 20; k++) {
+				String input = randomString(random, 12);
+				java.util.regex.Matcher e = expected.matcher(input);
+				java.util.regex.Matcher a = actual.matcher(input);
+				while (e.find()) {
+					assertTrue(actual.pattern() + " on " + input, a.find());
+					assertEquals(actual.pattern() + " on " + input, e.start() + ":" + e.end(), a.start() + ":" + a.end());
+				}
+				assertFalse(actual.pattern() + " on " + input, a.find());
+			}
+		}
+	}
+
+	private static String randomString(Random random, int maxLength) {
+		StringBuilder sb = new StringBuilder();
+		int length = random.nextInt(maxLength + 1);
+		for (int i = 0; i < length; i++) {
+			sb.append("abc\n".charAt(random.nextInt(4)));
+		}
+		return sb.toString();
+	}
+}
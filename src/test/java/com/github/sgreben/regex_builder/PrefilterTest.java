@@ -0,0 +1,131 @@
+package com.github.sgreben.regex_builder;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+import java.util.Random;
+import org.junit.Test;
+import com.github.sgreben.regex_builder.analysis.RequiredLiteral;
+import com.github.sgreben.regex_builder.analysis.RequiredLiterals;
+import com.github.sgreben.regex_builder.compiler.CompileOptions;
+
+public class PrefilterTest {
+	private static final CompileOptions prefiltered = CompileOptions.defaults().withoutCache();
+	private static final CompileOptions unfiltered = prefiltered.withPrefilter(false);
+
+	private static Expression accessLogLine() {
+		Expression field = Re.repeat1(CharClass.nonWhitespaceChar());
+		return Re.sequence(Re.capture(field), " - - [", Re.capture(Re.repeat1(CharClass.noneOf("]"))), "] \"",
+				Re.choice("GET", "POST"), " ", Re.capture(field), " HTTP/1.", CharClass.digit(), "\" ",
+				Re.capture(Re.repeat(CharClass.digit(), 3)));
+	}
+
+	@Test
+	public void requiredLiterals_areFoundInMandatoryPositions() {
+		Expression expression = Re.sequence(Re.repeat("x"), Re.capture(Re.sequence("ab", Re.repeat1("cd"))),
+				Re.optional("ef"), Re.choice(Re.sequence("gh", "ij"), Re.sequence("ij", "kl")));
+		StringBuilder literals = new StringBuilder();
+		for (RequiredLiteral literal : RequiredLiterals.of(expression, 0)) {
+			literals.append(literal.getLiteral()).append(':').append(literal.getMaxOffset()).append(' ');
+		}
+		assertEquals("ab:-1 cd:-1 ij:-1 ", literals.toString());
+
+		RequiredLiteral bounded = RequiredLiterals.rarest(Re.sequence(CharClass.digit(), Re.optional("a"), "b"), 0);
+		assertEquals("b", bounded.getLiteral());
+		assertEquals(2, bounded.getMaxOffset());
+		assertTrue(RequiredLiterals.of(Re.string("a"), java.util.regex.Pattern.CASE_INSENSITIVE).isEmpty());
+	}
+
+	@Test
+	public void rarestLiteral_isChosen() {
+		Pattern p = Pattern.compile(accessLogLine(), 0, prefiltered);
+		assertEquals("] \"", p.requiredLiteral().getLiteral());
+		assertEquals(" HTTP/1.", RequiredLiterals.rarest(Re.sequence(Re.repeat1(CharClass.wordChar()), " HTTP/1.", " "), 0)
+				.getLiteral());
+		assertNull(Pattern.compile(Re.repeat1(CharClass.digit()), 0, prefiltered).requiredLiteral());
+		assertNull(Pattern.compile(accessLogLine(), 0, unfiltered).requiredLiteral());
+	}
+
+	@Test
+	public void inputWithoutLiteral_isRejected() {
+		Matcher m = Pattern.compile(accessLogLine(), 0, prefiltered).matcher("no log line here");
+		assertFalse(m.find());
+		try {
+			m.start();
+			fail();
+		} catch (IllegalStateException e) {
+			// expected
+		}
+		m = Pattern.compile(accessLogLine(), 0, prefiltered).matcher(
+				new StringBuilder("127.0.0.1 - - [10/Oct/2000:13:55:36 -0700] \"GET /a.gif HTTP/1.0\" 200"));
+		assertTrue(m.find());
+		assertEquals(0, m.start());
+		assertFalse(m.find());
+	}
+
+	@Test
+	public void appendReplacement_keepsAppendPosition() {
+		Pattern p = Pattern.compile(Re.sequence(CharClass.digit(), "!"), 0, prefiltered);
+		Matcher m = p.matcher("a1! b c d e f g2!h");
+		StringBuffer sb = new StringBuffer();
+		while (m.find()) {
+			m.appendReplacement(sb, Re.replacement("#"));
+		}
+		m.appendTail(sb);
+		assertEquals("a# b c d e f g#h", sb.toString());
+		assertEquals("a# b c d e f g#h", p.matcher("a1! b c d e f g2!h").replaceAll(Re.replacement("#")));
+	}
+
+	@Test
+	public void prefilteredPatterns_findTheSameMatches() {
+		Random random = new Random(7);
+		Object[] atoms = {"a", "b", "ab", "ca", CharClass.oneOf("ab"), CharClass.oneOf("bc"), CharClass.anyChar(),
+				CharClass.beginInput(), CharClass.endInput()};
+		for (int round = 0; round < 300; round++) {
+			Expression[] parts = new Expression[1 + random.nextInt(5)];
+			for (int i = 0; i < parts.length; i++) {
+				Expression atom = Re.sequence(atoms[random.nextInt(atoms.length)]);
+				switch (random.nextInt(5)) {
+				case 0:
+					parts[i] = Re.repeat1(atom);
+					break;
+				case 1:
+					parts[i] = Re.optional(atom);
+					break;
+				case 2:
+					parts[i] = Re.repeat(atom, 1, 2);
+					break;
+				case 3:
+					parts[i] = Re.choice(atom, Re.sequence(atoms[random.nextInt(atoms.length)]));
+					break;
+				default:
+					parts[i] = atom;
+				}
+			}
+			Expression expression = Re.sequence((Object[]) parts);
+			Pattern expected = Pattern.compile(expression, 0, unfiltered);
+			Pattern actual = Pattern.compile(expression, 0, prefiltered);
+			for (int k = 0; k < 20; k++) {
+				String input = randomString(random, 16);
+				Matcher e = expected.matcher(input);
+				Matcher a = actual.matcher(random.nextBoolean() ? input : new StringBuilder(input));
+				while (e.find()) {
+					assertTrue(actual.pattern() + " on " + input, a.find());
+					assertEquals(actual.pattern() + " on " + input, e.start() + ":" + e.end(), a.start() + ":" + a.end());
+				}
+				assertFalse(actual.pattern() + " on " + input, a.find());
+			}
+		}
+	}
+
+	private static String randomString(Random random, int maxLength) {
+		StringBuilder sb = new StringBuilder();
+		int length = random.nextInt(maxLength + 1);
+		for (int i = 0; i < length; i++) {
+			sb.append("abc ".charAt(random.nextInt(4)));
+		}
+		return sb.toString();
+	}
+}
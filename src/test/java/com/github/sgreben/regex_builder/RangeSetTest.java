@@ -0,0 +1,79 @@
+package com.github.sgreben.regex_builder;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+import org.junit.Test;
+import com.github.sgreben.regex_builder.charclass.RangeSet;
+import com.github.sgreben.regex_builder.compiler.CompileOptions;
+
+public class RangeSetTest {
+	private static final CompileOptions options = CompileOptions.defaults().withoutCache().withNormalization(true);
+
+	@Test
+	public void algebra() {
+		RangeSet az = RangeSet.of('a', 'z');
+		RangeSet digits = RangeSet.of('0', '9');
+		assertEquals(RangeSet.of('0', '9', 'a', 'z'), az.union(digits));
+		assertTrue(az.intersection(digits).isEmpty());
+		assertEquals(RangeSet.of('f', 'k'), az.intersection(RangeSet.of('a', 'k')).intersection(RangeSet.of('f', 'z')));
+		assertTrue(az.union(az.complement()).isFull());
+		assertEquals(az, az.complement().complement());
+		assertEquals(RangeSet.of('a', 'c'), RangeSet.of('c', 'c', 'a', 'b'));
+		assertTrue(az.contains('q'));
+		assertFalse(az.contains('A'));
+	}
+
+	@Test
+	public void compositeClasses_evaluateToRangeSets() {
+		CharClass hex = CharClass.union(CharClass.digit(), CharClass.range('a', 'f', 'A', 'F'));
+		assertEquals(RangeSet.of('0', '9', 'a', 'f', 'A', 'F'), hex.toRangeSet(0));
+		CharClass consonants = CharClass.intersection(CharClass.Posix.Lower(), CharClass.noneOf("aeiou"));
+		assertEquals(RangeSet.of('b', 'd', 'f', 'h', 'j', 'n', 'p', 't', 'v', 'z'), consonants.toRangeSet(0));
+		assertTrue(CharClass.intersection(CharClass.digit(), CharClass.wordChar().complement()).toRangeSet(0).isEmpty());
+		assertTrue(CharClass.union(CharClass.digit(), CharClass.nonDigit()).toRangeSet(0).isFull());
+		assertNull(CharClass.wordBoundary().toRangeSet(0));
+		assertNull(hex.toRangeSet(java.util.regex.Pattern.CASE_INSENSITIVE));
+	}
+
+	@Test
+	public void compositeClasses_areEmittedFlat() {
+		Expression vowelsOrDigits = Re.charClass(CharClass.union(CharClass.oneOf("aeiou"), CharClass.digit()));
+		assertEquals("([0-9aeiou])", Pattern.compile(vowelsOrDigits, 0, options).pattern());
+		Expression notHex = Re.charClass(CharClass.complement(CharClass.union(CharClass.digit(), CharClass.range('a', 'f'))));
+		assertEquals("([^0-9a-f])", Pattern.compile(notHex, 0, options).pattern());
+		Expression empty = Re.charClass(CharClass.intersection(CharClass.digit(), CharClass.Posix.Alpha()));
+		assertEquals("((?!))", Pattern.compile(empty, 0, options).pattern());
+	}
+
+	@Test
+	public void rangeSets_agreeWithJavaRegex() {
+		CharClass[] classes = {
+				CharClass.anyChar(), CharClass.digit(), CharClass.nonDigit(), CharClass.wordChar(),
+				CharClass.nonWordChar(), CharClass.whitespaceChar(), CharClass.nonWhitespaceChar(),
+				CharClass.horizontalWhitespaceChar(), CharClass.verticalWhitespaceChar(), CharClass.hexDigit(),
+				CharClass.Posix.Punct(), CharClass.Posix.Graph(), CharClass.Posix.Print(), CharClass.Posix.Cntrl(),
+				CharClass.Posix.XDigit(), CharClass.Posix.Space(), CharClass.Posix.Blank(),
+				CharClass.Java.LowerCase(), CharClass.Java.Whitespace(), CharClass.Java.Mirrored(),
+				CharClass.oneOf("+\\-a-c\\x{e9}"), CharClass.noneOf("xyz"), CharClass.range('0', '4', 'w', 'z'),
+				CharClass.intersection(CharClass.Posix.Alnum(), CharClass.complement(CharClass.Posix.Upper())),
+				CharClass.union(CharClass.Java.UpperCase(), CharClass.complement(CharClass.range('a', 'y'))),
+		};
+		for (int flags : new int[] {0, java.util.regex.Pattern.DOTALL, java.util.regex.Pattern.UNIX_LINES}) {
+			for (CharClass charClass : classes) {
+				RangeSet set = charClass.toRangeSet(flags);
+				java.util.regex.Pattern original = java.util.regex.Pattern.compile(
+						Pattern.compile(Re.charClass(charClass), flags, options.withNormalization(false)).pattern(), flags);
+				java.util.regex.Pattern flat = java.util.regex.Pattern.compile(
+						Pattern.compile(Re.charClass(set), flags, options).pattern(), flags);
+				for (int c = 0; c <= 0xFFFF; c++) {
+					String s = String.valueOf((char) c);
+					boolean expected = original.matcher(s).matches();
+					assertEquals(original.pattern() + " " + c, expected, set.contains(c));
+					assertEquals(flat.pattern() + " " + c, expected, flat.matcher(s).matches());
+				}
+			}
+		}
+	}
+}
@@ -0,0 +1,108 @@
+package com.github.sgreben.regex_builder;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+import java.util.Arrays;
+import java.util.Random;
+import org.junit.Test;
+import com.github.sgreben.regex_builder.analysis.SearchStrategy;
+import com.github.sgreben.regex_builder.compiler.CompileOptions;
+
+public class SearchStrategyTest {
+	private static final CompileOptions withStrategies = CompileOptions.defaults().withoutCache();
+	private static final CompileOptions forward = withStrategies.withPrefilter(false);
+
+	@Test
+	public void strategyIsSelectedFromTheTree() {
+		Pattern suffix = Pattern.compile(Re.sequence(Re.repeat1(CharClass.nonWhitespaceChar()), ".log", Re.endLine()), 0,
+				withStrategies);
+		assertEquals(SearchStrategy.Kind.REVERSE_SUFFIX, suffix.searchStrategy().getKind());
+		assertEquals(".log", suffix.searchStrategy().getLiteral());
+
+		Expression word = Re.repeat1(CharClass.wordChar());
+		Pattern inner = Pattern.compile(Re.capture(Re.sequence(Re.capture(word), "@", word, ".com")), 0, withStrategies);
+		assertEquals(SearchStrategy.Kind.INNER_LITERAL, inner.searchStrategy().getKind());
+		assertEquals("@", inner.searchStrategy().getLiteral());
+
+		assertNull(Pattern.compile(Re.sequence(Re.repeat(CharClass.digit(), 1, 3), "x"), 0, withStrategies).searchStrategy());
+		CaptureGroup group = Re.capture(word);
+		assertNull(Pattern.compile(Re.sequence(group, "=", Re.backReference(group)), 0, withStrategies).searchStrategy());
+		assertNull(Pattern.compile(Re.sequence(word, "@"), java.util.regex.Pattern.CASE_INSENSITIVE, withStrategies)
+				.searchStrategy());
+	}
+
+	@Test
+	public void reverseSuffix_findsMatchesWithoutRescanning() {
+		Pattern p = Pattern.compile(Re.sequence(Re.repeat1(CharClass.nonWhitespaceChar()), ".log", Re.endLine()), 0,
+				withStrategies);
+		Matcher m = p.matcher("see a.log.b and /var/x.log");
+		assertTrue(m.find());
+		assertEquals("/var/x.log", m.group());
+		assertFalse(m.find());
+
+		char[] chunk = "x.log".toCharArray();
+		char[] input = new char[50000];
+		for (int i = 0; i < input.length; i++) {
+			input[i] = chunk[i % chunk.length];
+		}
+		input[input.length - 1] = 'x';
+		assertFalse(p.matcher(new String(input)).find());
+	}
+
+	@Test
+	public void strategies_findTheSameMatches() {
+		Random random = new Random(11);
+		Object[] classes = {CharClass.oneOf("ab"), CharClass.oneOf("abc"), CharClass.nonWhitespaceChar()};
+		Object[] literals = {"a", "c", "ab", "cb", " "};
+		Object[] rest = {"a", "b", CharClass.oneOf("bc"), Re.repeat1("b"), CharClass.endInput(), Re.endLine(),
+				Re.positiveLookahead("a")};
+		for (int round = 0; round < 300; round++) {
+			Expression prefix = Re.sequence(classes[random.nextInt(classes.length)]);
+			switch (random.nextInt(4)) {
+			case 0:
+				prefix = Re.repeat(prefix);
+				break;
+			case 1:
+				prefix = Re.repeat1(prefix).reluctant();
+				break;
+			case 2:
+				prefix = Re.repeatAtLeast(prefix, 2);
+				break;
+			default:
+				prefix = Re.capture(Re.repeat1(prefix));
+			}
+			Object[] parts = new Object[2 + random.nextInt(3)];
+			parts[0] = prefix;
+			parts[1] = literals[random.nextInt(literals.length)];
+			for (int i = 2; i < parts.length; i++) {
+				parts[i] = rest[random.nextInt(rest.length)];
+			}
+			Expression expression = Re.sequence(parts);
+			Pattern expected = Pattern.compile(expression, 0, forward);
+			Pattern actual = Pattern.compile(expression, 0, withStrategies);
+			for (int k = 0; k < 20; k++) {
+				String input = randomString(random, 16);
+				Matcher e = expected.matcher(input);
+				Matcher a = actual.matcher(input);
+				String context = actual.pattern() + " (" + actual.searchStrategy() + ") on " + Arrays.asList(input);
+				while (e.find()) {
+					assertTrue(context, a.find());
+					assertEquals(context, e.start() + ":" + e.end(), a.start() + ":" + a.end());
+				}
+				assertFalse(context, a.find());
+				assertEquals(context, expected.matcher(input).matches(), actual.matcher(input).matches());
+			}
+		}
+	}
+
+	private static String randomString(Random random, int maxLength) {
+		StringBuilder sb = new StringBuilder();
+		int length = random.nextInt(maxLength + 1);
+		for (int i = 0; i < length; i++) {
+			sb.append("abc \n".charAt(random.nextInt(5)));
+		}
+		return sb.toString();
+	}
+}
@@ -0,0 +1,139 @@
+package com.github.sgreben.regex_builder;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.Reader;
+import java.io.StringReader;
+import java.nio.channels.Channels;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+import org.junit.Test;
+import com.github.sgreben.regex_builder.compiler.CompileOptions;
+
+public class StreamMatcherTest {
+	private static final CompileOptions utf8 = CompileOptions.defaults().withoutCache().withUtf8Dfa(true);
+
+	@Test
+	public void matchesHaveOffsetsInTheStream() throws IOException {
+		CaptureGroup latency = Re.capture(Re.repeat(CharClass.digit(), 1, 4));
+		Pattern p = Pattern.compile(Re.sequence("latency=", latency, "ms"), 0, utf8);
+		StringBuilder log = new StringBuilder();
+		for (int i = 0; i < 200; i++) {
+			log.append("host=web-").append(i).append(" user=J\u00f6rg latency=").append(i * 7).append("ms\n");
+		}
+		String text = log.toString();
+		StreamMatcher m = p.streamMatcher(new StringReader(text), 64);
+		java.util.regex.Matcher expected = java.util.regex.Pattern.compile("latency=(\\d{1,4})ms").matcher(text);
+		while (expected.find()) {
+			assertTrue(m.find());
+			assertEquals(expected.start(), m.start());
+			assertEquals(expected.end(1), m.end(latency));
+			assertEquals(expected.group(1), m.group(latency));
+		}
+		assertFalse(m.find());
+		assertFalse(m.find());
+		for (int windowSize : new int[] {64, 97, 1 << 16}) {
+			assertSameMatches(p, Arrays.asList(latency), text, windowSize);
+		}
+	}
+
+	@Test
+	public void matchesLongerThanTheWindowAreFoundWhole() throws IOException {
+		CaptureGroup word = Re.capture(Re.repeat1(CharClass.wordChar()));
+		Pattern p = Pattern.compile(Re.sequence(word, "!"), 0, utf8);
+		assertEquals(-1, p.analysis().getMaxLength());
+		StringBuilder longWord = new StringBuilder();
+		for (int i = 0; i < 100; i++) {
+			longWord.append("word");
+		}
+		String text = "short! " + longWord + "! a b " + longWord + "?";
+		StreamMatcher m = p.streamMatcher(new StringReader(text), 64);
+		assertTrue(m.find());
+		assertEquals("short", m.group(word));
+		assertTrue(m.find());
+		assertEquals(text.indexOf("word"), m.start());
+		assertEquals(longWord.toString(), m.group(word));
+		assertFalse(m.find());
+		for (int windowSize : new int[] {64, 97, 1 << 16}) {
+			assertSameMatches(p, Arrays.asList(word), text, windowSize);
+		}
+	}
+
+	@Test
+	public void streamMatchers_findTheSameMatchesAsMatchers() throws IOException {
+		Random random = new Random(25);
+		String[] units = {"a", "a", "b", "\r", "\n", "\u00e9", "\u2028", "\u4e2d", "\uD83D\uDE00"};
+		for (int round = 0; round < 300; round++) {
+			List<CaptureGroup> groups = new ArrayList<CaptureGroup>();
+			Expression expression = round % 2 == 0 ? DfaTest.randomExpression(random, 3)
+					: PikeVmTest.randomExpression(random, 3, groups);
+			int flags = random.nextBoolean() ? 0 : java.util.regex.Pattern.MULTILINE;
+			Pattern p = Pattern.compile(expression, flags, utf8);
+			StringBuilder text = new StringBuilder();
+			for (int i = 0; i < 300; i++) {
+				text.append(units[random.nextInt(units.length)]);
+			}
+			assertSameMatches(p, groups, text.toString(), 64 + random.nextInt(64));
+		}
+	}
+
+	/**
+	 * Asserts that a reader of the text, returning a few chars at a time, and a channel of its bytes
+	 * give the matches of the whole text.
+	 */
+	private static void assertSameMatches(Pattern p, List<CaptureGroup> groups, String text, int windowSize)
+			throws IOException {
+		String context = p.pattern() + " in windows of " + windowSize + " on " + text;
+		Matcher expected = p.matcher(text);
+		StreamMatcher chars = p.streamMatcher(new ShortReads(text), windowSize);
+		while (expected.find()) {
+			assertTrue(context, chars.find());
+			assertEquals(context, expected.start() + ":" + expected.end(), chars.start() + ":" + chars.end());
+			for (CaptureGroup group : groups) {
+				assertEquals(context, expected.start(group), chars.start(group));
+				assertEquals(context, expected.group(group), chars.group(group));
+			}
+		}
+		assertFalse(context, chars.find());
+
+		byte[] bytes = text.getBytes(StandardCharsets.UTF_8);
+		ByteMatcher expectedBytes = p.byteMatcher(bytes);
+		StreamMatcher channel = p.streamMatcher(Channels.newChannel(new ByteArrayInputStream(bytes)), windowSize);
+		while (expectedBytes.find()) {
+			assertTrue(context, channel.find());
+			assertEquals(context, expectedBytes.start() + ":" + expectedBytes.end(),
+					channel.start() + ":" + channel.end());
+			for (CaptureGroup group : groups) {
+				assertEquals(context, expectedBytes.end(group), channel.end(group));
+			}
+		}
+		assertFalse(context, channel.find());
+	}
+
+	/**
+	 * Returns at most seven chars per read.
+	 */
+	private static final class ShortReads extends Reader {
+		private final StringReader reader;
+
+		ShortReads(String text) {
+			this.reader = new StringReader(text);
+		}
+
+		@Override
+		public int read(char[] buffer, int offset, int length) throws IOException {
+			return reader.read(buffer, offset, Math.min(length, 7));
+		}
+
+		@Override
+		public void close() {
+			reader.close();
+		}
+	}
+}
@@ -0,0 +1,51 @@
+package com.github.sgreben.regex_builder;
+
+import jdk.incubator.vector.ShortVector;
+import jdk.incubator.vector.VectorMask;
+import jdk.incubator.vector.VectorOperators;
+import jdk.incubator.vector.VectorSpecies;
+
+/**
+ * Compares a chunk of chars at a time with the ranges, using the widest vector shape of the
+ * platform (16 chars with AVX2, 32 with AVX-512). A char c is in the range from-to iff the unsigned
+ * difference c - from is at most to - from, so each range costs a subtraction and a comparison.
+ * Loaded reflectively by {@link CandidateScanner}.
+ */
+final class VectorCandidateScanner extends CandidateScanner {
+    private static final VectorSpecies<Short> SPECIES = ShortVector.SPECIES_PREFERRED;
+
+    private final short[] starts;
+    private final short[] widths;
+
+    VectorCandidateScanner(char[] ranges) {
+        super(ranges);
+        this.starts = new short[ranges.length / 2];
+        this.widths = new short[ranges.length / 2];
+        for (int i = 0; i < starts.length; i++) {
+            starts[i] = (short) ranges[2 * i];
+            widths[i] = (short) (ranges[2 * i + 1] - ranges[2 * i]);
+        }
+    }
+
+    @Override
+    int indexOf(char[] chars, int from, int to) {
+        int i = from;
+        int bound = from + SPECIES.loopBound(to - from);
+        for (; i < bound; i += SPECIES.length()) {
+            ShortVector chunk = ShortVector.fromCharArray(SPECIES, chars, i);
+            VectorMask<Short> hits = chunk.sub(starts[0]).compare(VectorOperators.UNSIGNED_LE, widths[0]);
+            for (int r = 1; r < starts.length; r++) {
+                hits = hits.or(chunk.sub(starts[r]).compare(VectorOperators.UNSIGNED_LE, widths[r]));
+            }
+            if (hits.anyTrue()) {
+                return i + hits.firstTrue();
+            }
+        }
+        for (; i < to; i++) {
+            if (contains(chars[i])) {
+                return i;
+            }
+        }
+        return -1;
+    }
+}